@@ -512,6 +512,65 @@ public int processBlock(byte[] in, int inOff, byte[] out, int outOff)
         return BLOCK_SIZE;
     }
 
+    /**
+     * Process blockCount blocks, four at a time where possible. The four block states are carried
+     * through the rounds together so the table look ups for each block can be overlapped.
+     */
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (WorkingKey == null)
+        {
+            throw new IllegalStateException("AES engine not initialised");
+        }
+
+        int len = blockCount * BLOCK_SIZE;
+
+        if (blockCount < 0 || inOff > (in.length - len))
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if (outOff > (out.length - len))
+        {
+            throw new OutputLengthException("output buffer too short");
+        }
+
+        while (blockCount >= 4)
+        {
+            if (forEncryption)
+            {
+                encryptBlocks4(in, inOff, out, outOff, WorkingKey);
+            }
+            else
+            {
+                decryptBlocks4(in, inOff, out, outOff, WorkingKey);
+            }
+
+            inOff += 4 * BLOCK_SIZE;
+            outOff += 4 * BLOCK_SIZE;
+            blockCount -= 4;
+        }
+
+        while (blockCount > 0)
+        {
+            if (forEncryption)
+            {
+                encryptBlock(in, inOff, out, outOff, WorkingKey);
+            }
+            else
+            {
+                decryptBlock(in, inOff, out, outOff, WorkingKey);
+            }
+
+            inOff += BLOCK_SIZE;
+            outOff += BLOCK_SIZE;
+            --blockCount;
+        }
+
+        return len;
+    }
+
     public void reset()
     {
     }
@@ -600,6 +659,260 @@ private void decryptBlock(byte[] in, int inOff, byte[] out, int outOff, int[][]
         Pack.intToLittleEndian(C3, out, outOff + 12);
     }
 
+    private void encryptBlocks4(byte[] in, int inOff, byte[] out, int outOff, int[][] KW)
+    {
+        int C0a = Pack.littleEndianToInt(in, inOff +  0);
+        int C0b = Pack.littleEndianToInt(in, inOff + 16);
+        int C0c = Pack.littleEndianToInt(in, inOff + 32);
+        int C0d = Pack.littleEndianToInt(in, inOff + 48);
+        int C1a = Pack.littleEndianToInt(in, inOff +  4);
+        int C1b = Pack.littleEndianToInt(in, inOff + 20);
+        int C1c = Pack.littleEndianToInt(in, inOff + 36);
+        int C1d = Pack.littleEndianToInt(in, inOff + 52);
+        int C2a = Pack.littleEndianToInt(in, inOff +  8);
+        int C2b = Pack.littleEndianToInt(in, inOff + 24);
+        int C2c = Pack.littleEndianToInt(in, inOff + 40);
+        int C2d = Pack.littleEndianToInt(in, inOff + 56);
+        int C3a = Pack.littleEndianToInt(in, inOff + 12);
+        int C3b = Pack.littleEndianToInt(in, inOff + 28);
+        int C3c = Pack.littleEndianToInt(in, inOff + 44);
+        int C3d = Pack.littleEndianToInt(in, inOff + 60);
+
+        int t0a = C0a ^ KW[0][0];
+        int t0b = C0b ^ KW[0][0];
+        int t0c = C0c ^ KW[0][0];
+        int t0d = C0d ^ KW[0][0];
+        int t1a = C1a ^ KW[0][1];
+        int t1b = C1b ^ KW[0][1];
+        int t1c = C1c ^ KW[0][1];
+        int t1d = C1d ^ KW[0][1];
+        int t2a = C2a ^ KW[0][2];
+        int t2b = C2b ^ KW[0][2];
+        int t2c = C2c ^ KW[0][2];
+        int t2d = C2d ^ KW[0][2];
+
+        int r = 1;
+        int r0a, r1a, r2a, r3a = C3a ^ KW[0][3];
+        int r0b, r1b, r2b, r3b = C3b ^ KW[0][3];
+        int r0c, r1c, r2c, r3c = C3c ^ KW[0][3];
+        int r0d, r1d, r2d, r3d = C3d ^ KW[0][3];
+        while (r < ROUNDS - 1)
+        {
+            r0a = T0[t0a&255] ^ shift(T0[(t1a>>8)&255], 24) ^ shift(T0[(t2a>>16)&255], 16) ^ shift(T0[(r3a>>24)&255], 8) ^ KW[r][0];
+            r0b = T0[t0b&255] ^ shift(T0[(t1b>>8)&255], 24) ^ shift(T0[(t2b>>16)&255], 16) ^ shift(T0[(r3b>>24)&255], 8) ^ KW[r][0];
+            r0c = T0[t0c&255] ^ shift(T0[(t1c>>8)&255], 24) ^ shift(T0[(t2c>>16)&255], 16) ^ shift(T0[(r3c>>24)&255], 8) ^ KW[r][0];
+            r0d = T0[t0d&255] ^ shift(T0[(t1d>>8)&255], 24) ^ shift(T0[(t2d>>16)&255], 16) ^ shift(T0[(r3d>>24)&255], 8) ^ KW[r][0];
+            r1a = T0[t1a&255] ^ shift(T0[(t2a>>8)&255], 24) ^ shift(T0[(r3a>>16)&255], 16) ^ shift(T0[(t0a>>24)&255], 8) ^ KW[r][1];
+            r1b = T0[t1b&255] ^ shift(T0[(t2b>>8)&255], 24) ^ shift(T0[(r3b>>16)&255], 16) ^ shift(T0[(t0b>>24)&255], 8) ^ KW[r][1];
+            r1c = T0[t1c&255] ^ shift(T0[(t2c>>8)&255], 24) ^ shift(T0[(r3c>>16)&255], 16) ^ shift(T0[(t0c>>24)&255], 8) ^ KW[r][1];
+            r1d = T0[t1d&255] ^ shift(T0[(t2d>>8)&255], 24) ^ shift(T0[(r3d>>16)&255], 16) ^ shift(T0[(t0d>>24)&255], 8) ^ KW[r][1];
+            r2a = T0[t2a&255] ^ shift(T0[(r3a>>8)&255], 24) ^ shift(T0[(t0a>>16)&255], 16) ^ shift(T0[(t1a>>24)&255], 8) ^ KW[r][2];
+            r2b = T0[t2b&255] ^ shift(T0[(r3b>>8)&255], 24) ^ shift(T0[(t0b>>16)&255], 16) ^ shift(T0[(t1b>>24)&255], 8) ^ KW[r][2];
+            r2c = T0[t2c&255] ^ shift(T0[(r3c>>8)&255], 24) ^ shift(T0[(t0c>>16)&255], 16) ^ shift(T0[(t1c>>24)&255], 8) ^ KW[r][2];
+            r2d = T0[t2d&255] ^ shift(T0[(r3d>>8)&255], 24) ^ shift(T0[(t0d>>16)&255], 16) ^ shift(T0[(t1d>>24)&255], 8) ^ KW[r][2];
+            r3a = T0[r3a&255] ^ shift(T0[(t0a>>8)&255], 24) ^ shift(T0[(t1a>>16)&255], 16) ^ shift(T0[(t2a>>24)&255], 8) ^ KW[r][3];
+            r3b = T0[r3b&255] ^ shift(T0[(t0b>>8)&255], 24) ^ shift(T0[(t1b>>16)&255], 16) ^ shift(T0[(t2b>>24)&255], 8) ^ KW[r][3];
+            r3c = T0[r3c&255] ^ shift(T0[(t0c>>8)&255], 24) ^ shift(T0[(t1c>>16)&255], 16) ^ shift(T0[(t2c>>24)&255], 8) ^ KW[r][3];
+            r3d = T0[r3d&255] ^ shift(T0[(t0d>>8)&255], 24) ^ shift(T0[(t1d>>16)&255], 16) ^ shift(T0[(t2d>>24)&255], 8) ^ KW[r++][3];
+            t0a = T0[r0a&255] ^ shift(T0[(r1a>>8)&255], 24) ^ shift(T0[(r2a>>16)&255], 16) ^ shift(T0[(r3a>>24)&255], 8) ^ KW[r][0];
+            t0b = T0[r0b&255] ^ shift(T0[(r1b>>8)&255], 24) ^ shift(T0[(r2b>>16)&255], 16) ^ shift(T0[(r3b>>24)&255], 8) ^ KW[r][0];
+            t0c = T0[r0c&255] ^ shift(T0[(r1c>>8)&255], 24) ^ shift(T0[(r2c>>16)&255], 16) ^ shift(T0[(r3c>>24)&255], 8) ^ KW[r][0];
+            t0d = T0[r0d&255] ^ shift(T0[(r1d>>8)&255], 24) ^ shift(T0[(r2d>>16)&255], 16) ^ shift(T0[(r3d>>24)&255], 8) ^ KW[r][0];
+            t1a = T0[r1a&255] ^ shift(T0[(r2a>>8)&255], 24) ^ shift(T0[(r3a>>16)&255], 16) ^ shift(T0[(r0a>>24)&255], 8) ^ KW[r][1];
+            t1b = T0[r1b&255] ^ shift(T0[(r2b>>8)&255], 24) ^ shift(T0[(r3b>>16)&255], 16) ^ shift(T0[(r0b>>24)&255], 8) ^ KW[r][1];
+            t1c = T0[r1c&255] ^ shift(T0[(r2c>>8)&255], 24) ^ shift(T0[(r3c>>16)&255], 16) ^ shift(T0[(r0c>>24)&255], 8) ^ KW[r][1];
+            t1d = T0[r1d&255] ^ shift(T0[(r2d>>8)&255], 24) ^ shift(T0[(r3d>>16)&255], 16) ^ shift(T0[(r0d>>24)&255], 8) ^ KW[r][1];
+            t2a = T0[r2a&255] ^ shift(T0[(r3a>>8)&255], 24) ^ shift(T0[(r0a>>16)&255], 16) ^ shift(T0[(r1a>>24)&255], 8) ^ KW[r][2];
+            t2b = T0[r2b&255] ^ shift(T0[(r3b>>8)&255], 24) ^ shift(T0[(r0b>>16)&255], 16) ^ shift(T0[(r1b>>24)&255], 8) ^ KW[r][2];
+            t2c = T0[r2c&255] ^ shift(T0[(r3c>>8)&255], 24) ^ shift(T0[(r0c>>16)&255], 16) ^ shift(T0[(r1c>>24)&255], 8) ^ KW[r][2];
+            t2d = T0[r2d&255] ^ shift(T0[(r3d>>8)&255], 24) ^ shift(T0[(r0d>>16)&255], 16) ^ shift(T0[(r1d>>24)&255], 8) ^ KW[r][2];
+            r3a = T0[r3a&255] ^ shift(T0[(r0a>>8)&255], 24) ^ shift(T0[(r1a>>16)&255], 16) ^ shift(T0[(r2a>>24)&255], 8) ^ KW[r][3];
+            r3b = T0[r3b&255] ^ shift(T0[(r0b>>8)&255], 24) ^ shift(T0[(r1b>>16)&255], 16) ^ shift(T0[(r2b>>24)&255], 8) ^ KW[r][3];
+            r3c = T0[r3c&255] ^ shift(T0[(r0c>>8)&255], 24) ^ shift(T0[(r1c>>16)&255], 16) ^ shift(T0[(r2c>>24)&255], 8) ^ KW[r][3];
+            r3d = T0[r3d&255] ^ shift(T0[(r0d>>8)&255], 24) ^ shift(T0[(r1d>>16)&255], 16) ^ shift(T0[(r2d>>24)&255], 8) ^ KW[r++][3];
+        }
+
+        r0a = T0[t0a&255] ^ shift(T0[(t1a>>8)&255], 24) ^ shift(T0[(t2a>>16)&255], 16) ^ shift(T0[(r3a>>24)&255], 8) ^ KW[r][0];
+        r0b = T0[t0b&255] ^ shift(T0[(t1b>>8)&255], 24) ^ shift(T0[(t2b>>16)&255], 16) ^ shift(T0[(r3b>>24)&255], 8) ^ KW[r][0];
+        r0c = T0[t0c&255] ^ shift(T0[(t1c>>8)&255], 24) ^ shift(T0[(t2c>>16)&255], 16) ^ shift(T0[(r3c>>24)&255], 8) ^ KW[r][0];
+        r0d = T0[t0d&255] ^ shift(T0[(t1d>>8)&255], 24) ^ shift(T0[(t2d>>16)&255], 16) ^ shift(T0[(r3d>>24)&255], 8) ^ KW[r][0];
+        r1a = T0[t1a&255] ^ shift(T0[(t2a>>8)&255], 24) ^ shift(T0[(r3a>>16)&255], 16) ^ shift(T0[(t0a>>24)&255], 8) ^ KW[r][1];
+        r1b = T0[t1b&255] ^ shift(T0[(t2b>>8)&255], 24) ^ shift(T0[(r3b>>16)&255], 16) ^ shift(T0[(t0b>>24)&255], 8) ^ KW[r][1];
+        r1c = T0[t1c&255] ^ shift(T0[(t2c>>8)&255], 24) ^ shift(T0[(r3c>>16)&255], 16) ^ shift(T0[(t0c>>24)&255], 8) ^ KW[r][1];
+        r1d = T0[t1d&255] ^ shift(T0[(t2d>>8)&255], 24) ^ shift(T0[(r3d>>16)&255], 16) ^ shift(T0[(t0d>>24)&255], 8) ^ KW[r][1];
+        r2a = T0[t2a&255] ^ shift(T0[(r3a>>8)&255], 24) ^ shift(T0[(t0a>>16)&255], 16) ^ shift(T0[(t1a>>24)&255], 8) ^ KW[r][2];
+        r2b = T0[t2b&255] ^ shift(T0[(r3b>>8)&255], 24) ^ shift(T0[(t0b>>16)&255], 16) ^ shift(T0[(t1b>>24)&255], 8) ^ KW[r][2];
+        r2c = T0[t2c&255] ^ shift(T0[(r3c>>8)&255], 24) ^ shift(T0[(t0c>>16)&255], 16) ^ shift(T0[(t1c>>24)&255], 8) ^ KW[r][2];
+        r2d = T0[t2d&255] ^ shift(T0[(r3d>>8)&255], 24) ^ shift(T0[(t0d>>16)&255], 16) ^ shift(T0[(t1d>>24)&255], 8) ^ KW[r][2];
+        r3a = T0[r3a&255] ^ shift(T0[(t0a>>8)&255], 24) ^ shift(T0[(t1a>>16)&255], 16) ^ shift(T0[(t2a>>24)&255], 8) ^ KW[r][3];
+        r3b = T0[r3b&255] ^ shift(T0[(t0b>>8)&255], 24) ^ shift(T0[(t1b>>16)&255], 16) ^ shift(T0[(t2b>>24)&255], 8) ^ KW[r][3];
+        r3c = T0[r3c&255] ^ shift(T0[(t0c>>8)&255], 24) ^ shift(T0[(t1c>>16)&255], 16) ^ shift(T0[(t2c>>24)&255], 8) ^ KW[r][3];
+        r3d = T0[r3d&255] ^ shift(T0[(t0d>>8)&255], 24) ^ shift(T0[(t1d>>16)&255], 16) ^ shift(T0[(t2d>>24)&255], 8) ^ KW[r++][3];
+
+        // the final round's table is a simple function of S so we don't use a whole other four tables for it
+
+        C0a = (S[r0a&255]&255) ^ ((S[(r1a>>8)&255]&255)<<8) ^ ((s[(r2a>>16)&255]&255)<<16) ^ (s[(r3a>>24)&255]<<24) ^ KW[r][0];
+        C0b = (S[r0b&255]&255) ^ ((S[(r1b>>8)&255]&255)<<8) ^ ((s[(r2b>>16)&255]&255)<<16) ^ (s[(r3b>>24)&255]<<24) ^ KW[r][0];
+        C0c = (S[r0c&255]&255) ^ ((S[(r1c>>8)&255]&255)<<8) ^ ((s[(r2c>>16)&255]&255)<<16) ^ (s[(r3c>>24)&255]<<24) ^ KW[r][0];
+        C0d = (S[r0d&255]&255) ^ ((S[(r1d>>8)&255]&255)<<8) ^ ((s[(r2d>>16)&255]&255)<<16) ^ (s[(r3d>>24)&255]<<24) ^ KW[r][0];
+        C1a = (s[r1a&255]&255) ^ ((S[(r2a>>8)&255]&255)<<8) ^ ((S[(r3a>>16)&255]&255)<<16) ^ (s[(r0a>>24)&255]<<24) ^ KW[r][1];
+        C1b = (s[r1b&255]&255) ^ ((S[(r2b>>8)&255]&255)<<8) ^ ((S[(r3b>>16)&255]&255)<<16) ^ (s[(r0b>>24)&255]<<24) ^ KW[r][1];
+        C1c = (s[r1c&255]&255) ^ ((S[(r2c>>8)&255]&255)<<8) ^ ((S[(r3c>>16)&255]&255)<<16) ^ (s[(r0c>>24)&255]<<24) ^ KW[r][1];
+        C1d = (s[r1d&255]&255) ^ ((S[(r2d>>8)&255]&255)<<8) ^ ((S[(r3d>>16)&255]&255)<<16) ^ (s[(r0d>>24)&255]<<24) ^ KW[r][1];
+        C2a = (s[r2a&255]&255) ^ ((S[(r3a>>8)&255]&255)<<8) ^ ((S[(r0a>>16)&255]&255)<<16) ^ (S[(r1a>>24)&255]<<24) ^ KW[r][2];
+        C2b = (s[r2b&255]&255) ^ ((S[(r3b>>8)&255]&255)<<8) ^ ((S[(r0b>>16)&255]&255)<<16) ^ (S[(r1b>>24)&255]<<24) ^ KW[r][2];
+        C2c = (s[r2c&255]&255) ^ ((S[(r3c>>8)&255]&255)<<8) ^ ((S[(r0c>>16)&255]&255)<<16) ^ (S[(r1c>>24)&255]<<24) ^ KW[r][2];
+        C2d = (s[r2d&255]&255) ^ ((S[(r3d>>8)&255]&255)<<8) ^ ((S[(r0d>>16)&255]&255)<<16) ^ (S[(r1d>>24)&255]<<24) ^ KW[r][2];
+        C3a = (s[r3a&255]&255) ^ ((s[(r0a>>8)&255]&255)<<8) ^ ((s[(r1a>>16)&255]&255)<<16) ^ (S[(r2a>>24)&255]<<24) ^ KW[r][3];
+        C3b = (s[r3b&255]&255) ^ ((s[(r0b>>8)&255]&255)<<8) ^ ((s[(r1b>>16)&255]&255)<<16) ^ (S[(r2b>>24)&255]<<24) ^ KW[r][3];
+        C3c = (s[r3c&255]&255) ^ ((s[(r0c>>8)&255]&255)<<8) ^ ((s[(r1c>>16)&255]&255)<<16) ^ (S[(r2c>>24)&255]<<24) ^ KW[r][3];
+        C3d = (s[r3d&255]&255) ^ ((s[(r0d>>8)&255]&255)<<8) ^ ((s[(r1d>>16)&255]&255)<<16) ^ (S[(r2d>>24)&255]<<24) ^ KW[r][3];
+
+        Pack.intToLittleEndian(C0a, out, outOff +  0);
+        Pack.intToLittleEndian(C0b, out, outOff + 16);
+        Pack.intToLittleEndian(C0c, out, outOff + 32);
+        Pack.intToLittleEndian(C0d, out, outOff + 48);
+        Pack.intToLittleEndian(C1a, out, outOff +  4);
+        Pack.intToLittleEndian(C1b, out, outOff + 20);
+        Pack.intToLittleEndian(C1c, out, outOff + 36);
+        Pack.intToLittleEndian(C1d, out, outOff + 52);
+        Pack.intToLittleEndian(C2a, out, outOff +  8);
+        Pack.intToLittleEndian(C2b, out, outOff + 24);
+        Pack.intToLittleEndian(C2c, out, outOff + 40);
+        Pack.intToLittleEndian(C2d, out, outOff + 56);
+        Pack.intToLittleEndian(C3a, out, outOff + 12);
+        Pack.intToLittleEndian(C3b, out, outOff + 28);
+        Pack.intToLittleEndian(C3c, out, outOff + 44);
+        Pack.intToLittleEndian(C3d, out, outOff + 60);
+    }
+
+    private void decryptBlocks4(byte[] in, int inOff, byte[] out, int outOff, int[][] KW)
+    {
+        int C0a = Pack.littleEndianToInt(in, inOff +  0);
+        int C0b = Pack.littleEndianToInt(in, inOff + 16);
+        int C0c = Pack.littleEndianToInt(in, inOff + 32);
+        int C0d = Pack.littleEndianToInt(in, inOff + 48);
+        int C1a = Pack.littleEndianToInt(in, inOff +  4);
+        int C1b = Pack.littleEndianToInt(in, inOff + 20);
+        int C1c = Pack.littleEndianToInt(in, inOff + 36);
+        int C1d = Pack.littleEndianToInt(in, inOff + 52);
+        int C2a = Pack.littleEndianToInt(in, inOff +  8);
+        int C2b = Pack.littleEndianToInt(in, inOff + 24);
+        int C2c = Pack.littleEndianToInt(in, inOff + 40);
+        int C2d = Pack.littleEndianToInt(in, inOff + 56);
+        int C3a = Pack.littleEndianToInt(in, inOff + 12);
+        int C3b = Pack.littleEndianToInt(in, inOff + 28);
+        int C3c = Pack.littleEndianToInt(in, inOff + 44);
+        int C3d = Pack.littleEndianToInt(in, inOff + 60);
+
+        int t0a = C0a ^ KW[ROUNDS][0];
+        int t0b = C0b ^ KW[ROUNDS][0];
+        int t0c = C0c ^ KW[ROUNDS][0];
+        int t0d = C0d ^ KW[ROUNDS][0];
+        int t1a = C1a ^ KW[ROUNDS][1];
+        int t1b = C1b ^ KW[ROUNDS][1];
+        int t1c = C1c ^ KW[ROUNDS][1];
+        int t1d = C1d ^ KW[ROUNDS][1];
+        int t2a = C2a ^ KW[ROUNDS][2];
+        int t2b = C2b ^ KW[ROUNDS][2];
+        int t2c = C2c ^ KW[ROUNDS][2];
+        int t2d = C2d ^ KW[ROUNDS][2];
+
+        int r = ROUNDS - 1;
+        int r0a, r1a, r2a, r3a = C3a ^ KW[ROUNDS][3];
+        int r0b, r1b, r2b, r3b = C3b ^ KW[ROUNDS][3];
+        int r0c, r1c, r2c, r3c = C3c ^ KW[ROUNDS][3];
+        int r0d, r1d, r2d, r3d = C3d ^ KW[ROUNDS][3];
+        while (r > 1)
+        {
+            r0a = Tinv0[t0a&255] ^ shift(Tinv0[(r3a>>8)&255], 24) ^ shift(Tinv0[(t2a>>16)&255], 16) ^ shift(Tinv0[(t1a>>24)&255], 8) ^ KW[r][0];
+            r0b = Tinv0[t0b&255] ^ shift(Tinv0[(r3b>>8)&255], 24) ^ shift(Tinv0[(t2b>>16)&255], 16) ^ shift(Tinv0[(t1b>>24)&255], 8) ^ KW[r][0];
+            r0c = Tinv0[t0c&255] ^ shift(Tinv0[(r3c>>8)&255], 24) ^ shift(Tinv0[(t2c>>16)&255], 16) ^ shift(Tinv0[(t1c>>24)&255], 8) ^ KW[r][0];
+            r0d = Tinv0[t0d&255] ^ shift(Tinv0[(r3d>>8)&255], 24) ^ shift(Tinv0[(t2d>>16)&255], 16) ^ shift(Tinv0[(t1d>>24)&255], 8) ^ KW[r][0];
+            r1a = Tinv0[t1a&255] ^ shift(Tinv0[(t0a>>8)&255], 24) ^ shift(Tinv0[(r3a>>16)&255], 16) ^ shift(Tinv0[(t2a>>24)&255], 8) ^ KW[r][1];
+            r1b = Tinv0[t1b&255] ^ shift(Tinv0[(t0b>>8)&255], 24) ^ shift(Tinv0[(r3b>>16)&255], 16) ^ shift(Tinv0[(t2b>>24)&255], 8) ^ KW[r][1];
+            r1c = Tinv0[t1c&255] ^ shift(Tinv0[(t0c>>8)&255], 24) ^ shift(Tinv0[(r3c>>16)&255], 16) ^ shift(Tinv0[(t2c>>24)&255], 8) ^ KW[r][1];
+            r1d = Tinv0[t1d&255] ^ shift(Tinv0[(t0d>>8)&255], 24) ^ shift(Tinv0[(r3d>>16)&255], 16) ^ shift(Tinv0[(t2d>>24)&255], 8) ^ KW[r][1];
+            r2a = Tinv0[t2a&255] ^ shift(Tinv0[(t1a>>8)&255], 24) ^ shift(Tinv0[(t0a>>16)&255], 16) ^ shift(Tinv0[(r3a>>24)&255], 8) ^ KW[r][2];
+            r2b = Tinv0[t2b&255] ^ shift(Tinv0[(t1b>>8)&255], 24) ^ shift(Tinv0[(t0b>>16)&255], 16) ^ shift(Tinv0[(r3b>>24)&255], 8) ^ KW[r][2];
+            r2c = Tinv0[t2c&255] ^ shift(Tinv0[(t1c>>8)&255], 24) ^ shift(Tinv0[(t0c>>16)&255], 16) ^ shift(Tinv0[(r3c>>24)&255], 8) ^ KW[r][2];
+            r2d = Tinv0[t2d&255] ^ shift(Tinv0[(t1d>>8)&255], 24) ^ shift(Tinv0[(t0d>>16)&255], 16) ^ shift(Tinv0[(r3d>>24)&255], 8) ^ KW[r][2];
+            r3a = Tinv0[r3a&255] ^ shift(Tinv0[(t2a>>8)&255], 24) ^ shift(Tinv0[(t1a>>16)&255], 16) ^ shift(Tinv0[(t0a>>24)&255], 8) ^ KW[r][3];
+            r3b = Tinv0[r3b&255] ^ shift(Tinv0[(t2b>>8)&255], 24) ^ shift(Tinv0[(t1b>>16)&255], 16) ^ shift(Tinv0[(t0b>>24)&255], 8) ^ KW[r][3];
+            r3c = Tinv0[r3c&255] ^ shift(Tinv0[(t2c>>8)&255], 24) ^ shift(Tinv0[(t1c>>16)&255], 16) ^ shift(Tinv0[(t0c>>24)&255], 8) ^ KW[r][3];
+            r3d = Tinv0[r3d&255] ^ shift(Tinv0[(t2d>>8)&255], 24) ^ shift(Tinv0[(t1d>>16)&255], 16) ^ shift(Tinv0[(t0d>>24)&255], 8) ^ KW[r--][3];
+            t0a = Tinv0[r0a&255] ^ shift(Tinv0[(r3a>>8)&255], 24) ^ shift(Tinv0[(r2a>>16)&255], 16) ^ shift(Tinv0[(r1a>>24)&255], 8) ^ KW[r][0];
+            t0b = Tinv0[r0b&255] ^ shift(Tinv0[(r3b>>8)&255], 24) ^ shift(Tinv0[(r2b>>16)&255], 16) ^ shift(Tinv0[(r1b>>24)&255], 8) ^ KW[r][0];
+            t0c = Tinv0[r0c&255] ^ shift(Tinv0[(r3c>>8)&255], 24) ^ shift(Tinv0[(r2c>>16)&255], 16) ^ shift(Tinv0[(r1c>>24)&255], 8) ^ KW[r][0];
+            t0d = Tinv0[r0d&255] ^ shift(Tinv0[(r3d>>8)&255], 24) ^ shift(Tinv0[(r2d>>16)&255], 16) ^ shift(Tinv0[(r1d>>24)&255], 8) ^ KW[r][0];
+            t1a = Tinv0[r1a&255] ^ shift(Tinv0[(r0a>>8)&255], 24) ^ shift(Tinv0[(r3a>>16)&255], 16) ^ shift(Tinv0[(r2a>>24)&255], 8) ^ KW[r][1];
+            t1b = Tinv0[r1b&255] ^ shift(Tinv0[(r0b>>8)&255], 24) ^ shift(Tinv0[(r3b>>16)&255], 16) ^ shift(Tinv0[(r2b>>24)&255], 8) ^ KW[r][1];
+            t1c = Tinv0[r1c&255] ^ shift(Tinv0[(r0c>>8)&255], 24) ^ shift(Tinv0[(r3c>>16)&255], 16) ^ shift(Tinv0[(r2c>>24)&255], 8) ^ KW[r][1];
+            t1d = Tinv0[r1d&255] ^ shift(Tinv0[(r0d>>8)&255], 24) ^ shift(Tinv0[(r3d>>16)&255], 16) ^ shift(Tinv0[(r2d>>24)&255], 8) ^ KW[r][1];
+            t2a = Tinv0[r2a&255] ^ shift(Tinv0[(r1a>>8)&255], 24) ^ shift(Tinv0[(r0a>>16)&255], 16) ^ shift(Tinv0[(r3a>>24)&255], 8) ^ KW[r][2];
+            t2b = Tinv0[r2b&255] ^ shift(Tinv0[(r1b>>8)&255], 24) ^ shift(Tinv0[(r0b>>16)&255], 16) ^ shift(Tinv0[(r3b>>24)&255], 8) ^ KW[r][2];
+            t2c = Tinv0[r2c&255] ^ shift(Tinv0[(r1c>>8)&255], 24) ^ shift(Tinv0[(r0c>>16)&255], 16) ^ shift(Tinv0[(r3c>>24)&255], 8) ^ KW[r][2];
+            t2d = Tinv0[r2d&255] ^ shift(Tinv0[(r1d>>8)&255], 24) ^ shift(Tinv0[(r0d>>16)&255], 16) ^ shift(Tinv0[(r3d>>24)&255], 8) ^ KW[r][2];
+            r3a = Tinv0[r3a&255] ^ shift(Tinv0[(r2a>>8)&255], 24) ^ shift(Tinv0[(r1a>>16)&255], 16) ^ shift(Tinv0[(r0a>>24)&255], 8) ^ KW[r][3];
+            r3b = Tinv0[r3b&255] ^ shift(Tinv0[(r2b>>8)&255], 24) ^ shift(Tinv0[(r1b>>16)&255], 16) ^ shift(Tinv0[(r0b>>24)&255], 8) ^ KW[r][3];
+            r3c = Tinv0[r3c&255] ^ shift(Tinv0[(r2c>>8)&255], 24) ^ shift(Tinv0[(r1c>>16)&255], 16) ^ shift(Tinv0[(r0c>>24)&255], 8) ^ KW[r][3];
+            r3d = Tinv0[r3d&255] ^ shift(Tinv0[(r2d>>8)&255], 24) ^ shift(Tinv0[(r1d>>16)&255], 16) ^ shift(Tinv0[(r0d>>24)&255], 8) ^ KW[r--][3];
+        }
+
+        r0a = Tinv0[t0a&255] ^ shift(Tinv0[(r3a>>8)&255], 24) ^ shift(Tinv0[(t2a>>16)&255], 16) ^ shift(Tinv0[(t1a>>24)&255], 8) ^ KW[r][0];
+        r0b = Tinv0[t0b&255] ^ shift(Tinv0[(r3b>>8)&255], 24) ^ shift(Tinv0[(t2b>>16)&255], 16) ^ shift(Tinv0[(t1b>>24)&255], 8) ^ KW[r][0];
+        r0c = Tinv0[t0c&255] ^ shift(Tinv0[(r3c>>8)&255], 24) ^ shift(Tinv0[(t2c>>16)&255], 16) ^ shift(Tinv0[(t1c>>24)&255], 8) ^ KW[r][0];
+        r0d = Tinv0[t0d&255] ^ shift(Tinv0[(r3d>>8)&255], 24) ^ shift(Tinv0[(t2d>>16)&255], 16) ^ shift(Tinv0[(t1d>>24)&255], 8) ^ KW[r][0];
+        r1a = Tinv0[t1a&255] ^ shift(Tinv0[(t0a>>8)&255], 24) ^ shift(Tinv0[(r3a>>16)&255], 16) ^ shift(Tinv0[(t2a>>24)&255], 8) ^ KW[r][1];
+        r1b = Tinv0[t1b&255] ^ shift(Tinv0[(t0b>>8)&255], 24) ^ shift(Tinv0[(r3b>>16)&255], 16) ^ shift(Tinv0[(t2b>>24)&255], 8) ^ KW[r][1];
+        r1c = Tinv0[t1c&255] ^ shift(Tinv0[(t0c>>8)&255], 24) ^ shift(Tinv0[(r3c>>16)&255], 16) ^ shift(Tinv0[(t2c>>24)&255], 8) ^ KW[r][1];
+        r1d = Tinv0[t1d&255] ^ shift(Tinv0[(t0d>>8)&255], 24) ^ shift(Tinv0[(r3d>>16)&255], 16) ^ shift(Tinv0[(t2d>>24)&255], 8) ^ KW[r][1];
+        r2a = Tinv0[t2a&255] ^ shift(Tinv0[(t1a>>8)&255], 24) ^ shift(Tinv0[(t0a>>16)&255], 16) ^ shift(Tinv0[(r3a>>24)&255], 8) ^ KW[r][2];
+        r2b = Tinv0[t2b&255] ^ shift(Tinv0[(t1b>>8)&255], 24) ^ shift(Tinv0[(t0b>>16)&255], 16) ^ shift(Tinv0[(r3b>>24)&255], 8) ^ KW[r][2];
+        r2c = Tinv0[t2c&255] ^ shift(Tinv0[(t1c>>8)&255], 24) ^ shift(Tinv0[(t0c>>16)&255], 16) ^ shift(Tinv0[(r3c>>24)&255], 8) ^ KW[r][2];
+        r2d = Tinv0[t2d&255] ^ shift(Tinv0[(t1d>>8)&255], 24) ^ shift(Tinv0[(t0d>>16)&255], 16) ^ shift(Tinv0[(r3d>>24)&255], 8) ^ KW[r][2];
+        r3a = Tinv0[r3a&255] ^ shift(Tinv0[(t2a>>8)&255], 24) ^ shift(Tinv0[(t1a>>16)&255], 16) ^ shift(Tinv0[(t0a>>24)&255], 8) ^ KW[r][3];
+        r3b = Tinv0[r3b&255] ^ shift(Tinv0[(t2b>>8)&255], 24) ^ shift(Tinv0[(t1b>>16)&255], 16) ^ shift(Tinv0[(t0b>>24)&255], 8) ^ KW[r][3];
+        r3c = Tinv0[r3c&255] ^ shift(Tinv0[(t2c>>8)&255], 24) ^ shift(Tinv0[(t1c>>16)&255], 16) ^ shift(Tinv0[(t0c>>24)&255], 8) ^ KW[r][3];
+        r3d = Tinv0[r3d&255] ^ shift(Tinv0[(t2d>>8)&255], 24) ^ shift(Tinv0[(t1d>>16)&255], 16) ^ shift(Tinv0[(t0d>>24)&255], 8) ^ KW[r][3];
+        
+        // the final round's table is a simple function of Si so we don't use a whole other four tables for it
+
+        C0a = (Si[r0a&255]&255) ^ ((s[(r3a>>8)&255]&255)<<8) ^ ((s[(r2a>>16)&255]&255)<<16) ^ (Si[(r1a>>24)&255]<<24) ^ KW[0][0];
+        C0b = (Si[r0b&255]&255) ^ ((s[(r3b>>8)&255]&255)<<8) ^ ((s[(r2b>>16)&255]&255)<<16) ^ (Si[(r1b>>24)&255]<<24) ^ KW[0][0];
+        C0c = (Si[r0c&255]&255) ^ ((s[(r3c>>8)&255]&255)<<8) ^ ((s[(r2c>>16)&255]&255)<<16) ^ (Si[(r1c>>24)&255]<<24) ^ KW[0][0];
+        C0d = (Si[r0d&255]&255) ^ ((s[(r3d>>8)&255]&255)<<8) ^ ((s[(r2d>>16)&255]&255)<<16) ^ (Si[(r1d>>24)&255]<<24) ^ KW[0][0];
+        C1a = (s[r1a&255]&255) ^ ((s[(r0a>>8)&255]&255)<<8) ^ ((Si[(r3a>>16)&255]&255)<<16) ^ (s[(r2a>>24)&255]<<24) ^ KW[0][1];
+        C1b = (s[r1b&255]&255) ^ ((s[(r0b>>8)&255]&255)<<8) ^ ((Si[(r3b>>16)&255]&255)<<16) ^ (s[(r2b>>24)&255]<<24) ^ KW[0][1];
+        C1c = (s[r1c&255]&255) ^ ((s[(r0c>>8)&255]&255)<<8) ^ ((Si[(r3c>>16)&255]&255)<<16) ^ (s[(r2c>>24)&255]<<24) ^ KW[0][1];
+        C1d = (s[r1d&255]&255) ^ ((s[(r0d>>8)&255]&255)<<8) ^ ((Si[(r3d>>16)&255]&255)<<16) ^ (s[(r2d>>24)&255]<<24) ^ KW[0][1];
+        C2a = (s[r2a&255]&255) ^ ((Si[(r1a>>8)&255]&255)<<8) ^ ((Si[(r0a>>16)&255]&255)<<16) ^ (s[(r3a>>24)&255]<<24) ^ KW[0][2];
+        C2b = (s[r2b&255]&255) ^ ((Si[(r1b>>8)&255]&255)<<8) ^ ((Si[(r0b>>16)&255]&255)<<16) ^ (s[(r3b>>24)&255]<<24) ^ KW[0][2];
+        C2c = (s[r2c&255]&255) ^ ((Si[(r1c>>8)&255]&255)<<8) ^ ((Si[(r0c>>16)&255]&255)<<16) ^ (s[(r3c>>24)&255]<<24) ^ KW[0][2];
+        C2d = (s[r2d&255]&255) ^ ((Si[(r1d>>8)&255]&255)<<8) ^ ((Si[(r0d>>16)&255]&255)<<16) ^ (s[(r3d>>24)&255]<<24) ^ KW[0][2];
+        C3a = (Si[r3a&255]&255) ^ ((s[(r2a>>8)&255]&255)<<8) ^ ((s[(r1a>>16)&255]&255)<<16) ^ (s[(r0a>>24)&255]<<24) ^ KW[0][3];
+        C3b = (Si[r3b&255]&255) ^ ((s[(r2b>>8)&255]&255)<<8) ^ ((s[(r1b>>16)&255]&255)<<16) ^ (s[(r0b>>24)&255]<<24) ^ KW[0][3];
+        C3c = (Si[r3c&255]&255) ^ ((s[(r2c>>8)&255]&255)<<8) ^ ((s[(r1c>>16)&255]&255)<<16) ^ (s[(r0c>>24)&255]<<24) ^ KW[0][3];
+        C3d = (Si[r3d&255]&255) ^ ((s[(r2d>>8)&255]&255)<<8) ^ ((s[(r1d>>16)&255]&255)<<16) ^ (s[(r0d>>24)&255]<<24) ^ KW[0][3];
+
+        Pack.intToLittleEndian(C0a, out, outOff +  0);
+        Pack.intToLittleEndian(C0b, out, outOff + 16);
+        Pack.intToLittleEndian(C0c, out, outOff + 32);
+        Pack.intToLittleEndian(C0d, out, outOff + 48);
+        Pack.intToLittleEndian(C1a, out, outOff +  4);
+        Pack.intToLittleEndian(C1b, out, outOff + 20);
+        Pack.intToLittleEndian(C1c, out, outOff + 36);
+        Pack.intToLittleEndian(C1d, out, outOff + 52);
+        Pack.intToLittleEndian(C2a, out, outOff +  8);
+        Pack.intToLittleEndian(C2b, out, outOff + 24);
+        Pack.intToLittleEndian(C2c, out, outOff + 40);
+        Pack.intToLittleEndian(C2d, out, outOff + 56);
+        Pack.intToLittleEndian(C3a, out, outOff + 12);
+        Pack.intToLittleEndian(C3b, out, outOff + 28);
+        Pack.intToLittleEndian(C3c, out, outOff + 44);
+        Pack.intToLittleEndian(C3d, out, outOff + 60);
+    }
+
     private int bitsOfSecurity()
     {
         if (WorkingKey == null)
@@ -1,9 +1,9 @@
 package org.bouncycastle.crypto.engines;
 
-import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.CryptoServicesRegistrar;
 import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.DefaultMultiBlockCipher;
 import org.bouncycastle.crypto.OutputLengthException;
 import org.bouncycastle.crypto.constraints.DefaultServiceProperties;
 import org.bouncycastle.crypto.params.KeyParameter;
@@ -32,10 +32,11 @@
  * <p>
  * This file contains the slowest performance version with no static tables
  * for round precomputation, but it has the smallest foot print.
- *
+ * <p>
+ * Note: the S box is still indexed by key and data dependent values, so this version is not constant time.
  */
 public class AESLightEngine
-    implements BlockCipher
+    extends DefaultMultiBlockCipher
 {
     // The S box
     private static final byte[] S = {
@@ -389,6 +390,65 @@ public int processBlock(byte[] in, int inOff, byte[] out, int outOff)
         return BLOCK_SIZE;
     }
 
+    /**
+     * Process blockCount blocks, four at a time where possible. The four block states are carried
+     * through the rounds together so the table look ups for each block can be overlapped.
+     */
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (WorkingKey == null)
+        {
+            throw new IllegalStateException("AES engine not initialised");
+        }
+
+        int len = blockCount * BLOCK_SIZE;
+
+        if (blockCount < 0 || inOff > (in.length - len))
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if (outOff > (out.length - len))
+        {
+            throw new OutputLengthException("output buffer too short");
+        }
+
+        while (blockCount >= 4)
+        {
+            if (forEncryption)
+            {
+                encryptBlocks4(in, inOff, out, outOff, WorkingKey);
+            }
+            else
+            {
+                decryptBlocks4(in, inOff, out, outOff, WorkingKey);
+            }
+
+            inOff += 4 * BLOCK_SIZE;
+            outOff += 4 * BLOCK_SIZE;
+            blockCount -= 4;
+        }
+
+        while (blockCount > 0)
+        {
+            if (forEncryption)
+            {
+                encryptBlock(in, inOff, out, outOff, WorkingKey);
+            }
+            else
+            {
+                decryptBlock(in, inOff, out, outOff, WorkingKey);
+            }
+
+            inOff += BLOCK_SIZE;
+            outOff += BLOCK_SIZE;
+            --blockCount;
+        }
+
+        return len;
+    }
+
     public void reset()
     {
     }
@@ -477,6 +537,260 @@ private void decryptBlock(byte[] in, int inOff, byte[] out, int outOff, int[][]
         Pack.intToLittleEndian(C3, out, outOff + 12);
     }
 
+    private void encryptBlocks4(byte[] in, int inOff, byte[] out, int outOff, int[][] KW)
+    {
+        int C0a = Pack.littleEndianToInt(in, inOff +  0);
+        int C0b = Pack.littleEndianToInt(in, inOff + 16);
+        int C0c = Pack.littleEndianToInt(in, inOff + 32);
+        int C0d = Pack.littleEndianToInt(in, inOff + 48);
+        int C1a = Pack.littleEndianToInt(in, inOff +  4);
+        int C1b = Pack.littleEndianToInt(in, inOff + 20);
+        int C1c = Pack.littleEndianToInt(in, inOff + 36);
+        int C1d = Pack.littleEndianToInt(in, inOff + 52);
+        int C2a = Pack.littleEndianToInt(in, inOff +  8);
+        int C2b = Pack.littleEndianToInt(in, inOff + 24);
+        int C2c = Pack.littleEndianToInt(in, inOff + 40);
+        int C2d = Pack.littleEndianToInt(in, inOff + 56);
+        int C3a = Pack.littleEndianToInt(in, inOff + 12);
+        int C3b = Pack.littleEndianToInt(in, inOff + 28);
+        int C3c = Pack.littleEndianToInt(in, inOff + 44);
+        int C3d = Pack.littleEndianToInt(in, inOff + 60);
+
+        int t0a = C0a ^ KW[0][0];
+        int t0b = C0b ^ KW[0][0];
+        int t0c = C0c ^ KW[0][0];
+        int t0d = C0d ^ KW[0][0];
+        int t1a = C1a ^ KW[0][1];
+        int t1b = C1b ^ KW[0][1];
+        int t1c = C1c ^ KW[0][1];
+        int t1d = C1d ^ KW[0][1];
+        int t2a = C2a ^ KW[0][2];
+        int t2b = C2b ^ KW[0][2];
+        int t2c = C2c ^ KW[0][2];
+        int t2d = C2d ^ KW[0][2];
+
+        int r = 1;
+        int r0a, r1a, r2a, r3a = C3a ^ KW[0][3];
+        int r0b, r1b, r2b, r3b = C3b ^ KW[0][3];
+        int r0c, r1c, r2c, r3c = C3c ^ KW[0][3];
+        int r0d, r1d, r2d, r3d = C3d ^ KW[0][3];
+        while (r < ROUNDS - 1)
+        {
+            r0a = mcol((S[t0a&255]&255) ^ ((S[(t1a>>8)&255]&255)<<8) ^ ((S[(t2a>>16)&255]&255)<<16) ^ (S[(r3a>>24)&255]<<24)) ^ KW[r][0];
+            r0b = mcol((S[t0b&255]&255) ^ ((S[(t1b>>8)&255]&255)<<8) ^ ((S[(t2b>>16)&255]&255)<<16) ^ (S[(r3b>>24)&255]<<24)) ^ KW[r][0];
+            r0c = mcol((S[t0c&255]&255) ^ ((S[(t1c>>8)&255]&255)<<8) ^ ((S[(t2c>>16)&255]&255)<<16) ^ (S[(r3c>>24)&255]<<24)) ^ KW[r][0];
+            r0d = mcol((S[t0d&255]&255) ^ ((S[(t1d>>8)&255]&255)<<8) ^ ((S[(t2d>>16)&255]&255)<<16) ^ (S[(r3d>>24)&255]<<24)) ^ KW[r][0];
+            r1a = mcol((S[t1a&255]&255) ^ ((S[(t2a>>8)&255]&255)<<8) ^ ((S[(r3a>>16)&255]&255)<<16) ^ (S[(t0a>>24)&255]<<24)) ^ KW[r][1];
+            r1b = mcol((S[t1b&255]&255) ^ ((S[(t2b>>8)&255]&255)<<8) ^ ((S[(r3b>>16)&255]&255)<<16) ^ (S[(t0b>>24)&255]<<24)) ^ KW[r][1];
+            r1c = mcol((S[t1c&255]&255) ^ ((S[(t2c>>8)&255]&255)<<8) ^ ((S[(r3c>>16)&255]&255)<<16) ^ (S[(t0c>>24)&255]<<24)) ^ KW[r][1];
+            r1d = mcol((S[t1d&255]&255) ^ ((S[(t2d>>8)&255]&255)<<8) ^ ((S[(r3d>>16)&255]&255)<<16) ^ (S[(t0d>>24)&255]<<24)) ^ KW[r][1];
+            r2a = mcol((S[t2a&255]&255) ^ ((S[(r3a>>8)&255]&255)<<8) ^ ((S[(t0a>>16)&255]&255)<<16) ^ (S[(t1a>>24)&255]<<24)) ^ KW[r][2];
+            r2b = mcol((S[t2b&255]&255) ^ ((S[(r3b>>8)&255]&255)<<8) ^ ((S[(t0b>>16)&255]&255)<<16) ^ (S[(t1b>>24)&255]<<24)) ^ KW[r][2];
+            r2c = mcol((S[t2c&255]&255) ^ ((S[(r3c>>8)&255]&255)<<8) ^ ((S[(t0c>>16)&255]&255)<<16) ^ (S[(t1c>>24)&255]<<24)) ^ KW[r][2];
+            r2d = mcol((S[t2d&255]&255) ^ ((S[(r3d>>8)&255]&255)<<8) ^ ((S[(t0d>>16)&255]&255)<<16) ^ (S[(t1d>>24)&255]<<24)) ^ KW[r][2];
+            r3a = mcol((S[r3a&255]&255) ^ ((S[(t0a>>8)&255]&255)<<8) ^ ((S[(t1a>>16)&255]&255)<<16) ^ (S[(t2a>>24)&255]<<24)) ^ KW[r][3];
+            r3b = mcol((S[r3b&255]&255) ^ ((S[(t0b>>8)&255]&255)<<8) ^ ((S[(t1b>>16)&255]&255)<<16) ^ (S[(t2b>>24)&255]<<24)) ^ KW[r][3];
+            r3c = mcol((S[r3c&255]&255) ^ ((S[(t0c>>8)&255]&255)<<8) ^ ((S[(t1c>>16)&255]&255)<<16) ^ (S[(t2c>>24)&255]<<24)) ^ KW[r][3];
+            r3d = mcol((S[r3d&255]&255) ^ ((S[(t0d>>8)&255]&255)<<8) ^ ((S[(t1d>>16)&255]&255)<<16) ^ (S[(t2d>>24)&255]<<24)) ^ KW[r++][3];
+            t0a = mcol((S[r0a&255]&255) ^ ((S[(r1a>>8)&255]&255)<<8) ^ ((S[(r2a>>16)&255]&255)<<16) ^ (S[(r3a>>24)&255]<<24)) ^ KW[r][0];
+            t0b = mcol((S[r0b&255]&255) ^ ((S[(r1b>>8)&255]&255)<<8) ^ ((S[(r2b>>16)&255]&255)<<16) ^ (S[(r3b>>24)&255]<<24)) ^ KW[r][0];
+            t0c = mcol((S[r0c&255]&255) ^ ((S[(r1c>>8)&255]&255)<<8) ^ ((S[(r2c>>16)&255]&255)<<16) ^ (S[(r3c>>24)&255]<<24)) ^ KW[r][0];
+            t0d = mcol((S[r0d&255]&255) ^ ((S[(r1d>>8)&255]&255)<<8) ^ ((S[(r2d>>16)&255]&255)<<16) ^ (S[(r3d>>24)&255]<<24)) ^ KW[r][0];
+            t1a = mcol((S[r1a&255]&255) ^ ((S[(r2a>>8)&255]&255)<<8) ^ ((S[(r3a>>16)&255]&255)<<16) ^ (S[(r0a>>24)&255]<<24)) ^ KW[r][1];
+            t1b = mcol((S[r1b&255]&255) ^ ((S[(r2b>>8)&255]&255)<<8) ^ ((S[(r3b>>16)&255]&255)<<16) ^ (S[(r0b>>24)&255]<<24)) ^ KW[r][1];
+            t1c = mcol((S[r1c&255]&255) ^ ((S[(r2c>>8)&255]&255)<<8) ^ ((S[(r3c>>16)&255]&255)<<16) ^ (S[(r0c>>24)&255]<<24)) ^ KW[r][1];
+            t1d = mcol((S[r1d&255]&255) ^ ((S[(r2d>>8)&255]&255)<<8) ^ ((S[(r3d>>16)&255]&255)<<16) ^ (S[(r0d>>24)&255]<<24)) ^ KW[r][1];
+            t2a = mcol((S[r2a&255]&255) ^ ((S[(r3a>>8)&255]&255)<<8) ^ ((S[(r0a>>16)&255]&255)<<16) ^ (S[(r1a>>24)&255]<<24)) ^ KW[r][2];
+            t2b = mcol((S[r2b&255]&255) ^ ((S[(r3b>>8)&255]&255)<<8) ^ ((S[(r0b>>16)&255]&255)<<16) ^ (S[(r1b>>24)&255]<<24)) ^ KW[r][2];
+            t2c = mcol((S[r2c&255]&255) ^ ((S[(r3c>>8)&255]&255)<<8) ^ ((S[(r0c>>16)&255]&255)<<16) ^ (S[(r1c>>24)&255]<<24)) ^ KW[r][2];
+            t2d = mcol((S[r2d&255]&255) ^ ((S[(r3d>>8)&255]&255)<<8) ^ ((S[(r0d>>16)&255]&255)<<16) ^ (S[(r1d>>24)&255]<<24)) ^ KW[r][2];
+            r3a = mcol((S[r3a&255]&255) ^ ((S[(r0a>>8)&255]&255)<<8) ^ ((S[(r1a>>16)&255]&255)<<16) ^ (S[(r2a>>24)&255]<<24)) ^ KW[r][3];
+            r3b = mcol((S[r3b&255]&255) ^ ((S[(r0b>>8)&255]&255)<<8) ^ ((S[(r1b>>16)&255]&255)<<16) ^ (S[(r2b>>24)&255]<<24)) ^ KW[r][3];
+            r3c = mcol((S[r3c&255]&255) ^ ((S[(r0c>>8)&255]&255)<<8) ^ ((S[(r1c>>16)&255]&255)<<16) ^ (S[(r2c>>24)&255]<<24)) ^ KW[r][3];
+            r3d = mcol((S[r3d&255]&255) ^ ((S[(r0d>>8)&255]&255)<<8) ^ ((S[(r1d>>16)&255]&255)<<16) ^ (S[(r2d>>24)&255]<<24)) ^ KW[r++][3];
+        }
+
+        r0a = mcol((S[t0a&255]&255) ^ ((S[(t1a>>8)&255]&255)<<8) ^ ((S[(t2a>>16)&255]&255)<<16) ^ (S[(r3a>>24)&255]<<24)) ^ KW[r][0];
+        r0b = mcol((S[t0b&255]&255) ^ ((S[(t1b>>8)&255]&255)<<8) ^ ((S[(t2b>>16)&255]&255)<<16) ^ (S[(r3b>>24)&255]<<24)) ^ KW[r][0];
+        r0c = mcol((S[t0c&255]&255) ^ ((S[(t1c>>8)&255]&255)<<8) ^ ((S[(t2c>>16)&255]&255)<<16) ^ (S[(r3c>>24)&255]<<24)) ^ KW[r][0];
+        r0d = mcol((S[t0d&255]&255) ^ ((S[(t1d>>8)&255]&255)<<8) ^ ((S[(t2d>>16)&255]&255)<<16) ^ (S[(r3d>>24)&255]<<24)) ^ KW[r][0];
+        r1a = mcol((S[t1a&255]&255) ^ ((S[(t2a>>8)&255]&255)<<8) ^ ((S[(r3a>>16)&255]&255)<<16) ^ (S[(t0a>>24)&255]<<24)) ^ KW[r][1];
+        r1b = mcol((S[t1b&255]&255) ^ ((S[(t2b>>8)&255]&255)<<8) ^ ((S[(r3b>>16)&255]&255)<<16) ^ (S[(t0b>>24)&255]<<24)) ^ KW[r][1];
+        r1c = mcol((S[t1c&255]&255) ^ ((S[(t2c>>8)&255]&255)<<8) ^ ((S[(r3c>>16)&255]&255)<<16) ^ (S[(t0c>>24)&255]<<24)) ^ KW[r][1];
+        r1d = mcol((S[t1d&255]&255) ^ ((S[(t2d>>8)&255]&255)<<8) ^ ((S[(r3d>>16)&255]&255)<<16) ^ (S[(t0d>>24)&255]<<24)) ^ KW[r][1];
+        r2a = mcol((S[t2a&255]&255) ^ ((S[(r3a>>8)&255]&255)<<8) ^ ((S[(t0a>>16)&255]&255)<<16) ^ (S[(t1a>>24)&255]<<24)) ^ KW[r][2];
+        r2b = mcol((S[t2b&255]&255) ^ ((S[(r3b>>8)&255]&255)<<8) ^ ((S[(t0b>>16)&255]&255)<<16) ^ (S[(t1b>>24)&255]<<24)) ^ KW[r][2];
+        r2c = mcol((S[t2c&255]&255) ^ ((S[(r3c>>8)&255]&255)<<8) ^ ((S[(t0c>>16)&255]&255)<<16) ^ (S[(t1c>>24)&255]<<24)) ^ KW[r][2];
+        r2d = mcol((S[t2d&255]&255) ^ ((S[(r3d>>8)&255]&255)<<8) ^ ((S[(t0d>>16)&255]&255)<<16) ^ (S[(t1d>>24)&255]<<24)) ^ KW[r][2];
+        r3a = mcol((S[r3a&255]&255) ^ ((S[(t0a>>8)&255]&255)<<8) ^ ((S[(t1a>>16)&255]&255)<<16) ^ (S[(t2a>>24)&255]<<24)) ^ KW[r][3];
+        r3b = mcol((S[r3b&255]&255) ^ ((S[(t0b>>8)&255]&255)<<8) ^ ((S[(t1b>>16)&255]&255)<<16) ^ (S[(t2b>>24)&255]<<24)) ^ KW[r][3];
+        r3c = mcol((S[r3c&255]&255) ^ ((S[(t0c>>8)&255]&255)<<8) ^ ((S[(t1c>>16)&255]&255)<<16) ^ (S[(t2c>>24)&255]<<24)) ^ KW[r][3];
+        r3d = mcol((S[r3d&255]&255) ^ ((S[(t0d>>8)&255]&255)<<8) ^ ((S[(t1d>>16)&255]&255)<<16) ^ (S[(t2d>>24)&255]<<24)) ^ KW[r++][3];
+
+        // the final round is a simple function of S
+
+        C0a = (S[r0a&255]&255) ^ ((S[(r1a>>8)&255]&255)<<8) ^ ((S[(r2a>>16)&255]&255)<<16) ^ (S[(r3a>>24)&255]<<24) ^ KW[r][0];
+        C0b = (S[r0b&255]&255) ^ ((S[(r1b>>8)&255]&255)<<8) ^ ((S[(r2b>>16)&255]&255)<<16) ^ (S[(r3b>>24)&255]<<24) ^ KW[r][0];
+        C0c = (S[r0c&255]&255) ^ ((S[(r1c>>8)&255]&255)<<8) ^ ((S[(r2c>>16)&255]&255)<<16) ^ (S[(r3c>>24)&255]<<24) ^ KW[r][0];
+        C0d = (S[r0d&255]&255) ^ ((S[(r1d>>8)&255]&255)<<8) ^ ((S[(r2d>>16)&255]&255)<<16) ^ (S[(r3d>>24)&255]<<24) ^ KW[r][0];
+        C1a = (S[r1a&255]&255) ^ ((S[(r2a>>8)&255]&255)<<8) ^ ((S[(r3a>>16)&255]&255)<<16) ^ (S[(r0a>>24)&255]<<24) ^ KW[r][1];
+        C1b = (S[r1b&255]&255) ^ ((S[(r2b>>8)&255]&255)<<8) ^ ((S[(r3b>>16)&255]&255)<<16) ^ (S[(r0b>>24)&255]<<24) ^ KW[r][1];
+        C1c = (S[r1c&255]&255) ^ ((S[(r2c>>8)&255]&255)<<8) ^ ((S[(r3c>>16)&255]&255)<<16) ^ (S[(r0c>>24)&255]<<24) ^ KW[r][1];
+        C1d = (S[r1d&255]&255) ^ ((S[(r2d>>8)&255]&255)<<8) ^ ((S[(r3d>>16)&255]&255)<<16) ^ (S[(r0d>>24)&255]<<24) ^ KW[r][1];
+        C2a = (S[r2a&255]&255) ^ ((S[(r3a>>8)&255]&255)<<8) ^ ((S[(r0a>>16)&255]&255)<<16) ^ (S[(r1a>>24)&255]<<24) ^ KW[r][2];
+        C2b = (S[r2b&255]&255) ^ ((S[(r3b>>8)&255]&255)<<8) ^ ((S[(r0b>>16)&255]&255)<<16) ^ (S[(r1b>>24)&255]<<24) ^ KW[r][2];
+        C2c = (S[r2c&255]&255) ^ ((S[(r3c>>8)&255]&255)<<8) ^ ((S[(r0c>>16)&255]&255)<<16) ^ (S[(r1c>>24)&255]<<24) ^ KW[r][2];
+        C2d = (S[r2d&255]&255) ^ ((S[(r3d>>8)&255]&255)<<8) ^ ((S[(r0d>>16)&255]&255)<<16) ^ (S[(r1d>>24)&255]<<24) ^ KW[r][2];
+        C3a = (S[r3a&255]&255) ^ ((S[(r0a>>8)&255]&255)<<8) ^ ((S[(r1a>>16)&255]&255)<<16) ^ (S[(r2a>>24)&255]<<24) ^ KW[r][3];
+        C3b = (S[r3b&255]&255) ^ ((S[(r0b>>8)&255]&255)<<8) ^ ((S[(r1b>>16)&255]&255)<<16) ^ (S[(r2b>>24)&255]<<24) ^ KW[r][3];
+        C3c = (S[r3c&255]&255) ^ ((S[(r0c>>8)&255]&255)<<8) ^ ((S[(r1c>>16)&255]&255)<<16) ^ (S[(r2c>>24)&255]<<24) ^ KW[r][3];
+        C3d = (S[r3d&255]&255) ^ ((S[(r0d>>8)&255]&255)<<8) ^ ((S[(r1d>>16)&255]&255)<<16) ^ (S[(r2d>>24)&255]<<24) ^ KW[r][3];
+
+        Pack.intToLittleEndian(C0a, out, outOff +  0);
+        Pack.intToLittleEndian(C0b, out, outOff + 16);
+        Pack.intToLittleEndian(C0c, out, outOff + 32);
+        Pack.intToLittleEndian(C0d, out, outOff + 48);
+        Pack.intToLittleEndian(C1a, out, outOff +  4);
+        Pack.intToLittleEndian(C1b, out, outOff + 20);
+        Pack.intToLittleEndian(C1c, out, outOff + 36);
+        Pack.intToLittleEndian(C1d, out, outOff + 52);
+        Pack.intToLittleEndian(C2a, out, outOff +  8);
+        Pack.intToLittleEndian(C2b, out, outOff + 24);
+        Pack.intToLittleEndian(C2c, out, outOff + 40);
+        Pack.intToLittleEndian(C2d, out, outOff + 56);
+        Pack.intToLittleEndian(C3a, out, outOff + 12);
+        Pack.intToLittleEndian(C3b, out, outOff + 28);
+        Pack.intToLittleEndian(C3c, out, outOff + 44);
+        Pack.intToLittleEndian(C3d, out, outOff + 60);
+    }
+
+    private void decryptBlocks4(byte[] in, int inOff, byte[] out, int outOff, int[][] KW)
+    {
+        int C0a = Pack.littleEndianToInt(in, inOff +  0);
+        int C0b = Pack.littleEndianToInt(in, inOff + 16);
+        int C0c = Pack.littleEndianToInt(in, inOff + 32);
+        int C0d = Pack.littleEndianToInt(in, inOff + 48);
+        int C1a = Pack.littleEndianToInt(in, inOff +  4);
+        int C1b = Pack.littleEndianToInt(in, inOff + 20);
+        int C1c = Pack.littleEndianToInt(in, inOff + 36);
+        int C1d = Pack.littleEndianToInt(in, inOff + 52);
+        int C2a = Pack.littleEndianToInt(in, inOff +  8);
+        int C2b = Pack.littleEndianToInt(in, inOff + 24);
+        int C2c = Pack.littleEndianToInt(in, inOff + 40);
+        int C2d = Pack.littleEndianToInt(in, inOff + 56);
+        int C3a = Pack.littleEndianToInt(in, inOff + 12);
+        int C3b = Pack.littleEndianToInt(in, inOff + 28);
+        int C3c = Pack.littleEndianToInt(in, inOff + 44);
+        int C3d = Pack.littleEndianToInt(in, inOff + 60);
+
+        int t0a = C0a ^ KW[ROUNDS][0];
+        int t0b = C0b ^ KW[ROUNDS][0];
+        int t0c = C0c ^ KW[ROUNDS][0];
+        int t0d = C0d ^ KW[ROUNDS][0];
+        int t1a = C1a ^ KW[ROUNDS][1];
+        int t1b = C1b ^ KW[ROUNDS][1];
+        int t1c = C1c ^ KW[ROUNDS][1];
+        int t1d = C1d ^ KW[ROUNDS][1];
+        int t2a = C2a ^ KW[ROUNDS][2];
+        int t2b = C2b ^ KW[ROUNDS][2];
+        int t2c = C2c ^ KW[ROUNDS][2];
+        int t2d = C2d ^ KW[ROUNDS][2];
+
+        int r = ROUNDS - 1;
+        int r0a, r1a, r2a, r3a = C3a ^ KW[ROUNDS][3];
+        int r0b, r1b, r2b, r3b = C3b ^ KW[ROUNDS][3];
+        int r0c, r1c, r2c, r3c = C3c ^ KW[ROUNDS][3];
+        int r0d, r1d, r2d, r3d = C3d ^ KW[ROUNDS][3];
+        while (r > 1)
+        {
+            r0a = inv_mcol((Si[t0a&255]&255) ^ ((Si[(r3a>>8)&255]&255)<<8) ^ ((Si[(t2a>>16)&255]&255)<<16) ^ (Si[(t1a>>24)&255]<<24)) ^ KW[r][0];
+            r0b = inv_mcol((Si[t0b&255]&255) ^ ((Si[(r3b>>8)&255]&255)<<8) ^ ((Si[(t2b>>16)&255]&255)<<16) ^ (Si[(t1b>>24)&255]<<24)) ^ KW[r][0];
+            r0c = inv_mcol((Si[t0c&255]&255) ^ ((Si[(r3c>>8)&255]&255)<<8) ^ ((Si[(t2c>>16)&255]&255)<<16) ^ (Si[(t1c>>24)&255]<<24)) ^ KW[r][0];
+            r0d = inv_mcol((Si[t0d&255]&255) ^ ((Si[(r3d>>8)&255]&255)<<8) ^ ((Si[(t2d>>16)&255]&255)<<16) ^ (Si[(t1d>>24)&255]<<24)) ^ KW[r][0];
+            r1a = inv_mcol((Si[t1a&255]&255) ^ ((Si[(t0a>>8)&255]&255)<<8) ^ ((Si[(r3a>>16)&255]&255)<<16) ^ (Si[(t2a>>24)&255]<<24)) ^ KW[r][1];
+            r1b = inv_mcol((Si[t1b&255]&255) ^ ((Si[(t0b>>8)&255]&255)<<8) ^ ((Si[(r3b>>16)&255]&255)<<16) ^ (Si[(t2b>>24)&255]<<24)) ^ KW[r][1];
+            r1c = inv_mcol((Si[t1c&255]&255) ^ ((Si[(t0c>>8)&255]&255)<<8) ^ ((Si[(r3c>>16)&255]&255)<<16) ^ (Si[(t2c>>24)&255]<<24)) ^ KW[r][1];
+            r1d = inv_mcol((Si[t1d&255]&255) ^ ((Si[(t0d>>8)&255]&255)<<8) ^ ((Si[(r3d>>16)&255]&255)<<16) ^ (Si[(t2d>>24)&255]<<24)) ^ KW[r][1];
+            r2a = inv_mcol((Si[t2a&255]&255) ^ ((Si[(t1a>>8)&255]&255)<<8) ^ ((Si[(t0a>>16)&255]&255)<<16) ^ (Si[(r3a>>24)&255]<<24)) ^ KW[r][2];
+            r2b = inv_mcol((Si[t2b&255]&255) ^ ((Si[(t1b>>8)&255]&255)<<8) ^ ((Si[(t0b>>16)&255]&255)<<16) ^ (Si[(r3b>>24)&255]<<24)) ^ KW[r][2];
+            r2c = inv_mcol((Si[t2c&255]&255) ^ ((Si[(t1c>>8)&255]&255)<<8) ^ ((Si[(t0c>>16)&255]&255)<<16) ^ (Si[(r3c>>24)&255]<<24)) ^ KW[r][2];
+            r2d = inv_mcol((Si[t2d&255]&255) ^ ((Si[(t1d>>8)&255]&255)<<8) ^ ((Si[(t0d>>16)&255]&255)<<16) ^ (Si[(r3d>>24)&255]<<24)) ^ KW[r][2];
+            r3a = inv_mcol((Si[r3a&255]&255) ^ ((Si[(t2a>>8)&255]&255)<<8) ^ ((Si[(t1a>>16)&255]&255)<<16) ^ (Si[(t0a>>24)&255]<<24)) ^ KW[r][3];
+            r3b = inv_mcol((Si[r3b&255]&255) ^ ((Si[(t2b>>8)&255]&255)<<8) ^ ((Si[(t1b>>16)&255]&255)<<16) ^ (Si[(t0b>>24)&255]<<24)) ^ KW[r][3];
+            r3c = inv_mcol((Si[r3c&255]&255) ^ ((Si[(t2c>>8)&255]&255)<<8) ^ ((Si[(t1c>>16)&255]&255)<<16) ^ (Si[(t0c>>24)&255]<<24)) ^ KW[r][3];
+            r3d = inv_mcol((Si[r3d&255]&255) ^ ((Si[(t2d>>8)&255]&255)<<8) ^ ((Si[(t1d>>16)&255]&255)<<16) ^ (Si[(t0d>>24)&255]<<24)) ^ KW[r--][3];
+            t0a = inv_mcol((Si[r0a&255]&255) ^ ((Si[(r3a>>8)&255]&255)<<8) ^ ((Si[(r2a>>16)&255]&255)<<16) ^ (Si[(r1a>>24)&255]<<24)) ^ KW[r][0];
+            t0b = inv_mcol((Si[r0b&255]&255) ^ ((Si[(r3b>>8)&255]&255)<<8) ^ ((Si[(r2b>>16)&255]&255)<<16) ^ (Si[(r1b>>24)&255]<<24)) ^ KW[r][0];
+            t0c = inv_mcol((Si[r0c&255]&255) ^ ((Si[(r3c>>8)&255]&255)<<8) ^ ((Si[(r2c>>16)&255]&255)<<16) ^ (Si[(r1c>>24)&255]<<24)) ^ KW[r][0];
+            t0d = inv_mcol((Si[r0d&255]&255) ^ ((Si[(r3d>>8)&255]&255)<<8) ^ ((Si[(r2d>>16)&255]&255)<<16) ^ (Si[(r1d>>24)&255]<<24)) ^ KW[r][0];
+            t1a = inv_mcol((Si[r1a&255]&255) ^ ((Si[(r0a>>8)&255]&255)<<8) ^ ((Si[(r3a>>16)&255]&255)<<16) ^ (Si[(r2a>>24)&255]<<24)) ^ KW[r][1];
+            t1b = inv_mcol((Si[r1b&255]&255) ^ ((Si[(r0b>>8)&255]&255)<<8) ^ ((Si[(r3b>>16)&255]&255)<<16) ^ (Si[(r2b>>24)&255]<<24)) ^ KW[r][1];
+            t1c = inv_mcol((Si[r1c&255]&255) ^ ((Si[(r0c>>8)&255]&255)<<8) ^ ((Si[(r3c>>16)&255]&255)<<16) ^ (Si[(r2c>>24)&255]<<24)) ^ KW[r][1];
+            t1d = inv_mcol((Si[r1d&255]&255) ^ ((Si[(r0d>>8)&255]&255)<<8) ^ ((Si[(r3d>>16)&255]&255)<<16) ^ (Si[(r2d>>24)&255]<<24)) ^ KW[r][1];
+            t2a = inv_mcol((Si[r2a&255]&255) ^ ((Si[(r1a>>8)&255]&255)<<8) ^ ((Si[(r0a>>16)&255]&255)<<16) ^ (Si[(r3a>>24)&255]<<24)) ^ KW[r][2];
+            t2b = inv_mcol((Si[r2b&255]&255) ^ ((Si[(r1b>>8)&255]&255)<<8) ^ ((Si[(r0b>>16)&255]&255)<<16) ^ (Si[(r3b>>24)&255]<<24)) ^ KW[r][2];
+            t2c = inv_mcol((Si[r2c&255]&255) ^ ((Si[(r1c>>8)&255]&255)<<8) ^ ((Si[(r0c>>16)&255]&255)<<16) ^ (Si[(r3c>>24)&255]<<24)) ^ KW[r][2];
+            t2d = inv_mcol((Si[r2d&255]&255) ^ ((Si[(r1d>>8)&255]&255)<<8) ^ ((Si[(r0d>>16)&255]&255)<<16) ^ (Si[(r3d>>24)&255]<<24)) ^ KW[r][2];
+            r3a = inv_mcol((Si[r3a&255]&255) ^ ((Si[(r2a>>8)&255]&255)<<8) ^ ((Si[(r1a>>16)&255]&255)<<16) ^ (Si[(r0a>>24)&255]<<24)) ^ KW[r][3];
+            r3b = inv_mcol((Si[r3b&255]&255) ^ ((Si[(r2b>>8)&255]&255)<<8) ^ ((Si[(r1b>>16)&255]&255)<<16) ^ (Si[(r0b>>24)&255]<<24)) ^ KW[r][3];
+            r3c = inv_mcol((Si[r3c&255]&255) ^ ((Si[(r2c>>8)&255]&255)<<8) ^ ((Si[(r1c>>16)&255]&255)<<16) ^ (Si[(r0c>>24)&255]<<24)) ^ KW[r][3];
+            r3d = inv_mcol((Si[r3d&255]&255) ^ ((Si[(r2d>>8)&255]&255)<<8) ^ ((Si[(r1d>>16)&255]&255)<<16) ^ (Si[(r0d>>24)&255]<<24)) ^ KW[r--][3];
+        }
+
+        r0a = inv_mcol((Si[t0a&255]&255) ^ ((Si[(r3a>>8)&255]&255)<<8) ^ ((Si[(t2a>>16)&255]&255)<<16) ^ (Si[(t1a>>24)&255]<<24)) ^ KW[r][0];
+        r0b = inv_mcol((Si[t0b&255]&255) ^ ((Si[(r3b>>8)&255]&255)<<8) ^ ((Si[(t2b>>16)&255]&255)<<16) ^ (Si[(t1b>>24)&255]<<24)) ^ KW[r][0];
+        r0c = inv_mcol((Si[t0c&255]&255) ^ ((Si[(r3c>>8)&255]&255)<<8) ^ ((Si[(t2c>>16)&255]&255)<<16) ^ (Si[(t1c>>24)&255]<<24)) ^ KW[r][0];
+        r0d = inv_mcol((Si[t0d&255]&255) ^ ((Si[(r3d>>8)&255]&255)<<8) ^ ((Si[(t2d>>16)&255]&255)<<16) ^ (Si[(t1d>>24)&255]<<24)) ^ KW[r][0];
+        r1a = inv_mcol((Si[t1a&255]&255) ^ ((Si[(t0a>>8)&255]&255)<<8) ^ ((Si[(r3a>>16)&255]&255)<<16) ^ (Si[(t2a>>24)&255]<<24)) ^ KW[r][1];
+        r1b = inv_mcol((Si[t1b&255]&255) ^ ((Si[(t0b>>8)&255]&255)<<8) ^ ((Si[(r3b>>16)&255]&255)<<16) ^ (Si[(t2b>>24)&255]<<24)) ^ KW[r][1];
+        r1c = inv_mcol((Si[t1c&255]&255) ^ ((Si[(t0c>>8)&255]&255)<<8) ^ ((Si[(r3c>>16)&255]&255)<<16) ^ (Si[(t2c>>24)&255]<<24)) ^ KW[r][1];
+        r1d = inv_mcol((Si[t1d&255]&255) ^ ((Si[(t0d>>8)&255]&255)<<8) ^ ((Si[(r3d>>16)&255]&255)<<16) ^ (Si[(t2d>>24)&255]<<24)) ^ KW[r][1];
+        r2a = inv_mcol((Si[t2a&255]&255) ^ ((Si[(t1a>>8)&255]&255)<<8) ^ ((Si[(t0a>>16)&255]&255)<<16) ^ (Si[(r3a>>24)&255]<<24)) ^ KW[r][2];
+        r2b = inv_mcol((Si[t2b&255]&255) ^ ((Si[(t1b>>8)&255]&255)<<8) ^ ((Si[(t0b>>16)&255]&255)<<16) ^ (Si[(r3b>>24)&255]<<24)) ^ KW[r][2];
+        r2c = inv_mcol((Si[t2c&255]&255) ^ ((Si[(t1c>>8)&255]&255)<<8) ^ ((Si[(t0c>>16)&255]&255)<<16) ^ (Si[(r3c>>24)&255]<<24)) ^ KW[r][2];
+        r2d = inv_mcol((Si[t2d&255]&255) ^ ((Si[(t1d>>8)&255]&255)<<8) ^ ((Si[(t0d>>16)&255]&255)<<16) ^ (Si[(r3d>>24)&255]<<24)) ^ KW[r][2];
+        r3a = inv_mcol((Si[r3a&255]&255) ^ ((Si[(t2a>>8)&255]&255)<<8) ^ ((Si[(t1a>>16)&255]&255)<<16) ^ (Si[(t0a>>24)&255]<<24)) ^ KW[r][3];
+        r3b = inv_mcol((Si[r3b&255]&255) ^ ((Si[(t2b>>8)&255]&255)<<8) ^ ((Si[(t1b>>16)&255]&255)<<16) ^ (Si[(t0b>>24)&255]<<24)) ^ KW[r][3];
+        r3c = inv_mcol((Si[r3c&255]&255) ^ ((Si[(t2c>>8)&255]&255)<<8) ^ ((Si[(t1c>>16)&255]&255)<<16) ^ (Si[(t0c>>24)&255]<<24)) ^ KW[r][3];
+        r3d = inv_mcol((Si[r3d&255]&255) ^ ((Si[(t2d>>8)&255]&255)<<8) ^ ((Si[(t1d>>16)&255]&255)<<16) ^ (Si[(t0d>>24)&255]<<24)) ^ KW[r][3];
+
+        // the final round's table is a simple function of Si
+
+        C0a = (Si[r0a&255]&255) ^ ((Si[(r3a>>8)&255]&255)<<8) ^ ((Si[(r2a>>16)&255]&255)<<16) ^ (Si[(r1a>>24)&255]<<24) ^ KW[0][0];
+        C0b = (Si[r0b&255]&255) ^ ((Si[(r3b>>8)&255]&255)<<8) ^ ((Si[(r2b>>16)&255]&255)<<16) ^ (Si[(r1b>>24)&255]<<24) ^ KW[0][0];
+        C0c = (Si[r0c&255]&255) ^ ((Si[(r3c>>8)&255]&255)<<8) ^ ((Si[(r2c>>16)&255]&255)<<16) ^ (Si[(r1c>>24)&255]<<24) ^ KW[0][0];
+        C0d = (Si[r0d&255]&255) ^ ((Si[(r3d>>8)&255]&255)<<8) ^ ((Si[(r2d>>16)&255]&255)<<16) ^ (Si[(r1d>>24)&255]<<24) ^ KW[0][0];
+        C1a = (Si[r1a&255]&255) ^ ((Si[(r0a>>8)&255]&255)<<8) ^ ((Si[(r3a>>16)&255]&255)<<16) ^ (Si[(r2a>>24)&255]<<24) ^ KW[0][1];
+        C1b = (Si[r1b&255]&255) ^ ((Si[(r0b>>8)&255]&255)<<8) ^ ((Si[(r3b>>16)&255]&255)<<16) ^ (Si[(r2b>>24)&255]<<24) ^ KW[0][1];
+        C1c = (Si[r1c&255]&255) ^ ((Si[(r0c>>8)&255]&255)<<8) ^ ((Si[(r3c>>16)&255]&255)<<16) ^ (Si[(r2c>>24)&255]<<24) ^ KW[0][1];
+        C1d = (Si[r1d&255]&255) ^ ((Si[(r0d>>8)&255]&255)<<8) ^ ((Si[(r3d>>16)&255]&255)<<16) ^ (Si[(r2d>>24)&255]<<24) ^ KW[0][1];
+        C2a = (Si[r2a&255]&255) ^ ((Si[(r1a>>8)&255]&255)<<8) ^ ((Si[(r0a>>16)&255]&255)<<16) ^ (Si[(r3a>>24)&255]<<24) ^ KW[0][2];
+        C2b = (Si[r2b&255]&255) ^ ((Si[(r1b>>8)&255]&255)<<8) ^ ((Si[(r0b>>16)&255]&255)<<16) ^ (Si[(r3b>>24)&255]<<24) ^ KW[0][2];
+        C2c = (Si[r2c&255]&255) ^ ((Si[(r1c>>8)&255]&255)<<8) ^ ((Si[(r0c>>16)&255]&255)<<16) ^ (Si[(r3c>>24)&255]<<24) ^ KW[0][2];
+        C2d = (Si[r2d&255]&255) ^ ((Si[(r1d>>8)&255]&255)<<8) ^ ((Si[(r0d>>16)&255]&255)<<16) ^ (Si[(r3d>>24)&255]<<24) ^ KW[0][2];
+        C3a = (Si[r3a&255]&255) ^ ((Si[(r2a>>8)&255]&255)<<8) ^ ((Si[(r1a>>16)&255]&255)<<16) ^ (Si[(r0a>>24)&255]<<24) ^ KW[0][3];
+        C3b = (Si[r3b&255]&255) ^ ((Si[(r2b>>8)&255]&255)<<8) ^ ((Si[(r1b>>16)&255]&255)<<16) ^ (Si[(r0b>>24)&255]<<24) ^ KW[0][3];
+        C3c = (Si[r3c&255]&255) ^ ((Si[(r2c>>8)&255]&255)<<8) ^ ((Si[(r1c>>16)&255]&255)<<16) ^ (Si[(r0c>>24)&255]<<24) ^ KW[0][3];
+        C3d = (Si[r3d&255]&255) ^ ((Si[(r2d>>8)&255]&255)<<8) ^ ((Si[(r1d>>16)&255]&255)<<16) ^ (Si[(r0d>>24)&255]<<24) ^ KW[0][3];
+
+        Pack.intToLittleEndian(C0a, out, outOff +  0);
+        Pack.intToLittleEndian(C0b, out, outOff + 16);
+        Pack.intToLittleEndian(C0c, out, outOff + 32);
+        Pack.intToLittleEndian(C0d, out, outOff + 48);
+        Pack.intToLittleEndian(C1a, out, outOff +  4);
+        Pack.intToLittleEndian(C1b, out, outOff + 20);
+        Pack.intToLittleEndian(C1c, out, outOff + 36);
+        Pack.intToLittleEndian(C1d, out, outOff + 52);
+        Pack.intToLittleEndian(C2a, out, outOff +  8);
+        Pack.intToLittleEndian(C2b, out, outOff + 24);
+        Pack.intToLittleEndian(C2c, out, outOff + 40);
+        Pack.intToLittleEndian(C2d, out, outOff + 56);
+        Pack.intToLittleEndian(C3a, out, outOff + 12);
+        Pack.intToLittleEndian(C3b, out, outOff + 28);
+        Pack.intToLittleEndian(C3c, out, outOff + 44);
+        Pack.intToLittleEndian(C3d, out, outOff + 60);
+    }
+
     private int bitsOfSecurity()
     {
         if (WorkingKey == null)
@@ -7,6 +7,8 @@
  */
 public class ChaCha7539Engine extends Salsa20Engine
 {
+    private final ChaChaCore4 core4 = ChaChaCore4.newInstance();
+
     /**
      * Creates a 20 rounds ChaCha engine.
      */
@@ -117,4 +119,15 @@ protected void generateKeyStream(byte[] output)
         ChaChaEngine.chachaCore(rounds, engineState, x);
         Pack.intToLittleEndian(x, output, 0);
     }
+
+    protected void generateKeyStreamBlocks(byte[] output)
+    {
+        // advance first, so the 32 bit counter is checked for wrap before any lane uses it
+        for (int i = 0; i < 4; i++)
+        {
+            advanceCounter();
+        }
+
+        core4.generate(rounds, engineState, output);
+    }
 }
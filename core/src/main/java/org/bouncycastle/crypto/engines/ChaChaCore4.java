@@ -0,0 +1,126 @@
+package org.bouncycastle.crypto.engines;
+
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
+import org.bouncycastle.util.Properties;
+
+/**
+ * Generates the ChaCha key stream for four consecutive blocks at once, being the blocks for the
+ * four counter values ending at the one currently in the engine state.
+ * <p>
+ * The default implementation runs the block function once per block. On a JVM with the Vector API
+ * available a version computing the four blocks in the lanes of 128 bit vectors is loaded instead,
+ * provided it reproduces the default implementation's output for a known state. Setting the property
+ * "org.bouncycastle.chacha.disable_vector" to true forces the default implementation.
+ * </p>
+ */
+abstract class ChaChaCore4
+{
+    private static final String VECTOR_CORE = "org.bouncycastle.crypto.engines.VectorChaChaCore4";
+
+    private static final Class vectorCore = findVectorCore();
+
+    static ChaChaCore4 newInstance()
+    {
+        if (vectorCore != null)
+        {
+            try
+            {
+                return (ChaChaCore4)vectorCore.newInstance();
+            }
+            catch (Exception e)
+            {
+                // fall through to the scalar version
+            }
+        }
+
+        return new ScalarCore();
+    }
+
+    /**
+     * Counters for the four blocks. The low word goes in state word 12 and for ChaChaEngine the high
+     * word goes in state word 13; for the RFC 7539 version word 13 is part of the nonce, but as the
+     * engine checks for counter wrap before asking for the blocks no borrow ever reaches it.
+     */
+    protected final int[] counterLo = new int[4];
+    protected final int[] counterHi = new int[4];
+
+    void generate(int rounds, int[] input, byte[] output)
+    {
+        int ctr = input[12];
+        for (int l = 0; l < 4; l++)
+        {
+            int lo = ctr - 3 + l;
+            counterLo[l] = lo;
+            counterHi[l] = (lo & 0xffffffffL) > (ctr & 0xffffffffL) ? input[13] - 1 : input[13];
+        }
+
+        generateBlocks(rounds, input, output);
+    }
+
+    /**
+     * Write the 256 bytes of key stream for the four blocks to output.
+     *
+     * @param rounds the number of rounds.
+     * @param input  the engine state, with state words 12 and 13 taken from counterLo and counterHi.
+     * @param output the buffer to receive the key stream.
+     */
+    protected abstract void generateBlocks(int rounds, int[] input, byte[] output);
+
+    private static Class findVectorCore()
+    {
+        if (Properties.isOverrideSet("org.bouncycastle.chacha.disable_vector"))
+        {
+            return null;
+        }
+
+        try
+        {
+            Class clazz = Class.forName(VECTOR_CORE);
+
+            // the Vector API is an incubator module, so only trust the class once it has run
+            int[] state = new int[16];
+            for (int i = 0; i < 16; i++)
+            {
+                state[i] = i * 0x9E3779B9;
+            }
+
+            byte[] expected = new byte[256];
+            byte[] actual = new byte[256];
+            new ScalarCore().generate(20, state, expected);
+            ((ChaChaCore4)clazz.newInstance()).generate(20, state, actual);
+
+            if (Arrays.areEqual(expected, actual))
+            {
+                return clazz;
+            }
+        }
+        catch (Throwable e)
+        {
+            // not available on this JVM
+        }
+
+        return null;
+    }
+
+    private static class ScalarCore
+        extends ChaChaCore4
+    {
+        private final int[] state = new int[16];
+        private final int[] x = new int[16];
+
+        protected void generateBlocks(int rounds, int[] input, byte[] output)
+        {
+            System.arraycopy(input, 0, state, 0, 16);
+
+            for (int l = 0; l < 4; l++)
+            {
+                state[12] = counterLo[l];
+                state[13] = counterHi[l];
+
+                ChaChaEngine.chachaCore(rounds, state, x);
+                Pack.intToLittleEndian(x, output, l << 6);
+            }
+        }
+    }
+}
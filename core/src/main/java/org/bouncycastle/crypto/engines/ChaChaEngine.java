@@ -8,6 +8,8 @@
  */
 public class ChaChaEngine extends Salsa20Engine
 {
+    private final ChaChaCore4 core4 = ChaChaCore4.newInstance();
+
     /**
      * Creates a 20 rounds ChaCha engine.
      */
@@ -142,6 +144,16 @@ protected void generateKeyStream(byte[] output)
         Pack.intToLittleEndian(x, output, 0);
     }
 
+    protected void generateKeyStreamBlocks(byte[] output)
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            advanceCounter();
+        }
+
+        core4.generate(rounds, engineState, output);
+    }
+
     /**
      * ChaCha function
      *
@@ -50,6 +50,7 @@ protected void packTauOrSigma(int keyLength, int[] state, int stateOffset)
     protected int[]     engineState = new int[STATE_SIZE]; // state
     protected int[]     x = new int[STATE_SIZE] ; // internal buffer
     private byte[]      keyStream   = new byte[STATE_SIZE * 4]; // expanded state, 64 bytes
+    private byte[]      keyStreamBlocks = new byte[STATE_SIZE * 16]; // key stream for 4 blocks, 256 bytes
     private boolean     initialised = false;
 
     /*
@@ -276,7 +277,44 @@ public int processBytes(
             throw new MaxBytesExceededException("2^70 byte limit per IV would be exceeded; Change IV");
         }
 
-        for (int i = 0; i < len; i++)
+        int i = 0;
+
+        while (index != 0 && i < len)
+        {
+            out[i + outOff] = (byte)(keyStream[index] ^ in[i + inOff]);
+            index = (index + 1) & 63;
+
+            if (index == 0)
+            {
+                advanceCounter();
+                generateKeyStream(keyStream);
+            }
+            i++;
+        }
+
+        /*
+         * On a block boundary keyStream holds the current block, so each pass uses it and then the first
+         * three of the next four blocks, with the fourth becoming the new current block.
+         */
+        while (len - i >= 256)
+        {
+            for (int j = 0; j < 64; j++)
+            {
+                out[i + j + outOff] = (byte)(keyStream[j] ^ in[i + j + inOff]);
+            }
+
+            generateKeyStreamBlocks(keyStreamBlocks);
+
+            for (int j = 0; j < 192; j++)
+            {
+                out[i + 64 + j + outOff] = (byte)(keyStreamBlocks[j] ^ in[i + 64 + j + inOff]);
+            }
+
+            System.arraycopy(keyStreamBlocks, 192, keyStream, 0, 64);
+            i += 256;
+        }
+
+        for (; i < len; i++)
         {
             out[i + outOff] = (byte)(keyStream[index] ^ in[i + inOff]);
             index = (index + 1) & 63;
@@ -405,6 +443,22 @@ protected void generateKeyStream(byte[] output)
         Pack.intToLittleEndian(x, output, 0);
     }
 
+    /**
+     * Advance the counter by four blocks, writing the key stream for each of the four blocks
+     * stepped through (256 bytes) to output.
+     *
+     * @param output buffer to receive the key stream.
+     */
+    protected void generateKeyStreamBlocks(byte[] output)
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            advanceCounter();
+            generateKeyStream(keyStream);
+            System.arraycopy(keyStream, 0, output, i * 64, 64);
+        }
+    }
+
     /**
      * Salsa20 function
      *
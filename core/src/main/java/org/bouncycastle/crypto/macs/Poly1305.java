@@ -39,6 +39,9 @@
     /** Precomputed 5 * r[1..4] */
     private int s1, s2, s3, s4;
 
+    /** Powers r^2, r^3, r^4 of the polynomial key, 5 limbs each, for processing four blocks at a time */
+    private final int[] rPowers = new int[15];
+
     /** Encrypted nonce */
     private int k0, k1, k2, k3;
 
@@ -140,6 +143,12 @@ private void setKey(final byte[] key, final byte[] nonce)
         s3 = r3 * 5;
         s4 = r4 * 5;
 
+        // Precompute r^2, r^3, r^4
+        int[] r = new int[]{ r0, r1, r2, r3, r4 };
+        mulModP(r, 0, r, 0, rPowers, 0);
+        mulModP(rPowers, 0, r, 0, rPowers, 5);
+        mulModP(rPowers, 5, r, 0, rPowers, 10);
+
         final byte[] kBytes;
         final int kOff;
 
@@ -181,53 +190,58 @@ public void update(final byte in)
         update(singleByte, 0, 1);
     }
 
-    public void update(final byte[] in, final int inOff, final int len)
+    public void update(final byte[] in, int inOff, int len)
         throws DataLengthException,
         IllegalStateException
     {
-        int copied = 0;
-        while (len > copied)
+        if (currentBlockOffset > 0)
         {
-            if (currentBlockOffset == BLOCK_SIZE)
+            int toCopy = Math.min(len, BLOCK_SIZE - currentBlockOffset);
+            System.arraycopy(in, inOff, currentBlock, currentBlockOffset, toCopy);
+            inOff += toCopy;
+            len -= toCopy;
+            currentBlockOffset += toCopy;
+
+            if (currentBlockOffset < BLOCK_SIZE)
             {
-                processBlock();
-                currentBlockOffset = 0;
+                return;
             }
 
-            int toCopy = Math.min((len - copied), BLOCK_SIZE - currentBlockOffset);
-            System.arraycopy(in, copied + inOff, currentBlock, currentBlockOffset, toCopy);
-            copied += toCopy;
-            currentBlockOffset += toCopy;
+            processBlock(currentBlock, 0, 1 << 24);
+            currentBlockOffset = 0;
         }
 
-    }
+        if (len >= 4 * BLOCK_SIZE)
+        {
+            int blocks4 = len >>> 6;
+            processBlocks4(in, inOff, blocks4);
+            inOff += blocks4 << 6;
+            len -= blocks4 << 6;
+        }
 
-    private void processBlock()
-    {
-        if (currentBlockOffset < BLOCK_SIZE)
+        while (len >= BLOCK_SIZE)
         {
-            currentBlock[currentBlockOffset] = 1;
-            for (int i = currentBlockOffset + 1; i < BLOCK_SIZE; i++)
-            {
-                currentBlock[i] = 0;
-            }
+            processBlock(in, inOff, 1 << 24);
+            inOff += BLOCK_SIZE;
+            len -= BLOCK_SIZE;
         }
 
-        final long t0 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 0);
-        final long t1 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 4);
-        final long t2 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 8);
-        final long t3 = 0xffffffffL & Pack.littleEndianToInt(currentBlock, 12);
+        System.arraycopy(in, inOff, currentBlock, 0, len);
+        currentBlockOffset = len;
+    }
+
+    private void processBlock(final byte[] in, final int inOff, final int hibit)
+    {
+        final long t0 = 0xffffffffL & Pack.littleEndianToInt(in, inOff);
+        final long t1 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 4);
+        final long t2 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 8);
+        final long t3 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 12);
 
         h0 += t0 & 0x3ffffff;
         h1 += (((t1 << 32) | t0) >>> 26) & 0x3ffffff;
         h2 += (((t2 << 32) | t1) >>> 20) & 0x3ffffff;
         h3 += (((t3 << 32) | t2) >>> 14) & 0x3ffffff;
-        h4 += (t3 >>> 8);
-
-        if (currentBlockOffset == BLOCK_SIZE)
-        {
-            h4 += (1 << 24);
-        }
+        h4 += (t3 >>> 8) | hibit;
 
         long tp0 = mul32x32_64(h0,r0) + mul32x32_64(h1,s4) + mul32x32_64(h2,s3) + mul32x32_64(h3,s2) + mul32x32_64(h4,s1);
         long tp1 = mul32x32_64(h0,r1) + mul32x32_64(h1,r0) + mul32x32_64(h2,s4) + mul32x32_64(h3,s3) + mul32x32_64(h4,s2);
@@ -244,6 +258,138 @@ private void processBlock()
         h1 += (h0 >>> 26); h0 &= 0x3ffffff;
     }
 
+    /**
+     * Process count runs of four full blocks m1..m4, each as h = (h + m1).r^4 + m2.r^3 + m3.r^2 + m4.r,
+     * which gives the same result as four single block steps but with the four products independent
+     * of each other and a single carry propagation.
+     */
+    private void processBlocks4(final byte[] in, int inOff, int count)
+    {
+        final int[] rp = rPowers;
+
+        // r^4, r^3, r^2 and their 5 * multiples
+        final int a0 = rp[10], a1 = rp[11], a2 = rp[12], a3 = rp[13], a4 = rp[14];
+        final int as1 = a1 * 5, as2 = a2 * 5, as3 = a3 * 5, as4 = a4 * 5;
+        final int b0 = rp[5], b1 = rp[6], b2 = rp[7], b3 = rp[8], b4 = rp[9];
+        final int bs1 = b1 * 5, bs2 = b2 * 5, bs3 = b3 * 5, bs4 = b4 * 5;
+        final int c0 = rp[0], c1 = rp[1], c2 = rp[2], c3 = rp[3], c4 = rp[4];
+        final int cs1 = c1 * 5, cs2 = c2 * 5, cs3 = c3 * 5, cs4 = c4 * 5;
+
+        int h0 = this.h0, h1 = this.h1, h2 = this.h2, h3 = this.h3, h4 = this.h4;
+
+        while (count-- > 0)
+        {
+            long t0 = 0xffffffffL & Pack.littleEndianToInt(in, inOff);
+            long t1 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 4);
+            long t2 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 8);
+            long t3 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 12);
+
+            h0 += t0 & 0x3ffffff;
+            h1 += (((t1 << 32) | t0) >>> 26) & 0x3ffffff;
+            h2 += (((t2 << 32) | t1) >>> 20) & 0x3ffffff;
+            h3 += (((t3 << 32) | t2) >>> 14) & 0x3ffffff;
+            h4 += (t3 >>> 8) | (1 << 24);
+
+            long tp0 = mul32x32_64(h0,a0) + mul32x32_64(h1,as4) + mul32x32_64(h2,as3) + mul32x32_64(h3,as2) + mul32x32_64(h4,as1);
+            long tp1 = mul32x32_64(h0,a1) + mul32x32_64(h1,a0) + mul32x32_64(h2,as4) + mul32x32_64(h3,as3) + mul32x32_64(h4,as2);
+            long tp2 = mul32x32_64(h0,a2) + mul32x32_64(h1,a1) + mul32x32_64(h2,a0) + mul32x32_64(h3,as4) + mul32x32_64(h4,as3);
+            long tp3 = mul32x32_64(h0,a3) + mul32x32_64(h1,a2) + mul32x32_64(h2,a1) + mul32x32_64(h3,a0) + mul32x32_64(h4,as4);
+            long tp4 = mul32x32_64(h0,a4) + mul32x32_64(h1,a3) + mul32x32_64(h2,a2) + mul32x32_64(h3,a1) + mul32x32_64(h4,a0);
+
+            t0 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 16);
+            t1 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 20);
+            t2 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 24);
+            t3 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 28);
+
+            int m0 = (int)t0 & 0x3ffffff;
+            int m1 = (int)((((t1 << 32) | t0) >>> 26) & 0x3ffffff);
+            int m2 = (int)((((t2 << 32) | t1) >>> 20) & 0x3ffffff);
+            int m3 = (int)((((t3 << 32) | t2) >>> 14) & 0x3ffffff);
+            int m4 = (int)(t3 >>> 8) | (1 << 24);
+
+            tp0 += mul32x32_64(m0,b0) + mul32x32_64(m1,bs4) + mul32x32_64(m2,bs3) + mul32x32_64(m3,bs2) + mul32x32_64(m4,bs1);
+            tp1 += mul32x32_64(m0,b1) + mul32x32_64(m1,b0) + mul32x32_64(m2,bs4) + mul32x32_64(m3,bs3) + mul32x32_64(m4,bs2);
+            tp2 += mul32x32_64(m0,b2) + mul32x32_64(m1,b1) + mul32x32_64(m2,b0) + mul32x32_64(m3,bs4) + mul32x32_64(m4,bs3);
+            tp3 += mul32x32_64(m0,b3) + mul32x32_64(m1,b2) + mul32x32_64(m2,b1) + mul32x32_64(m3,b0) + mul32x32_64(m4,bs4);
+            tp4 += mul32x32_64(m0,b4) + mul32x32_64(m1,b3) + mul32x32_64(m2,b2) + mul32x32_64(m3,b1) + mul32x32_64(m4,b0);
+
+            t0 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 32);
+            t1 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 36);
+            t2 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 40);
+            t3 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 44);
+
+            m0 = (int)t0 & 0x3ffffff;
+            m1 = (int)((((t1 << 32) | t0) >>> 26) & 0x3ffffff);
+            m2 = (int)((((t2 << 32) | t1) >>> 20) & 0x3ffffff);
+            m3 = (int)((((t3 << 32) | t2) >>> 14) & 0x3ffffff);
+            m4 = (int)(t3 >>> 8) | (1 << 24);
+
+            tp0 += mul32x32_64(m0,c0) + mul32x32_64(m1,cs4) + mul32x32_64(m2,cs3) + mul32x32_64(m3,cs2) + mul32x32_64(m4,cs1);
+            tp1 += mul32x32_64(m0,c1) + mul32x32_64(m1,c0) + mul32x32_64(m2,cs4) + mul32x32_64(m3,cs3) + mul32x32_64(m4,cs2);
+            tp2 += mul32x32_64(m0,c2) + mul32x32_64(m1,c1) + mul32x32_64(m2,c0) + mul32x32_64(m3,cs4) + mul32x32_64(m4,cs3);
+            tp3 += mul32x32_64(m0,c3) + mul32x32_64(m1,c2) + mul32x32_64(m2,c1) + mul32x32_64(m3,c0) + mul32x32_64(m4,cs4);
+            tp4 += mul32x32_64(m0,c4) + mul32x32_64(m1,c3) + mul32x32_64(m2,c2) + mul32x32_64(m3,c1) + mul32x32_64(m4,c0);
+
+            t0 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 48);
+            t1 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 52);
+            t2 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 56);
+            t3 = 0xffffffffL & Pack.littleEndianToInt(in, inOff + 60);
+
+            m0 = (int)t0 & 0x3ffffff;
+            m1 = (int)((((t1 << 32) | t0) >>> 26) & 0x3ffffff);
+            m2 = (int)((((t2 << 32) | t1) >>> 20) & 0x3ffffff);
+            m3 = (int)((((t3 << 32) | t2) >>> 14) & 0x3ffffff);
+            m4 = (int)(t3 >>> 8) | (1 << 24);
+
+            tp0 += mul32x32_64(m0,r0) + mul32x32_64(m1,s4) + mul32x32_64(m2,s3) + mul32x32_64(m3,s2) + mul32x32_64(m4,s1);
+            tp1 += mul32x32_64(m0,r1) + mul32x32_64(m1,r0) + mul32x32_64(m2,s4) + mul32x32_64(m3,s3) + mul32x32_64(m4,s2);
+            tp2 += mul32x32_64(m0,r2) + mul32x32_64(m1,r1) + mul32x32_64(m2,r0) + mul32x32_64(m3,s4) + mul32x32_64(m4,s3);
+            tp3 += mul32x32_64(m0,r3) + mul32x32_64(m1,r2) + mul32x32_64(m2,r1) + mul32x32_64(m3,r0) + mul32x32_64(m4,s4);
+            tp4 += mul32x32_64(m0,r4) + mul32x32_64(m1,r3) + mul32x32_64(m2,r2) + mul32x32_64(m3,r1) + mul32x32_64(m4,r0);
+
+            h0 = (int)tp0 & 0x3ffffff; tp1 += (tp0 >>> 26);
+            h1 = (int)tp1 & 0x3ffffff; tp2 += (tp1 >>> 26);
+            h2 = (int)tp2 & 0x3ffffff; tp3 += (tp2 >>> 26);
+            h3 = (int)tp3 & 0x3ffffff; tp4 += (tp3 >>> 26);
+            h4 = (int)tp4 & 0x3ffffff;
+            // the carry out of tp4 can exceed 32 bits here, unlike in the single block step
+            tp0 = (tp4 >>> 26) * 5 + h0;
+            h0 = (int)tp0 & 0x3ffffff;
+            h1 += (int)(tp0 >>> 26);
+
+            inOff += 4 * BLOCK_SIZE;
+        }
+
+        this.h0 = h0; this.h1 = h1; this.h2 = h2; this.h3 = h3; this.h4 = h4;
+    }
+
+    /**
+     * z = x * y mod 2^130 - 5, on 5 limbs of 26 bits, with the same final carry handling as a block step.
+     */
+    private static void mulModP(int[] x, int xOff, int[] y, int yOff, int[] z, int zOff)
+    {
+        int x0 = x[xOff], x1 = x[xOff + 1], x2 = x[xOff + 2], x3 = x[xOff + 3], x4 = x[xOff + 4];
+        int y0 = y[yOff], y1 = y[yOff + 1], y2 = y[yOff + 2], y3 = y[yOff + 3], y4 = y[yOff + 4];
+        int ys1 = y1 * 5, ys2 = y2 * 5, ys3 = y3 * 5, ys4 = y4 * 5;
+
+        long tp0 = mul32x32_64(x0,y0) + mul32x32_64(x1,ys4) + mul32x32_64(x2,ys3) + mul32x32_64(x3,ys2) + mul32x32_64(x4,ys1);
+        long tp1 = mul32x32_64(x0,y1) + mul32x32_64(x1,y0) + mul32x32_64(x2,ys4) + mul32x32_64(x3,ys3) + mul32x32_64(x4,ys2);
+        long tp2 = mul32x32_64(x0,y2) + mul32x32_64(x1,y1) + mul32x32_64(x2,y0) + mul32x32_64(x3,ys4) + mul32x32_64(x4,ys3);
+        long tp3 = mul32x32_64(x0,y3) + mul32x32_64(x1,y2) + mul32x32_64(x2,y1) + mul32x32_64(x3,y0) + mul32x32_64(x4,ys4);
+        long tp4 = mul32x32_64(x0,y4) + mul32x32_64(x1,y3) + mul32x32_64(x2,y2) + mul32x32_64(x3,y1) + mul32x32_64(x4,y0);
+
+        int z0, z1, z2, z3, z4;
+        z0 = (int)tp0 & 0x3ffffff; tp1 += (tp0 >>> 26);
+        z1 = (int)tp1 & 0x3ffffff; tp2 += (tp1 >>> 26);
+        z2 = (int)tp2 & 0x3ffffff; tp3 += (tp2 >>> 26);
+        z3 = (int)tp3 & 0x3ffffff; tp4 += (tp3 >>> 26);
+        z4 = (int)tp4 & 0x3ffffff;
+        z0 += (int)(tp4 >>> 26) * 5;
+        z1 += (z0 >>> 26); z0 &= 0x3ffffff;
+
+        z[zOff] = z0; z[zOff + 1] = z1; z[zOff + 2] = z2; z[zOff + 3] = z3; z[zOff + 4] = z4;
+    }
+
     public int doFinal(final byte[] out, final int outOff)
         throws DataLengthException,
         IllegalStateException
@@ -256,7 +402,12 @@ public int doFinal(final byte[] out, final int outOff)
         if (currentBlockOffset > 0)
         {
             // Process padded final block
-            processBlock();
+            currentBlock[currentBlockOffset] = 1;
+            for (int i = currentBlockOffset + 1; i < BLOCK_SIZE; i++)
+            {
+                currentBlock[i] = 0;
+            }
+            processBlock(currentBlock, 0, 0);
         }
 
         h1 += (h0 >>> 26); h0 &= 0x3ffffff;
@@ -4,6 +4,8 @@
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.DataLengthException;
 import org.bouncycastle.crypto.DefaultMultiBlockCipher;
+import org.bouncycastle.crypto.MultiBlockCipher;
+import org.bouncycastle.crypto.OutputLengthException;
 import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.bouncycastle.util.Arrays;
 
@@ -14,14 +16,19 @@
     extends DefaultMultiBlockCipher
     implements CBCModeCipher
 {
+    private static final int BATCH_BLOCKS = 16;
+
     private byte[]          IV;
     private byte[]          cbcV;
     private byte[]          cbcNextV;
 
     private int             blockSize;
     private BlockCipher     cipher = null;
+    private MultiBlockCipher multiCipher = null;
     private boolean         encrypting;
 
+    private byte[]          cipherText = null;
+
     /**
      * Return a new CBC mode cipher based on the passed in base cipher
      *
@@ -47,6 +54,11 @@ public CBCBlockCipher(
         this.IV = new byte[blockSize];
         this.cbcV = new byte[blockSize];
         this.cbcNextV = new byte[blockSize];
+
+        if (cipher instanceof MultiBlockCipher && ((MultiBlockCipher)cipher).getMultiBlockSize() == blockSize)
+        {
+            this.multiCipher = (MultiBlockCipher)cipher;
+        }
     }
 
     /**
@@ -153,6 +165,97 @@ public int processBlock(
         return (encrypting) ? encryptBlock(in, inOff, out, outOff) : decryptBlock(in, inOff, out, outOff);
     }
 
+    /**
+     * Process blockCount blocks of input from the array in and write them to
+     * the out array.
+     * <p>
+     * When decrypting with an underlying cipher that supports multiple blocks
+     * the blocks are passed to the underlying cipher together, as decryption of
+     * each block does not depend on the previous one, and the chaining is then
+     * applied to the whole run in one pass.
+     *
+     * @param in the array containing the input data.
+     * @param inOff offset into the in array the data starts at.
+     * @param blockCount the number of blocks to process.
+     * @param out the array the output data will be copied into.
+     * @param outOff the offset into the out array the output will start at.
+     * @exception DataLengthException if there isn't enough data in in, or
+     * space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @return the number of bytes processed and produced.
+     */
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (encrypting || multiCipher == null || blockCount < 2)
+        {
+            return super.processBlocks(in, inOff, blockCount, out, outOff);
+        }
+
+        int len = blockCount * blockSize;
+
+        if (inOff + len > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+        if (outOff + len > out.length)
+        {
+            throw new OutputLengthException("output buffer too short");
+        }
+
+        if (in != out)
+        {
+            multiCipher.processBlocks(in, inOff, blockCount, out, outOff);
+
+            for (int i = 0; i < blockSize; i++)
+            {
+                out[outOff + i] ^= cbcV[i];
+            }
+            for (int i = blockSize; i < len; i++)
+            {
+                out[outOff + i] ^= in[inOff + i - blockSize];
+            }
+
+            System.arraycopy(in, inOff + len - blockSize, cbcV, 0, blockSize);
+
+            return len;
+        }
+
+        /*
+         * in place, so keep a copy of each run of ciphertext, preceded by the
+         * chaining block, to XOR with once it has been decrypted.
+         */
+        if (cipherText == null)
+        {
+            cipherText = new byte[(BATCH_BLOCKS + 1) * blockSize];
+        }
+
+        int remaining = blockCount;
+        while (remaining > 0)
+        {
+            int count = Math.min(remaining, BATCH_BLOCKS);
+            int batchLen = count * blockSize;
+
+            System.arraycopy(cbcV, 0, cipherText, 0, blockSize);
+            System.arraycopy(in, inOff, cipherText, blockSize, batchLen);
+
+            multiCipher.processBlocks(cipherText, blockSize, count, out, outOff);
+
+            for (int i = 0; i < batchLen; i++)
+            {
+                out[outOff + i] ^= cipherText[i];
+            }
+
+            System.arraycopy(cipherText, batchLen, cbcV, 0, blockSize);
+
+            inOff += batchLen;
+            outOff += batchLen;
+            remaining -= count;
+        }
+
+        return len;
+    }
+
     /**
      * reset the chaining vector back to the IV and reset the underlying
      * cipher.
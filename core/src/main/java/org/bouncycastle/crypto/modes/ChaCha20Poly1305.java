@@ -316,17 +316,44 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff) t
         {
         case State.DEC_DATA:
         {
-            for (int i = 0; i < len; ++i)
+            // buf always holds back the last MAC_SIZE bytes seen, as they may turn out to be the tag
+            if (len < buf.length - bufPos)
             {
-                buf[bufPos] = in[inOff + i];
-                if (++bufPos == buf.length)
-                {
-                    poly1305.update(buf, 0, BUF_SIZE);
-                    processData(buf, 0, BUF_SIZE, out, outOff + resultLen);
-                    System.arraycopy(buf, BUF_SIZE, buf, 0, MAC_SIZE);
-                    this.bufPos = MAC_SIZE;
-                    resultLen += BUF_SIZE;
-                }
+                System.arraycopy(in, inOff, buf, bufPos, len);
+                this.bufPos += len;
+                break;
+            }
+
+            int fill = buf.length - bufPos;
+            System.arraycopy(in, inOff, buf, bufPos, fill);
+            inOff += fill;
+            len -= fill;
+
+            poly1305.update(buf, 0, BUF_SIZE);
+            processData(buf, 0, BUF_SIZE, out, outOff);
+            resultLen = BUF_SIZE;
+
+            if (len >= BUF_SIZE)
+            {
+                // the held back bytes are followed by enough input to release them with whole blocks from in
+                int bulkLen = len - (len % BUF_SIZE) - MAC_SIZE;
+
+                poly1305.update(buf, BUF_SIZE, MAC_SIZE);
+                poly1305.update(in, inOff, bulkLen);
+                processData(buf, BUF_SIZE, MAC_SIZE, out, outOff + resultLen);
+                processData(in, inOff, bulkLen, out, outOff + resultLen + MAC_SIZE);
+                inOff += bulkLen;
+                len -= bulkLen;
+                resultLen += MAC_SIZE + bulkLen;
+
+                System.arraycopy(in, inOff, buf, 0, len);
+                this.bufPos = len;
+            }
+            else
+            {
+                System.arraycopy(buf, BUF_SIZE, buf, 0, MAC_SIZE);
+                System.arraycopy(in, inOff, buf, MAC_SIZE, len);
+                this.bufPos = MAC_SIZE + len;
             }
             break;
         }
@@ -349,13 +376,15 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff) t
                 }
             }
 
-            while (len >= BUF_SIZE)
+            if (len >= BUF_SIZE)
             {
-                processData(in, inOff, BUF_SIZE, out, outOff + resultLen);
-                poly1305.update(out, outOff + resultLen, BUF_SIZE);
-                inOff += BUF_SIZE;
-                len -= BUF_SIZE;
-                resultLen += BUF_SIZE;
+                // whole blocks go straight through, letting the cipher batch its key stream
+                int bulkLen = len - (len % BUF_SIZE);
+                processData(in, inOff, bulkLen, out, outOff + resultLen);
+                poly1305.update(out, outOff + resultLen, bulkLen);
+                inOff += bulkLen;
+                len -= bulkLen;
+                resultLen += bulkLen;
             }
 
             if (len > 0)
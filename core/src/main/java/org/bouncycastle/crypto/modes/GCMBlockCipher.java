@@ -4,9 +4,11 @@
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.DataLengthException;
 import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.MultiBlockCipher;
 import org.bouncycastle.crypto.OutputLengthException;
 import org.bouncycastle.crypto.modes.gcm.BasicGCMExponentiator;
 import org.bouncycastle.crypto.modes.gcm.GCMExponentiator;
+import org.bouncycastle.crypto.modes.gcm.GCMMultiBlockMultiplier;
 import org.bouncycastle.crypto.modes.gcm.GCMMultiplier;
 import org.bouncycastle.crypto.modes.gcm.GCMUtil;
 import org.bouncycastle.crypto.modes.gcm.Tables4kGCMMultiplier;
@@ -24,10 +26,13 @@
     implements GCMModeCipher
 {
     private static final int BLOCK_SIZE = 16;
+    private static final int BATCH_BLOCKS = 8;
 
     // not final due to a compiler bug
     private BlockCipher   cipher;
+    private MultiBlockCipher multiCipher;
     private GCMMultiplier multiplier;
+    private GCMMultiBlockMultiplier multiBlockMultiplier;
     private GCMExponentiator exp;
 
     // These fields are set by init and not modified by processing
@@ -45,6 +50,7 @@
     private byte[]      macBlock;
     private byte[]      S, S_at, S_atPre;
     private byte[]      counter;
+    private byte[]      ctrBlocks;
     private int         blocksRemaining;
     private int         bufOff;
     private long        totalLength;
@@ -107,6 +113,16 @@ public GCMBlockCipher(BlockCipher c, GCMMultiplier m)
 
         this.cipher = c;
         this.multiplier = m;
+
+        if (c instanceof MultiBlockCipher && ((MultiBlockCipher)c).getMultiBlockSize() == BLOCK_SIZE)
+        {
+            this.multiCipher = (MultiBlockCipher)c;
+        }
+        if (m instanceof GCMMultiBlockMultiplier)
+        {
+            this.multiBlockMultiplier = (GCMMultiBlockMultiplier)m;
+        }
+        this.ctrBlocks = new byte[BATCH_BLOCKS * BLOCK_SIZE];
     }
 
     public BlockCipher getUnderlyingCipher()
@@ -318,11 +334,12 @@ public void processAADBytes(byte[] in, int inOff, int len)
 
         int inLimit = inOff + len - BLOCK_SIZE;
 
-        while (inOff <= inLimit)
+        if (inOff <= inLimit)
         {
-            gHASHBlock(S_at, in, inOff);
-            atLength += BLOCK_SIZE;
-            inOff += BLOCK_SIZE;
+            int blockCount = (inLimit - inOff) / BLOCK_SIZE + 1;
+            gHASHBlocks(S_at, in, inOff, blockCount);
+            atLength += blockCount * BLOCK_SIZE;
+            inOff += blockCount * BLOCK_SIZE;
         }
 
         atBlockPos = BLOCK_SIZE + inLimit - inOff;
@@ -408,11 +425,12 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
 
             int inLimit = inOff + len - BLOCK_SIZE;
 
-            while (inOff <= inLimit)
+            if (inOff <= inLimit)
             {
-                encryptBlock(in, inOff, out, outOff + resultLen);
-                inOff += BLOCK_SIZE;
-                resultLen += BLOCK_SIZE;
+                int blockCount = (inLimit - inOff) / BLOCK_SIZE + 1;
+                encryptBlocks(in, inOff, blockCount, out, outOff + resultLen);
+                inOff += blockCount * BLOCK_SIZE;
+                resultLen += blockCount * BLOCK_SIZE;
             }
 
             bufOff = BLOCK_SIZE + inLimit - inOff;
@@ -452,11 +470,12 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
             resultLen += BLOCK_SIZE;
             //bufOff = 0;
 
-            while (inOff <= inLimit)
+            if (inOff <= inLimit)
             {
-                decryptBlock(in, inOff, out, outOff + resultLen);
-                inOff += BLOCK_SIZE;
-                resultLen += BLOCK_SIZE;
+                int blockCount = (inLimit - inOff) / BLOCK_SIZE + 1;
+                decryptBlocks(in, inOff, blockCount, out, outOff + resultLen);
+                inOff += blockCount * BLOCK_SIZE;
+                resultLen += blockCount * BLOCK_SIZE;
             }
 
             bufOff = bufBlock.length + inLimit - inOff;
@@ -674,6 +693,74 @@ private void encryptBlock(byte[] buf, int bufOff, byte[] out, int outOff)
         totalLength += BLOCK_SIZE;
     }
 
+    /**
+     * Encrypt whole blocks, BATCH_BLOCKS at a time: the counter blocks for a batch are encrypted
+     * together and the resulting cipher text is then hashed as a unit.
+     */
+    private void encryptBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        if ((out.length - outOff) < blockCount * BLOCK_SIZE)
+        {
+            throw new OutputLengthException("Output buffer too short");
+        }
+        if (totalLength == 0)
+        {
+            initCipher();
+        }
+
+        while (blockCount > 0)
+        {
+            int batch = Math.min(blockCount, BATCH_BLOCKS);
+            int batchLen = batch * BLOCK_SIZE;
+
+            getNextCTRBlocks(ctrBlocks, batch);
+            for (int i = 0; i < batchLen; i += BLOCK_SIZE)
+            {
+                GCMUtil.xor(ctrBlocks, i, in, inOff + i, out, outOff + i);
+            }
+            gHASHBlocks(S, out, outOff, batch);
+
+            inOff += batchLen;
+            outOff += batchLen;
+            blockCount -= batch;
+            totalLength += batchLen;
+        }
+    }
+
+    /**
+     * Decrypt whole blocks, BATCH_BLOCKS at a time. The cipher text is hashed before the output is
+     * written, so in and out may be the same buffer.
+     */
+    private void decryptBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        if ((out.length - outOff) < blockCount * BLOCK_SIZE)
+        {
+            throw new OutputLengthException("Output buffer too short");
+        }
+        if (totalLength == 0)
+        {
+            initCipher();
+        }
+
+        while (blockCount > 0)
+        {
+            int batch = Math.min(blockCount, BATCH_BLOCKS);
+            int batchLen = batch * BLOCK_SIZE;
+
+            getNextCTRBlocks(ctrBlocks, batch);
+            gHASHBlocks(S, in, inOff, batch);
+            for (int i = 0; i < batchLen; i += BLOCK_SIZE)
+            {
+                GCMUtil.xor(ctrBlocks, i, in, inOff + i, out, outOff + i);
+            }
+
+            inOff += batchLen;
+            outOff += batchLen;
+            blockCount -= batch;
+            totalLength += batchLen;
+        }
+    }
+
     private void processPartial(byte[] buf, int off, int len, byte[] out, int outOff)
     {
         byte[] ctrBlock = new byte[BLOCK_SIZE];
@@ -715,6 +802,21 @@ private void gHASHBlock(byte[] Y, byte[] b, int off)
         multiplier.multiplyH(Y);
     }
 
+    private void gHASHBlocks(byte[] Y, byte[] b, int off, int blockCount)
+    {
+        if (multiBlockMultiplier != null)
+        {
+            multiBlockMultiplier.multiplyBlocksH(Y, b, off, blockCount);
+        }
+        else
+        {
+            for (int i = 0; i < blockCount; ++i)
+            {
+                gHASHBlock(Y, b, off + i * BLOCK_SIZE);
+            }
+        }
+    }
+
     private void gHASHPartial(byte[] Y, byte[] b, int off, int len)
     {
         GCMUtil.xor(Y, b, off, len);
@@ -738,6 +840,38 @@ private void getNextCTRBlock(byte[] block)
         cipher.processBlock(counter, 0, block, 0);
     }
 
+    private void getNextCTRBlocks(byte[] blocks, int blockCount)
+    {
+        for (int i = 0; i < blockCount; ++i)
+        {
+            if (blocksRemaining == 0)
+            {
+                throw new IllegalStateException("Attempt to process too many blocks");
+            }
+            blocksRemaining--;
+
+            int c = 1;
+            c += counter[15] & 0xFF; counter[15] = (byte)c; c >>>= 8;
+            c += counter[14] & 0xFF; counter[14] = (byte)c; c >>>= 8;
+            c += counter[13] & 0xFF; counter[13] = (byte)c; c >>>= 8;
+            c += counter[12] & 0xFF; counter[12] = (byte)c;
+
+            System.arraycopy(counter, 0, blocks, i * BLOCK_SIZE, BLOCK_SIZE);
+        }
+
+        if (multiCipher != null)
+        {
+            multiCipher.processBlocks(blocks, 0, blockCount, blocks, 0);
+        }
+        else
+        {
+            for (int i = 0; i < blockCount; ++i)
+            {
+                cipher.processBlock(blocks, i * BLOCK_SIZE, blocks, i * BLOCK_SIZE);
+            }
+        }
+    }
+
     private void checkStatus()
     {
         if (!initialised)
@@ -3,6 +3,7 @@
 import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.MultiBlockCipher;
 import org.bouncycastle.crypto.OutputLengthException;
 import org.bouncycastle.crypto.StreamBlockCipher;
 import org.bouncycastle.crypto.params.ParametersWithIV;
@@ -17,7 +18,10 @@
     extends StreamBlockCipher
     implements CTRModeCipher
 {
+    private static final int BATCH_BLOCKS = 8;
+
     private final BlockCipher     cipher;
+    private final MultiBlockCipher multiCipher;
     private final int             blockSize;
 
     private byte[]          IV;
@@ -25,6 +29,9 @@
     private byte[]          counterOut;
     private int             byteCount;
 
+    private final byte[]    counterBlocks;
+    private final byte[]    keyStream;
+
     /**
      * Return a new SIC/CTR mode cipher based on the passed in base cipher
      *
@@ -51,6 +58,18 @@ public SICBlockCipher(BlockCipher c)
         this.counter = new byte[blockSize];
         this.counterOut = new byte[blockSize];
         this.byteCount = 0;
+
+        // only use the multi-block path if the cipher batches in units of its own block size.
+        if (c instanceof MultiBlockCipher && ((MultiBlockCipher)c).getMultiBlockSize() == blockSize)
+        {
+            this.multiCipher = (MultiBlockCipher)c;
+        }
+        else
+        {
+            this.multiCipher = null;
+        }
+        this.counterBlocks = new byte[BATCH_BLOCKS * blockSize];
+        this.keyStream = new byte[BATCH_BLOCKS * blockSize];
     }
 
     public void init(
@@ -126,6 +145,30 @@ public int processBlock(byte[] in, int inOff, byte[] out, int outOff)
         return blockSize;
     }
 
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        int len = blockCount * blockSize;
+
+        if (byteCount != 0)
+        {
+            return processBytes(in, inOff, len, out, outOff);
+        }
+
+        if (inOff + len > in.length)
+        {
+            throw new DataLengthException("input buffer too small");
+        }
+        if (outOff + len > out.length)
+        {
+            throw new OutputLengthException("output buffer too short");
+        }
+
+        processWholeBlocks(in, inOff, blockCount, out, outOff);
+
+        return len;
+    }
+
     public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
         throws DataLengthException
     {
@@ -138,30 +181,71 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
             throw new OutputLengthException("output buffer too short");
         }
 
-        for (int i = 0; i < len; ++i)
+        int pos = 0;
+
+        // use up any keystream left over from a previous call
+        while (byteCount != 0 && pos < len)
+        {
+            out[outOff + pos] = calculateByte(in[inOff + pos]);
+            ++pos;
+        }
+
+        int blockCount = (len - pos) / blockSize;
+        if (blockCount > 0)
+        {
+            processWholeBlocks(in, inOff + pos, blockCount, out, outOff + pos);
+            pos += blockCount * blockSize;
+        }
+
+        while (pos < len)
+        {
+            out[outOff + pos] = calculateByte(in[inOff + pos]);
+            ++pos;
+        }
+
+        return len;
+    }
+
+    /**
+     * Encrypt up to BATCH_BLOCKS counter values at a time and XOR the resulting keystream
+     * over the input. Assumes byteCount == 0 on entry and leaves it that way.
+     */
+    private void processWholeBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        while (blockCount > 0)
         {
-            byte next;
+            int batch = Math.min(blockCount, BATCH_BLOCKS);
+            int batchLen = batch * blockSize;
 
-            if (byteCount == 0)
+            for (int pos = 0; pos < batchLen; pos += blockSize)
             {
                 checkLastIncrement();
 
-                cipher.processBlock(counter, 0, counterOut, 0);
-                next = (byte)(in[inOff + i] ^ counterOut[byteCount++]);
+                System.arraycopy(counter, 0, counterBlocks, pos, blockSize);
+                incrementCounter();
+            }
+
+            if (multiCipher != null)
+            {
+                multiCipher.processBlocks(counterBlocks, 0, batch, keyStream, 0);
             }
             else
             {
-                next = (byte)(in[inOff + i] ^ counterOut[byteCount++]);
-                if (byteCount == counter.length)
+                for (int pos = 0; pos < batchLen; pos += blockSize)
                 {
-                    byteCount = 0;
-                    incrementCounter();
+                    cipher.processBlock(counterBlocks, pos, keyStream, pos);
                 }
             }
-            out[outOff + i] = next;
-        }
 
-        return len;
+            for (int i = 0; i < batchLen; ++i)
+            {
+                out[outOff + i] = (byte)(in[inOff + i] ^ keyStream[i]);
+            }
+
+            inOff += batchLen;
+            outOff += batchLen;
+            blockCount -= batch;
+        }
     }
 
     protected byte calculateByte(byte in)
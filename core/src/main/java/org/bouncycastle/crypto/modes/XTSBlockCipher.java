@@ -0,0 +1,682 @@
+package org.bouncycastle.crypto.modes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.CipherParameters;
+import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.DefaultBufferedBlockCipher;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.MultiBlockCipher;
+import org.bouncycastle.crypto.OutputLengthException;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
+
+/**
+ * Implementation of the XTS mode (XEX-based tweaked-codebook mode with ciphertext stealing) as
+ * described in IEEE Std 1619-2007 and NIST SP 800-38E, for use with 128 bit block ciphers.
+ * <p>
+ * The key is the concatenation of the data key and the tweak key, each of which must be a valid key
+ * for the underlying cipher, and the two halves must differ. When used as a buffered block cipher the
+ * IV is the 128 bit tweak for a single data unit, which for storage is the little-endian encoding of
+ * the sector number; a data unit must be at least one block long and if it is not a multiple of the
+ * block size the final partial block is handled using ciphertext stealing.
+ * </p><p>
+ * The sector methods process complete data units directly, taking the tweak from the sector number,
+ * and do not affect the state of the buffered operation. Where the cipher is created with a
+ * {@link CipherProvider} processSectors() can also hand runs of sectors to an {@link Executor}, each
+ * task working with its own cipher instances.
+ * </p>
+ */
+public class XTSBlockCipher
+    extends DefaultBufferedBlockCipher
+{
+    /**
+     * Source of fresh instances of the underlying block cipher.
+     */
+    public interface CipherProvider
+    {
+        BlockCipher get();
+    }
+
+    private static final int BLOCK_SIZE = 16;
+
+    /*
+     * IEEE 1619 limits a data unit to 2^20 blocks.
+     */
+    private static final int MAX_DATA_UNIT_SIZE = BLOCK_SIZE << 20;
+
+    /*
+     * Approximate amount of data handed to each task in processSectors().
+     */
+    private static final int TASK_SIZE = 64 * 1024;
+
+    private final CipherProvider provider;
+    private final DataUnitProcessor processor;
+
+    private KeyParameter dataKey;
+    private KeyParameter tweakKey;
+
+    private byte[] initialTweak;
+    private final long[] tweak = new long[2];
+    private final byte[] oneByte = new byte[1];
+    private long dataUnitLength;
+
+    /**
+     * Create an XTS cipher using cipher instances obtained from the passed in provider; two are used
+     * directly and processSectors() obtains a further two for each task it hands to an Executor.
+     *
+     * @param provider source of instances of a 128 bit block cipher.
+     */
+    public XTSBlockCipher(CipherProvider provider)
+    {
+        this(provider, provider.get(), provider.get());
+    }
+
+    /**
+     * Create an XTS cipher using the passed in ciphers. Sectors are always processed on the calling
+     * thread.
+     *
+     * @param cipher      the cipher used to process the data, ideally a {@link MultiBlockCipher}.
+     * @param tweakCipher a separate instance of the same cipher, used to encrypt the tweak.
+     */
+    public XTSBlockCipher(BlockCipher cipher, BlockCipher tweakCipher)
+    {
+        this(null, cipher, tweakCipher);
+    }
+
+    private XTSBlockCipher(CipherProvider provider, BlockCipher cipher, BlockCipher tweakCipher)
+    {
+        if (cipher.getBlockSize() != BLOCK_SIZE || tweakCipher.getBlockSize() != BLOCK_SIZE)
+        {
+            throw new IllegalArgumentException("XTS requires a 128 bit block cipher");
+        }
+        if (cipher == tweakCipher)
+        {
+            throw new IllegalArgumentException("XTS requires separate cipher instances");
+        }
+
+        this.provider = provider;
+        this.cipher = cipher;
+        this.processor = new DataUnitProcessor(cipher, tweakCipher);
+
+        this.buf = new byte[2 * BLOCK_SIZE];
+        this.bufOff = 0;
+    }
+
+    public String getAlgorithmName()
+    {
+        return cipher.getAlgorithmName() + "/XTS";
+    }
+
+    /**
+     * Initialise the cipher.
+     *
+     * @param forEncryption if true the cipher is initialised for encryption, if false for decryption.
+     * @param params        a KeyParameter holding the data key followed by the tweak key, optionally
+     *                      wrapped in a ParametersWithIV giving the 128 bit tweak for the buffered
+     *                      operation. A ParametersWithIV with a null key changes the tweak only.
+     * @throws IllegalArgumentException if the parameters are inappropriate.
+     */
+    public void init(boolean forEncryption, CipherParameters params)
+        throws IllegalArgumentException
+    {
+        KeyParameter key;
+        byte[] iv = null;
+
+        if (params instanceof ParametersWithIV)
+        {
+            ParametersWithIV ivParams = (ParametersWithIV)params;
+
+            iv = ivParams.getIV();
+            if (iv.length != BLOCK_SIZE)
+            {
+                throw new IllegalArgumentException("XTS tweak must be 128 bits");
+            }
+
+            key = (KeyParameter)ivParams.getParameters();
+        }
+        else if (params instanceof KeyParameter)
+        {
+            key = (KeyParameter)params;
+        }
+        else
+        {
+            throw new IllegalArgumentException("invalid parameters passed to XTS");
+        }
+
+        if (key != null)
+        {
+            byte[] keyBytes = key.getKey();
+            int halfLen = keyBytes.length / 2;
+
+            if (halfLen == 0 || (keyBytes.length & 1) != 0)
+            {
+                throw new IllegalArgumentException("XTS key must be two keys of equal length");
+            }
+
+            KeyParameter k1 = new KeyParameter(keyBytes, 0, halfLen);
+            KeyParameter k2 = new KeyParameter(keyBytes, halfLen, halfLen);
+            if (Arrays.constantTimeAreEqual(k1.getKey(), k2.getKey()))
+            {
+                throw new IllegalArgumentException("XTS data key and tweak key must differ");
+            }
+
+            this.dataKey = k1;
+            this.tweakKey = k2;
+        }
+        else if (dataKey == null)
+        {
+            throw new IllegalArgumentException("XTS cipher not previously keyed");
+        }
+
+        this.forEncryption = forEncryption;
+        this.processor.init(forEncryption, dataKey, tweakKey);
+        this.initialTweak = Arrays.clone(iv);
+
+        reset();
+    }
+
+    public int getUpdateOutputSize(int len)
+    {
+        int total = bufOff + len;
+        if (total <= buf.length)
+        {
+            return 0;
+        }
+
+        // hold back between one and two blocks for ciphertext stealing
+        return (total - buf.length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    public int getOutputSize(int len)
+    {
+        return bufOff + len;
+    }
+
+    public int processByte(byte in, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        oneByte[0] = in;
+        return processBytes(oneByte, 0, 1, out, outOff);
+    }
+
+    public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (len < 0)
+        {
+            throw new IllegalArgumentException("Can't have a negative input length!");
+        }
+        if (in.length - inOff < len)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+        if (initialTweak == null)
+        {
+            throw new IllegalStateException("XTS cipher not initialised with a tweak");
+        }
+
+        int resultLen = getUpdateOutputSize(len);
+        if (resultLen > 0 && out.length - outOff < resultLen)
+        {
+            throw new OutputLengthException("output buffer too short");
+        }
+
+        dataUnitLength += len;
+        if (dataUnitLength > MAX_DATA_UNIT_SIZE)
+        {
+            throw new DataLengthException("XTS data unit limited to 2^20 blocks");
+        }
+
+        if (resultLen == 0)
+        {
+            System.arraycopy(in, inOff, buf, bufOff, len);
+            bufOff += len;
+            return 0;
+        }
+
+        if (in == out && bufOff > 0 && outOff < inOff + len && inOff < outOff + resultLen)
+        {
+            // the output runs ahead of the input by bufOff bytes
+            in = Arrays.copyOfRange(in, inOff, inOff + len);
+            inOff = 0;
+        }
+
+        int outBlocks = resultLen / BLOCK_SIZE;
+        int inPos = inOff;
+        int block = 0;
+
+        // blocks starting in the buffer, topping it up from the input as needed
+        while (block < outBlocks && block * BLOCK_SIZE < bufOff)
+        {
+            int end = (block + 1) * BLOCK_SIZE;
+            if (end > bufOff)
+            {
+                System.arraycopy(in, inPos, buf, bufOff, end - bufOff);
+                inPos += end - bufOff;
+                bufOff = end;
+            }
+
+            processor.processBlocks(tweak, buf, block * BLOCK_SIZE, 1, out, outOff + block * BLOCK_SIZE);
+            ++block;
+        }
+
+        if (block < outBlocks)
+        {
+            processor.processBlocks(tweak, in, inPos, outBlocks - block, out, outOff + block * BLOCK_SIZE);
+            inPos += (outBlocks - block) * BLOCK_SIZE;
+            bufOff = 0;
+        }
+        else
+        {
+            System.arraycopy(buf, block * BLOCK_SIZE, buf, 0, bufOff - block * BLOCK_SIZE);
+            bufOff -= block * BLOCK_SIZE;
+        }
+
+        int remaining = inOff + len - inPos;
+        System.arraycopy(in, inPos, buf, bufOff, remaining);
+        bufOff += remaining;
+
+        return resultLen;
+    }
+
+    public int doFinal(byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException, InvalidCipherTextException
+    {
+        try
+        {
+            if (initialTweak == null)
+            {
+                throw new IllegalStateException("XTS cipher not initialised with a tweak");
+            }
+            if (bufOff < BLOCK_SIZE)
+            {
+                if (bufOff == 0 && dataUnitLength == 0)
+                {
+                    return 0;
+                }
+                throw new DataLengthException("XTS data unit must be at least one block");
+            }
+            if (out.length - outOff < bufOff)
+            {
+                throw new OutputLengthException("output buffer too short");
+            }
+
+            int resultLen = bufOff;
+            processor.processFinal(tweak, buf, 0, bufOff, out, outOff);
+            return resultLen;
+        }
+        finally
+        {
+            reset();
+        }
+    }
+
+    public void reset()
+    {
+        Arrays.fill(buf, (byte)0);
+        bufOff = 0;
+        dataUnitLength = 0;
+
+        if (initialTweak != null)
+        {
+            processor.initTweak(initialTweak, tweak);
+        }
+    }
+
+    /**
+     * Encrypt or decrypt a single data unit, using the tweak for the given sector number.
+     *
+     * @param sectorNumber the sector number, treated as an unsigned value.
+     * @param in           the input data.
+     * @param inOff        offset of the data in in.
+     * @param len          the length of the data unit, at least one block.
+     * @param out          the array the output is written to, which may be the input array.
+     * @param outOff       offset in out to write the output at.
+     * @return the number of bytes written to out.
+     */
+    public int processSector(long sectorNumber, byte[] in, int inOff, int len, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        checkSectors(len, len, in, inOff, out, outOff);
+
+        processor.processDataUnit(sectorNumber, in, inOff, len, out, outOff);
+
+        return len;
+    }
+
+    /**
+     * Encrypt or decrypt a run of consecutively numbered sectors of sectorSize bytes, the last of which
+     * may be shorter, but must be at least one block long.
+     * <p>
+     * If an executor is passed and the cipher was created with a {@link CipherProvider} the sectors
+     * are split into groups which are processed by tasks run on the executor and the calling thread,
+     * and the method returns when all of them have completed. If processing fails the contents of out
+     * are undefined.
+     * </p>
+     *
+     * @param sectorNumber the number of the first sector, treated as an unsigned value.
+     * @param sectorSize   the size of each sector.
+     * @param in           the input data.
+     * @param inOff        offset of the data in in.
+     * @param len          the total length of the data.
+     * @param out          the array the output is written to, which may be the input array.
+     * @param outOff       offset in out to write the output at.
+     * @param executor     executor for running sector groups, or null to process them on the calling thread.
+     * @return the number of bytes written to out.
+     */
+    public int processSectors(long sectorNumber, int sectorSize, byte[] in, int inOff, int len, byte[] out,
+                              int outOff, Executor executor)
+        throws DataLengthException, IllegalStateException
+    {
+        checkSectors(sectorSize, len, in, inOff, out, outOff);
+
+        int sectorCount = (len + sectorSize - 1) / sectorSize;
+        int sectorsPerTask = Math.max(1, TASK_SIZE / sectorSize);
+
+        if (executor == null || provider == null || sectorCount <= sectorsPerTask)
+        {
+            processSectors(processor, sectorNumber, sectorSize, in, inOff, len, out, outOff);
+            return len;
+        }
+
+        List tasks = new ArrayList();
+        int groupLen = sectorsPerTask * sectorSize;
+
+        // the first group is processed on this thread once the others have been handed out
+        for (int pos = groupLen; pos < len; pos += groupLen)
+        {
+            FutureTask task = new FutureTask(new SectorTask(sectorNumber + pos / sectorSize, sectorSize,
+                in, inOff + pos, Math.min(groupLen, len - pos), out, outOff + pos), null);
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        try
+        {
+            processSectors(processor, sectorNumber, sectorSize, in, inOff, groupLen, out, outOff);
+
+            for (int i = 0; i < tasks.size(); i++)
+            {
+                ((FutureTask)tasks.get(i)).get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while processing sectors");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException("sector processing failed: " + cause);
+        }
+        finally
+        {
+            for (int i = 0; i < tasks.size(); i++)
+            {
+                ((FutureTask)tasks.get(i)).cancel(false);
+            }
+        }
+
+        return len;
+    }
+
+    private void checkSectors(int sectorSize, int len, byte[] in, int inOff, byte[] out, int outOff)
+    {
+        if (dataKey == null)
+        {
+            throw new IllegalStateException("XTS cipher not initialised");
+        }
+        if (sectorSize < BLOCK_SIZE || sectorSize > MAX_DATA_UNIT_SIZE)
+        {
+            throw new DataLengthException("XTS data unit must be between 1 and 2^20 blocks");
+        }
+        if (len < 0 || (len % sectorSize != 0 && len % sectorSize < BLOCK_SIZE))
+        {
+            throw new DataLengthException("XTS data unit must be at least one block");
+        }
+        if (in.length - inOff < len)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+        if (out.length - outOff < len)
+        {
+            throw new OutputLengthException("output buffer too short");
+        }
+    }
+
+    private static void processSectors(DataUnitProcessor processor, long sectorNumber, int sectorSize, byte[] in,
+                                       int inOff, int len, byte[] out, int outOff)
+    {
+        for (int pos = 0; pos < len; pos += sectorSize)
+        {
+            processor.processDataUnit(sectorNumber++, in, inOff + pos, Math.min(sectorSize, len - pos), out, outOff + pos);
+        }
+    }
+
+    private class SectorTask
+        implements Runnable
+    {
+        private final long sectorNumber;
+        private final int sectorSize;
+        private final byte[] in;
+        private final int inOff;
+        private final int len;
+        private final byte[] out;
+        private final int outOff;
+
+        SectorTask(long sectorNumber, int sectorSize, byte[] in, int inOff, int len, byte[] out, int outOff)
+        {
+            this.sectorNumber = sectorNumber;
+            this.sectorSize = sectorSize;
+            this.in = in;
+            this.inOff = inOff;
+            this.len = len;
+            this.out = out;
+            this.outOff = outOff;
+        }
+
+        public void run()
+        {
+            DataUnitProcessor taskProcessor = new DataUnitProcessor(provider.get(), provider.get());
+            taskProcessor.init(forEncryption, dataKey, tweakKey);
+
+            processSectors(taskProcessor, sectorNumber, sectorSize, in, inOff, len, out, outOff);
+        }
+    }
+
+    /**
+     * The XTS operations on a pair of keyed ciphers. Tweaks are kept as two longs, low half first, so
+     * multiplication by alpha is a shift with a conditional reduction.
+     */
+    private static class DataUnitProcessor
+    {
+        /*
+         * Number of blocks whose tweaks are computed, and which are passed to the cipher, at a time.
+         */
+        private static final int BATCH_BLOCKS = 32;
+
+        private final BlockCipher cipher;
+        private final MultiBlockCipher mbCipher;
+        private final BlockCipher tweakCipher;
+
+        private final byte[] tweaks = new byte[BATCH_BLOCKS * BLOCK_SIZE];
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] stolen = new byte[BLOCK_SIZE];
+        private final long[] lastTweak = new long[2];
+        private final long[] nextTweak = new long[2];
+        private final long[] unitTweak = new long[2];
+
+        private boolean forEncryption;
+
+        DataUnitProcessor(BlockCipher cipher, BlockCipher tweakCipher)
+        {
+            this.cipher = cipher;
+            this.mbCipher = (cipher instanceof MultiBlockCipher) ? (MultiBlockCipher)cipher : null;
+            this.tweakCipher = tweakCipher;
+        }
+
+        void init(boolean forEncryption, KeyParameter dataKey, KeyParameter tweakKey)
+        {
+            this.forEncryption = forEncryption;
+
+            cipher.init(forEncryption, dataKey);
+            tweakCipher.init(true, tweakKey);
+        }
+
+        void initTweak(byte[] iv, long[] t)
+        {
+            tweakCipher.processBlock(iv, 0, block, 0);
+
+            t[0] = Pack.littleEndianToLong(block, 0);
+            t[1] = Pack.littleEndianToLong(block, 8);
+        }
+
+        void processDataUnit(long sectorNumber, byte[] in, int inOff, int len, byte[] out, int outOff)
+        {
+            Pack.longToLittleEndian(sectorNumber, block, 0);
+            Pack.longToLittleEndian(0L, block, 8);
+            initTweak(block, unitTweak);
+
+            int tail = (len % BLOCK_SIZE == 0) ? 2 * BLOCK_SIZE : BLOCK_SIZE + len % BLOCK_SIZE;
+            if (len > tail)
+            {
+                processBlocks(unitTweak, in, inOff, (len - tail) / BLOCK_SIZE, out, outOff);
+            }
+
+            int done = Math.max(0, len - tail);
+            processFinal(unitTweak, in, inOff + done, len - done, out, outOff + done);
+        }
+
+        /**
+         * Process whole blocks, advancing the tweak t past them.
+         */
+        void processBlocks(long[] t, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        {
+            while (blockCount > 0)
+            {
+                int count = Math.min(blockCount, BATCH_BLOCKS);
+                int len = count * BLOCK_SIZE;
+
+                long t0 = t[0], t1 = t[1];
+                for (int i = 0; i < len; i += BLOCK_SIZE)
+                {
+                    Pack.longToLittleEndian(t0, tweaks, i);
+                    Pack.longToLittleEndian(t1, tweaks, i + 8);
+
+                    // multiply by alpha
+                    long c = t1 >> 63;
+                    t1 = (t1 << 1) | (t0 >>> 63);
+                    t0 = (t0 << 1) ^ (c & 0x87L);
+                }
+                t[0] = t0;
+                t[1] = t1;
+
+                for (int i = 0; i < len; ++i)
+                {
+                    out[outOff + i] = (byte)(in[inOff + i] ^ tweaks[i]);
+                }
+
+                if (mbCipher != null)
+                {
+                    mbCipher.processBlocks(out, outOff, count, out, outOff);
+                }
+                else
+                {
+                    for (int i = 0; i < len; i += BLOCK_SIZE)
+                    {
+                        cipher.processBlock(out, outOff + i, out, outOff + i);
+                    }
+                }
+
+                for (int i = 0; i < len; ++i)
+                {
+                    out[outOff + i] ^= tweaks[i];
+                }
+
+                inOff += len;
+                outOff += len;
+                blockCount -= count;
+            }
+        }
+
+        /**
+         * Process the last one or two blocks of a data unit, len being between one and two blocks,
+         * using ciphertext stealing if len is not a multiple of the block size.
+         */
+        void processFinal(long[] t, byte[] in, int inOff, int len, byte[] out, int outOff)
+        {
+            int partial = len - BLOCK_SIZE;
+            if (partial == 0 || partial == BLOCK_SIZE)
+            {
+                processBlocks(t, in, inOff, len / BLOCK_SIZE, out, outOff);
+                return;
+            }
+
+            // the tweaks for the last full block, and for the block holding the partial one
+            lastTweak[0] = nextTweak[0] = t[0];
+            lastTweak[1] = nextTweak[1] = t[1];
+            doubleTweak(nextTweak);
+
+            long[] firstTweak = forEncryption ? lastTweak : nextTweak;
+            long[] secondTweak = forEncryption ? nextTweak : lastTweak;
+
+            System.arraycopy(in, inOff + BLOCK_SIZE, stolen, 0, partial);
+
+            System.arraycopy(in, inOff, block, 0, BLOCK_SIZE);
+            processBlock(firstTweak, block);
+
+            // steal the end of the first result to pad the partial block
+            System.arraycopy(block, partial, stolen, partial, BLOCK_SIZE - partial);
+            System.arraycopy(block, 0, out, outOff + BLOCK_SIZE, partial);
+
+            processBlock(secondTweak, stolen);
+            System.arraycopy(stolen, 0, out, outOff, BLOCK_SIZE);
+
+            Arrays.fill(block, (byte)0);
+            Arrays.fill(stolen, (byte)0);
+
+            doubleTweak(nextTweak);
+            t[0] = nextTweak[0];
+            t[1] = nextTweak[1];
+        }
+
+        private void processBlock(long[] t, byte[] b)
+        {
+            Pack.longToLittleEndian(t, tweaks, 0);
+
+            for (int i = 0; i < BLOCK_SIZE; ++i)
+            {
+                b[i] ^= tweaks[i];
+            }
+            cipher.processBlock(b, 0, b, 0);
+            for (int i = 0; i < BLOCK_SIZE; ++i)
+            {
+                b[i] ^= tweaks[i];
+            }
+        }
+
+        private static void doubleTweak(long[] t)
+        {
+            long c = t[1] >> 63;
+            t[1] = (t[1] << 1) | (t[0] >>> 63);
+            t[0] = (t[0] << 1) ^ (c & 0x87L);
+        }
+    }
+}
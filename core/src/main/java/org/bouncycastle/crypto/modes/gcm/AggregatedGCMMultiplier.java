@@ -0,0 +1,88 @@
+package org.bouncycastle.crypto.modes.gcm;
+
+import org.bouncycastle.util.Pack;
+
+/**
+ * A table free GCM multiplier that precomputes H^1..H^8 and, when given several blocks at once,
+ * uses the aggregated form
+ * <pre>
+ *     Y' = (Y + X1).H^n + X2.H^(n-1) + ... + Xn.H
+ * </pre>
+ * accumulating the unreduced products so only one reduction is needed for every 8 blocks.
+ */
+public class AggregatedGCMMultiplier
+    implements GCMMultiBlockMultiplier
+{
+    private static final int MAX_BLOCKS = 8;
+
+    private byte[] H;
+    private long[][] HPow;
+
+    private final long[] t = new long[GCMUtil.SIZE_LONGS];
+    private final long[] zz = new long[GCMUtil.SIZE_LONGS * 2];
+
+    public void init(byte[] H)
+    {
+        if (HPow == null)
+        {
+            HPow = new long[MAX_BLOCKS][GCMUtil.SIZE_LONGS];
+        }
+        else if (0 != GCMUtil.areEqual(this.H, H))
+        {
+            return;
+        }
+
+        this.H = new byte[GCMUtil.SIZE_BYTES];
+        GCMUtil.copy(H, this.H);
+
+        // HPow[i] = H^(i + 1)
+        GCMUtil.asLongs(this.H, HPow[0]);
+        for (int i = 1; i < MAX_BLOCKS; ++i)
+        {
+            GCMUtil.copy(HPow[i - 1], HPow[i]);
+            GCMUtil.multiply(HPow[i], HPow[0]);
+        }
+    }
+
+    public void multiplyH(byte[] x)
+    {
+        GCMUtil.multiply(x, HPow[0]);
+    }
+
+    public void multiplyBlocksH(byte[] x, byte[] buf, int off, int blockCount)
+    {
+        long y0 = Pack.bigEndianToLong(x, 0);
+        long y1 = Pack.bigEndianToLong(x, 8);
+
+        while (blockCount > 0)
+        {
+            int n = Math.min(blockCount, MAX_BLOCKS);
+
+            zz[0] = 0; zz[1] = 0; zz[2] = 0; zz[3] = 0;
+
+            // the running hash is absorbed into the first block, which takes the highest power of H
+            t[0] = y0 ^ Pack.bigEndianToLong(buf, off);
+            t[1] = y1 ^ Pack.bigEndianToLong(buf, off + 8);
+            GCMUtil.multiplyExt(t, HPow[n - 1], zz);
+
+            for (int i = 1; i < n; ++i)
+            {
+                off += GCMUtil.SIZE_BYTES;
+
+                t[0] = Pack.bigEndianToLong(buf, off);
+                t[1] = Pack.bigEndianToLong(buf, off + 8);
+                GCMUtil.multiplyExt(t, HPow[n - 1 - i], zz);
+            }
+
+            GCMUtil.reduce(zz, t);
+            y0 = t[0];
+            y1 = t[1];
+
+            off += GCMUtil.SIZE_BYTES;
+            blockCount -= n;
+        }
+
+        Pack.longToBigEndian(y0, x, 0);
+        Pack.longToBigEndian(y1, x, 8);
+    }
+}
@@ -0,0 +1,20 @@
+package org.bouncycastle.crypto.modes.gcm;
+
+/**
+ * A GCM multiplier that can also fold several blocks into the hash in one call, allowing
+ * implementations to aggregate the work (for example, performing a single reduction per call).
+ */
+public interface GCMMultiBlockMultiplier
+    extends GCMMultiplier
+{
+    /**
+     * Fold blockCount 16 byte blocks from buf, starting at off, into the hash value x. This is
+     * equivalent to XOR-ing each block into x followed by multiplyH(x), one block at a time.
+     *
+     * @param x the current hash value, updated in place.
+     * @param buf the buffer containing the blocks to be hashed.
+     * @param off the offset of the first block in buf.
+     * @param blockCount the number of blocks to hash.
+     */
+    void multiplyBlocksH(byte[] x, byte[] buf, int off, int blockCount);
+}
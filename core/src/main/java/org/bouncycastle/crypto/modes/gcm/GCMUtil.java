@@ -282,6 +282,30 @@ public static void multiply(long[] x, long[] y)
         x[1] = z1;
     }
 
+    /**
+     * Multiply x by y without reducing, XOR-ing the 256-bit product into zz. A sum of such products
+     * only needs a single call to {@link #reduce(long[], long[])} at the end.
+     */
+    public static void multiplyExt(long[] x, long[] y, long[] zz)
+    {
+        long x0 = x[0], x1 = x[1];
+        long y0 = y[0], y1 = y[1];
+        long x0r = Longs.reverse(x0), x1r = Longs.reverse(x1);
+        long y0r = Longs.reverse(y0), y1r = Longs.reverse(y1);
+
+        long h0  = Longs.reverse(implMul64(x0r, y0r));
+        long h1  = implMul64(x0, y0) << 1;
+        long h2  = Longs.reverse(implMul64(x1r, y1r));
+        long h3  = implMul64(x1, y1) << 1;
+        long h4  = Longs.reverse(implMul64(x0r ^ x1r, y0r ^ y1r));
+        long h5  = implMul64(x0 ^ x1, y0 ^ y1) << 1;
+
+        zz[0] ^= h0;
+        zz[1] ^= h1 ^ h0 ^ h2 ^ h4;
+        zz[2] ^= h2 ^ h1 ^ h3 ^ h5;
+        zz[3] ^= h3;
+    }
+
     public static void multiplyP(int[] x)
     {
         int x0 = x[0], x1 = x[1], x2 = x[2], x3 = x[3];
@@ -393,6 +417,21 @@ public static long[] pAsLongs()
         return tmp;
     }
 
+    public static void reduce(long[] zz, long[] z)
+    {
+        long z0 = zz[0], z1 = zz[1], z2 = zz[2], z3 = zz[3];
+
+        // as for multiply(), the low bit of z3 is always zero for (sums of) products from multiplyExt
+        z1 ^= z3 ^ (z3 >>>  1) ^ (z3 >>>  2) ^ (z3 >>>  7);
+        z2 ^=                    (z3 <<  62) ^ (z3 <<  57);
+
+        z0 ^= z2 ^ (z2 >>>  1) ^ (z2 >>>  2) ^ (z2 >>>  7);
+        z1 ^=      (z2 <<  63) ^ (z2 <<  62) ^ (z2 <<  57);
+
+        z[0] = z0;
+        z[1] = z1;
+    }
+
     public static void square(long[] x, long[] z)
     {
         long[] t  = new long[SIZE_LONGS * 2];
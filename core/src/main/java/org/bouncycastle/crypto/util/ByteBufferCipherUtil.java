@@ -0,0 +1,380 @@
+package org.bouncycastle.crypto.util;
+
+import java.nio.ByteBuffer;
+
+import org.bouncycastle.crypto.BufferedBlockCipher;
+import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.OutputLengthException;
+import org.bouncycastle.crypto.StreamCipher;
+import org.bouncycastle.crypto.modes.AEADCipher;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * Utility methods for running the array based cipher APIs over java.nio ByteBuffers.
+ * <p>
+ * Where a buffer is backed by an accessible array the cipher reads from, or writes to, that array
+ * directly, so a pair of heap buffers is processed without any intermediate copy. A direct (or read-only)
+ * buffer is moved through a bounded scratch array instead, one chunk at a time, so memory use does not
+ * grow with the size of the input. On return the input buffer's position is at its limit and the output
+ * buffer's position has been advanced past the bytes written.
+ * </p>
+ */
+public class ByteBufferCipherUtil
+{
+    private static final int CHUNK_SIZE = 4096;
+
+    private ByteBufferCipherUtil()
+    {
+    }
+
+    /**
+     * Pass the remaining bytes of in through a buffered block cipher, writing any output produced to out.
+     *
+     * @param cipher the cipher to use.
+     * @param in     the input data.
+     * @param out    the buffer the output will be written to.
+     * @return the number of bytes written to out.
+     * @throws OutputLengthException if out does not have room for the output.
+     */
+    public static int processBytes(BufferedBlockCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException, IllegalStateException
+    {
+        int len = in.remaining();
+
+        checkOutput(out, cipher.getUpdateOutputSize(len));
+
+        ByteBuffer src = getInput(in, out);
+        byte[] inBuf = src.hasArray() ? null : new byte[Math.min(len, CHUNK_SIZE)];
+        byte[] outBuf = out.hasArray() ? null : new byte[cipher.getUpdateOutputSize(Math.min(len, CHUNK_SIZE))];
+
+        int resultLen = 0;
+        try
+        {
+            while (len > 0)
+            {
+                int chunk = (inBuf != null || outBuf != null) ? Math.min(len, CHUNK_SIZE) : len;
+                int inOff = readInput(src, inBuf, chunk);
+
+                int outLen;
+                if (outBuf == null)
+                {
+                    outLen = cipher.processBytes(getArray(src, inBuf), inOff, chunk, out.array(), out.arrayOffset() + out.position());
+                    out.position(out.position() + outLen);
+                }
+                else
+                {
+                    outBuf = ensureSize(outBuf, cipher.getUpdateOutputSize(chunk));
+                    outLen = cipher.processBytes(getArray(src, inBuf), inOff, chunk, outBuf, 0);
+                    out.put(outBuf, 0, outLen);
+                }
+
+                resultLen += outLen;
+                len -= chunk;
+            }
+        }
+        finally
+        {
+            clear(inBuf);
+            clear(outBuf);
+            if (src != in)
+            {
+                clear(src.array());
+            }
+        }
+
+        return resultLen;
+    }
+
+    /**
+     * Finish the operation of a buffered block cipher, writing any remaining output to out.
+     *
+     * @param cipher the cipher to use.
+     * @param out    the buffer the output will be written to.
+     * @return the number of bytes written to out.
+     * @throws OutputLengthException if out does not have room for the output.
+     * @throws InvalidCipherTextException if padding is expected and not found.
+     */
+    public static int doFinal(BufferedBlockCipher cipher, ByteBuffer out)
+        throws DataLengthException, IllegalStateException, InvalidCipherTextException
+    {
+        int outLen = cipher.getOutputSize(0);
+
+        checkOutput(out, outLen);
+
+        if (out.hasArray())
+        {
+            int resultLen = cipher.doFinal(out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + resultLen);
+            return resultLen;
+        }
+
+        byte[] outBuf = new byte[outLen];
+        try
+        {
+            int resultLen = cipher.doFinal(outBuf, 0);
+            out.put(outBuf, 0, resultLen);
+            return resultLen;
+        }
+        finally
+        {
+            clear(outBuf);
+        }
+    }
+
+    /**
+     * Add the remaining bytes of aad to the associated data of an AEAD cipher.
+     *
+     * @param cipher the cipher to use.
+     * @param aad    the associated data.
+     */
+    public static void processAADBytes(AEADCipher cipher, ByteBuffer aad)
+    {
+        int len = aad.remaining();
+
+        if (aad.hasArray())
+        {
+            cipher.processAADBytes(aad.array(), aad.arrayOffset() + aad.position(), len);
+            aad.position(aad.limit());
+            return;
+        }
+
+        byte[] inBuf = new byte[Math.min(len, CHUNK_SIZE)];
+        try
+        {
+            while (len > 0)
+            {
+                int chunk = Math.min(len, CHUNK_SIZE);
+                aad.get(inBuf, 0, chunk);
+                cipher.processAADBytes(inBuf, 0, chunk);
+                len -= chunk;
+            }
+        }
+        finally
+        {
+            clear(inBuf);
+        }
+    }
+
+    /**
+     * Pass the remaining bytes of in through an AEAD cipher, writing any output produced to out.
+     *
+     * @param cipher the cipher to use.
+     * @param in     the input data.
+     * @param out    the buffer the output will be written to.
+     * @return the number of bytes written to out.
+     * @throws OutputLengthException if out does not have room for the output.
+     */
+    public static int processBytes(AEADCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException
+    {
+        int len = in.remaining();
+
+        checkOutput(out, cipher.getUpdateOutputSize(len));
+
+        ByteBuffer src = getInput(in, out);
+        byte[] inBuf = src.hasArray() ? null : new byte[Math.min(len, CHUNK_SIZE)];
+        byte[] outBuf = out.hasArray() ? null : new byte[cipher.getUpdateOutputSize(Math.min(len, CHUNK_SIZE))];
+
+        int resultLen = 0;
+        try
+        {
+            while (len > 0)
+            {
+                int chunk = (inBuf != null || outBuf != null) ? Math.min(len, CHUNK_SIZE) : len;
+                int inOff = readInput(src, inBuf, chunk);
+
+                int outLen;
+                if (outBuf == null)
+                {
+                    outLen = cipher.processBytes(getArray(src, inBuf), inOff, chunk, out.array(), out.arrayOffset() + out.position());
+                    out.position(out.position() + outLen);
+                }
+                else
+                {
+                    outBuf = ensureSize(outBuf, cipher.getUpdateOutputSize(chunk));
+                    outLen = cipher.processBytes(getArray(src, inBuf), inOff, chunk, outBuf, 0);
+                    out.put(outBuf, 0, outLen);
+                }
+
+                resultLen += outLen;
+                len -= chunk;
+            }
+        }
+        finally
+        {
+            clear(inBuf);
+            clear(outBuf);
+            if (src != in)
+            {
+                clear(src.array());
+            }
+        }
+
+        return resultLen;
+    }
+
+    /**
+     * Finish the operation of an AEAD cipher, writing any remaining output, including the MAC when
+     * encrypting, to out.
+     *
+     * @param cipher the cipher to use.
+     * @param out    the buffer the output will be written to.
+     * @return the number of bytes written to out.
+     * @throws OutputLengthException if out does not have room for the output.
+     * @throws InvalidCipherTextException if the MAC fails to match.
+     */
+    public static int doFinal(AEADCipher cipher, ByteBuffer out)
+        throws IllegalStateException, InvalidCipherTextException
+    {
+        int outLen = cipher.getOutputSize(0);
+
+        checkOutput(out, outLen);
+
+        if (out.hasArray())
+        {
+            int resultLen = cipher.doFinal(out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + resultLen);
+            return resultLen;
+        }
+
+        byte[] outBuf = new byte[outLen];
+        try
+        {
+            int resultLen = cipher.doFinal(outBuf, 0);
+            out.put(outBuf, 0, resultLen);
+            return resultLen;
+        }
+        finally
+        {
+            clear(outBuf);
+        }
+    }
+
+    /**
+     * Pass the remaining bytes of in through a stream cipher, writing the output to out.
+     *
+     * @param cipher the cipher to use.
+     * @param in     the input data.
+     * @param out    the buffer the output will be written to.
+     * @return the number of bytes written to out.
+     * @throws OutputLengthException if out does not have room for the output.
+     */
+    public static int processBytes(StreamCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException
+    {
+        int len = in.remaining();
+
+        checkOutput(out, len);
+
+        ByteBuffer src = getInput(in, out);
+        byte[] inBuf = src.hasArray() ? null : new byte[Math.min(len, CHUNK_SIZE)];
+        byte[] outBuf = out.hasArray() ? null : new byte[Math.min(len, CHUNK_SIZE)];
+
+        int resultLen = 0;
+        try
+        {
+            while (len > 0)
+            {
+                int chunk = (inBuf != null || outBuf != null) ? Math.min(len, CHUNK_SIZE) : len;
+                int inOff = readInput(src, inBuf, chunk);
+
+                int outLen;
+                if (outBuf == null)
+                {
+                    outLen = cipher.processBytes(getArray(src, inBuf), inOff, chunk, out.array(), out.arrayOffset() + out.position());
+                    out.position(out.position() + outLen);
+                }
+                else
+                {
+                    outLen = cipher.processBytes(getArray(src, inBuf), inOff, chunk, outBuf, 0);
+                    out.put(outBuf, 0, outLen);
+                }
+
+                resultLen += outLen;
+                len -= chunk;
+            }
+        }
+        finally
+        {
+            clear(inBuf);
+            clear(outBuf);
+            if (src != in)
+            {
+                clear(src.array());
+            }
+        }
+
+        return resultLen;
+    }
+
+    private static void checkOutput(ByteBuffer out, int outLen)
+    {
+        if (out.remaining() < outLen)
+        {
+            throw new OutputLengthException("output buffer too short");
+        }
+        if (out.isReadOnly())
+        {
+            throw new IllegalArgumentException("output buffer is read-only");
+        }
+    }
+
+    /*
+     * Input that shares its array with an output starting partway into it is copied up front, as the
+     * output would otherwise overwrite input that has not been read yet.
+     */
+    private static ByteBuffer getInput(ByteBuffer in, ByteBuffer out)
+    {
+        if (in.hasArray() && out.hasArray() && in.array() == out.array())
+        {
+            int len = in.remaining();
+            int inOff = in.arrayOffset() + in.position();
+            int outOff = out.arrayOffset() + out.position();
+            if (outOff > inOff && outOff < inOff + len)
+            {
+                byte[] copy = new byte[len];
+                in.get(copy);
+                return ByteBuffer.wrap(copy);
+            }
+        }
+
+        return in;
+    }
+
+    private static int readInput(ByteBuffer in, byte[] inBuf, int chunk)
+    {
+        if (inBuf != null)
+        {
+            in.get(inBuf, 0, chunk);
+            return 0;
+        }
+
+        int inOff = in.arrayOffset() + in.position();
+        in.position(in.position() + chunk);
+        return inOff;
+    }
+
+    private static byte[] getArray(ByteBuffer in, byte[] inBuf)
+    {
+        return inBuf != null ? inBuf : in.array();
+    }
+
+    private static byte[] ensureSize(byte[] buf, int len)
+    {
+        if (buf.length < len)
+        {
+            Arrays.fill(buf, (byte)0);
+            return new byte[len];
+        }
+        return buf;
+    }
+
+    private static void clear(byte[] buf)
+    {
+        if (buf != null)
+        {
+            Arrays.fill(buf, (byte)0);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.bouncycastle.crypto.test;
 
+import java.nio.ByteBuffer;
+
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.DataLengthException;
 import org.bouncycastle.crypto.InvalidCipherTextException;
@@ -7,6 +9,7 @@
 import org.bouncycastle.crypto.modes.AEADBlockCipher;
 import org.bouncycastle.crypto.modes.AEADCipher;
 import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.util.ByteBufferCipherUtil;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
 import org.bouncycastle.util.test.SimpleTestResult;
@@ -184,6 +187,114 @@ private static void checkReset(Test test,
         }
     }
 
+    public static void testByteBuffers(Test test, AEADCipher cipher, AEADParameters params)
+        throws InvalidCipherTextException
+    {
+        // larger than the staging chunk used for direct buffers
+        byte[] plaintext = new byte[10000 + 7];
+        for (int i = 0; i < plaintext.length; i++)
+        {
+            plaintext[i] = (byte)i;
+        }
+        byte[] aad = new byte[5000 + 3];
+        for (int i = 0; i < aad.length; i++)
+        {
+            aad[i] = (byte)(i * 3);
+        }
+
+        for (int mode = 0; mode < 4; mode++)
+        {
+            boolean directIn = (mode & 1) != 0;
+            boolean directOut = (mode & 2) != 0;
+            AEADParameters modeParams = withNonce(params, mode);
+
+            byte[] ciphertext = bufferCrypt(cipher, true, modeParams, aad, plaintext, directIn, directOut);
+
+            cipher.init(false, modeParams);
+            cipher.processAADBytes(aad, 0, aad.length);
+            byte[] output = new byte[cipher.getOutputSize(ciphertext.length)];
+            crypt(cipher, ciphertext, output);
+            if (!Arrays.areEqual(plaintext, output))
+            {
+                fail(test, "ByteBuffer encryption failed (direct in: " + directIn + ", direct out: " + directOut + ")");
+            }
+
+            output = bufferCrypt(cipher, false, modeParams, aad, ciphertext, directIn, directOut);
+            if (!Arrays.areEqual(plaintext, output))
+            {
+                fail(test, "ByteBuffer decryption failed (direct in: " + directIn + ", direct out: " + directOut + ")");
+            }
+        }
+
+        // in-place, with input and output sharing one heap buffer
+        AEADParameters inPlaceParams = withNonce(params, 4);
+        cipher.init(true, inPlaceParams);
+        ByteBuffer buf = ByteBuffer.allocate(cipher.getOutputSize(plaintext.length));
+        buf.put(plaintext).flip();
+        ByteBuffer out = buf.duplicate();
+        out.limit(out.capacity());
+        ByteBufferCipherUtil.processAADBytes(cipher, ByteBuffer.wrap(aad));
+        ByteBufferCipherUtil.processBytes(cipher, buf, out);
+        ByteBufferCipherUtil.doFinal(cipher, out);
+
+        cipher.init(false, inPlaceParams);
+        cipher.processAADBytes(aad, 0, aad.length);
+        byte[] output = new byte[plaintext.length];
+        crypt(cipher, buf.array(), output);
+        if (!Arrays.areEqual(plaintext, output))
+        {
+            fail(test, "in-place ByteBuffer encryption failed");
+        }
+
+        try
+        {
+            cipher.init(true, withNonce(params, 5));
+            ByteBuffer shortOut = ByteBuffer.allocateDirect(cipher.getOutputSize(plaintext.length) - 1);
+            ByteBufferCipherUtil.processBytes(cipher, ByteBuffer.wrap(plaintext), shortOut);
+            ByteBufferCipherUtil.doFinal(cipher, shortOut);
+            fail(test, "short ByteBuffer output not detected");
+        }
+        catch (OutputLengthException e)
+        {
+            // expected
+        }
+    }
+
+    private static AEADParameters withNonce(AEADParameters params, int index)
+    {
+        byte[] nonce = Arrays.clone(params.getNonce());
+        nonce[0] ^= (byte)(index + 1);
+        return new AEADParameters(params.getKey(), params.getMacSize(), nonce);
+    }
+
+    private static byte[] bufferCrypt(AEADCipher cipher, boolean forEncryption, CipherParameters params, byte[] aad,
+                                      byte[] input, boolean directIn, boolean directOut)
+        throws InvalidCipherTextException
+    {
+        cipher.init(forEncryption, params);
+
+        ByteBuffer in = directIn ? ByteBuffer.allocateDirect(input.length) : ByteBuffer.allocate(input.length);
+        in.put(input).flip();
+        int outLen = cipher.getOutputSize(input.length);
+        ByteBuffer out = directOut ? ByteBuffer.allocateDirect(outLen) : ByteBuffer.allocate(outLen);
+        ByteBuffer aadBuf = directIn ? ByteBuffer.allocateDirect(aad.length) : ByteBuffer.allocate(aad.length);
+        aadBuf.put(aad).flip();
+
+        ByteBufferCipherUtil.processAADBytes(cipher, aadBuf);
+        int len = ByteBufferCipherUtil.processBytes(cipher, in, out);
+        len += ByteBufferCipherUtil.doFinal(cipher, out);
+
+        if (in.hasRemaining() || aadBuf.hasRemaining() || out.position() != len)
+        {
+            throw new IllegalStateException("ByteBuffer positions not updated");
+        }
+
+        byte[] result = new byte[len];
+        out.flip();
+        out.get(result);
+        return result;
+    }
+
     private static void crypt(AEADCipher cipher, byte[] plaintext, byte[] output)
         throws InvalidCipherTextException
     {
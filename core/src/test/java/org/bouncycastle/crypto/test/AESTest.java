@@ -7,7 +7,9 @@
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.DefaultBufferedBlockCipher;
 import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.MultiBlockCipher;
 import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.engines.AESLightEngine;
 import org.bouncycastle.crypto.modes.CBCBlockCipher;
 import org.bouncycastle.crypto.modes.CFBBlockCipher;
 import org.bouncycastle.crypto.modes.CTRModeCipher;
@@ -492,6 +494,123 @@ private void ctrFragmentedTest()
         }
     }
 
+    private void multiBlockTest()
+    {
+        multiBlockTest(AESEngine.newInstance(), AESEngine.newInstance());
+        multiBlockTest(new AESLightEngine(), new AESLightEngine());
+    }
+
+    private void multiBlockTest(MultiBlockCipher multi, BlockCipher single)
+    {
+        SecureRandom random = new SecureRandom();
+
+        for (int keySize = 16; keySize <= 32; keySize += 8)
+        {
+            KeyParameter kp = new KeyParameter(new byte[keySize]);
+            random.nextBytes(kp.getKey());
+
+            for (int forEncryption = 0; forEncryption < 2; ++forEncryption)
+            {
+                multi.init(forEncryption != 0, kp);
+                single.init(forEncryption != 0, kp);
+
+                // cover the interleaved path, the trailing single blocks and a mix of both
+                for (int blockCount = 0; blockCount <= 9; ++blockCount)
+                {
+                    byte[] in = new byte[1 + blockCount * 16];
+                    random.nextBytes(in);
+
+                    byte[] expected = new byte[blockCount * 16];
+                    for (int i = 0; i < blockCount; ++i)
+                    {
+                        single.processBlock(in, 1 + i * 16, expected, i * 16);
+                    }
+
+                    byte[] out = new byte[2 + blockCount * 16];
+                    isEquals(blockCount * 16, multi.processBlocks(in, 1, blockCount, out, 2));
+
+                    if (!areEqual(expected, Arrays.copyOfRange(out, 2, out.length)))
+                    {
+                        fail("processBlocks mismatch: " + multi.getAlgorithmName() + " " + blockCount);
+                    }
+
+                    multi.processBlocks(in, 1, blockCount, in, 1);
+
+                    if (!areEqual(expected, Arrays.copyOfRange(in, 1, in.length)))
+                    {
+                        fail("in place processBlocks mismatch: " + multi.getAlgorithmName() + " " + blockCount);
+                    }
+                }
+            }
+        }
+    }
+
+    private void cbcMultiBlockTest()
+    {
+        SecureRandom random = new SecureRandom();
+
+        KeyParameter kp = new KeyParameter(new byte[16]);
+        random.nextBytes(kp.getKey());
+        byte[] iv = new byte[16];
+        random.nextBytes(iv);
+        ParametersWithIV params = new ParametersWithIV(kp, iv);
+
+        BlockCipher single = CBCBlockCipher.newInstance(AESEngine.newInstance());
+        MultiBlockCipher multi = (MultiBlockCipher)CBCBlockCipher.newInstance(AESEngine.newInstance());
+
+        // cover runs shorter and longer than the internal batch, chained across calls
+        int[] counts = { 1, 2, 3, 15, 16, 17, 40 };
+        int total = 0;
+        for (int i = 0; i < counts.length; ++i)
+        {
+            total += counts[i];
+        }
+
+        byte[] ct = new byte[total * 16];
+        random.nextBytes(ct);
+
+        byte[] expected = new byte[ct.length];
+        single.init(false, params);
+        for (int i = 0; i < total; ++i)
+        {
+            single.processBlock(ct, i * 16, expected, i * 16);
+        }
+
+        byte[] out = new byte[ct.length];
+        multi.init(false, params);
+        for (int i = 0, pos = 0; i < counts.length; pos += counts[i++] * 16)
+        {
+            isEquals(counts[i] * 16, multi.processBlocks(ct, pos, counts[i], out, pos));
+        }
+
+        if (!areEqual(expected, out))
+        {
+            fail("CBC processBlocks decryption mismatch");
+        }
+
+        byte[] buf = Arrays.clone(ct);
+        multi.init(false, params);
+        for (int i = 0, pos = 0; i < counts.length; pos += counts[i++] * 16)
+        {
+            multi.processBlocks(buf, pos, counts[i], buf, pos);
+        }
+
+        if (!areEqual(expected, buf))
+        {
+            fail("in place CBC processBlocks decryption mismatch");
+        }
+
+        // output trailing the input in the same array
+        buf = Arrays.concatenate(new byte[16], ct);
+        multi.init(false, params);
+        multi.processBlocks(buf, 16, total, buf, 0);
+
+        if (!areEqual(expected, Arrays.copyOfRange(buf, 0, ct.length)))
+        {
+            fail("overlapping CBC processBlocks decryption mismatch");
+        }
+    }
+
     public void performTest()
         throws Exception
     {
@@ -539,6 +658,8 @@ public void performTest()
         ctrCounterTest();
         ctrFragmentedTest();
         testLastByte();
+        multiBlockTest();
+        cbcMultiBlockTest();
     }
 
     public static void main(
@@ -406,6 +406,7 @@ private void testExceptions() throws InvalidCipherTextException
         }
 
         AEADTestUtil.testTampering(this, c, new AEADParameters(new KeyParameter(new byte[32]), 128, new byte[12]));
+        AEADTestUtil.testByteBuffers(this, c, new AEADParameters(new KeyParameter(new byte[32]), 128, new byte[12]));
 
         byte[] P = Strings.toByteArray("Hello world!");
         byte[] buf = new byte[100];
@@ -7,6 +7,7 @@
 import org.bouncycastle.crypto.engines.ChaChaEngine;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
 import org.bouncycastle.util.test.SimpleTest;
 
@@ -157,8 +158,11 @@ public void performTest()
                   set6v0_0, set6v0_65472, set6v0_65536);
         chachaTest2(new ParametersWithIV(new KeyParameter(Hex.decode("0558ABFE51A4F74A9DF04396E93C8FE23588DB2E81D4277ACD2073C6196CBF12")), Hex.decode("167DE44BB21980E7")),
                   set6v1_0, set6v1_65472, set6v1_65536);
+        bulkTest(new ParametersWithIV(new KeyParameter(Hex.decode("0053A6F94C9FF24598EB3E91E4378ADD3083D6297CCF2275C81B6EC11467BA0D")), Hex.decode("0D74DB42A91077DE")),
+                  set6v0_0, set6v0_65472, set6v0_65536);
         reinitBug();
         skipTest();
+        counterCarryTest();
     }
 
     private void chachaTest1(int rounds, CipherParameters params, String v0, String v192, String v256, String v448)
@@ -243,6 +247,70 @@ private void chachaTest2(CipherParameters params, String v0, String v65472, Stri
         }
     }
 
+    /*
+     * as chachaTest2, but in large calls so the key stream is generated several blocks at a time.
+     */
+    private void bulkTest(CipherParameters params, String v0, String v65472, String v65536)
+    {
+        StreamCipher chaCha = new ChaChaEngine();
+        byte[]       in = new byte[65536 + 64];
+        byte[]       out = new byte[in.length];
+
+        chaCha.init(true, params);
+
+        chaCha.processBytes(in, 0, 7, out, 0);
+        chaCha.processBytes(in, 7, 30000, out, 7);
+        chaCha.processBytes(in, 30007, in.length - 30007, out, 30007);
+
+        if (!areEqual(out, 0, Hex.decode(v0), 0))
+        {
+            mismatch("bulk v0", v0, Arrays.copyOfRange(out, 0, 64));
+        }
+        if (!areEqual(out, 65472, Hex.decode(v65472), 0))
+        {
+            mismatch("bulk v65472", v65472, Arrays.copyOfRange(out, 65472, 65536));
+        }
+        if (!areEqual(out, 65536, Hex.decode(v65536), 0))
+        {
+            mismatch("bulk v65536", v65536, Arrays.copyOfRange(out, 65536, 65600));
+        }
+    }
+
+    /*
+     * the block counter is 64 bits, check a bulk call crossing the carry into the high word.
+     */
+    private void counterCarryTest()
+    {
+        CipherParameters params = new ParametersWithIV(new KeyParameter(Hex.decode("80000000000000000000000000000000")), Hex.decode("0000000000000000"));
+        ChaChaEngine bulk = new ChaChaEngine();
+        ChaChaEngine single = new ChaChaEngine();
+        byte[] in = new byte[1000];
+        byte[] bulkOut = new byte[in.length];
+        byte[] singleOut = new byte[in.length];
+
+        bulk.init(true, params);
+        single.init(true, params);
+
+        long position = (1L << 38) - 5 * 64 - 3;
+        bulk.seekTo(position);
+        single.seekTo(position);
+
+        bulk.processBytes(in, 0, in.length, bulkOut, 0);
+        for (int i = 0; i != in.length; i++)
+        {
+            singleOut[i] = single.returnByte(in[i]);
+        }
+
+        if (!areEqual(bulkOut, singleOut))
+        {
+            fail("counter carry mismatch");
+        }
+        if (bulk.getPosition() != position + in.length)
+        {
+            fail("counter carry position mismatch");
+        }
+    }
+
     private void mismatch(String name, String expected, byte[] found)
     {
         fail("mismatch on " + name, expected, new String(Hex.encode(found)));
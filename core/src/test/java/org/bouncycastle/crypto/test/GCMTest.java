@@ -8,6 +8,7 @@
 import org.bouncycastle.crypto.engines.DESEngine;
 import org.bouncycastle.crypto.modes.GCMBlockCipher;
 import org.bouncycastle.crypto.modes.GCMModeCipher;
+import org.bouncycastle.crypto.modes.gcm.AggregatedGCMMultiplier;
 import org.bouncycastle.crypto.modes.gcm.BasicGCMMultiplier;
 import org.bouncycastle.crypto.modes.gcm.GCMMultiplier;
 import org.bouncycastle.crypto.modes.gcm.Tables4kGCMMultiplier;
@@ -397,6 +398,7 @@ private void testExceptions() throws InvalidCipherTextException
         }
 
         AEADTestUtil.testTampering(this, gcm, new AEADParameters(new KeyParameter(new byte[16]), 128, new byte[16]));
+        AEADTestUtil.testByteBuffers(this, gcm, new AEADParameters(new KeyParameter(new byte[16]), 128, new byte[12]));
 
         byte[] P = Strings.toByteArray("Hello world!");
         byte[] buf = new byte[100];
@@ -460,6 +462,7 @@ private void runTestCase(String[] testVector, int macLength)
         runTestCase(new Tables4kGCMMultiplier(), new Tables4kGCMMultiplier(), testName, K, IV, A, P, C, T);
         runTestCase(new Tables8kGCMMultiplier(), new Tables8kGCMMultiplier(), testName, K, IV, A, P, C, T);
         runTestCase(new Tables64kGCMMultiplier(), new Tables64kGCMMultiplier(), testName, K, IV, A, P, C, T);
+        runTestCase(new AggregatedGCMMultiplier(), new AggregatedGCMMultiplier(), testName, K, IV, A, P, C, T);
     }
 
     private void runTestCase(
@@ -598,6 +601,7 @@ private void randomTests()
         randomTests(srng, new Tables4kGCMMultiplier());
         randomTests(srng, new Tables8kGCMMultiplier());
         randomTests(srng, new Tables64kGCMMultiplier());
+        randomTests(srng, new AggregatedGCMMultiplier());
     }
 
     private void randomTests(SecureRandom srng, GCMMultiplier m)
@@ -116,6 +116,7 @@ public void performTest()
         }
         testSequential();
         testReset();
+        testSplitUpdates();
         rfc7539Test();
     }
 
@@ -223,6 +224,57 @@ private void testSequential()
         }
     }
 
+    private void testSplitUpdates()
+    {
+        SecureRandom random = new SecureRandom();
+
+        // all ones keeps the accumulator near its largest values
+        byte[] k = new byte[32];
+        Arrays.fill(k, (byte)0xff);
+        Poly1305KeyGenerator.clamp(k);
+
+        byte[] m = new byte[300];
+        Arrays.fill(m, (byte)0xff);
+
+        byte[] check = new byte[16];
+        byte[] out = new byte[16];
+
+        Mac poly = new Poly1305();
+        poly.init(new KeyParameter(k));
+
+        for (int len = 0; len <= m.length; len++)
+        {
+            poly.update(m, 0, len);
+            poly.doFinal(check, 0);
+
+            // byte at a time never reaches the multi-block path
+            for (int i = 0; i < len; i++)
+            {
+                poly.update(m[i]);
+            }
+            poly.doFinal(out, 0);
+
+            if (!Arrays.areEqual(check, out))
+            {
+                fail("Mismatched output for single byte updates, length " + len);
+            }
+
+            int pos = 0;
+            while (pos < len)
+            {
+                int chunk = random.nextInt(len - pos) + 1;
+                poly.update(m, pos, chunk);
+                pos += chunk;
+            }
+            poly.doFinal(out, 0);
+
+            if (!Arrays.areEqual(check, out))
+            {
+                fail("Mismatched output for split updates, length " + len);
+            }
+        }
+    }
+
     private void testReset()
     {
         CipherKeyGenerator gen = new Poly1305KeyGenerator();
@@ -195,6 +195,7 @@
             new SparkleTest(),
             new ISAPTest(),
             new ConcatenationKDFTest(),
+            new XTSTest(),
         };
 
     public static void main(String[] args)
@@ -0,0 +1,261 @@
+package org.bouncycastle.crypto.test;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.XTSBlockCipher;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
+import org.bouncycastle.util.encoders.Hex;
+import org.bouncycastle.util.test.SimpleTest;
+
+/**
+ * XTS-AES tests, IEEE Std 1619-2007 vector 2 and results cross-checked against another
+ * implementation for ciphertext stealing and AES-256.
+ */
+public class XTSTest
+    extends SimpleTest
+{
+    private static final XTSBlockCipher.CipherProvider AES_PROVIDER = new XTSBlockCipher.CipherProvider()
+    {
+        public BlockCipher get()
+        {
+            return AESEngine.newInstance();
+        }
+    };
+
+    private static final String KEY_STEAL = "fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0" + "bfbebdbcbbbab9b8b7b6b5b4b3b2b1b0";
+
+    private static final String KEY_256 = "2718281828459045235360287471352662497757247093699959574966967627"
+        + "3141592653589793238462643383279502884197169399375105820974944592";
+
+    private static final String CT_256 =
+          "1c3b3a102f770386e4836c99e370cf9bea00803f5e482357a4ae12d414a3e63b5d31e276f8fe4a8d66b317f9ac683f44"
+        + "680a86ac35adfc3345befecb4bb188fd5776926c49a3095eb108fd1098baec70aaa66999a72a82f27d848b21d4a741b0"
+        + "c5cd4d5fff9dac89aeba122961d03a757123e9870f8acf1000020887891429ca2a3e7a7d7df7b10355165c8b9a6d0a7d"
+        + "e8b062c4500dc4cd120c0f7418dae3d0b5781c34803fa75421c790dfe1de1834f280d7667b327f6c8cd7557e12ac3a0f"
+        + "93ec05c52e0493ef31a12d3d9260f79a289d6a379bc70c50841473d1a8cc81ec583e9645e07b8d9670655ba5bbcfecc6"
+        + "dc3966380ad8fecb17b6ba02469a020a84e18e8f84252070c13e9f1f289be54fbc481457778f616015e1327a02b140f1"
+        + "505eb309326d68378f8374595c849d84f4c333ec4423885143cb47bd71c5edae9be69a2ffeceb1bec9de244fbe15992b"
+        + "11b77c040f12bd8f6a975a44a0f90c29a9abc3d4d893927284c58754cce294529f8614dcd2aba991925fedc4ae74ffac"
+        + "6e333b93eb4aff0479da9a410e4450e0dd7ae4c6e2910900575da401fc07059f645e8b7e9bfdef33943054ff84011493"
+        + "c27b3429eaedb4ed5376441a77ed43851ad77f16f541dfd269d50d6a5f14fb0aab1cbb4c1550be97f7ab4066193c4caa"
+        + "773dad38014bd2092fa755c824bb5e54850c05d3e8e57ebf701b0e323ebb67fac4f36ffda9";
+
+    private final SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "XTS";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        // IEEE 1619 vector 2
+        testVector("11111111111111111111111111111111" + "22222222222222222222222222222222", 0x3333333333L,
+            Hex.decode("4444444444444444444444444444444444444444444444444444444444444444"),
+            Hex.decode("c454185e6a16936e39334038acef838bfb186fff7480adc4289382ecd6d394f0"));
+        testVector(KEY_STEAL, 0x9a78563412L, sequence(19), Hex.decode("0d39809a65c1d55501960b671d4b8b6b95c871"));
+        testVector(KEY_256, 0xff, sequence(517), Hex.decode(CT_256));
+
+        testSectors();
+        testExceptions();
+    }
+
+    private void testVector(String key, long sectorNumber, byte[] pt, byte[] ct)
+        throws Exception
+    {
+        KeyParameter keyParam = new KeyParameter(Hex.decode(key));
+        ParametersWithIV params = new ParametersWithIV(keyParam, tweak(sectorNumber));
+        XTSBlockCipher xts = new XTSBlockCipher(AES_PROVIDER);
+
+        xts.init(true, params);
+        isTrue("encryption failed", Arrays.areEqual(ct, process(xts, pt)));
+        xts.init(false, params);
+        isTrue("decryption failed", Arrays.areEqual(pt, process(xts, ct)));
+
+        // random splits of the input
+        for (int i = 0; i < 10; i++)
+        {
+            xts.init(true, params);
+            isTrue("split encryption failed", Arrays.areEqual(ct, processSplit(xts, pt)));
+            xts.init(false, params);
+            isTrue("split decryption failed", Arrays.areEqual(pt, processSplit(xts, ct)));
+        }
+
+        // in place, with some input already buffered
+        byte[] buf = Arrays.clone(pt);
+        xts.init(true, params);
+        int len = xts.processBytes(buf, 0, 5, buf, 0);
+        len += xts.processBytes(buf, 5, buf.length - 5, buf, len);
+        xts.doFinal(buf, len);
+        isTrue("in place encryption failed", Arrays.areEqual(ct, buf));
+
+        // reuse after doFinal
+        isTrue("reset failed", Arrays.areEqual(ct, process(xts, pt)));
+
+        buf = Arrays.clone(pt);
+        xts.init(true, keyParam);
+        xts.processSector(sectorNumber, buf, 0, buf.length, buf, 0);
+        isTrue("sector encryption failed", Arrays.areEqual(ct, buf));
+        xts.init(false, keyParam);
+        xts.processSector(sectorNumber, buf, 0, buf.length, buf, 0);
+        isTrue("sector decryption failed", Arrays.areEqual(pt, buf));
+    }
+
+    private void testSectors()
+        throws Exception
+    {
+        byte[] key = new byte[64];
+        random.nextBytes(key);
+
+        int sectorSize = 512;
+        byte[] data = new byte[600 * sectorSize + 100];
+        random.nextBytes(data);
+
+        XTSBlockCipher xts = new XTSBlockCipher(AES_PROVIDER);
+        xts.init(true, new KeyParameter(key));
+
+        long firstSector = 0xfffffffffffffff0L;
+        byte[] expected = new byte[data.length];
+        for (int pos = 0; pos < data.length; pos += sectorSize)
+        {
+            xts.processSector(firstSector + pos / sectorSize, data, pos, Math.min(sectorSize, data.length - pos), expected, pos);
+        }
+
+        byte[] ct = new byte[data.length];
+        xts.processSectors(firstSector, sectorSize, data, 0, data.length, ct, 0, null);
+        isTrue("sequential sectors failed", Arrays.areEqual(expected, ct));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            ct = new byte[data.length];
+            xts.processSectors(firstSector, sectorSize, data, 0, data.length, ct, 0, executor);
+            isTrue("parallel sectors failed", Arrays.areEqual(expected, ct));
+
+            xts.init(false, new KeyParameter(key));
+            xts.processSectors(firstSector, sectorSize, ct, 0, ct.length, ct, 0, executor);
+            isTrue("parallel sector decryption failed", Arrays.areEqual(data, ct));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // the same sector through the buffered interface, using its tweak as the IV
+        xts.init(true, new ParametersWithIV(new KeyParameter(key), tweak(firstSector + 3)));
+        byte[] sector = process(xts, Arrays.copyOfRange(data, 3 * sectorSize, 4 * sectorSize));
+        isTrue("sector tweak mismatch", Arrays.areEqual(Arrays.copyOfRange(expected, 3 * sectorSize, 4 * sectorSize), sector));
+    }
+
+    private void testExceptions()
+        throws Exception
+    {
+        XTSBlockCipher xts = new XTSBlockCipher(AES_PROVIDER);
+
+        try
+        {
+            xts.init(true, new KeyParameter(new byte[32]));
+            fail("equal keys accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        byte[] key = Hex.decode(KEY_STEAL);
+        xts.init(true, new ParametersWithIV(new KeyParameter(key), new byte[16]));
+        xts.processBytes(new byte[15], 0, 15, new byte[15], 0);
+        try
+        {
+            xts.doFinal(new byte[15], 0);
+            fail("short data unit accepted");
+        }
+        catch (DataLengthException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            xts.processSectors(0, 512, new byte[512 + 15], 0, 512 + 15, new byte[512 + 15], 0, null);
+            fail("short final sector accepted");
+        }
+        catch (DataLengthException e)
+        {
+            // expected
+        }
+    }
+
+    private byte[] process(XTSBlockCipher xts, byte[] in)
+    {
+        try
+        {
+            byte[] out = new byte[xts.getOutputSize(in.length)];
+            int len = xts.processBytes(in, 0, in.length, out, 0);
+            len += xts.doFinal(out, len);
+            return Arrays.copyOfRange(out, 0, len);
+        }
+        catch (Exception e)
+        {
+            fail("XTS failed: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private byte[] processSplit(XTSBlockCipher xts, byte[] in)
+    {
+        try
+        {
+            byte[] out = new byte[in.length];
+            int inPos = 0, outPos = 0;
+            while (inPos < in.length)
+            {
+                int chunk = random.nextInt(in.length - inPos) + 1;
+                int expectedLen = xts.getUpdateOutputSize(chunk);
+                int outLen = xts.processBytes(in, inPos, chunk, out, outPos);
+                isTrue("update output size wrong", outLen == expectedLen);
+                inPos += chunk;
+                outPos += outLen;
+            }
+            outPos += xts.doFinal(out, outPos);
+            isTrue("output length wrong", outPos == in.length);
+            return out;
+        }
+        catch (Exception e)
+        {
+            fail("XTS failed: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static byte[] tweak(long sectorNumber)
+    {
+        byte[] tweak = new byte[16];
+        Pack.longToLittleEndian(sectorNumber, tweak, 0);
+        return tweak;
+    }
+
+    private static byte[] sequence(int len)
+    {
+        byte[] data = new byte[len];
+        for (int i = 0; i < len; i++)
+        {
+            data[i] = (byte)i;
+        }
+        return data;
+    }
+
+    public static void main(String[] args)
+    {
+        runTest(new XTSTest());
+    }
+}
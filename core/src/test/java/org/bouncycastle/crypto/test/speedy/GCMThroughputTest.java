@@ -0,0 +1,91 @@
+package org.bouncycastle.crypto.test.speedy;
+
+import java.security.SecureRandom;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.modes.GCMModeCipher;
+import org.bouncycastle.crypto.modes.gcm.AggregatedGCMMultiplier;
+import org.bouncycastle.crypto.modes.gcm.BasicGCMMultiplier;
+import org.bouncycastle.crypto.modes.gcm.GCMMultiplier;
+import org.bouncycastle.crypto.modes.gcm.Tables4kGCMMultiplier;
+import org.bouncycastle.crypto.modes.gcm.Tables64kGCMMultiplier;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+/**
+ * Microbenchmark of AES/GCM encryption with each of the GCM multipliers, on TLS record sized
+ * messages (16KB) and on a bulk message (1MB).
+ */
+public class GCMThroughputTest
+{
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final byte[] RECORD_MESSAGE = new byte[16384];
+    private static final byte[] BULK_MESSAGE = new byte[1024 * 1024];
+
+    static
+    {
+        RANDOM.nextBytes(RECORD_MESSAGE);
+        RANDOM.nextBytes(BULK_MESSAGE);
+    }
+
+    private static final int RECORD_MESSAGE_COUNT = 20000;
+    private static final int BULK_MESSAGE_COUNT = 300;
+
+    public static void main(String[] args)
+        throws InvalidCipherTextException
+    {
+        testMultiplier("Basic", new BasicGCMMultiplier());
+        testMultiplier("Tables4k", new Tables4kGCMMultiplier());
+        testMultiplier("Tables64k", new Tables64kGCMMultiplier());
+        testMultiplier("Aggregated", new AggregatedGCMMultiplier());
+    }
+
+    private static void testMultiplier(String name, GCMMultiplier m)
+        throws InvalidCipherTextException
+    {
+        System.out.println("=========================");
+
+        GCMModeCipher cipher = GCMBlockCipher.newInstance(AESEngine.newInstance(), m);
+        byte[] key = new byte[16];
+        RANDOM.nextBytes(key);
+        KeyParameter keyParam = new KeyParameter(key);
+
+        // warm up
+        testCipher(cipher, keyParam, RECORD_MESSAGE, RECORD_MESSAGE_COUNT);
+        testCipher(cipher, keyParam, BULK_MESSAGE, BULK_MESSAGE_COUNT / 3);
+
+        long record = testCipher(cipher, keyParam, RECORD_MESSAGE, RECORD_MESSAGE_COUNT);
+        long bulk = testCipher(cipher, keyParam, BULK_MESSAGE, BULK_MESSAGE_COUNT);
+
+        System.out.println(name + " 16KB messages: " + megabytesPerSecond(RECORD_MESSAGE.length, RECORD_MESSAGE_COUNT, record) + " MB/s");
+        System.out.println(name + " 1MB messages:  " + megabytesPerSecond(BULK_MESSAGE.length, BULK_MESSAGE_COUNT, bulk) + " MB/s");
+    }
+
+    private static long megabytesPerSecond(int messageSize, int count, long nanos)
+    {
+        return (long)((double)messageSize * count / nanos * 1000000000 / (1024 * 1024));
+    }
+
+    private static long testCipher(GCMModeCipher cipher, KeyParameter key, byte[] message, int count)
+        throws InvalidCipherTextException
+    {
+        byte[] nonce = new byte[12];
+        byte[] out = new byte[message.length + 16];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+        {
+            nonce[0] = (byte)i;
+            nonce[1] = (byte)(i >> 8);
+            nonce[2] = (byte)(i >> 16);
+
+            cipher.init(true, new AEADParameters(key, 128, nonce));
+            int len = cipher.processBytes(message, 0, message.length, out, 0);
+            cipher.doFinal(out, len);
+        }
+        return System.nanoTime() - start;
+    }
+}
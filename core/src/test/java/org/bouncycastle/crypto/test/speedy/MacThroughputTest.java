@@ -18,6 +18,7 @@
 import org.bouncycastle.crypto.modes.GCMBlockCipher;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.util.Arrays;
 
 /**
  * Microbenchmark of MACs on short, medium, long messages, with optional object creation cost.
@@ -33,16 +34,19 @@
     private static final byte[] SHORT_MESSAGE = new byte[16];
     private static final byte[] MEDIUM_MESSAGE = new byte[256];
     private static final byte[] LONG_MESSAGE = new byte[8192];
+    private static final byte[] RECORD_MESSAGE = new byte[16384];
     static
     {
         RANDOM.nextBytes(SHORT_MESSAGE);
         RANDOM.nextBytes(MEDIUM_MESSAGE);
         RANDOM.nextBytes(LONG_MESSAGE);
+        RANDOM.nextBytes(RECORD_MESSAGE);
     }
 
     private static final int SHORT_MESSAGE_COUNT = 20000000;
     private static final int MEDIUM_MESSAGE_COUNT = 2200000;
     private static final int LONG_MESSAGE_COUNT = 80000;
+    private static final int RECORD_MESSAGE_COUNT = 40000;
 
     static
     {
@@ -56,6 +60,8 @@ private static KeyParameter generatePoly1305Key()
 
     public static void main(String[] args)
     {
+        checkPoly1305();
+
         testMac(new HMac(new SHA1Digest()), new KeyParameter(generateNonce(20)), 3);
         testMac(new SkeinMac(SkeinMac.SKEIN_512, 128), new KeyParameter(generateNonce(64)), 2);
         testMac(new SipHash(), new KeyParameter(generateNonce(16)), 1);
@@ -98,6 +104,51 @@ private static void testMac(Mac mac, CipherParameters params, int rateFactor)
         // rateFactor));
         test("Long", mac, params, false, LONG_MESSAGE, adjust(LONG_MESSAGE_COUNT, rateFactor));
         // test("Long", mac, params, true, LONG_MESSAGE, adjust(LONG_MESSAGE_COUNT, rateFactor));
+        test("Record", mac, params, false, RECORD_MESSAGE, adjust(RECORD_MESSAGE_COUNT, rateFactor));
+    }
+
+    /**
+     * Check the multi-block Poly1305 path against the reference implementation before timing it, for
+     * every message length up to a TLS record, fed both in one call and in uneven pieces.
+     */
+    private static void checkPoly1305()
+    {
+        // the reference implementation takes r from the second half of the key, so use r for both halves
+        byte[] r = Arrays.copyOfRange(generatePoly1305Key().getKey(), 0, 16);
+        CipherParameters params = new ParametersWithIV(new KeyParameter(Arrays.concatenate(r, r)), generateNonce(16));
+
+        Mac mac = new Poly1305(new NullEngine(16));
+        Mac ref = new Poly1305Reference(new NullEngine(16));
+        mac.init(params);
+        ref.init(params);
+
+        byte[] expected = new byte[16];
+        byte[] actual = new byte[16];
+
+        for (int len = 0; len <= RECORD_MESSAGE.length; len += 1 + (len >>> 6))
+        {
+            ref.update(RECORD_MESSAGE, 0, len);
+            ref.doFinal(expected, 0);
+
+            mac.update(RECORD_MESSAGE, 0, len);
+            mac.doFinal(actual, 0);
+            if (!Arrays.areEqual(expected, actual))
+            {
+                throw new IllegalStateException("Poly1305 mismatch for length " + len);
+            }
+
+            for (int pos = 0; pos < len; )
+            {
+                int chunk = Math.min(len - pos, 1 + RANDOM.nextInt(200));
+                mac.update(RECORD_MESSAGE, pos, chunk);
+                pos += chunk;
+            }
+            mac.doFinal(actual, 0);
+            if (!Arrays.areEqual(expected, actual))
+            {
+                throw new IllegalStateException("Poly1305 mismatch for split updates of length " + len);
+            }
+        }
     }
 
     private static int adjust(int iterationCount, int rateFactor)
@@ -6,7 +6,10 @@
 import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.engines.AESEngine;
 import org.bouncycastle.crypto.engines.ThreefishEngine;
+import org.bouncycastle.crypto.modes.CTRModeCipher;
+import org.bouncycastle.crypto.modes.SICBlockCipher;
 import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.bouncycastle.crypto.params.TweakableBlockCipherParameters;
 import org.bouncycastle.util.encoders.Hex;
 
@@ -39,6 +42,7 @@ public static void main(String[] args)
 //        speedTestCipher(new ThreefishEngine(ThreefishEngine.BLOCKSIZE_1024), input);
 //        speedTestCipher(new ThreefishReferenceEngine(), input);
         speedTestCipher(AESEngine.newInstance(), input);
+        speedTestCTR(SICBlockCipher.newInstance(AESEngine.newInstance()), input);
 //        speedTestCipher(new TwofishEngine(), input);
 //        speedTestCipher(new BlowfishEngine(), input);
     }
@@ -180,6 +184,63 @@ private static void speedTestCipherForMode(String mode, BlockCipher cipher, byte
         System.out.println(cipher.getAlgorithmName() + " Average speed:    " + CLOCK_SPEED / (double)(mbPerSecond * (1024 * 1024)) + " c/b");
     }
 
+    private static void speedTestCTR(CTRModeCipher cipher, byte[] input)
+        throws InterruptedException
+    {
+        byte[] key = new byte[16];
+        byte[] iv = new byte[cipher.getBlockSize()];
+        rand.nextBytes(key);
+        rand.nextBytes(iv);
+
+        cipher.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+
+        // single block calls, as seen by callers of BlockCipher.processBlock()
+        speedTestCipherForMode("encrypt (processBlock)", cipher, input);
+
+        System.out.println("======");
+        System.out.println("Testing " + cipher.getAlgorithmName() + " encrypt (processBlocks)");
+
+        byte[] out = new byte[input.length];
+        int blockCount = input.length / cipher.getBlockSize();
+
+        long warmup = testCTRBlocks(cipher, input, blockCount, out);
+        System.out.println("Warmup run 1 in " + (warmup / 1000000) + "ms");
+        Thread.sleep(100);
+        warmup = testCTRBlocks(cipher, input, blockCount, out);
+        System.out.println("Warmup run 2 in " + (warmup / 1000000) + "ms");
+
+        System.gc();
+        Thread.sleep(500);
+
+        long total = 0;
+        for (int i = 0; i < RUNS; i++)
+        {
+            total += testCTRBlocks(cipher, input, blockCount, out);
+        }
+        long averageRuntime = total / RUNS;
+        System.out.println(cipher.getAlgorithmName() + " Average run time: " + averageRuntime / 1000000 + "ms");
+        final long mbPerSecond = (long)((double)DATA_SIZE / averageRuntime * 1000000000 / (1024 * 1024));
+        System.out.println(cipher.getAlgorithmName() + " Average speed:    " + mbPerSecond + " MB/s");
+    }
+
+    private static long testCTRBlocks(CTRModeCipher cipher, byte[] input, int blockCount, byte[] out)
+    {
+        cipher.reset();
+
+        long start = System.nanoTime();
+
+        // feed the cipher in 16KB chunks, roughly what a TLS record or stream buffer would hand us
+        int chunkBlocks = 1024;
+        for (int i = 0; i < blockCount; i += chunkBlocks)
+        {
+            int count = Math.min(chunkBlocks, blockCount - i);
+            int off = i * cipher.getBlockSize();
+            cipher.processBlocks(input, off, count, out, off);
+        }
+
+        return System.nanoTime() - start;
+    }
+
     private static long testCipher(BlockCipher cipher, byte[] input)
     {
         long start = System.nanoTime();
@@ -0,0 +1,272 @@
+package org.bouncycastle.cert;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+
+/**
+ * A compact, read-only index of the serial numbers revoked by a CRL, as produced by
+ * {@link X509CRLStreamParser#buildSerialIndex()}.
+ * <p>
+ * The index holds the serial numbers as packed byte encodings, with a single sorted array of hash/position
+ * pairs for lookup, so checking a serial number is a binary search and the memory used is a small fraction of
+ * that needed for the CRL's entries as ASN.1 objects. For indirect CRLs the certificate issuer each entry applies
+ * to is tracked as well.
+ * </p>
+ */
+public class X509CRLSerialIndex
+{
+    private final X500Name crlIssuer;
+    private final long[] index;
+    private final byte[] serials;
+    private final int[] serialOffsets;
+    private final int[] issuerPositions;
+    private final X500Name[] issuers;
+
+    private X509CRLSerialIndex(X500Name crlIssuer, long[] index, byte[] serials, int[] serialOffsets,
+        int[] issuerPositions, X500Name[] issuers)
+    {
+        this.crlIssuer = crlIssuer;
+        this.index = index;
+        this.serials = serials;
+        this.serialOffsets = serialOffsets;
+        this.issuerPositions = issuerPositions;
+        this.issuers = issuers;
+    }
+
+    /**
+     * Return the number of entries in the index.
+     *
+     * @return the number of revoked certificate entries.
+     */
+    public int size()
+    {
+        return index.length;
+    }
+
+    /**
+     * Return whether the CRL has an entry for the passed in serial number, for any certificate issuer.
+     *
+     * @param serialNumber the serial number to look for.
+     * @return true if the serial number is on the CRL, false otherwise.
+     */
+    public boolean isRevoked(BigInteger serialNumber)
+    {
+        return find(serialNumber, null) >= 0;
+    }
+
+    /**
+     * Return whether the CRL has an entry for the passed in serial number that applies to certificates from
+     * the passed in issuer. Unless the CRL is indirect, this can only be the case if the issuer is the CRL issuer.
+     *
+     * @param certificateIssuer the issuer of the certificate being checked.
+     * @param serialNumber the serial number of the certificate being checked.
+     * @return true if the certificate is on the CRL, false otherwise.
+     */
+    public boolean isRevoked(X500Name certificateIssuer, BigInteger serialNumber)
+    {
+        return find(serialNumber, certificateIssuer) >= 0;
+    }
+
+    private int find(BigInteger serialNumber, X500Name certificateIssuer)
+    {
+        long hash = serialNumber.hashCode();
+        byte[] encoding = null;
+
+        for (int i = lowerBound(hash << 32); i < index.length && (index[i] >> 32) == hash; ++i)
+        {
+            int pos = (int)index[i];
+
+            if (encoding == null)
+            {
+                encoding = serialNumber.toByteArray();
+            }
+            if (!isSerialAt(pos, encoding))
+            {
+                continue;
+            }
+
+            if (certificateIssuer == null || certificateIssuer.equals(getCertificateIssuer(pos)))
+            {
+                return pos;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isSerialAt(int pos, byte[] encoding)
+    {
+        int off = serialOffsets[pos], len = serialOffsets[pos + 1] - off;
+        if (len != encoding.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < len; ++i)
+        {
+            if (serials[off + i] != encoding[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private X500Name getCertificateIssuer(int pos)
+    {
+        int i = Arrays.binarySearch(issuerPositions, pos);
+        if (i < 0)
+        {
+            i = -(i + 1) - 1;
+        }
+
+        return i < 0 ? crlIssuer : issuers[i];
+    }
+
+    private int lowerBound(long key)
+    {
+        int lo = 0, hi = index.length;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (index[mid] < key)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Accumulates CRL entries, in CRL order, for an index.
+     */
+    static class Builder
+    {
+        private final X500Name crlIssuer;
+
+        private long[] index = new long[64];
+        private byte[] serials = new byte[64 * 16];
+        private int[] serialOffsets = new int[65];
+        private int count = 0;
+
+        private int[] issuerPositions = new int[0];
+        private X500Name[] issuers = new X500Name[0];
+        private int issuerCount = 0;
+        private X500Name currentIssuer;
+
+        Builder(X500Name crlIssuer)
+        {
+            this.crlIssuer = crlIssuer;
+            this.currentIssuer = crlIssuer;
+        }
+
+        void addEntry(X509CRLEntryHolder entry)
+        {
+            BigInteger serialNumber = entry.getSerialNumber();
+            byte[] encoding = serialNumber.toByteArray();
+
+            if (count == index.length)
+            {
+                index = copyOf(index, count * 2);
+                serialOffsets = copyOf(serialOffsets, count * 2 + 1);
+            }
+
+            int off = serialOffsets[count];
+            if (off + encoding.length > serials.length)
+            {
+                serials = copyOf(serials, Math.max(serials.length * 2, off + encoding.length));
+            }
+            System.arraycopy(encoding, 0, serials, off, encoding.length);
+            serialOffsets[count + 1] = off + encoding.length;
+
+            index[count] = ((long)serialNumber.hashCode() << 32) | count;
+
+            X500Name issuer = getDirectoryName(entry.getCertificateIssuer());
+            if (issuer == null ? currentIssuer != null : !issuer.equals(currentIssuer))
+            {
+                if (issuerCount == issuerPositions.length)
+                {
+                    int newLength = Math.max(4, issuerCount * 2);
+                    issuerPositions = copyOf(issuerPositions, newLength);
+                    X500Name[] tmp = new X500Name[newLength];
+                    System.arraycopy(issuers, 0, tmp, 0, issuerCount);
+                    issuers = tmp;
+                }
+
+                issuerPositions[issuerCount] = count;
+                issuers[issuerCount] = issuer;
+                ++issuerCount;
+
+                currentIssuer = issuer;
+            }
+
+            ++count;
+        }
+
+        /**
+         * @param isIndirect whether the CRL turned out to be indirect - certificate issuer entry extensions
+         * are ignored if not.
+         */
+        X509CRLSerialIndex build(boolean isIndirect)
+        {
+            long[] sortedIndex = copyOf(index, count);
+
+            // positions are the low bits, so entries with equal hashes stay in CRL order
+            Arrays.sort(sortedIndex);
+
+            int numIssuers = isIndirect ? issuerCount : 0;
+            X500Name[] issuerNames = new X500Name[numIssuers];
+            System.arraycopy(issuers, 0, issuerNames, 0, numIssuers);
+
+            return new X509CRLSerialIndex(crlIssuer, sortedIndex, copyOf(serials, serialOffsets[count]),
+                copyOf(serialOffsets, count + 1), copyOf(issuerPositions, numIssuers), issuerNames);
+        }
+
+        private static X500Name getDirectoryName(GeneralNames names)
+        {
+            if (names != null)
+            {
+                GeneralName[] generalNames = names.getNames();
+                for (int i = 0; i != generalNames.length; i++)
+                {
+                    if (generalNames[i].getTagNo() == GeneralName.directoryName)
+                    {
+                        return X500Name.getInstance(generalNames[i].getName());
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        private static long[] copyOf(long[] data, int newLength)
+        {
+            long[] tmp = new long[newLength];
+            System.arraycopy(data, 0, tmp, 0, Math.min(data.length, newLength));
+            return tmp;
+        }
+
+        private static int[] copyOf(int[] data, int newLength)
+        {
+            int[] tmp = new int[newLength];
+            System.arraycopy(data, 0, tmp, 0, Math.min(data.length, newLength));
+            return tmp;
+        }
+
+        private static byte[] copyOf(byte[] data, int newLength)
+        {
+            byte[] tmp = new byte[newLength];
+            System.arraycopy(data, 0, tmp, 0, Math.min(data.length, newLength));
+            return tmp;
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package org.bouncycastle.cert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1BitString;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1SequenceParser;
+import org.bouncycastle.asn1.ASN1StreamParser;
+import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.ASN1UTCTime;
+import org.bouncycastle.asn1.InMemoryRepresentable;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
+import org.bouncycastle.asn1.x509.TBSCertList;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.operator.ContentVerifier;
+import org.bouncycastle.operator.ContentVerifierProvider;
+
+/**
+ * A streaming parser for X.509 CRLs, for CRLs too large to hold in memory as a {@link X509CRLHolder}.
+ * <p>
+ * The fields preceding the revoked certificates are read when the parser is created, and the entries are then
+ * returned one at a time by {@link #readEntry()}, so only the entry currently being processed is held in memory.
+ * If a {@link ContentVerifierProvider} is passed in, the encoding of the TBSCertList is written to a
+ * {@link ContentVerifier} as it is read, so {@link #isSignatureValid()} does not need a second pass over the data.
+ * As the signature is calculated over the encoding as received, the CRL must be DER encoded.
+ * </p>
+ * <p>
+ * Note: as the CRL extensions follow the revoked certificates, whether the CRL is indirect is not known until all
+ * the entries have been read. Entries are returned as if the CRL was indirect, so the certificate issuer of an
+ * entry in a CRL that is not indirect should be ignored unless {@link #isIndirect()} turns out to be true.
+ * </p>
+ */
+public class X509CRLStreamParser
+{
+    private final TeeInputStream in;
+    private final ASN1SequenceParser certList;
+    private final ASN1SequenceParser tbsCertList;
+    private final ContentVerifier verifier;
+
+    private final ASN1Integer version;
+    private final AlgorithmIdentifier signature;
+    private final X500Name issuer;
+    private final Time thisUpdate;
+    private final Time nextUpdate;
+
+    private ASN1SequenceParser revokedCertificates;
+    private ASN1Encodable afterRevoked;
+    private GeneralNames currentCA;
+
+    private boolean isFinished = false;
+    private Extensions extensions;
+    private boolean isIndirect;
+    private AlgorithmIdentifier signatureAlgorithm;
+    private ASN1BitString signatureValue;
+
+    /**
+     * Create a parser for the CRL in the passed in stream, without signature verification.
+     *
+     * @param crlStream DER encoded InputStream of the CRL.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public X509CRLStreamParser(InputStream crlStream)
+        throws IOException
+    {
+        this(crlStream, null);
+    }
+
+    /**
+     * Create a parser for the CRL in the passed in stream, verifying the signature with a verifier from the passed
+     * in provider as the CRL is read.
+     *
+     * @param crlStream DER encoded InputStream of the CRL.
+     * @param verifierProvider a provider of a verifier for the CRL's signature, null if no verification is required.
+     * @throws IOException in the event of corrupted data, an incorrect structure, or if a verifier for the CRL's
+     * signature algorithm cannot be created.
+     */
+    public X509CRLStreamParser(InputStream crlStream, ContentVerifierProvider verifierProvider)
+        throws IOException
+    {
+        this.in = new TeeInputStream(crlStream);
+
+        try
+        {
+            ASN1Encodable obj = new ASN1StreamParser(in).readObject();
+            if (obj == null)
+            {
+                throw new IOException("no content found");
+            }
+
+            this.certList = (ASN1SequenceParser)obj;
+
+            in.startCapture();
+
+            this.tbsCertList = (ASN1SequenceParser)certList.readObject();
+
+            obj = readLoaded(tbsCertList);
+            if (obj instanceof ASN1Integer)
+            {
+                this.version = (ASN1Integer)obj;
+                obj = readLoaded(tbsCertList);
+            }
+            else
+            {
+                this.version = null;
+            }
+
+            this.signature = AlgorithmIdentifier.getInstance(obj);
+
+            if (verifierProvider != null)
+            {
+                try
+                {
+                    this.verifier = verifierProvider.get(signature);
+                }
+                catch (Exception e)
+                {
+                    throw new CertIOException("unable to create verifier: " + e.getMessage(), e);
+                }
+
+                in.captureTo(verifier.getOutputStream());
+            }
+            else
+            {
+                this.verifier = null;
+
+                in.stopCapture();
+            }
+
+            this.issuer = X500Name.getInstance(readLoaded(tbsCertList));
+            this.thisUpdate = Time.getInstance(readLoaded(tbsCertList));
+
+            obj = tbsCertList.readObject();
+            if (obj instanceof ASN1UTCTime || obj instanceof ASN1GeneralizedTime)
+            {
+                this.nextUpdate = Time.getInstance(obj);
+                obj = tbsCertList.readObject();
+            }
+            else
+            {
+                this.nextUpdate = null;
+            }
+
+            if (obj instanceof ASN1SequenceParser)
+            {
+                this.revokedCertificates = (ASN1SequenceParser)obj;
+            }
+            else
+            {
+                this.afterRevoked = obj;
+            }
+
+            this.currentCA = new GeneralNames(new GeneralName(issuer));
+        }
+        catch (ClassCastException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+    }
+
+    public int getVersionNumber()
+    {
+        return version == null ? 1 : version.intValueExact() + 1;
+    }
+
+    public X500Name getIssuer()
+    {
+        return issuer;
+    }
+
+    public Date getThisUpdate()
+    {
+        return thisUpdate.getDate();
+    }
+
+    public Date getNextUpdate()
+    {
+        if (nextUpdate != null)
+        {
+            return nextUpdate.getDate();
+        }
+
+        return null;
+    }
+
+    /**
+     * Read the next revoked certificate entry from the CRL.
+     *
+     * @return the next entry, or null if there are no more entries.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public X509CRLEntryHolder readEntry()
+        throws IOException
+    {
+        try
+        {
+            if (revokedCertificates != null)
+            {
+                ASN1Encodable obj = revokedCertificates.readObject();
+                if (obj != null)
+                {
+                    X509CRLEntryHolder entry = new X509CRLEntryHolder(
+                        TBSCertList.CRLEntry.getInstance(load(obj)), true, currentCA);
+
+                    currentCA = entry.getCertificateIssuer();
+
+                    return entry;
+                }
+
+                revokedCertificates = null;
+                afterRevoked = tbsCertList.readObject();
+            }
+
+            finish();
+
+            return null;
+        }
+        catch (ClassCastException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the remaining revoked certificate entries from the CRL into a compact index of their serial numbers.
+     * Along with the CRL extensions, the index is all that is kept of the entries.
+     *
+     * @return an index of the serial numbers of the entries not already read with {@link #readEntry()}.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public X509CRLSerialIndex buildSerialIndex()
+        throws IOException
+    {
+        X509CRLSerialIndex.Builder builder = new X509CRLSerialIndex.Builder(issuer);
+
+        X509CRLEntryHolder entry;
+        while ((entry = readEntry()) != null)
+        {
+            builder.addEntry(entry);
+        }
+
+        return builder.build(isIndirect);
+    }
+
+    /**
+     * Return the CRL extensions. Only available once all the entries have been read.
+     *
+     * @return the CRL extensions, null if there are none.
+     */
+    public Extensions getExtensions()
+    {
+        checkFinished();
+
+        return extensions;
+    }
+
+    /**
+     * Return whether the CRL is indirect. Only available once all the entries have been read.
+     *
+     * @return true if the CRL has an issuing distribution point marking it as indirect, false otherwise.
+     */
+    public boolean isIndirect()
+    {
+        checkFinished();
+
+        return isIndirect;
+    }
+
+    /**
+     * Return the outer signature algorithm of the CRL. Only available once all the entries have been read.
+     *
+     * @return the signature algorithm identifier.
+     */
+    public AlgorithmIdentifier getSignatureAlgorithm()
+    {
+        checkFinished();
+
+        return signatureAlgorithm;
+    }
+
+    /**
+     * Validate the signature on the CRL, reading any entries that remain.
+     *
+     * @return true if the signature is valid, false otherwise.
+     * @throws CertException if the signature cannot be processed or is inappropriate.
+     */
+    public boolean isSignatureValid()
+        throws CertException
+    {
+        if (verifier == null)
+        {
+            throw new IllegalStateException("no verifier provider was passed to the parser");
+        }
+
+        try
+        {
+            while (readEntry() != null)
+            {
+                // drain the remaining entries through the verifier
+            }
+        }
+        catch (IOException e)
+        {
+            throw new CertException("unable to process signature: " + e.getMessage(), e);
+        }
+
+        if (!CertUtils.isAlgIdEqual(signature, signatureAlgorithm))
+        {
+            throw new CertException("signature invalid - algorithm identifier mismatch");
+        }
+
+        return verifier.verify(signatureValue.getOctets());
+    }
+
+    private void finish()
+        throws IOException
+    {
+        if (isFinished)
+        {
+            return;
+        }
+
+        if (afterRevoked != null)
+        {
+            extensions = Extensions.getInstance(ASN1Sequence.getInstance((ASN1TaggedObject)load(afterRevoked), true));
+
+            if (tbsCertList.readObject() != null)
+            {
+                throw new CertIOException("malformed data: unexpected data after CRL extensions");
+            }
+
+            afterRevoked = null;
+        }
+
+        in.stopCapture();
+
+        if (verifier != null)
+        {
+            verifier.getOutputStream().close();
+        }
+
+        signatureAlgorithm = AlgorithmIdentifier.getInstance(readLoaded(certList));
+        signatureValue = ASN1BitString.getInstance(readLoaded(certList));
+
+        Extension idp = extensions == null ? null : extensions.getExtension(Extension.issuingDistributionPoint);
+        isIndirect = idp != null && IssuingDistributionPoint.getInstance(idp.getParsedValue()).isIndirectCRL();
+
+        isFinished = true;
+    }
+
+    private void checkFinished()
+    {
+        if (!isFinished)
+        {
+            throw new IllegalStateException("CRL entries have not all been read");
+        }
+    }
+
+    private static ASN1Encodable readLoaded(ASN1SequenceParser parser)
+        throws IOException
+    {
+        ASN1Encodable obj = parser.readObject();
+        if (obj == null)
+        {
+            throw new CertIOException("malformed data: CRL structure truncated");
+        }
+
+        return load(obj);
+    }
+
+    private static ASN1Encodable load(ASN1Encodable obj)
+        throws IOException
+    {
+        if (obj instanceof InMemoryRepresentable)
+        {
+            return ((InMemoryRepresentable)obj).getLoadedObject();
+        }
+
+        return obj;
+    }
+
+    /**
+     * Passes the bytes read through to an output stream while capturing, buffering them until the output stream
+     * is known.
+     */
+    private static class TeeInputStream
+        extends FilterInputStream
+    {
+        private ByteArrayOutputStream pending;
+        private OutputStream out;
+
+        TeeInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        void startCapture()
+        {
+            pending = new ByteArrayOutputStream();
+            out = pending;
+        }
+
+        void captureTo(OutputStream out)
+            throws IOException
+        {
+            pending.writeTo(out);
+            pending = null;
+            this.out = out;
+        }
+
+        void stopCapture()
+        {
+            pending = null;
+            out = null;
+        }
+
+        public int read()
+            throws IOException
+        {
+            int b = in.read();
+            if (b >= 0 && out != null)
+            {
+                out.write(b);
+            }
+            return b;
+        }
+
+        public int read(byte[] buf, int off, int len)
+            throws IOException
+        {
+            int count = in.read(buf, off, len);
+            if (count > 0 && out != null)
+            {
+                out.write(buf, off, count);
+            }
+            return count;
+        }
+
+        public long skip(long n)
+            throws IOException
+        {
+            byte[] buf = new byte[(int)Math.min(n, 4096)];
+            long total = 0;
+            while (total < n)
+            {
+                int count = read(buf, 0, (int)Math.min(n - total, buf.length));
+                if (count < 0)
+                {
+                    break;
+                }
+                total += count;
+            }
+            return total;
+        }
+
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.bouncycastle.cert.selector;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.util.Iterable;
+import org.bouncycastle.util.Selector;
+import org.bouncycastle.util.Store;
+
+/**
+ * A store of X.509 certificate holders, indexed by issuer and serial number, subject key identifier, and
+ * subject.
+ * <p>
+ * Lookups using an {@link X509CertificateHolderSelector} are answered from the indexes, only checking the
+ * certificates that share the selector's serial number or subject key identifier. Other selectors fall back to
+ * a scan of the store. The contents are copied when the store is created, and results
+ * are returned in collection order.
+ * </p>
+ */
+public class IndexedCertificateHolderStore
+    implements Store<X509CertificateHolder>, Iterable<X509CertificateHolder>
+{
+    private final List<X509CertificateHolder> certificates;
+    private final Map<BigInteger, List<X509CertificateHolder>> bySerialNumber = new HashMap<BigInteger, List<X509CertificateHolder>>();
+    private final Map<ASN1OctetString, List<X509CertificateHolder>> bySubjectKeyIdentifier = new HashMap<ASN1OctetString, List<X509CertificateHolder>>();
+    private final Map<X500Name, List<X509CertificateHolder>> bySubject = new HashMap<X500Name, List<X509CertificateHolder>>();
+
+    /**
+     * Basic constructor.
+     *
+     * @param certificates initial contents for the store, this is copied.
+     */
+    public IndexedCertificateHolderStore(Collection<X509CertificateHolder> certificates)
+    {
+        this.certificates = new ArrayList<X509CertificateHolder>(certificates);
+
+        for (Iterator<X509CertificateHolder> it = this.certificates.iterator(); it.hasNext();)
+        {
+            X509CertificateHolder cert = it.next();
+
+            addToIndex(bySerialNumber, cert.getSerialNumber(), cert);
+            addToIndex(bySubject, cert.getSubject(), cert);
+
+            byte[] subjectKeyId = getSubjectKeyIdentifier(cert);
+            if (subjectKeyId != null)
+            {
+                addToIndex(bySubjectKeyIdentifier, new DEROctetString(subjectKeyId), cert);
+            }
+        }
+    }
+
+    /**
+     * Return the matches in the store for the passed in selector.
+     *
+     * @param selector the selector to match against, null returns all certificates.
+     * @return a possibly empty collection of matching certificate holders.
+     */
+    public Collection<X509CertificateHolder> getMatches(Selector<X509CertificateHolder> selector)
+    {
+        if (selector == null)
+        {
+            return new ArrayList<X509CertificateHolder>(certificates);
+        }
+
+        List<X509CertificateHolder> matches = new ArrayList<X509CertificateHolder>();
+        for (Iterator<X509CertificateHolder> it = getCandidates(selector).iterator(); it.hasNext();)
+        {
+            X509CertificateHolder cert = it.next();
+
+            if (selector.match(cert))
+            {
+                matches.add(cert);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Return the certificate holders in the store with the passed in subject.
+     *
+     * @param subject the subject to look up.
+     * @return a possibly empty collection of certificate holders with that subject.
+     */
+    public Collection<X509CertificateHolder> getCertificatesBySubject(X500Name subject)
+    {
+        return new ArrayList<X509CertificateHolder>(fromIndex(bySubject, subject));
+    }
+
+    public Iterator<X509CertificateHolder> iterator()
+    {
+        return getMatches(null).iterator();
+    }
+
+    /**
+     * Return a list of certificates that includes every possible match for the selector. Lookups for an
+     * {@link X509CertificateHolderSelector} use the indexes, other selectors return the whole store. Subclasses
+     * may index further selector types using {@link #getCandidates(BigInteger, byte[])}.
+     *
+     * @param selector the selector about to be matched against the store.
+     * @return a read-only list of candidate certificate holders.
+     */
+    protected List<X509CertificateHolder> getCandidates(Selector<X509CertificateHolder> selector)
+    {
+        if (selector instanceof X509CertificateHolderSelector)
+        {
+            X509CertificateHolderSelector holderSelector = (X509CertificateHolderSelector)selector;
+
+            return getCandidates(holderSelector.getSerialNumber(), holderSelector.getSubjectKeyIdentifier());
+        }
+
+        return certificates;
+    }
+
+    /**
+     * Return a list of certificates that includes every certificate with the passed in serial number, or if no
+     * serial number is given, with the passed in subject key identifier.
+     *
+     * @param serialNumber the serial number to look up, may be null.
+     * @param subjectKeyId the subject key identifier to look up if serialNumber is null, may be null.
+     * @return a read-only list of candidate certificate holders, the whole store if both arguments are null.
+     */
+    protected List<X509CertificateHolder> getCandidates(BigInteger serialNumber, byte[] subjectKeyId)
+    {
+        if (serialNumber != null)
+        {
+            return fromIndex(bySerialNumber, serialNumber);
+        }
+        if (subjectKeyId != null)
+        {
+            return fromIndex(bySubjectKeyIdentifier, new DEROctetString(subjectKeyId));
+        }
+
+        return certificates;
+    }
+
+    /*
+     * As for X509CertificateHolderSelector, certificates without the extension are matched on the key
+     * identifier Outlook calculates for them.
+     */
+    private static byte[] getSubjectKeyIdentifier(X509CertificateHolder cert)
+    {
+        Extension ext = cert.getExtension(Extension.subjectKeyIdentifier);
+
+        if (ext == null)
+        {
+            return MSOutlookKeyIdCalculator.calculateKeyId(cert.getSubjectPublicKeyInfo());
+        }
+
+        try
+        {
+            return ASN1OctetString.getInstance(ext.getParsedValue()).getOctets();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // a selector can't match a malformed extension either
+            return null;
+        }
+    }
+
+    private static <K> void addToIndex(Map<K, List<X509CertificateHolder>> index, K key, X509CertificateHolder cert)
+    {
+        List<X509CertificateHolder> certs = index.get(key);
+        if (certs == null)
+        {
+            certs = new ArrayList<X509CertificateHolder>(1);
+            index.put(key, certs);
+        }
+        certs.add(cert);
+    }
+
+    private static <K> List<X509CertificateHolder> fromIndex(Map<K, List<X509CertificateHolder>> index, K key)
+    {
+        List<X509CertificateHolder> certs = index.get(key);
+
+        return certs == null ? Collections.<X509CertificateHolder>emptyList() : certs;
+    }
+}
@@ -0,0 +1,38 @@
+package org.bouncycastle.cms;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.selector.IndexedCertificateHolderStore;
+import org.bouncycastle.util.Selector;
+
+/**
+ * An indexed store of X.509 certificate holders that also answers {@link SignerId} lookups from its indexes,
+ * so finding the certificate for each signer of a signed-data message does not scan the whole store.
+ */
+public class SignerCertificateStore
+    extends IndexedCertificateHolderStore
+{
+    /**
+     * Basic constructor.
+     *
+     * @param certificates initial contents for the store, this is copied.
+     */
+    public SignerCertificateStore(Collection<X509CertificateHolder> certificates)
+    {
+        super(certificates);
+    }
+
+    protected List<X509CertificateHolder> getCandidates(Selector<X509CertificateHolder> selector)
+    {
+        if (selector instanceof SignerId)
+        {
+            SignerId signerId = (SignerId)selector;
+
+            return getCandidates(signerId.getSerialNumber(), signerId.getSubjectKeyIdentifier());
+        }
+
+        return super.getCandidates(selector);
+    }
+}
@@ -40,7 +40,9 @@
 import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
 import org.bouncycastle.cert.ocsp.CertificateID;
 import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
 import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
 import org.bouncycastle.cert.ocsp.RespID;
 import org.bouncycastle.cert.ocsp.RevokedStatus;
 import org.bouncycastle.cert.ocsp.jcajce.JcaBasicOCSPRespBuilder;
@@ -82,6 +84,9 @@ public void performTest()
         X509Certificate ee = OCSPTestUtil.makeCertificate(eeKp, "CN=EE", caKp, ca, false);
         X509Certificate ocsp = OCSPTestUtil.makeRootCertificate(ocspKp, "CN=OCSP");
 
+        batchedRequestTest(rootKp, root, ocspKp, ocsp, digCalcProv, false);
+        batchedRequestTest(rootKp, root, ocspKp, ocsp, digCalcProv, true);
+
         byte[] eeResp = getOcspResponse(ocspKp, digCalcProv, ca, ee);
         byte[] caResp = getOcspResponse(ocspKp, digCalcProv, root, ca);
 
@@ -338,6 +343,71 @@ public void performTest()
         dispPointCertChainTest();
     }
 
+    private void batchedRequestTest(KeyPair rootKp, X509Certificate root, KeyPair ocspKp, X509Certificate ocsp,
+        DigestCalculatorProvider digCalcProv, boolean rejectBatches)
+        throws Exception
+    {
+        KeyPair caKp = OCSPTestUtil.makeKeyPair();
+        KeyPair eeKp = OCSPTestUtil.makeKeyPair();
+
+        // fresh certificates each time, so nothing is already in the response cache
+        X509Certificate ca = OCSPTestUtil.makeCertificate(caKp, "CN=Batch CA", rootKp, root, true);
+        X509Certificate ee = OCSPTestUtil.makeCertificate(eeKp, "CN=Batch EE", caKp, ca, false);
+
+        List list = new ArrayList();
+        list.add(ee);
+        list.add(ca);
+
+        CertPath certPath = CertificateFactory.getInstance("X.509", BC).generateCertPath(list);
+
+        Set trust = new HashSet();
+        trust.add(new TrustAnchor(root, null));
+
+        ServerSocket ss = new ServerSocket(TEST_OCSP_RESPONDER_PORT + 3);
+        BatchOCSPResponderTask responderTask = new BatchOCSPResponderTask(ss, ocspKp, digCalcProv, rejectBatches);
+
+        Thread ocspResponder = new Thread(responderTask);
+
+        ocspResponder.setDaemon(true);
+        ocspResponder.start();
+
+        try
+        {
+            for (int i = 0; i != 2; i++)
+            {
+                CertPathValidator cpv = CertPathValidator.getInstance("PKIX", BC);
+
+                PKIXRevocationChecker rv = (PKIXRevocationChecker)cpv.getRevocationChecker();
+
+                rv.setOcspResponder(new URI("http://localhost:" + (TEST_OCSP_RESPONDER_PORT + 3) + "/"));
+                rv.setOcspResponderCert(ocsp);
+
+                PKIXParameters param = new PKIXParameters(trust);
+
+                param.addCertPathChecker(rv);
+
+                cpv.validate(certPath, param);
+            }
+        }
+        finally
+        {
+            ss.close();
+        }
+
+        if (rejectBatches)
+        {
+            // the batched request for the CA was refused, so the CA and end entity were each asked about alone
+            isEquals(3, responderTask.getRequestCount());
+            isEquals(4, responderTask.getCertIDCount());
+        }
+        else
+        {
+            // the CA check also asked about the end entity, and the second validation was served from the cache
+            isEquals(1, responderTask.getRequestCount());
+            isEquals(2, responderTask.getCertIDCount());
+        }
+    }
+
     private void ocspCertChainTest()
         throws Exception
     {
@@ -577,11 +647,13 @@ public void encode(OutputStream outputStream)
         implements Runnable
     {
         private final byte[] resp;
-        private final int portNo;
+        private final ServerSocket ss;
 
         OCSPResponderTask(int portNo, byte[] resp)
+            throws IOException
         {
-            this.portNo = portNo;
+            // bind before the thread starts, so the validation can't try to connect first
+            this.ss = new ServerSocket(portNo);
             this.resp = resp;
         }
 
@@ -589,8 +661,8 @@ public void run()
         {
             try
             {
-                ServerSocket ss = new ServerSocket(portNo);
                 Socket s = ss.accept();
+                ss.close();
 
                 InputStream sIn = s.getInputStream();
                 ByteArrayOutputStream bOut = new ByteArrayOutputStream();
@@ -627,7 +699,6 @@ public void run()
                 sOut.flush();
                 sOut.close();
                 s.close();
-                ss.close();
             }
             catch (Exception e)
             {
@@ -635,6 +706,112 @@ public void run()
             }
         }
     }
+    private static class BatchOCSPResponderTask
+        implements Runnable
+    {
+        private final ServerSocket ss;
+        private final KeyPair ocspKp;
+        private final DigestCalculatorProvider digCalcProv;
+        private final boolean rejectBatches;
+
+        private volatile int requestCount = 0;
+        private volatile int certIDCount = 0;
+
+        BatchOCSPResponderTask(ServerSocket ss, KeyPair ocspKp, DigestCalculatorProvider digCalcProv,
+            boolean rejectBatches)
+        {
+            this.ss = ss;
+            this.ocspKp = ocspKp;
+            this.digCalcProv = digCalcProv;
+            this.rejectBatches = rejectBatches;
+        }
+
+        int getRequestCount()
+        {
+            return requestCount;
+        }
+
+        int getCertIDCount()
+        {
+            return certIDCount;
+        }
+
+        public void run()
+        {
+            try
+            {
+                for (;;)
+                {
+                    Socket s = ss.accept();
+
+                    InputStream sIn = s.getInputStream();
+                    ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+                    int ch;
+                    int contentLength = 0;
+                    while ((ch = sIn.read()) >= 0)
+                    {
+                        bOut.write(ch);
+                        if (ch == '\n')
+                        {
+                            String line = Strings.fromByteArray(bOut.toByteArray()).trim();
+                            if (line.startsWith("Content-Length"))
+                            {
+                                contentLength = Integer.parseInt(line.substring("Content-Length: ".length()));
+                            }
+                            if (line.length() == 0)
+                            {
+                                break;
+                            }
+                            bOut.reset();
+                        }
+                    }
+
+                    byte[] request = new byte[contentLength];
+                    Streams.readFully(sIn, request);
+
+                    Req[] reqs = new OCSPReq(request).getRequestList();
+
+                    requestCount++;
+                    certIDCount += reqs.length;
+
+                    byte[] encResp;
+                    if (rejectBatches && reqs.length > 1)
+                    {
+                        encResp = new OCSPRespBuilder().build(OCSPRespBuilder.MALFORMED_REQUEST, null).getEncoded();
+                    }
+                    else
+                    {
+                        // answer every CertID asked about
+                        BasicOCSPRespBuilder respGen = new JcaBasicOCSPRespBuilder(ocspKp.getPublic(), digCalcProv.get(RespID.HASH_SHA1));
+
+                        for (int i = 0; i != reqs.length; i++)
+                        {
+                            respGen.addResponse(reqs[i].getCertID(), CertificateStatus.GOOD);
+                        }
+
+                        BasicOCSPResp resp = respGen.build(new JcaContentSignerBuilder("SHA1withRSA").setProvider(BC).build(ocspKp.getPrivate()), null, new Date());
+                        encResp = new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, resp).getEncoded();
+                    }
+
+                    OutputStream sOut = s.getOutputStream();
+
+                    sOut.write(Strings.toByteArray("HTTP/1.1 200 OK\r\n"));
+                    sOut.write(Strings.toByteArray("Content-type: application/ocsp-response\r\n"));
+                    sOut.write(Strings.toByteArray("Content-Length: " + encResp.length + "\r\n"));
+                    sOut.write(Strings.toByteArray("\r\n"));
+                    sOut.write(encResp);
+                    sOut.flush();
+                    sOut.close();
+                    s.close();
+                }
+            }
+            catch (Exception e)
+            {
+                // ignore - server socket closed
+            }
+        }
+    }
+
     public static void main(
         String[] args)
         throws Exception
@@ -84,6 +84,8 @@
 import org.bouncycastle.cert.X509AttributeCertificateHolder;
 import org.bouncycastle.cert.X509CRLEntryHolder;
 import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CRLSerialIndex;
+import org.bouncycastle.cert.X509CRLStreamParser;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.X509v1CertificateBuilder;
 import org.bouncycastle.cert.X509v2CRLBuilder;
@@ -132,6 +134,7 @@
 import org.bouncycastle.pqc.jcajce.spec.SPHINCSPlusParameterSpec;
 import org.bouncycastle.pqc.jcajce.spec.XMSSMTParameterSpec;
 import org.bouncycastle.pqc.jcajce.spec.XMSSParameterSpec;
+import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Encodable;
 import org.bouncycastle.util.Strings;
 import org.bouncycastle.util.encoders.Base64;
@@ -5313,6 +5316,220 @@ private void testIndirect2()
         }
     }
 
+    // the same serial number can appear for different certificate issuers in an indirect CRL
+    private void testIndirectSharedSerial()
+        throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12", BC);
+
+        ByteArrayInputStream input = new ByteArrayInputStream(testCAp12);
+
+        keyStore.load(input, "test".toCharArray());
+
+        X509Certificate certificate = (X509Certificate)keyStore.getCertificate("ca");
+        PrivateKey privateKey = (PrivateKey)keyStore.getKey("ca", null);
+
+        X500Name crlIssuer = new X500Name("CN=Indirect CRL Issuer");
+        X500Name caName = X500Name.getInstance(certificate.getIssuerX500Principal().getEncoded());
+
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(crlIssuer, new Date());
+
+        builder.addExtension(Extension.issuingDistributionPoint, true, new IssuingDistributionPoint(null, true, false));
+
+        // revoked by the CRL issuer itself
+        builder.addCRLEntry(certificate.getSerialNumber(), new Date(), CRLReason.superseded);
+
+        ExtensionsGenerator extGen = new ExtensionsGenerator();
+
+        extGen.addExtension(Extension.reasonCode, false, CRLReason.lookup(CRLReason.cACompromise));
+        extGen.addExtension(Extension.certificateIssuer, true, new GeneralNames(new GeneralName(caName)));
+
+        builder.addCRLEntry(BigInteger.valueOf(100), new Date(), extGen.generate());
+        builder.addCRLEntry(certificate.getSerialNumber(), new Date(), CRLReason.keyCompromise);
+
+        JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder("SHA256WithRSAEncryption");
+
+        contentSignerBuilder.setProvider(BC);
+
+        X509CRL crl = new JcaX509CRLConverter().setProvider(BC).getCRL(builder.build(contentSignerBuilder.build(privateKey)));
+
+        if (!crl.isRevoked(certificate))
+        {
+            fail("Certificate should be revoked by the second entry");
+        }
+
+        X509CRLEntry crlEntry = crl.getRevokedCertificate(certificate);
+        if (crlEntry == null || !new X500Principal(caName.getEncoded()).equals(crlEntry.getCertificateIssuer()))
+        {
+            fail("entry for certificate issuer not found");
+        }
+        if (!CRLReason.lookup(CRLReason.keyCompromise).equals(CRLReason.getInstance(ASN1Enumerated.getInstance(
+            ASN1OctetString.getInstance(crlEntry.getExtensionValue(Extension.reasonCode.getId())).getOctets()))))
+        {
+            fail("wrong entry found for certificate issuer");
+        }
+
+        // a lookup by serial alone returns the first entry
+        crlEntry = crl.getRevokedCertificate(certificate.getSerialNumber());
+        if (crlEntry.getCertificateIssuer() != null)
+        {
+            fail("first entry for serial not found");
+        }
+    }
+
+    private void testLargeCRL()
+        throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12", BC);
+
+        ByteArrayInputStream input = new ByteArrayInputStream(testCAp12);
+
+        keyStore.load(input, "test".toCharArray());
+
+        X509Certificate certificate = (X509Certificate)keyStore.getCertificate("ca");
+        PrivateKey privateKey = (PrivateKey)keyStore.getKey("ca", null);
+
+        X500Name issuer = X500Name.getInstance(certificate.getIssuerX500Principal().getEncoded());
+
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(issuer, new Date());
+
+        int count = 2000;
+        for (int i = 0; i < count; ++i)
+        {
+            builder.addCRLEntry(BigInteger.valueOf(1000 + i * 7), new Date(), CRLReason.keyCompromise);
+        }
+
+        // different serial numbers with the same hash
+        BigInteger collision = BigInteger.ONE.shiftLeft(32).add(BigInteger.valueOf(0xFFFFFFE2L));
+        isTrue(collision.hashCode() == BigInteger.ONE.hashCode());
+        builder.addCRLEntry(collision, new Date(), CRLReason.keyCompromise);
+
+        JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder("SHA256WithRSAEncryption");
+
+        contentSignerBuilder.setProvider(BC);
+
+        X509CRL crl = new JcaX509CRLConverter().setProvider(BC).getCRL(builder.build(contentSignerBuilder.build(privateKey)));
+
+        for (int i = 0; i < count; ++i)
+        {
+            BigInteger serial = BigInteger.valueOf(1000 + i * 7);
+            X509CRLEntry entry = crl.getRevokedCertificate(serial);
+
+            if (entry == null || !serial.equals(entry.getSerialNumber()))
+            {
+                fail("entry " + i + " not found");
+            }
+            if (crl.getRevokedCertificate(serial.add(BigInteger.ONE)) != null)
+            {
+                fail("entry " + i + " found for wrong serial");
+            }
+        }
+
+        isTrue(collision.equals(crl.getRevokedCertificate(collision).getSerialNumber()));
+        isTrue(crl.getRevokedCertificate(BigInteger.ONE) == null);
+        isTrue(crl.isRevoked(certificate) == (crl.getRevokedCertificate(certificate.getSerialNumber()) != null));
+    }
+
+    private void testStreamedCRL()
+        throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12", BC);
+
+        ByteArrayInputStream input = new ByteArrayInputStream(testCAp12);
+
+        keyStore.load(input, "test".toCharArray());
+
+        X509Certificate certificate = (X509Certificate)keyStore.getCertificate("ca");
+        PrivateKey privateKey = (PrivateKey)keyStore.getKey("ca", null);
+
+        X500Name crlIssuer = new X500Name("CN=Indirect CRL Issuer");
+        X500Name caName = X500Name.getInstance(certificate.getIssuerX500Principal().getEncoded());
+
+        Date now = new Date();
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(crlIssuer, now);
+
+        builder.setNextUpdate(new Date(now.getTime() + 100000));
+        builder.addExtension(Extension.issuingDistributionPoint, true, new IssuingDistributionPoint(null, true, false));
+
+        int count = 500;
+        for (int i = 0; i < count; ++i)
+        {
+            builder.addCRLEntry(BigInteger.valueOf(1000 + i * 3), now, CRLReason.keyCompromise);
+        }
+
+        ExtensionsGenerator extGen = new ExtensionsGenerator();
+
+        extGen.addExtension(Extension.certificateIssuer, true, new GeneralNames(new GeneralName(caName)));
+
+        builder.addCRLEntry(BigInteger.valueOf(5), now, extGen.generate());
+        builder.addCRLEntry(BigInteger.valueOf(6), now, CRLReason.superseded);
+
+        JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder("SHA256WithRSAEncryption");
+
+        contentSignerBuilder.setProvider(BC);
+
+        X509CRLHolder crlHolder = builder.build(contentSignerBuilder.build(privateKey));
+        byte[] encoding = crlHolder.getEncoded();
+
+        JcaContentVerifierProviderBuilder verifierBuilder = new JcaContentVerifierProviderBuilder().setProvider(BC);
+
+        X509CRLStreamParser parser = new X509CRLStreamParser(new ByteArrayInputStream(encoding),
+            verifierBuilder.build(certificate));
+
+        isEquals(2, parser.getVersionNumber());
+        isEquals(crlIssuer, parser.getIssuer());
+        isEquals(crlHolder.getThisUpdate(), parser.getThisUpdate());
+        isEquals(crlHolder.getNextUpdate(), parser.getNextUpdate());
+
+        Iterator it = crlHolder.getRevokedCertificates().iterator();
+        X509CRLEntryHolder streamed;
+        while ((streamed = parser.readEntry()) != null)
+        {
+            X509CRLEntryHolder expected = (X509CRLEntryHolder)it.next();
+
+            isEquals(expected.getSerialNumber(), streamed.getSerialNumber());
+            isEquals(expected.getRevocationDate(), streamed.getRevocationDate());
+            isEquals(expected.getCertificateIssuer(), streamed.getCertificateIssuer());
+        }
+        isTrue(!it.hasNext());
+
+        isTrue(parser.isIndirect());
+        isEquals(crlHolder.getExtensions(), parser.getExtensions());
+        isEquals(crlHolder.toASN1Structure().getSignatureAlgorithm(), parser.getSignatureAlgorithm());
+        isTrue(parser.isSignatureValid());
+
+        // a single altered entry must break the signature
+        byte[] tampered = Arrays.clone(encoding);
+        int pos = encoding.length / 2;
+        tampered[pos] ^= 0x01;
+
+        parser = new X509CRLStreamParser(new ByteArrayInputStream(tampered), verifierBuilder.build(certificate));
+        try
+        {
+            isTrue(!parser.isSignatureValid());
+        }
+        catch (CertException e)
+        {
+            // the change may also have made the entry unparseable
+        }
+
+        // the serial index, built without holding the entries
+        X509CRLSerialIndex index = new X509CRLStreamParser(new ByteArrayInputStream(encoding)).buildSerialIndex();
+
+        isEquals(count + 2, index.size());
+        for (int i = 0; i < count; ++i)
+        {
+            isTrue(index.isRevoked(BigInteger.valueOf(1000 + i * 3)));
+            isTrue(!index.isRevoked(BigInteger.valueOf(1001 + i * 3)));
+            isTrue(index.isRevoked(crlIssuer, BigInteger.valueOf(1000 + i * 3)));
+            isTrue(!index.isRevoked(caName, BigInteger.valueOf(1000 + i * 3)));
+        }
+        isTrue(index.isRevoked(BigInteger.valueOf(5)));
+        isTrue(index.isRevoked(caName, BigInteger.valueOf(5)));
+        isTrue(index.isRevoked(caName, BigInteger.valueOf(6)));
+        isTrue(!index.isRevoked(crlIssuer, BigInteger.valueOf(6)));
+    }
+
     // issuing distribution point must be set for an indirect CRL to be recognised
     private void testMalformedIndirect()
         throws Exception
@@ -5446,6 +5663,9 @@ public void performTest()
         testDirect();
         testIndirect();
         testIndirect2();
+        testIndirectSharedSerial();
+        testLargeCRL();
+        testStreamedCRL();
         testMalformedIndirect();
 
         checkCertificate(1, cert1);
@@ -2,6 +2,7 @@
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.MessageDigest;
@@ -13,6 +14,7 @@
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -53,7 +55,9 @@
 import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.teletrust.TeleTrusTObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
 import org.bouncycastle.cert.X509AttributeCertificateHolder;
 import org.bouncycastle.cert.X509CertificateHolder;
@@ -62,7 +66,10 @@
 import org.bouncycastle.cert.jcajce.JcaX509CRLHolder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
 import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.selector.X509CertificateHolderSelector;
 import org.bouncycastle.cms.CMSAbsentContent;
 import org.bouncycastle.cms.CMSAlgorithm;
 import org.bouncycastle.cms.CMSAttributeTableGenerationException;
@@ -75,6 +82,7 @@
 import org.bouncycastle.cms.CMSTypedData;
 import org.bouncycastle.cms.DefaultCMSSignatureAlgorithmNameGenerator;
 import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
+import org.bouncycastle.cms.SignerCertificateStore;
 import org.bouncycastle.cms.SignerId;
 import org.bouncycastle.cms.SignerInfoGeneratorBuilder;
 import org.bouncycastle.cms.SignerInformation;
@@ -1136,6 +1144,66 @@ public void testSHA1WithRSANoAttributesSimple()
         verifySignatures(s, md.digest("Hello world!".getBytes()));
     }
 
+    public void testIndexedCertificateStore()
+        throws Exception
+    {
+        List              certList = new ArrayList();
+        CMSTypedData      msg = new CMSProcessableByteArray("Hello world!".getBytes());
+
+        certList.add(_origCert);
+        certList.add(_signCert);
+
+        CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
+
+        JcaSignerInfoGeneratorBuilder builder = new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().setProvider(BC).build());
+
+        byte[] signKeyId = new JcaX509ExtensionUtils().createSubjectKeyIdentifier(_signCert.getPublicKey()).getKeyIdentifier();
+
+        gen.addSignerInfoGenerator(builder.build(new JcaContentSignerBuilder("SHA1withRSA").setProvider(BC).build(_origKP.getPrivate()), _origCert));
+        gen.addSignerInfoGenerator(builder.build(new JcaContentSignerBuilder("SHA256withRSA").setProvider(BC).build(_signKP.getPrivate()), signKeyId));
+
+        gen.addCertificates(new JcaCertStore(certList));
+
+        CMSSignedData s = gen.generate(msg, true);
+
+        SignerCertificateStore certStore = new SignerCertificateStore(s.getCertificates().getMatches(null));
+
+        assertEquals(2, certStore.getMatches(null).size());
+
+        Iterator it = s.getSignerInfos().getSigners().iterator();
+        while (it.hasNext())
+        {
+            SignerInformation signer = (SignerInformation)it.next();
+            Collection certCollection = certStore.getMatches(signer.getSID());
+
+            assertEquals(1, certCollection.size());
+
+            X509CertificateHolder cert = (X509CertificateHolder)certCollection.iterator().next();
+
+            assertTrue(signer.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider(BC).build(cert)));
+        }
+
+        X509CertificateHolder origCert = new JcaX509CertificateHolder(_origCert);
+
+        assertEquals(1, certStore.getMatches(new X509CertificateHolderSelector(origCert.getIssuer(), origCert.getSerialNumber())).size());
+        assertEquals(1, certStore.getMatches(new X509CertificateHolderSelector(signKeyId)).size());
+        assertEquals(0, certStore.getMatches(new X509CertificateHolderSelector(new X500Name("CN=Unknown"), origCert.getSerialNumber())).size());
+        assertEquals(1, certStore.getCertificatesBySubject(origCert.getSubject()).size());
+
+        // a malformed subject key identifier leaves the certificate out of that index only
+        JcaX509v3CertificateBuilder certBuilder = new JcaX509v3CertificateBuilder(origCert.getSubject(),
+            BigInteger.valueOf(1000), origCert.getNotBefore(), origCert.getNotAfter(), origCert.getSubject(),
+            _origKP.getPublic());
+        certBuilder.addExtension(Extension.subjectKeyIdentifier, false, new byte[]{ 0x05, 0x00 });
+        X509CertificateHolder badSkiCert = certBuilder.build(
+            new JcaContentSignerBuilder("SHA256withRSA").setProvider(BC).build(_origKP.getPrivate()));
+
+        certStore = new SignerCertificateStore(Collections.singletonList(badSkiCert));
+
+        assertEquals(1, certStore.getMatches(new SignerId(badSkiCert.getIssuer(), badSkiCert.getSerialNumber())).size());
+        assertEquals(0, certStore.getMatches(new SignerId(signKeyId)).size());
+    }
+
     public void testSHA1WithRSAAndOtherRevocation()
         throws Exception
     {
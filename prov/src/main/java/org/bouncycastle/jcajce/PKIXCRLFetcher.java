@@ -0,0 +1,29 @@
+package org.bouncycastle.jcajce;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.cert.CRL;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateFactory;
+import java.util.Collection;
+
+/**
+ * Interface for retrieving the CRLs published at a CRL distribution point. The BC provider uses an
+ * implementation of this when looking up CRLs from the distribution points in certificates, which is
+ * enabled by setting "org.bouncycastle.x509.enableCRLDP" to true. A replacement for the default
+ * HTTP/LDAP implementation can be set using the ConfigurableProvider.CRL_FETCHER parameter.
+ */
+public interface PKIXCRLFetcher
+{
+    /**
+     * Retrieve the CRLs from a distribution point.
+     *
+     * @param certFact a certificate factory for parsing any CRLs found.
+     * @param distributionPoint the URI of the distribution point.
+     * @return the CRLs published at the distribution point.
+     * @throws IOException if the distribution point cannot be reached.
+     * @throws CRLException if no CRLs are found, or they cannot be parsed.
+     */
+    Collection<? extends CRL> fetchCRLs(CertificateFactory certFact, URI distributionPoint)
+        throws IOException, CRLException;
+}
@@ -68,6 +68,14 @@ public Certificate getCertificate()
          return null;
     }
 
+    /**
+     * Return the selector this one was built from, for stores that can index on its match criteria.
+     */
+    CertSelector getBaseSelector()
+    {
+        return baseSelector;
+    }
+
     public boolean match(Certificate cert)
     {
         return baseSelector.match(cert);
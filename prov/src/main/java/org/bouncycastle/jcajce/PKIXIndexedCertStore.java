@@ -0,0 +1,224 @@
+package org.bouncycastle.jcajce;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.cert.CertSelector;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.util.Iterable;
+import org.bouncycastle.util.Selector;
+import org.bouncycastle.util.StoreException;
+
+/**
+ * A PKIX certificate store backed by a fixed collection of certificates, with hash indexes on the certificate
+ * subject, issuer, serial number, and subject key identifier.
+ * <p>
+ * Where a selector is a {@link PKIXCertStoreSelector} (or the store is queried directly with an
+ * {@link X509CertSelector}) specifying any of the certificate, serial number, subject key identifier, subject, or
+ * issuer criteria, only the certificates sharing that value are checked against the full selector, so that path
+ * building against a large store does not need to scan every certificate. Other selectors fall back to a scan.
+ * </p>
+ * <p>
+ * The certificates are copied when the store is created, and results are returned in collection order.
+ * </p>
+ */
+public class PKIXIndexedCertStore
+    implements PKIXCertStore<X509Certificate>, Iterable<X509Certificate>
+{
+    private final List<X509Certificate> certificates;
+    private final Map<BigInteger, List<X509Certificate>> bySerialNumber = new HashMap<BigInteger, List<X509Certificate>>();
+    private final Map<ASN1OctetString, List<X509Certificate>> bySubjectKeyIdentifier = new HashMap<ASN1OctetString, List<X509Certificate>>();
+    private final Map<X500Principal, List<X509Certificate>> bySubject = new HashMap<X500Principal, List<X509Certificate>>();
+    private final Map<X500Principal, List<X509Certificate>> byIssuer = new HashMap<X500Principal, List<X509Certificate>>();
+
+    /**
+     * Basic constructor.
+     *
+     * @param certificates initial contents for the store, this is copied.
+     */
+    public PKIXIndexedCertStore(Collection<X509Certificate> certificates)
+    {
+        this.certificates = new ArrayList<X509Certificate>(certificates);
+
+        for (Iterator<X509Certificate> it = this.certificates.iterator(); it.hasNext();)
+        {
+            X509Certificate cert = it.next();
+
+            addToIndex(bySerialNumber, cert.getSerialNumber(), cert);
+            addToIndex(bySubject, cert.getSubjectX500Principal(), cert);
+            addToIndex(byIssuer, cert.getIssuerX500Principal(), cert);
+
+            ASN1OctetString subjectKeyIdentifier = getSubjectKeyIdentifier(cert);
+            if (subjectKeyIdentifier != null)
+            {
+                addToIndex(bySubjectKeyIdentifier, subjectKeyIdentifier, cert);
+            }
+        }
+    }
+
+    /**
+     * Return the matches in the store for the passed in selector.
+     *
+     * @param selector the selector to match against, null returns all certificates.
+     * @return a possibly empty collection of matching certificates.
+     */
+    public Collection<X509Certificate> getMatches(Selector<X509Certificate> selector)
+        throws StoreException
+    {
+        if (selector == null)
+        {
+            return new ArrayList<X509Certificate>(certificates);
+        }
+
+        List<X509Certificate> candidates = certificates;
+        if (selector instanceof PKIXCertStoreSelector)
+        {
+            candidates = getCandidates(((PKIXCertStoreSelector)selector).getBaseSelector());
+        }
+
+        List<X509Certificate> matches = new ArrayList<X509Certificate>();
+        for (Iterator<X509Certificate> it = candidates.iterator(); it.hasNext();)
+        {
+            X509Certificate cert = it.next();
+
+            if (selector.match(cert))
+            {
+                matches.add(cert);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Return the matches in the store for the passed in JCA selector.
+     *
+     * @param selector the selector to match against, null returns all certificates.
+     * @return a possibly empty collection of matching certificates.
+     */
+    public Collection<X509Certificate> getMatches(CertSelector selector)
+        throws StoreException
+    {
+        if (selector == null)
+        {
+            return new ArrayList<X509Certificate>(certificates);
+        }
+
+        List<X509Certificate> matches = new ArrayList<X509Certificate>();
+        for (Iterator<X509Certificate> it = getCandidates(selector).iterator(); it.hasNext();)
+        {
+            X509Certificate cert = it.next();
+
+            if (selector.match(cert))
+            {
+                matches.add(cert);
+            }
+        }
+
+        return matches;
+    }
+
+    public Iterator<X509Certificate> iterator()
+    {
+        return getMatches((Selector<X509Certificate>)null).iterator();
+    }
+
+    /*
+     * Return a list of certificates that includes every possible match for the selector, using the most
+     * specific index available for its criteria.
+     */
+    private List<X509Certificate> getCandidates(CertSelector selector)
+    {
+        if (!(selector instanceof X509CertSelector))
+        {
+            return certificates;
+        }
+
+        X509CertSelector x509Selector = (X509CertSelector)selector;
+
+        if (x509Selector.getCertificate() != null)
+        {
+            return fromIndex(bySerialNumber, x509Selector.getCertificate().getSerialNumber());
+        }
+        if (x509Selector.getSerialNumber() != null)
+        {
+            return fromIndex(bySerialNumber, x509Selector.getSerialNumber());
+        }
+        if (x509Selector.getSubjectKeyIdentifier() != null)
+        {
+            return fromIndex(bySubjectKeyIdentifier, new DEROctetString(x509Selector.getSubjectKeyIdentifier()));
+        }
+
+        try
+        {
+            byte[] subject = x509Selector.getSubjectAsBytes();
+            if (subject != null)
+            {
+                return fromIndex(bySubject, new X500Principal(subject));
+            }
+
+            byte[] issuer = x509Selector.getIssuerAsBytes();
+            if (issuer != null)
+            {
+                return fromIndex(byIssuer, new X500Principal(issuer));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("selector invalid: " + e.getMessage(), e);
+        }
+
+        return certificates;
+    }
+
+    private static ASN1OctetString getSubjectKeyIdentifier(X509Certificate cert)
+    {
+        byte[] extValue = cert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+        if (extValue == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            // X509CertSelector matches against the encoding of the key identifier OCTET STRING
+            return new DEROctetString(ASN1OctetString.getInstance(extValue).getOctets());
+        }
+        catch (IllegalArgumentException e)
+        {
+            // a selector can't match a malformed extension either
+            return null;
+        }
+    }
+
+    private static <K> void addToIndex(Map<K, List<X509Certificate>> index, K key, X509Certificate cert)
+    {
+        List<X509Certificate> certs = index.get(key);
+        if (certs == null)
+        {
+            certs = new ArrayList<X509Certificate>(1);
+            index.put(key, certs);
+        }
+        certs.add(cert);
+    }
+
+    private static <K> List<X509Certificate> fromIndex(Map<K, List<X509Certificate>> index, K key)
+    {
+        List<X509Certificate> certs = index.get(key);
+
+        return certs == null ? Collections.<X509Certificate>emptyList() : certs;
+    }
+}
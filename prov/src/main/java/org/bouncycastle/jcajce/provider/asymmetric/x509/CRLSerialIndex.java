@@ -0,0 +1,188 @@
+package org.bouncycastle.jcajce.provider.asymmetric.x509;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.TBSCertList;
+
+/**
+ * A lookup index for the revoked certificate entries of a CRL, so that finding an entry by serial number is
+ * a binary search rather than a walk of the whole entry list.
+ * <p>
+ * The index is a single sorted array of longs, each holding the hash of an entry's serial number in the high
+ * half and the entry's position in the CRL in the low half. For indirect CRLs the positions of entries carrying
+ * a certificate issuer extension are recorded separately, so the issuer in effect for any entry can be found
+ * without replaying the entries before it.
+ * </p>
+ */
+class CRLSerialIndex
+{
+    private static final int[] EMPTY_POSITIONS = new int[0];
+    private static final X500Name[] EMPTY_ISSUERS = new X500Name[0];
+
+    private final ASN1Encodable[] entries;
+    private final long[] index;
+    private final int[] issuerPositions;
+    private final X500Name[] issuers;
+
+    CRLSerialIndex(TBSCertList tbsCertList, boolean isIndirect)
+    {
+        int count = 0;
+        Enumeration e = tbsCertList.getRevokedCertificateEnumeration();
+        while (e.hasMoreElements())
+        {
+            e.nextElement();
+            ++count;
+        }
+
+        ASN1Encodable[] entries = new ASN1Encodable[count];
+        long[] index = new long[count];
+        int[] issuerPositions = EMPTY_POSITIONS;
+        X500Name[] issuers = EMPTY_ISSUERS;
+        int issuerCount = 0;
+
+        e = tbsCertList.getRevokedCertificateEnumeration();
+        for (int pos = 0; pos < count; ++pos)
+        {
+            TBSCertList.CRLEntry entry = (TBSCertList.CRLEntry)e.nextElement();
+
+            entries[pos] = entry.toASN1Primitive();
+            index[pos] = ((long)entry.getUserCertificate().getValue().hashCode() << 32) | pos;
+
+            if (isIndirect && entry.hasExtensions())
+            {
+                Extension currentCaName = entry.getExtensions().getExtension(Extension.certificateIssuer);
+
+                if (currentCaName != null)
+                {
+                    if (issuerCount == issuerPositions.length)
+                    {
+                        int newLength = Math.max(4, issuerCount * 2);
+                        issuerPositions = copyOf(issuerPositions, newLength);
+                        issuers = copyOf(issuers, newLength);
+                    }
+
+                    issuerPositions[issuerCount] = pos;
+                    issuers[issuerCount] = X500Name.getInstance(GeneralNames.getInstance(currentCaName.getParsedValue()).getNames()[0].getName());
+                    ++issuerCount;
+                }
+            }
+        }
+
+        // positions are the low bits, so entries with equal hashes stay in CRL order
+        Arrays.sort(index);
+
+        this.entries = entries;
+        this.index = index;
+        this.issuerPositions = copyOf(issuerPositions, issuerCount);
+        this.issuers = copyOf(issuers, issuerCount);
+    }
+
+    /**
+     * Find the first entry (in CRL order) for the given serial number, optionally restricted to entries for
+     * a given certificate issuer.
+     *
+     * @param serialNumber the serial number to look for.
+     * @param certIssuer the issuer the entry must apply to, or null to accept any entry.
+     * @param crlIssuer the issuer of the CRL, which entries apply to unless an indirect CRL says otherwise.
+     * @return the position of the entry, or -1 if there is none.
+     */
+    int find(BigInteger serialNumber, X500Name certIssuer, X500Name crlIssuer)
+    {
+        long hash = serialNumber.hashCode();
+
+        for (int i = lowerBound(hash << 32); i < index.length && (index[i] >> 32) == hash; ++i)
+        {
+            int pos = (int)index[i];
+
+            if (!getEntry(pos).getUserCertificate().hasValue(serialNumber))
+            {
+                continue;
+            }
+
+            if (certIssuer == null || certIssuer.equals(getCertificateIssuer(pos, crlIssuer)))
+            {
+                return pos;
+            }
+        }
+
+        return -1;
+    }
+
+    TBSCertList.CRLEntry getEntry(int pos)
+    {
+        return TBSCertList.CRLEntry.getInstance(entries[pos]);
+    }
+
+    /**
+     * Return the certificate issuer carried forward to the entry at pos from earlier entries, as expected by
+     * {@link X509CRLEntryObject}, or null if there is none.
+     */
+    X500Name getPreviousCertificateIssuer(int pos)
+    {
+        int i = findIssuerPosition(pos - 1);
+
+        return i < 0 ? null : issuers[i];
+    }
+
+    /**
+     * Return the issuer the entry at pos applies to: the nearest certificate issuer extension at or before it,
+     * or the CRL issuer if there is none.
+     */
+    X500Name getCertificateIssuer(int pos, X500Name crlIssuer)
+    {
+        int i = findIssuerPosition(pos);
+
+        return i < 0 ? crlIssuer : issuers[i];
+    }
+
+    /*
+     * Index of the last issuer position <= pos, or -1.
+     */
+    private int findIssuerPosition(int pos)
+    {
+        int i = Arrays.binarySearch(issuerPositions, pos);
+
+        return i >= 0 ? i : -(i + 1) - 1;
+    }
+
+    /*
+     * Index of the first element >= key.
+     */
+    private int lowerBound(long key)
+    {
+        int lo = 0, hi = index.length;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (index[mid] < key)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int[] copyOf(int[] data, int newLength)
+    {
+        int[] tmp = new int[newLength];
+        System.arraycopy(data, 0, tmp, 0, Math.min(data.length, newLength));
+        return tmp;
+    }
+
+    private static X500Name[] copyOf(X500Name[] data, int newLength)
+    {
+        X500Name[] tmp = new X500Name[newLength];
+        System.arraycopy(data, 0, tmp, 0, Math.min(data.length, newLength));
+        return tmp;
+    }
+}
@@ -74,6 +74,9 @@
     protected byte[] sigAlgParams;
     protected boolean isIndirect;
 
+    private final Object serialIndexLock = new Object();
+    private volatile CRLSerialIndex serialIndex;
+
     X509CRLImpl(JcaJceHelper bcHelper, CertificateList c, String sigAlgName, byte[] sigAlgParams, boolean isIndirect)
     {
         this.bcHelper = bcHelper;
@@ -446,30 +449,42 @@ private Set loadCRLEntries()
 
     public X509CRLEntry getRevokedCertificate(BigInteger serialNumber)
     {
-        Enumeration certs = c.getRevokedCertificateEnumeration();
+        CRLSerialIndex index = getSerialIndex();
 
-        X500Name previousCertificateIssuer = null; // the issuer
-        while (certs.hasMoreElements())
+        int pos = index.find(serialNumber, null, null);
+        if (pos < 0)
         {
-            TBSCertList.CRLEntry entry = (TBSCertList.CRLEntry)certs.nextElement();
+            return null;
+        }
 
-            if (entry.getUserCertificate().hasValue(serialNumber))
-            {
-                return new X509CRLEntryObject(entry, isIndirect, previousCertificateIssuer);
-            }
+        return new X509CRLEntryObject(index.getEntry(pos), isIndirect, index.getPreviousCertificateIssuer(pos));
+    }
 
-            if (isIndirect && entry.hasExtensions())
-            {
-                Extension currentCaName = entry.getExtensions().getExtension(Extension.certificateIssuer);
+    /**
+     * Return the entry for the given certificate, taking account of the certificate issuer of each entry when
+     * this is an indirect CRL.
+     *
+     * @param certificate the certificate to look for.
+     * @return the entry for the certificate, or null if it is not on this CRL.
+     */
+    public X509CRLEntry getRevokedCertificate(X509Certificate certificate)
+    {
+        X500Name certIssuer = X500Name.getInstance(certificate.getIssuerX500Principal().getEncoded());
 
-                if (currentCaName != null)
-                {
-                    previousCertificateIssuer = X500Name.getInstance(GeneralNames.getInstance(currentCaName.getParsedValue()).getNames()[0].getName());
-                }
-            }
+        if (!isIndirect && !c.getIssuer().equals(certIssuer))
+        {
+            return null;
         }
 
-        return null;
+        CRLSerialIndex index = getSerialIndex();
+
+        int pos = index.find(certificate.getSerialNumber(), certIssuer, c.getIssuer());
+        if (pos < 0)
+        {
+            return null;
+        }
+
+        return new X509CRLEntryObject(index.getEntry(pos), isIndirect, index.getPreviousCertificateIssuer(pos));
     }
 
     public Set getRevokedCertificates()
@@ -643,59 +658,52 @@ public boolean isRevoked(Certificate cert)
             throw new IllegalArgumentException("X.509 CRL used with non X.509 Cert");
         }
 
-        Enumeration certs = c.getRevokedCertificateEnumeration();
-
-        X500Name caName = c.getIssuer();
+        BigInteger serial;
+        X500Name issuer;
 
-        if (certs.hasMoreElements())
+        if (cert instanceof X509Certificate)
         {
-            BigInteger serial = ((X509Certificate)cert).getSerialNumber();
+            X509Certificate x509Cert = (X509Certificate)cert;
 
-            while (certs.hasMoreElements())
+            serial = x509Cert.getSerialNumber();
+            issuer = X500Name.getInstance(x509Cert.getIssuerX500Principal().getEncoded());
+        }
+        else
+        {
+            try
             {
-                TBSCertList.CRLEntry entry = TBSCertList.CRLEntry.getInstance(certs.nextElement());
+                org.bouncycastle.asn1.x509.Certificate certStruct = org.bouncycastle.asn1.x509.Certificate
+                    .getInstance(cert.getEncoded());
 
-                if (isIndirect && entry.hasExtensions())
-                {
-                    Extension currentCaName = entry.getExtensions().getExtension(Extension.certificateIssuer);
+                serial = certStruct.getSerialNumber().getValue();
+                issuer = certStruct.getIssuer();
+            }
+            catch (CertificateEncodingException e)
+            {
+                throw new IllegalArgumentException("Cannot process certificate: " + e.getMessage());
+            }
+        }
 
-                    if (currentCaName != null)
-                    {
-                        caName = X500Name.getInstance(GeneralNames.getInstance(currentCaName.getParsedValue()).getNames()[0].getName());
-                    }
-                }
+        return getSerialIndex().find(serial, issuer, c.getIssuer()) >= 0;
+    }
 
-                if (entry.getUserCertificate().hasValue(serial))
+    private CRLSerialIndex getSerialIndex()
+    {
+        CRLSerialIndex index = serialIndex;
+        if (null == index)
+        {
+            synchronized (serialIndexLock)
+            {
+                index = serialIndex;
+                if (null == index)
                 {
-                    X500Name issuer;
-
-                    if (cert instanceof X509Certificate)
-                    {
-                        issuer = X500Name.getInstance(((X509Certificate)cert).getIssuerX500Principal().getEncoded());
-                    }
-                    else
-                    {
-                        try
-                        {
-                            issuer = org.bouncycastle.asn1.x509.Certificate.getInstance(cert.getEncoded()).getIssuer();
-                        }
-                        catch (CertificateEncodingException e)
-                        {
-                            throw new IllegalArgumentException("Cannot process certificate: " + e.getMessage());
-                        }
-                    }
-
-                    if (!caName.equals(issuer))
-                    {
-                        return false;
-                    }
-
-                    return true;
+                    index = new CRLSerialIndex(c.getTBSCertList(), isIndirect);
+                    serialIndex = index;
                 }
             }
         }
 
-        return false;
+        return index;
     }
 
     protected static byte[] getExtensionOctets(CertificateList c, String oid)
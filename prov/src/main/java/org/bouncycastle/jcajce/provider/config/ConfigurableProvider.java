@@ -41,6 +41,11 @@
      */
     static final String ADDITIONAL_EC_PARAMETERS = "additionalEcParameters";
 
+    /**
+     * A PKIXCRLFetcher to use for retrieving CRLs from CRL distribution points, null for the default.
+     */
+    static final String CRL_FETCHER = "crlFetcher";
+
     void setParameter(String parameterName, Object parameter);
 
     void addAlgorithm(String key, String value);
@@ -33,10 +33,11 @@
     private static final int DH_DEFAULT_PARAMS = 0x08;
     private static final int ACCEPTABLE_EC_CURVES = 0x10;
     private static final int ADDITIONAL_EC_PARAMETERS = 0x20;
+    private static final int CRL_FETCHER = 0x40;
 
     private static final int  ALL =
             THREAD_LOCAL_EC_IMPLICITLY_CA | EC_IMPLICITLY_CA | THREAD_LOCAL_DH_DEFAULT_PARAMS | DH_DEFAULT_PARAMS |
-            ACCEPTABLE_EC_CURVES | ADDITIONAL_EC_PARAMETERS;
+            ACCEPTABLE_EC_CURVES | ADDITIONAL_EC_PARAMETERS | CRL_FETCHER;
 
     private static final String THREAD_LOCAL_EC_IMPLICITLY_CA_STR = "threadlocalecimplicitlyca";
     private static final String EC_IMPLICITLY_CA_STR = "ecimplicitlyca";
@@ -44,6 +45,7 @@
     private static final String DH_DEFAULT_PARAMS_STR = "dhdefaultparams";
     private static final String ACCEPTABLE_EC_CURVES_STR = "acceptableeccurves";
     private static final String ADDITIONAL_EC_PARAMETERS_STR = "additionalecparameters";
+    private static final String CRL_FETCHER_STR = "crlfetcher";
     private static final String ALL_STR = "all";
 
     private final String actions;
@@ -97,6 +99,10 @@ else if (s.equals(ADDITIONAL_EC_PARAMETERS_STR))
             {
                 mask |= ADDITIONAL_EC_PARAMETERS;
             }
+            else if (s.equals(CRL_FETCHER_STR))
+            {
+                mask |= CRL_FETCHER;
+            }
             else if (s.equals(ALL_STR))
             {
                 mask |= ALL;
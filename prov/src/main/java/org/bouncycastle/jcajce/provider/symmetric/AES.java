@@ -35,6 +35,7 @@
 import org.bouncycastle.crypto.modes.CFBBlockCipher;
 import org.bouncycastle.crypto.modes.GCMBlockCipher;
 import org.bouncycastle.crypto.modes.OFBBlockCipher;
+import org.bouncycastle.crypto.modes.XTSBlockCipher;
 import org.bouncycastle.internal.asn1.cms.CCMParameters;
 import org.bouncycastle.internal.asn1.cms.GCMParameters;
 import org.bouncycastle.jcajce.provider.config.ConfigurableProvider;
@@ -89,6 +90,21 @@ public CBC()
         }
     }
 
+    static public class XTS
+        extends BaseBlockCipher
+    {
+        public XTS()
+        {
+            super(new XTSBlockCipher(new XTSBlockCipher.CipherProvider()
+            {
+                public BlockCipher get()
+                {
+                    return AESEngine.newInstance();
+                }
+            }), 128);
+        }
+    }
+
     static public class CFB
         extends BaseBlockCipher
     {
@@ -851,6 +867,8 @@ public void configure(ConfigurableProvider provider)
             provider.addAlgorithm("Cipher", NISTObjectIdentifiers.id_aes192_CFB, PREFIX + "$CFB");
             provider.addAlgorithm("Cipher", NISTObjectIdentifiers.id_aes256_CFB, PREFIX + "$CFB");
 
+            provider.addAlgorithm("Cipher.AES/XTS/NoPadding", PREFIX + "$XTS");
+
             provider.addAttributes("Cipher.AESWRAP", generalAesAttributes);
             provider.addAlgorithm("Cipher.AESWRAP", PREFIX + "$Wrap");
             provider.addAlgorithm("Alg.Alias.Cipher", NISTObjectIdentifiers.id_aes128_wrap, "AESWRAP");
@@ -56,6 +56,7 @@
 import org.bouncycastle.crypto.modes.OpenPGPCFBBlockCipher;
 import org.bouncycastle.crypto.modes.PGPCFBBlockCipher;
 import org.bouncycastle.crypto.modes.SICBlockCipher;
+import org.bouncycastle.crypto.modes.XTSBlockCipher;
 import org.bouncycastle.crypto.paddings.BlockCipherPadding;
 import org.bouncycastle.crypto.paddings.ISO10126d2Padding;
 import org.bouncycastle.crypto.paddings.ISO7816d4Padding;
@@ -72,6 +73,7 @@
 import org.bouncycastle.crypto.params.ParametersWithSBox;
 import org.bouncycastle.crypto.params.RC2Parameters;
 import org.bouncycastle.crypto.params.RC5Parameters;
+import org.bouncycastle.crypto.util.ByteBufferCipherUtil;
 import org.bouncycastle.internal.asn1.cms.GCMParameters;
 import org.bouncycastle.jcajce.PBKDF1Key;
 import org.bouncycastle.jcajce.PBKDF1KeyWithParameters;
@@ -457,6 +459,18 @@ else if (modeName.equals("CTS"))
             ivLength = baseEngine.getBlockSize();
             cipher = new BufferedGenericBlockCipher(new CTSBlockCipher(CBCBlockCipher.newInstance(baseEngine)));
         }
+        else if (modeName.equals("XTS"))
+        {
+            if (engineProvider != null && baseEngine.getBlockSize() == 16)
+            {
+                ivLength = baseEngine.getBlockSize();
+                cipher = new BufferedGenericBlockCipher(new XTSBlockCipher(engineProvider.get(), engineProvider.get()));
+            }
+            else
+            {
+                throw new NoSuchAlgorithmException("can't support mode " + mode);
+            }
+        }
         else if (modeName.equals("CCM"))
         {
             ivLength = 12; // CCM nonce 7..13 bytes
@@ -543,6 +557,10 @@ else if (paddingName.equals("WITHCTS") || paddingName.equals("CTSPADDING") || pa
             {
                 throw new NoSuchPaddingException("Only NoPadding can be used with AEAD modes.");
             }
+            else if ("XTS".equals(modeName))
+            {
+                throw new NoSuchPaddingException("Only NoPadding can be used with XTS mode.");
+            }
             else if (paddingName.equals("PKCS5PADDING") || paddingName.equals("PKCS7PADDING"))
             {
                 cipher = new BufferedGenericBlockCipher(cipher.getUnderlyingCipher());
@@ -1154,6 +1172,27 @@ protected int engineUpdate(
         }
     }
 
+    protected int engineUpdate(
+        ByteBuffer input,
+        ByteBuffer output)
+        throws ShortBufferException
+    {
+        if (output.remaining() < cipher.getUpdateOutputSize(input.remaining()))
+        {
+            throw new ShortBufferException("output buffer too short for input.");
+        }
+
+        try
+        {
+            return cipher.processBytes(input, output);
+        }
+        catch (DataLengthException e)
+        {
+            // should never occur
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
     protected byte[] engineDoFinal(
         byte[] input,
         int inputOffset,
@@ -1228,6 +1267,37 @@ protected int engineDoFinal(
         }
     }
 
+    protected int engineDoFinal(
+        ByteBuffer input,
+        ByteBuffer output)
+        throws IllegalBlockSizeException, BadPaddingException, ShortBufferException
+    {
+        int len = 0;
+
+        if (output.remaining() < engineGetOutputSize(input.remaining()))
+        {
+            throw new ShortBufferException("output buffer too short for input.");
+        }
+
+        try
+        {
+            if (input.hasRemaining())
+            {
+                len = cipher.processBytes(input, output);
+            }
+
+            return (len + cipher.doFinal(output));
+        }
+        catch (OutputLengthException e)
+        {
+            throw new IllegalBlockSizeException(e.getMessage());
+        }
+        catch (DataLengthException e)
+        {
+            throw new IllegalBlockSizeException(e.getMessage());
+        }
+    }
+
     private boolean isAEADModeName(
         String modeName)
     {
@@ -1261,9 +1331,16 @@ public int processByte(byte in, byte[] out, int outOff)
         public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
             throws DataLengthException;
 
+        public int processBytes(ByteBuffer in, ByteBuffer out)
+            throws DataLengthException;
+
         public int doFinal(byte[] out, int outOff)
             throws IllegalStateException,
             BadPaddingException;
+
+        public int doFinal(ByteBuffer out)
+            throws IllegalStateException,
+            BadPaddingException;
     }
 
     private static class BufferedGenericBlockCipher
@@ -1294,7 +1371,7 @@ public void init(boolean forEncryption, CipherParameters params)
 
         public boolean wrapOnNoPadding()
         {
-            return !(cipher instanceof CTSBlockCipher);
+            return !(cipher instanceof CTSBlockCipher || cipher instanceof XTSBlockCipher);
         }
 
         public String getAlgorithmName()
@@ -1334,6 +1411,12 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
             return cipher.processBytes(in, inOff, len, out, outOff);
         }
 
+        public int processBytes(ByteBuffer in, ByteBuffer out)
+            throws DataLengthException
+        {
+            return ByteBufferCipherUtil.processBytes(cipher, in, out);
+        }
+
         public int doFinal(byte[] out, int outOff)
             throws IllegalStateException, BadPaddingException
         {
@@ -1346,6 +1429,19 @@ public int doFinal(byte[] out, int outOff)
                 throw new BadPaddingException(e.getMessage());
             }
         }
+
+        public int doFinal(ByteBuffer out)
+            throws IllegalStateException, BadPaddingException
+        {
+            try
+            {
+                return ByteBufferCipherUtil.doFinal(cipher, out);
+            }
+            catch (InvalidCipherTextException e)
+            {
+                throw new BadPaddingException(e.getMessage());
+            }
+        }
     }
 
     private static class BufferedFPEBlockCipher
@@ -1411,6 +1507,17 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
             return 0;
         }
 
+        public int processBytes(ByteBuffer in, ByteBuffer out)
+            throws DataLengthException
+        {
+            byte[] data = new byte[in.remaining()];
+            in.get(data);
+            eOut.write(data, 0, data.length);
+            Arrays.fill(data, (byte)0);
+
+            return 0;
+        }
+
         public int doFinal(byte[] out, int outOff)
             throws IllegalStateException, BadPaddingException
         {
@@ -1423,6 +1530,22 @@ public int doFinal(byte[] out, int outOff)
                 eOut.erase();
             }
         }
+
+        public int doFinal(ByteBuffer out)
+            throws IllegalStateException, BadPaddingException
+        {
+            byte[] data = new byte[eOut.size()];
+            try
+            {
+                int len = doFinal(data, 0);
+                out.put(data, 0, len);
+                return len;
+            }
+            finally
+            {
+                Arrays.fill(data, (byte)0);
+            }
+        }
     }
 
     private static class AEADGenericBlockCipher
@@ -1520,6 +1643,12 @@ public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
             return cipher.processBytes(in, inOff, len, out, outOff);
         }
 
+        public int processBytes(ByteBuffer in, ByteBuffer out)
+            throws DataLengthException
+        {
+            return ByteBufferCipherUtil.processBytes(cipher, in, out);
+        }
+
         public int doFinal(byte[] out, int outOff)
             throws IllegalStateException, BadPaddingException
         {
@@ -1529,25 +1658,43 @@ public int doFinal(byte[] out, int outOff)
             }
             catch (InvalidCipherTextException e)
             {
-                if (aeadBadTagConstructor != null)
+                throw createBadTagException(e);
+            }
+        }
+
+        public int doFinal(ByteBuffer out)
+            throws IllegalStateException, BadPaddingException
+        {
+            try
+            {
+                return ByteBufferCipherUtil.doFinal(cipher, out);
+            }
+            catch (InvalidCipherTextException e)
+            {
+                throw createBadTagException(e);
+            }
+        }
+
+        private static BadPaddingException createBadTagException(InvalidCipherTextException e)
+        {
+            if (aeadBadTagConstructor != null)
+            {
+                BadPaddingException aeadBadTag = null;
+                try
                 {
-                    BadPaddingException aeadBadTag = null;
-                    try
-                    {
-                        aeadBadTag = (BadPaddingException)aeadBadTagConstructor
-                            .newInstance(new Object[]{e.getMessage()});
-                    }
-                    catch (Exception i)
-                    {
-                        // Shouldn't happen, but fall through to BadPaddingException
-                    }
-                    if (aeadBadTag != null)
-                    {
-                        throw aeadBadTag;
-                    }
+                    aeadBadTag = (BadPaddingException)aeadBadTagConstructor
+                        .newInstance(new Object[]{e.getMessage()});
+                }
+                catch (Exception i)
+                {
+                    // Shouldn't happen, but fall through to BadPaddingException
+                }
+                if (aeadBadTag != null)
+                {
+                    return aeadBadTag;
                 }
-                throw new BadPaddingException(e.getMessage());
             }
+            return new BadPaddingException(e.getMessage());
         }
     }
 }
@@ -250,6 +250,7 @@ private void setup()
             put("CertPathBuilder.PKIX", "org.bouncycastle.jce.provider.PKIXCertPathBuilderSpi");
         }
         put("CertStore.Collection", "org.bouncycastle.jce.provider.CertStoreCollectionSpi");
+        put("CertStore.IndexedCollection", "org.bouncycastle.jce.provider.CertStoreIndexedCollectionSpi");
         put("CertStore.LDAP", "org.bouncycastle.jce.provider.X509LDAPCertStoreSpi");
         put("CertStore.Multi", "org.bouncycastle.jce.provider.MultiCertStoreSpi");
         put("Alg.Alias.CertStore.X509LDAP", "LDAP");
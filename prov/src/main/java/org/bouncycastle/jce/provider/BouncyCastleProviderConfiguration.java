@@ -13,6 +13,7 @@
 import org.bouncycastle.crypto.CryptoServicesRegistrar;
 import org.bouncycastle.crypto.params.DHParameters;
 import org.bouncycastle.crypto.params.DSAParameters;
+import org.bouncycastle.jcajce.PKIXCRLFetcher;
 import org.bouncycastle.jcajce.provider.asymmetric.util.EC5Util;
 import org.bouncycastle.jcajce.provider.config.ConfigurableProvider;
 import org.bouncycastle.jcajce.provider.config.ProviderConfiguration;
@@ -35,6 +36,8 @@
         BouncyCastleProvider.PROVIDER_NAME, ConfigurableProvider.ACCEPTABLE_EC_CURVES);
     private static Permission BC_ADDITIONAL_EC_CURVE_PERMISSION = new ProviderConfigurationPermission(
         BouncyCastleProvider.PROVIDER_NAME, ConfigurableProvider.ADDITIONAL_EC_PARAMETERS);
+    private static Permission BC_CRL_FETCHER_PERMISSION = new ProviderConfigurationPermission(
+        BouncyCastleProvider.PROVIDER_NAME, ConfigurableProvider.CRL_FETCHER);
 
     private ThreadLocal ecThreadSpec = new ThreadLocal();
     private ThreadLocal dhThreadSpec = new ThreadLocal();
@@ -43,6 +46,7 @@
     private volatile Object dhDefaultParams;
     private volatile Set acceptableNamedCurves = new HashSet();
     private volatile Map additionalECParameters = new HashMap();
+    private volatile PKIXCRLFetcher crlFetcher;
 
     void setParameter(String parameterName, Object parameter)
     {
@@ -152,6 +156,18 @@ else if (parameterName.equals(ConfigurableProvider.ADDITIONAL_EC_PARAMETERS))
 
             this.additionalECParameters = (Map)parameter;
         }
+        else if (parameterName.equals(ConfigurableProvider.CRL_FETCHER))
+        {
+            if (securityManager != null)
+            {
+                securityManager.checkPermission(BC_CRL_FETCHER_PERMISSION);
+            }
+
+            this.crlFetcher = (PKIXCRLFetcher)parameter;
+
+            // anything cached came from the previous fetcher
+            CrlCache.clear();
+        }
     }
 
     public ECParameterSpec getEcImplicitlyCa()
@@ -225,4 +241,9 @@ public Map getAdditionalECParameters()
     {
         return Collections.unmodifiableMap(additionalECParameters);
     }
+
+    PKIXCRLFetcher getCrlFetcher()
+    {
+        return crlFetcher;
+    }
 }
@@ -940,7 +940,16 @@ protected static void getCertStatus(
         X509CRLEntry crl_entry;
         if (isIndirect)
         {
-            crl_entry = crl.getRevokedCertificate(getSerialNumber(cert));
+            crl_entry = null;
+            if (cert instanceof X509Certificate)
+            {
+                // lets the CRL match on issuer as well as serial number, where it can
+                crl_entry = crl.getRevokedCertificate((X509Certificate)cert);
+            }
+            if (crl_entry == null)
+            {
+                crl_entry = crl.getRevokedCertificate(getSerialNumber(cert));
+            }
 
             if (crl_entry == null)
             {
@@ -0,0 +1,102 @@
+package org.bouncycastle.jce.provider;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.cert.CRL;
+import java.security.cert.CRLSelector;
+import java.security.cert.CertSelector;
+import java.security.cert.CertStoreException;
+import java.security.cert.CertStoreParameters;
+import java.security.cert.CertStoreSpi;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.jcajce.PKIXIndexedCertStore;
+import org.bouncycastle.util.StoreException;
+
+/**
+ * A CertStore for a collection of certificates and CRLs, in which the certificates are indexed by subject,
+ * issuer, serial number, and subject key identifier so that lookups for a specific certificate (such as the
+ * issuer searches made during path building) do not need to scan the whole collection.
+ * <p>
+ * Unlike the "Collection" CertStore, the contents of the passed in collection are copied when the store is
+ * created, so later changes to the collection are not reflected in the store.
+ * </p>
+ */
+public class CertStoreIndexedCollectionSpi extends CertStoreSpi
+{
+    private final PKIXIndexedCertStore certStore;
+    private final List crls = new ArrayList();
+
+    public CertStoreIndexedCollectionSpi(CertStoreParameters params)
+        throws InvalidAlgorithmParameterException
+    {
+        super(params);
+
+        if (!(params instanceof CollectionCertStoreParameters))
+        {
+            throw new InvalidAlgorithmParameterException("org.bouncycastle.jce.provider.CertStoreIndexedCollectionSpi: parameter must be a CollectionCertStoreParameters object\n" +  params.toString());
+        }
+
+        List certs = new ArrayList();
+        Iterator iter = ((CollectionCertStoreParameters)params).getCollection().iterator();
+
+        while (iter.hasNext())
+        {
+            Object obj = iter.next();
+
+            if (obj instanceof X509Certificate)
+            {
+                certs.add(obj);
+            }
+            else if (obj instanceof CRL)
+            {
+                crls.add(obj);
+            }
+        }
+
+        this.certStore = new PKIXIndexedCertStore(certs);
+    }
+
+    public Collection engineGetCertificates(
+        CertSelector selector)
+        throws CertStoreException
+    {
+        try
+        {
+            return certStore.getMatches(selector);
+        }
+        catch (StoreException e)
+        {
+            throw new CertStoreException(e);
+        }
+    }
+
+    public Collection engineGetCRLs(
+        CRLSelector selector)
+        throws CertStoreException
+    {
+        if (selector == null)
+        {
+            return new ArrayList(crls);
+        }
+
+        List col = new ArrayList();
+        Iterator iter = crls.iterator();
+
+        while (iter.hasNext())
+        {
+            CRL crl = (CRL)iter.next();
+
+            if (selector.match(crl))
+            {
+                col.add(crl);
+            }
+        }
+
+        return col;
+    }
+}
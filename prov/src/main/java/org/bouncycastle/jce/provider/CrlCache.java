@@ -3,7 +3,7 @@
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.security.cert.CRL;
@@ -12,13 +12,15 @@
 import java.security.cert.X509CRL;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.naming.Context;
 import javax.naming.NamingException;
@@ -27,68 +29,265 @@
 import javax.naming.directory.DirContext;
 import javax.naming.directory.InitialDirContext;
 
+import org.bouncycastle.jcajce.PKIXCRLFetcher;
 import org.bouncycastle.jcajce.PKIXCRLStore;
 import org.bouncycastle.util.CollectionStore;
 import org.bouncycastle.util.Iterable;
+import org.bouncycastle.util.Properties;
 import org.bouncycastle.util.Selector;
 import org.bouncycastle.util.Store;
 
+/**
+ * Cache of the CRLs retrieved from CRL distribution points, keyed by distribution point URI.
+ * <p>
+ * Lookups of different distribution points do not block each other, and concurrent lookups of the same
+ * distribution point share a single fetch. An entry is fetched again once a CRL in it has passed its nextUpdate,
+ * and shortly before that time it is refreshed in the background. The number of distribution points cached is
+ * bounded by "org.bouncycastle.x509.crlCacheSize", the least recently used entry being dropped when it is exceeded.
+ * </p>
+ */
 class CrlCache
 {
     private static final int DEFAULT_TIMEOUT = 15000;
+    private static final int DEFAULT_MAX_ENTRIES = 64;
 
-    private static Map<URI, WeakReference<PKIXCRLStore>> cache =
-        Collections.synchronizedMap(new WeakHashMap<URI, WeakReference<PKIXCRLStore>>());
+    // how long before nextUpdate a background refresh is started
+    private static final long REFRESH_AHEAD_MILLIS = 5 * 60 * 1000L;
+    // the minimum time between fetches of the same distribution point for a background refresh
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = 60 * 1000L;
 
-    static synchronized PKIXCRLStore getCrl(CertificateFactory certFact, Date validDate, URI distributionPoint)
+    private static final PKIXCRLFetcher defaultFetcher = new DefaultCrlFetcher();
+
+    private static final Map<URI, CacheEntry> cache = new ConcurrentHashMap<URI, CacheEntry>();
+
+    static PKIXCRLStore getCrl(CertificateFactory certFact, Date validDate, URI distributionPoint)
         throws IOException, CRLException
     {
-        PKIXCRLStore crlStore = null;
-
-        WeakReference<PKIXCRLStore> markerRef = (WeakReference)cache.get(distributionPoint);
-        if (markerRef != null)
+        CacheEntry entry = cache.get(distributionPoint);
+        if (entry == null)
         {
-            crlStore = (PKIXCRLStore)markerRef.get();
+            CacheEntry newEntry = new CacheEntry(distributionPoint);
+
+            entry = cache.putIfAbsent(distributionPoint, newEntry);
+            if (entry == null)
+            {
+                entry = newEntry;
+
+                evictIfFull();
+            }
         }
 
-        if (crlStore != null)
+        return entry.getStore(certFact, validDate);
+    }
+
+    static void clear()
+    {
+        cache.clear();
+    }
+
+    static int size()
+    {
+        return cache.size();
+    }
+
+    private static void evictIfFull()
+    {
+        int maxEntries = Properties.asInteger("org.bouncycastle.x509.crlCacheSize", DEFAULT_MAX_ENTRIES);
+
+        while (cache.size() > maxEntries)
         {
-            boolean isExpired = false;
-            for (Iterator it = crlStore.getMatches(null).iterator(); it.hasNext();)
+            CacheEntry oldest = null;
+            for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext();)
             {
-                X509CRL crl = (X509CRL)it.next();
-
-                Date nextUpdate = crl.getNextUpdate();
-                if (nextUpdate != null && nextUpdate.before(validDate))
+                CacheEntry entry = it.next();
+                if (oldest == null || entry.lastAccess < oldest.lastAccess)
                 {
-                    isExpired = true;
-                    break;
+                    oldest = entry;
                 }
             }
 
-            if (!isExpired)
+            if (oldest == null)
             {
-                return crlStore;
+                break;
             }
+
+            cache.remove(oldest.distributionPoint, oldest);
         }
+    }
+
+    private static PKIXCRLFetcher getFetcher()
+    {
+        PKIXCRLFetcher fetcher = ((BouncyCastleProviderConfiguration)BouncyCastleProvider.CONFIGURATION).getCrlFetcher();
+
+        return fetcher != null ? fetcher : defaultFetcher;
+    }
 
-        Collection crls;
+    private static class CacheEntry
+    {
+        private final URI distributionPoint;
 
-        if (distributionPoint.getScheme().equals("ldap"))
+        private volatile LocalCRLStore store;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile long lastFetch;
+
+        private FutureTask<LocalCRLStore> pending;
+
+        CacheEntry(URI distributionPoint)
         {
-            crls = getCrlsFromLDAP(certFact, distributionPoint);
+            this.distributionPoint = distributionPoint;
         }
-        else
+
+        LocalCRLStore getStore(CertificateFactory certFact, Date validDate)
+            throws IOException, CRLException
         {
-            // http, https, ftp
-            crls = getCrls(certFact, distributionPoint);
+            long now = System.currentTimeMillis();
+
+            lastAccess = now;
+
+            LocalCRLStore current = store;
+            if (current != null && !current.isExpired(validDate))
+            {
+                if (current.nextUpdate != null && current.nextUpdate.getTime() - now < REFRESH_AHEAD_MILLIS
+                    && now - lastFetch >= MIN_REFRESH_INTERVAL_MILLIS)
+                {
+                    refreshInBackground(certFact);
+                }
+
+                return current;
+            }
+
+            FutureTask<LocalCRLStore> task;
+            boolean isFetcher = false;
+
+            synchronized (this)
+            {
+                // another thread may have completed a fetch in the meantime
+                current = store;
+                if (current != null && !current.isExpired(validDate))
+                {
+                    return current;
+                }
+
+                task = pending;
+                if (task == null)
+                {
+                    task = startFetch(certFact);
+                    isFetcher = true;
+                }
+            }
+
+            // the fetch runs without holding the lock, any other callers wait on the task
+            if (isFetcher)
+            {
+                task.run();
+            }
+
+            return await(task);
         }
 
-        LocalCRLStore localCRLStore = new LocalCRLStore(new CollectionStore<CRL>(crls));
+        private void refreshInBackground(CertificateFactory certFact)
+        {
+            final FutureTask<LocalCRLStore> task;
+
+            synchronized (this)
+            {
+                if (pending != null)
+                {
+                    return;
+                }
 
-        cache.put(distributionPoint, new WeakReference<PKIXCRLStore>(localCRLStore));
+                task = startFetch(certFact);
+            }
 
-        return localCRLStore;
+            Thread thread = new Thread(task, "BC CRL Refresh");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // must be called holding the lock on this entry; the task clears pending when it completes.
+        private FutureTask<LocalCRLStore> startFetch(final CertificateFactory certFact)
+        {
+            lastFetch = System.currentTimeMillis();
+
+            pending = new FutureTask<LocalCRLStore>(new Callable<LocalCRLStore>()
+            {
+                public LocalCRLStore call()
+                    throws Exception
+                {
+                    try
+                    {
+                        LocalCRLStore fetched = new LocalCRLStore(new CollectionStore<CRL>(
+                            new ArrayList<CRL>(getFetcher().fetchCRLs(certFact, distributionPoint))));
+
+                        store = fetched;
+
+                        return fetched;
+                    }
+                    finally
+                    {
+                        synchronized (CacheEntry.this)
+                        {
+                            pending = null;
+                        }
+                    }
+                }
+            });
+
+            return pending;
+        }
+
+        private static LocalCRLStore await(FutureTask<LocalCRLStore> task)
+            throws IOException, CRLException
+        {
+            try
+            {
+                return task.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for CRL fetch");
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                {
+                    throw (IOException)cause;
+                }
+                if (cause instanceof CRLException)
+                {
+                    throw (CRLException)cause;
+                }
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException)cause;
+                }
+                if (cause instanceof Error)
+                {
+                    throw (Error)cause;
+                }
+                throw new CRLException("unable to fetch CRL: " + cause.getMessage(), cause);
+            }
+        }
+    }
+
+    private static class DefaultCrlFetcher
+        implements PKIXCRLFetcher
+    {
+        public Collection<? extends CRL> fetchCRLs(CertificateFactory certFact, URI distributionPoint)
+            throws IOException, CRLException
+        {
+            if (distributionPoint.getScheme().equals("ldap"))
+            {
+                return getCrlsFromLDAP(certFact, distributionPoint);
+            }
+            else
+            {
+                // http, https, ftp
+                return getCrls(certFact, distributionPoint);
+            }
+        }
     }
 
     private static Collection getCrlsFromLDAP(CertificateFactory certFact, URI distributionPoint)
@@ -142,6 +341,7 @@ private static Collection getCrls(CertificateFactory certFact, URI distributionP
         implements PKIXCRLStore, Iterable<CRL>
     {
         private Collection<CRL> _local;
+        private Date nextUpdate;
 
         /**
          * Basic constructor.
@@ -152,6 +352,27 @@ public LocalCRLStore(
             Store<CRL> collection)
         {
             _local = new ArrayList<CRL>(collection.getMatches(null));
+
+            for (Iterator<CRL> it = _local.iterator(); it.hasNext();)
+            {
+                CRL crl = it.next();
+                if (crl instanceof X509CRL)
+                {
+                    Date crlNextUpdate = ((X509CRL)crl).getNextUpdate();
+                    if (crlNextUpdate != null && (nextUpdate == null || crlNextUpdate.before(nextUpdate)))
+                    {
+                        nextUpdate = crlNextUpdate;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return whether a CRL in the store has a nextUpdate before the passed in date.
+         */
+        boolean isExpired(Date validDate)
+        {
+            return nextUpdate != null && nextUpdate.before(validDate);
         }
 
         /**
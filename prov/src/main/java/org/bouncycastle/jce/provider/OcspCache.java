@@ -3,7 +3,6 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -12,14 +11,14 @@
 import java.security.cert.Extension;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
-import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.ASN1OctetString;
 import org.bouncycastle.asn1.ASN1Sequence;
@@ -38,72 +37,164 @@
 import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.jcajce.PKIXCertRevocationCheckerParameters;
 import org.bouncycastle.jcajce.util.JcaJceHelper;
+import org.bouncycastle.util.Properties;
 import org.bouncycastle.util.io.Streams;
 
+/**
+ * Cache of OCSP responses, keyed by responder URI and CertID.
+ * <p>
+ * Lookups do not lock, and the cache is bounded by "org.bouncycastle.ocsp.cacheSize" entries, expired entries and
+ * then the oldest being dropped when it is exceeded. A response is reused until the validation date passes the
+ * nextUpdate of its SingleResponse or, where there is no nextUpdate, until an hour after its thisUpdate.
+ * </p>
+ * <p>
+ * The CertIDs of other certificates expected to be checked against the same responder can be passed in, in which
+ * case they are sent in the same OCSPRequest. The responses for these are only validated when they are used, against
+ * the issuer of the certificate they are for.
+ * </p>
+ */
 class OcspCache
 {
     private static final int DEFAULT_TIMEOUT = 15000;
     private static final int DEFAULT_MAX_RESPONSE_SIZE = 32 * 1024;
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+    private static final int MAX_BATCH_SIZE = 8;
 
-    private static Map<URI, WeakReference<Map<CertID, OCSPResponse>>> cache
-        = Collections.synchronizedMap(new WeakHashMap<URI, WeakReference<Map<CertID, OCSPResponse>>>());
+    // how long a response with no nextUpdate is reused for
+    private static final long NO_NEXT_UPDATE_MAX_AGE = 60 * 60 * 1000L;
 
+    private static final Map<CacheKey, CachedResponse> cache = new ConcurrentHashMap<CacheKey, CachedResponse>();
+
+    /**
+     * Return a current cached response for certID, or null if a request needs to be sent.
+     */
+    static OCSPResponse getCachedResponse(
+        CertID certID, PKIXCertRevocationCheckerParameters parameters, URI ocspResponder,
+        X509Certificate responderCert, JcaJceHelper helper)
+    {
+        CacheKey key = new CacheKey(ocspResponder, certID);
+
+        CachedResponse cached = cache.get(key);
+        if (cached == null)
+        {
+            return null;
+        }
+
+        if (cached.isCurrent(parameters.getValidDate()))
+        {
+            if (cached.isValidated())
+            {
+                return cached.response;
+            }
+
+            // prefetched with another certificate's request - check it against this certificate's issuer
+            BasicOCSPResponse basicResp = getBasicResponse(cached.response);
+            try
+            {
+                if (basicResp != null && ProvOcspRevocationChecker.validatedOcspResponse(
+                    basicResp, parameters, cached.nonce, responderCert, helper))
+                {
+                    cached.setValidated();
+
+                    return cached.response;
+                }
+            }
+            catch (CertPathValidatorException e)
+            {
+                // fall through to a request of our own
+            }
+        }
+
+        cache.remove(key, cached);
+
+        return null;
+    }
+
+    /**
+     * Request a response for certID from the responder, asking about any of batchCertIDs that are not cached in
+     * the same request.
+     */
     static OCSPResponse getOcspResponse(
-        CertID certID, PKIXCertRevocationCheckerParameters parameters,
+        CertID certID, Collection<CertID> batchCertIDs, PKIXCertRevocationCheckerParameters parameters,
         URI ocspResponder, X509Certificate responderCert, List<Extension> ocspExtensions,
         JcaJceHelper helper)
         throws CertPathValidatorException
     {
-        Map<CertID, OCSPResponse> responseMap = null;
+        byte[] nonce = getNonce(ocspExtensions);
+
+        ASN1EncodableVector requests = new ASN1EncodableVector();
+
+        requests.add(new Request(certID, null));
+        for (Iterator<CertID> it = batchCertIDs.iterator(); it.hasNext() && requests.size() < MAX_BATCH_SIZE;)
+        {
+            CertID batchID = it.next();
+            CachedResponse batchCached = cache.get(new CacheKey(ocspResponder, batchID));
+
+            if (!certID.equals(batchID) && (batchCached == null || !batchCached.isCurrent(parameters.getValidDate())))
+            {
+                requests.add(new Request(batchID, null));
+            }
+        }
 
-        WeakReference<Map<CertID, OCSPResponse>> markerRef = cache.get(ocspResponder);
-        if (markerRef != null)
+        OCSPResponse response = sendRequest(requests, parameters, ocspResponder, ocspExtensions);
+
+        if (OCSPResponseStatus.SUCCESSFUL != response.getResponseStatus().getIntValue() && requests.size() > 1)
         {
-            responseMap = markerRef.get();
+            // some responders only accept one Request per OCSPRequest, fall back to asking for ours alone
+            requests = new ASN1EncodableVector();
+            requests.add(new Request(certID, null));
+
+            response = sendRequest(requests, parameters, ocspResponder, ocspExtensions);
         }
 
-        if (responseMap != null)
+        if (OCSPResponseStatus.SUCCESSFUL == response.getResponseStatus().getIntValue())
         {
-            OCSPResponse response = responseMap.get(certID);
-            if (response != null)
+            boolean validated = false;
+            BasicOCSPResponse basicResp = getBasicResponse(response);
+
+            if (basicResp != null)
             {
-                BasicOCSPResponse basicResp = BasicOCSPResponse.getInstance(
-                    ASN1OctetString.getInstance(response.getResponseBytes().getResponse()).getOctets());
+                validated = ProvOcspRevocationChecker.validatedOcspResponse(basicResp, parameters, nonce, responderCert, helper);
+            }
 
-                ResponseData responseData = ResponseData.getInstance(basicResp.getTbsResponseData());
+            if (!validated)
+            {
+                throw new CertPathValidatorException(
+                    "OCSP response failed to validate", null, parameters.getCertPath(), parameters.getIndex());
+            }
 
-                ASN1Sequence s = responseData.getResponses();
+            cacheResponses(ocspResponder, certID, requests, basicResp, response, nonce);
 
-                for (int i = 0; i != s.size(); i++)
-                {
-                    SingleResponse resp = SingleResponse.getInstance(s.getObjectAt(i));
+            return response;
+        }
+        else
+        {
+            throw new CertPathValidatorException(
+                "OCSP responder failed: " + response.getResponseStatus().getValue(),
+                null, parameters.getCertPath(), parameters.getIndex());
+        }
+    }
 
-                    if (certID.equals(resp.getCertID()))
-                    {
-                        ASN1GeneralizedTime nextUp = resp.getNextUpdate();
-                        try
-                        {
-                            if (nextUp != null && parameters.getValidDate().after(nextUp.getDate()))
-                            {
-                                responseMap.remove(certID);
-                                response = null;
-                            }
-                        }
-                        catch (ParseException e)
-                        {
-                            // this should never happen, but...
-                            responseMap.remove(certID);
-                            response = null;
-                        }
-                    }
-                }
-                if (response != null)
-                {
-                    return response;
-                }
+    private static byte[] getNonce(List<Extension> ocspExtensions)
+    {
+        for (int i = 0; i != ocspExtensions.size(); i++)
+        {
+            Extension ext = (Extension)ocspExtensions.get(i);
+
+            if (OCSPObjectIdentifiers.id_pkix_ocsp_nonce.getId().equals(ext.getId()))
+            {
+                return ext.getValue();
             }
         }
 
+        return null;
+    }
+
+    private static OCSPResponse sendRequest(
+        ASN1EncodableVector requests, PKIXCertRevocationCheckerParameters parameters,
+        URI ocspResponder, List<Extension> ocspExtensions)
+        throws CertPathValidatorException
+    {
         URL ocspUrl;
         try
         {
@@ -118,26 +209,15 @@ static OCSPResponse getOcspResponse(
         //
         // basic request generation
         //
-        ASN1EncodableVector requests = new ASN1EncodableVector();
-
-        requests.add(new Request(certID, null));
-
         List exts = ocspExtensions;
         ASN1EncodableVector requestExtensions = new ASN1EncodableVector();
 
-        byte[] nonce = null;
         for (int i = 0; i != exts.size(); i++)
         {
             Extension ext = (Extension)exts.get(i);
-            byte[] value = ext.getValue();
-
-            if (OCSPObjectIdentifiers.id_pkix_ocsp_nonce.getId().equals(ext.getId()))
-            {
-                nonce = value;
-            }
 
             requestExtensions.add(new org.bouncycastle.asn1.x509.Extension(
-                new ASN1ObjectIdentifier(ext.getId()), ext.isCritical(), value));
+                new ASN1ObjectIdentifier(ext.getId()), ext.isCritical(), ext.getValue()));
         }
 
         // TODO: configure originator
@@ -156,7 +236,6 @@ static OCSPResponse getOcspResponse(
 
         try
         {
-
             byte[] request = new OCSPRequest(tbsReq, signature).getEncoded();
 
             HttpURLConnection ocspCon = (HttpURLConnection)ocspUrl.openConnection();
@@ -179,56 +258,194 @@ static OCSPResponse getOcspResponse(
                 // TODO: make configurable
                 contentLength = DEFAULT_MAX_RESPONSE_SIZE;
             }
-            OCSPResponse response = OCSPResponse.getInstance(Streams.readAllLimited(reqIn, contentLength));
 
-            if (OCSPResponseStatus.SUCCESSFUL == response.getResponseStatus().getIntValue())
-            {
-                boolean validated = false;
-                ResponseBytes respBytes = ResponseBytes.getInstance(response.getResponseBytes());
+            return OCSPResponse.getInstance(Streams.readAllLimited(reqIn, contentLength));
+        }
+        catch (IOException e)
+        {
+            throw new CertPathValidatorException("configuration error: " + e.getMessage(),
+                     e, parameters.getCertPath(), parameters.getIndex());
+        }
+    }
 
-                if (respBytes.getResponseType().equals(OCSPObjectIdentifiers.id_pkix_ocsp_basic))
-                {
-                    BasicOCSPResponse basicResp = BasicOCSPResponse.getInstance(respBytes.getResponse().getOctets());
+    private static void cacheResponses(URI ocspResponder, CertID certID, ASN1EncodableVector requests,
+        BasicOCSPResponse basicResp, OCSPResponse response, byte[] nonce)
+    {
+        ASN1Sequence s = ResponseData.getInstance(basicResp.getTbsResponseData()).getResponses();
 
-                    validated = ProvOcspRevocationChecker.validatedOcspResponse(basicResp, parameters, nonce, responderCert, helper);
-                }
+        for (int i = 0; i != requests.size(); i++)
+        {
+            CertID requestID = Request.getInstance(requests.get(i)).getReqCert();
 
-                if (!validated)
-                {
-                    throw new CertPathValidatorException(
-                        "OCSP response failed to validate", null, parameters.getCertPath(), parameters.getIndex());
-                }
+            SingleResponse resp = findResponse(s, requestID);
+            if (resp == null && !requestID.equals(certID))
+            {
+                continue;
+            }
 
-                markerRef = cache.get(ocspResponder);
-                if (markerRef != null)
+            Date expiry = new Date(System.currentTimeMillis() + NO_NEXT_UPDATE_MAX_AGE);
+            if (resp != null)
+            {
+                try
                 {
-                    responseMap = markerRef.get();
+                    if (resp.getNextUpdate() != null)
+                    {
+                        expiry = resp.getNextUpdate().getDate();
+                    }
+                    else
+                    {
+                        expiry = new Date(resp.getThisUpdate().getDate().getTime() + NO_NEXT_UPDATE_MAX_AGE);
+                    }
                 }
-
-                if (responseMap != null)
+                catch (ParseException e)
                 {
-                    responseMap.put(certID, response);
+                    continue;
                 }
-                else
+            }
+
+            // the response has only been validated for the certificate it was requested for
+            cache.put(new CacheKey(ocspResponder, requestID),
+                new CachedResponse(response, nonce, expiry, requestID.equals(certID)));
+        }
+
+        evictIfFull();
+    }
+
+    private static void evictIfFull()
+    {
+        int maxEntries = Properties.asInteger("org.bouncycastle.ocsp.cacheSize", DEFAULT_MAX_ENTRIES);
+        if (cache.size() <= maxEntries)
+        {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        for (Iterator<CachedResponse> it = cache.values().iterator(); it.hasNext();)
+        {
+            if (it.next().isExpired(now))
+            {
+                it.remove();
+            }
+        }
+
+        // trim to 7/8 of the maximum so the next few insertions don't need another pass
+        int target = maxEntries - maxEntries / 8;
+        while (cache.size() > target)
+        {
+            Map.Entry<CacheKey, CachedResponse> oldest = null;
+            for (Iterator<Map.Entry<CacheKey, CachedResponse>> it = cache.entrySet().iterator(); it.hasNext();)
+            {
+                Map.Entry<CacheKey, CachedResponse> entry = it.next();
+                if (oldest == null || entry.getValue().created < oldest.getValue().created)
                 {
-                    responseMap = new HashMap<CertID, OCSPResponse>();
-                    responseMap.put(certID, response);
-                    cache.put(ocspResponder, new WeakReference<Map<CertID, OCSPResponse>>(responseMap));
+                    oldest = entry;
                 }
+            }
 
-                return response;
+            if (oldest == null)
+            {
+                break;
             }
-            else
+
+            cache.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private static BasicOCSPResponse getBasicResponse(OCSPResponse response)
+    {
+        ResponseBytes respBytes = response.getResponseBytes();
+        if (respBytes == null || !respBytes.getResponseType().equals(OCSPObjectIdentifiers.id_pkix_ocsp_basic))
+        {
+            return null;
+        }
+
+        return BasicOCSPResponse.getInstance(ASN1OctetString.getInstance(respBytes.getResponse()).getOctets());
+    }
+
+    private static SingleResponse findResponse(ASN1Sequence responses, CertID certID)
+    {
+        for (int i = 0; i != responses.size(); i++)
+        {
+            SingleResponse resp = SingleResponse.getInstance(responses.getObjectAt(i));
+
+            if (certID.equals(resp.getCertID()))
             {
-                throw new CertPathValidatorException(
-                    "OCSP responder failed: " + response.getResponseStatus().getValue(),
-                    null, parameters.getCertPath(), parameters.getIndex());
+                return resp;
             }
         }
-        catch (IOException e)
+
+        return null;
+    }
+
+    private static class CacheKey
+    {
+        private final URI ocspResponder;
+        private final CertID certID;
+
+        CacheKey(URI ocspResponder, CertID certID)
         {
-            throw new CertPathValidatorException("configuration error: " + e.getMessage(),
-                     e, parameters.getCertPath(), parameters.getIndex());
+            this.ocspResponder = ocspResponder;
+            this.certID = certID;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (o == this)
+            {
+                return true;
+            }
+            if (!(o instanceof CacheKey))
+            {
+                return false;
+            }
+
+            CacheKey other = (CacheKey)o;
+
+            return ocspResponder.equals(other.ocspResponder) && certID.equals(other.certID);
+        }
+
+        public int hashCode()
+        {
+            return ocspResponder.hashCode() * 31 + certID.hashCode();
+        }
+    }
+
+    private static class CachedResponse
+    {
+        private final OCSPResponse response;
+        private final byte[] nonce;
+        private final Date expiry;
+        private final long created = System.currentTimeMillis();
+
+        private volatile boolean validated;
+
+        CachedResponse(OCSPResponse response, byte[] nonce, Date expiry, boolean validated)
+        {
+            this.response = response;
+            this.nonce = nonce;
+            this.expiry = expiry;
+            this.validated = validated;
+        }
+
+        boolean isCurrent(Date validDate)
+        {
+            return !validDate.after(expiry);
+        }
+
+        boolean isExpired(long now)
+        {
+            return now > expiry.getTime();
+        }
+
+        boolean isValidated()
+        {
+            return validated;
+        }
+
+        void setValidated()
+        {
+            validated = true;
         }
     }
 }
@@ -14,7 +14,9 @@
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.security.cert.Extension;
+import java.security.cert.PKIXRevocationChecker;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -216,7 +218,14 @@ public void check(Certificate certificate)
             // TODO: configure hash algorithm
             CertID id = createCertID(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1), issuer, new ASN1Integer(cert.getSerialNumber()));
 
-            OCSPResponse response = OcspCache.getOcspResponse(id, parameters, ocspUri, parent.getOcspResponderCert(), parent.getOcspExtensions(), helper);
+            OCSPResponse response = OcspCache.getCachedResponse(id, parameters, ocspUri,
+                parent.getOcspResponderCert(), helper);
+            if (response == null)
+            {
+                // only work out the CertIDs for the rest of the path when a request is actually sent
+                response = OcspCache.getOcspResponse(id, getBatchCertIDs(ocspUri, id.getHashAlgorithm()),
+                    parameters, ocspUri, parent.getOcspResponderCert(), parent.getOcspExtensions(), helper);
+            }
 
             try
             {
@@ -340,6 +349,49 @@ public void check(Certificate certificate)
         }
     }
 
+    /*
+     * Return the CertIDs for the certificates still to be checked in the path which will go to the same responder,
+     * so their status can be requested along with the current certificate's.
+     */
+    private List<CertID> getBatchCertIDs(URI ocspUri, AlgorithmIdentifier digestAlg)
+    {
+        List<CertID> certIDs = new ArrayList<CertID>();
+
+        List<? extends Certificate> certs = parameters.getCertPath().getCertificates();
+        Map<X509Certificate, byte[]> ocspResponses = parent.getOcspResponses();
+        boolean isFixedResponder = ocspURL != null || parent.getOcspResponder() != null;
+        boolean isEndEntityOnly = parent.getOptions().contains(PKIXRevocationChecker.Option.ONLY_END_ENTITY);
+
+        // certificates are checked from the trust anchor end, so the ones to come have lower indexes
+        for (int i = parameters.getIndex() - 1; i >= 0; i--)
+        {
+            X509Certificate cert = (X509Certificate)certs.get(i);
+
+            if ((isEndEntityOnly && cert.getBasicConstraints() != -1) || ocspResponses.get(cert) != null)
+            {
+                continue;
+            }
+            if (!isFixedResponder && !ocspUri.equals(getOcspResponderURI(cert)))
+            {
+                continue;
+            }
+
+            try
+            {
+                org.bouncycastle.asn1.x509.Certificate issuer = org.bouncycastle.asn1.x509.Certificate.getInstance(
+                    certs.get(i + 1).getEncoded());
+
+                certIDs.add(createCertID(digestAlg, issuer, new ASN1Integer(cert.getSerialNumber())));
+            }
+            catch (Exception e)
+            {
+                // leave this one to be requested when it is checked
+            }
+        }
+
+        return certIDs;
+    }
+
     static URI getOcspResponderURI(X509Certificate cert)
     {
         byte[] extValue = cert.getExtensionValue(org.bouncycastle.asn1.x509.Extension.authorityInfoAccess.getId());
@@ -0,0 +1,103 @@
+package org.bouncycastle.crypto.engines;
+
+import static jdk.incubator.vector.VectorOperators.ROL;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.bouncycastle.util.Pack;
+
+/**
+ * ChaCha key stream for four blocks computed with the Vector API: each of the 16 state words is held
+ * in a 128 bit vector with one lane per block. Loaded by ChaChaCore4 when the jdk.incubator.vector
+ * module is available.
+ */
+class VectorChaChaCore4
+    extends ChaChaCore4
+{
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_128;
+
+    private final int[] x = new int[64];
+
+    protected void generateBlocks(int rounds, int[] input, byte[] output)
+    {
+        IntVector x00 = IntVector.broadcast(SPECIES, input[ 0]);
+        IntVector x01 = IntVector.broadcast(SPECIES, input[ 1]);
+        IntVector x02 = IntVector.broadcast(SPECIES, input[ 2]);
+        IntVector x03 = IntVector.broadcast(SPECIES, input[ 3]);
+        IntVector x04 = IntVector.broadcast(SPECIES, input[ 4]);
+        IntVector x05 = IntVector.broadcast(SPECIES, input[ 5]);
+        IntVector x06 = IntVector.broadcast(SPECIES, input[ 6]);
+        IntVector x07 = IntVector.broadcast(SPECIES, input[ 7]);
+        IntVector x08 = IntVector.broadcast(SPECIES, input[ 8]);
+        IntVector x09 = IntVector.broadcast(SPECIES, input[ 9]);
+        IntVector x10 = IntVector.broadcast(SPECIES, input[10]);
+        IntVector x11 = IntVector.broadcast(SPECIES, input[11]);
+        IntVector x12 = IntVector.fromArray(SPECIES, counterLo, 0);
+        IntVector x13 = IntVector.fromArray(SPECIES, counterHi, 0);
+        IntVector x14 = IntVector.broadcast(SPECIES, input[14]);
+        IntVector x15 = IntVector.broadcast(SPECIES, input[15]);
+
+        for (int i = rounds; i > 0; i -= 2)
+        {
+            x00 = x00.add(x04); x12 = x12.lanewise(XOR, x00).lanewise(ROL, 16);
+            x08 = x08.add(x12); x04 = x04.lanewise(XOR, x08).lanewise(ROL, 12);
+            x00 = x00.add(x04); x12 = x12.lanewise(XOR, x00).lanewise(ROL, 8);
+            x08 = x08.add(x12); x04 = x04.lanewise(XOR, x08).lanewise(ROL, 7);
+            x01 = x01.add(x05); x13 = x13.lanewise(XOR, x01).lanewise(ROL, 16);
+            x09 = x09.add(x13); x05 = x05.lanewise(XOR, x09).lanewise(ROL, 12);
+            x01 = x01.add(x05); x13 = x13.lanewise(XOR, x01).lanewise(ROL, 8);
+            x09 = x09.add(x13); x05 = x05.lanewise(XOR, x09).lanewise(ROL, 7);
+            x02 = x02.add(x06); x14 = x14.lanewise(XOR, x02).lanewise(ROL, 16);
+            x10 = x10.add(x14); x06 = x06.lanewise(XOR, x10).lanewise(ROL, 12);
+            x02 = x02.add(x06); x14 = x14.lanewise(XOR, x02).lanewise(ROL, 8);
+            x10 = x10.add(x14); x06 = x06.lanewise(XOR, x10).lanewise(ROL, 7);
+            x03 = x03.add(x07); x15 = x15.lanewise(XOR, x03).lanewise(ROL, 16);
+            x11 = x11.add(x15); x07 = x07.lanewise(XOR, x11).lanewise(ROL, 12);
+            x03 = x03.add(x07); x15 = x15.lanewise(XOR, x03).lanewise(ROL, 8);
+            x11 = x11.add(x15); x07 = x07.lanewise(XOR, x11).lanewise(ROL, 7);
+            x00 = x00.add(x05); x15 = x15.lanewise(XOR, x00).lanewise(ROL, 16);
+            x10 = x10.add(x15); x05 = x05.lanewise(XOR, x10).lanewise(ROL, 12);
+            x00 = x00.add(x05); x15 = x15.lanewise(XOR, x00).lanewise(ROL, 8);
+            x10 = x10.add(x15); x05 = x05.lanewise(XOR, x10).lanewise(ROL, 7);
+            x01 = x01.add(x06); x12 = x12.lanewise(XOR, x01).lanewise(ROL, 16);
+            x11 = x11.add(x12); x06 = x06.lanewise(XOR, x11).lanewise(ROL, 12);
+            x01 = x01.add(x06); x12 = x12.lanewise(XOR, x01).lanewise(ROL, 8);
+            x11 = x11.add(x12); x06 = x06.lanewise(XOR, x11).lanewise(ROL, 7);
+            x02 = x02.add(x07); x13 = x13.lanewise(XOR, x02).lanewise(ROL, 16);
+            x08 = x08.add(x13); x07 = x07.lanewise(XOR, x08).lanewise(ROL, 12);
+            x02 = x02.add(x07); x13 = x13.lanewise(XOR, x02).lanewise(ROL, 8);
+            x08 = x08.add(x13); x07 = x07.lanewise(XOR, x08).lanewise(ROL, 7);
+            x03 = x03.add(x04); x14 = x14.lanewise(XOR, x03).lanewise(ROL, 16);
+            x09 = x09.add(x14); x04 = x04.lanewise(XOR, x09).lanewise(ROL, 12);
+            x03 = x03.add(x04); x14 = x14.lanewise(XOR, x03).lanewise(ROL, 8);
+            x09 = x09.add(x14); x04 = x04.lanewise(XOR, x09).lanewise(ROL, 7);
+        }
+
+        x00.add(input[ 0]).intoArray(x, 0);
+        x01.add(input[ 1]).intoArray(x, 4);
+        x02.add(input[ 2]).intoArray(x, 8);
+        x03.add(input[ 3]).intoArray(x, 12);
+        x04.add(input[ 4]).intoArray(x, 16);
+        x05.add(input[ 5]).intoArray(x, 20);
+        x06.add(input[ 6]).intoArray(x, 24);
+        x07.add(input[ 7]).intoArray(x, 28);
+        x08.add(input[ 8]).intoArray(x, 32);
+        x09.add(input[ 9]).intoArray(x, 36);
+        x10.add(input[10]).intoArray(x, 40);
+        x11.add(input[11]).intoArray(x, 44);
+        x12.add(IntVector.fromArray(SPECIES, counterLo, 0)).intoArray(x, 48);
+        x13.add(IntVector.fromArray(SPECIES, counterHi, 0)).intoArray(x, 52);
+        x14.add(input[14]).intoArray(x, 56);
+        x15.add(input[15]).intoArray(x, 60);
+
+        // x holds the state word by word, four lanes to a word; the key stream is block by block
+        for (int w = 0; w < 16; w++)
+        {
+            for (int l = 0; l < 4; l++)
+            {
+                Pack.intToLittleEndian(x[(w << 2) + l], output, (l << 6) + (w << 2));
+            }
+        }
+    }
+}
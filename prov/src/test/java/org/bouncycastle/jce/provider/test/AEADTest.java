@@ -1,6 +1,7 @@
 package org.bouncycastle.jce.provider.test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -68,6 +69,7 @@ public void performTest() throws Exception
             testGCMGeneric(KGCM, NGCM, new byte[0], new byte[0], CGCM);
             testGCMParameterSpecWithMultipleUpdates(K2, N2, A2, P2, C2);
             testRepeatedGCMWithSpec(KGCM, NGCM, A2, P2, Hex.decode("f4732d84342623f65b7d63c3c335dd44b87d"));
+            testByteBuffers(K2, N2, A2, P2, C2);
         }
         else
         {
@@ -258,6 +260,71 @@ private void testGCMParameterSpec(byte[] K,
         }
     }
 
+    private void testByteBuffers(byte[] K,
+                                 byte[] N,
+                                 byte[] A,
+                                 byte[] P,
+                                 byte[] C)
+        throws Exception
+    {
+        Cipher eax = Cipher.getInstance("AES/EAX/NoPadding", "BC");
+        SecretKeySpec key = new SecretKeySpec(K, "AES");
+        GCMParameterSpec spec = new GCMParameterSpec(128, N);
+
+        for (int mode = 0; mode < 4; mode++)
+        {
+            boolean directIn = (mode & 1) != 0;
+            boolean directOut = (mode & 2) != 0;
+
+            eax.init(Cipher.DECRYPT_MODE, key, spec);
+            eax.updateAAD(ByteBuffer.wrap(A));
+
+            ByteBuffer in = directIn ? ByteBuffer.allocateDirect(C.length) : ByteBuffer.allocate(C.length);
+            in.put(C).flip();
+            ByteBuffer out = directOut ? ByteBuffer.allocateDirect(P.length) : ByteBuffer.allocate(P.length);
+
+            ByteBuffer first = in.duplicate();
+            first.limit(C.length / 2);
+            in.position(C.length / 2);
+
+            int len = eax.update(first, out);
+            len += eax.doFinal(in, out);
+
+            byte[] p = new byte[len];
+            out.flip();
+            out.get(p);
+
+            if (!areEqual(P, p) || first.hasRemaining() || in.hasRemaining())
+            {
+                fail("JCE ByteBuffer decrypt failed (direct in: " + directIn + ", direct out: " + directOut + ")");
+            }
+        }
+
+        Cipher cbc = Cipher.getInstance("AES/CBC/PKCS5Padding", "BC");
+        byte[] data = new byte[10000 + 3];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)i;
+        }
+        cbc.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(new byte[16]));
+        byte[] expected = cbc.doFinal(data);
+
+        cbc.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(new byte[16]));
+        ByteBuffer in = ByteBuffer.allocateDirect(data.length);
+        in.put(data).flip();
+        ByteBuffer out = ByteBuffer.allocateDirect(cbc.getOutputSize(data.length));
+        cbc.doFinal(in, out);
+
+        byte[] c = new byte[out.position()];
+        out.flip();
+        out.get(c);
+
+        if (!areEqual(expected, c))
+        {
+            fail("JCE direct ByteBuffer CBC encrypt failed");
+        }
+    }
+
     private void testGCMParameterSpecWithMultipleUpdates(byte[] K,
                                       byte[] N,
                                       byte[] A,
@@ -454,6 +454,81 @@ private void ocbTest()
         }
     }
 
+    private void xtsTest()
+        throws Exception
+    {
+        // IEEE 1619 vector 2
+        byte[] K = Hex.decode(
+              "11111111111111111111111111111111" + "22222222222222222222222222222222");
+        byte[] P = Hex.decode(
+              "4444444444444444444444444444444444444444444444444444444444444444");
+        byte[] N = Hex.decode("33333333330000000000000000000000");
+        byte[] C = Hex.decode(
+              "c454185e6a16936e39334038acef838bfb186fff7480adc4289382ecd6d394f0");
+
+        Key                     key;
+        Cipher                  in, out;
+
+        key = new SecretKeySpec(K, "AES");
+
+        in = Cipher.getInstance("AES/XTS/NoPadding", "BC");
+        out = Cipher.getInstance("AES/XTS/NoPadding", "BC");
+
+        in.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(N));
+
+        byte[] enc = in.doFinal(P);
+        if (!areEqual(enc, C))
+        {
+            fail("ciphertext doesn't match in XTS");
+        }
+
+        out.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(N));
+
+        byte[] dec = out.doFinal(C);
+        if (!areEqual(dec, P))
+        {
+            fail("plaintext doesn't match in XTS");
+        }
+
+        // ciphertext stealing, across updates
+        K = Hex.decode("fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0" + "bfbebdbcbbbab9b8b7b6b5b4b3b2b1b0");
+        P = Hex.decode("000102030405060708090a0b0c0d0e0f101112");
+        N = Hex.decode("123456789a0000000000000000000000");
+        C = Hex.decode("0d39809a65c1d55501960b671d4b8b6b95c871");
+
+        key = new SecretKeySpec(K, "AES");
+
+        in.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(N));
+
+        enc = new byte[in.getOutputSize(P.length)];
+        int len = in.update(P, 0, 7, enc, 0);
+        len += in.update(P, 7, P.length - 7, enc, len);
+        len += in.doFinal(enc, len);
+        if (len != C.length || !areEqual(enc, C))
+        {
+            fail("ciphertext doesn't match in XTS with stealing");
+        }
+
+        out.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(N));
+
+        dec = out.doFinal(C);
+        if (!areEqual(dec, P))
+        {
+            fail("plaintext doesn't match in XTS with stealing");
+        }
+
+        try
+        {
+            in = Cipher.getInstance("AES/XTS/PKCS5Padding", "BC");
+
+            fail("bad padding missed in XTS");
+        }
+        catch (NoSuchPaddingException e)
+        {
+            // expected
+        }
+    }
+
     public void performTest()
         throws Exception
     {
@@ -537,6 +612,7 @@ public void performTest()
         gcmTest();
         gcmTestWithRandom();
         ocbTest();
+        xtsTest();
     }
 
     public static void main(
@@ -4,8 +4,10 @@
 import java.io.IOException;
 import java.math.BigInteger;
 import java.net.InetAddress;
+import java.net.URI;
 import java.net.UnknownHostException;
 import java.security.InvalidKeyException;
+import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.Principal;
@@ -15,6 +17,8 @@
 import java.security.Signature;
 import java.security.SignatureException;
 import java.security.cert.CertPath;
+import java.security.cert.CRL;
+import java.security.cert.CRLException;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertPathValidatorException;
 import java.security.cert.CertStore;
@@ -46,6 +50,8 @@
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -75,11 +81,18 @@
 import org.bouncycastle.asn1.x500.style.RFC4519Style;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
 import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
 import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.asn1.x509.KeyUsage;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.jcajce.PKIXCRLFetcher;
+import org.bouncycastle.jcajce.provider.config.ConfigurableProvider;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Integers;
@@ -519,6 +532,7 @@ public void performTest()
         validateWithExtendedKeyUsage();
         testEmptyPath();
         checkInvalidCertPath();
+        checkCRLDistributionPointFetch();
     }
 
     // extended key usage chain
@@ -577,6 +591,145 @@ private void validateWithExtendedKeyUsage()
     static byte[] extInvExtCA = Base64.decode("MIICKDCCAZGgAwIBAgIGAV3ZIWorMA0GCSqGSIb3DQEBCwUAMBMxETAPBgNVBAMMCEtQMSBST09UMB4XDTE3MDgxMzAxMDcwN1oXDTE3MDgxMzAxMzcxMlowETEPMA0GA1UEAwwGS1AxIENBMIGfMA0GCSqGSIb3DQEBAQUAA4GNADCBiQKBgQCJKySmanEENpLJdPwpM/v0I7H0bW9ZlIxRpiL+/Z4uvF3j0r0O42Tm+dW8Ub42DzHcQ8pK/n/k2Wb4Jf7cP8+TGTAne3bgC24USW131XUZxaunGt4tCqZ0RNWpmBQUcUM0lgntDSfcvyv3QFB+nwLc93GYij9l3FaeUcHkwFiKsQIDAQABo4GIMIGFMEAGA1UdIwQ5MDeAFLnC9UF+JqEqboFH84ab9dEAkwEBoRekFTATMREwDwYDVQQDDAhLUDEgUk9PVIIGAV3ZIWoqMB0GA1UdDgQWBBQkr/0UP1MKPGQH7bkRNctHMsVQsjASBgNVHRMBAf8ECDAGAQH/AgEAMA4GA1UdDwEB/wQEAwIBhjANBgkqhkiG9w0BAQsFAAOBgQCZxLwkAPif1H2P398MHK3NLf3mrmLsP41ZphdHnSLNROlY9PdO5I/dfhElzVXW2oxecIIKbOQsjZe0FOSGvZHEhLftQmOdfGc5QfGf5w9CSFCCBe5vHdMjglRLVhNB51jz6DB7Dp0MjFDgkQI4lBHaiMVkE+HUZjNLwBddHH58Sw==");
     static byte[] extInvExtEE = Base64.decode("MIICNjCCAZ+gAwIBAgIGAV3ZIWosMA0GCSqGSIb3DQEBCwUAMBExDzANBgNVBAMMBktQMSBDQTAeFw0xNzA4MTMwMTA3MDdaFw0xNzA4MTMwMTM3MTJaMBExDzANBgNVBAMMBktQMSBFRTCBnzANBgkqhkiG9w0BAQEFAAOBjQAwgYkCgYEAj6WOoo8xHLLo+CT0l288xZDK3OsF64lPfNVkFnrRI65Ywl89M19nNF5Q24hF1FS6getO5oU+BhvRqft1/De22SME9SzKqs3G6uMxACKrMqgni1QBEOC/DdZ5Uaxh2s4lEgxbN0PQZIarAgLtAIgzRM4CrvofxFMwQy/neUuWmeMCAwEAAaOBmDCBlTBABgNVHSMEOTA3gBQkr/0UP1MKPGQH7bkRNctHMsVQsqEXpBUwEzERMA8GA1UEAwwIS1AxIFJPT1SCBgFd2SFqKzAdBgNVHQ4EFgQU/yuQXlvqXJQsbqB6whCPu5bwFCAwEgYDVR0TAQH/BAgwBgEB/wIBADAOBgNVHQ8BAf8EBAMCAYYwDgYDVR0PAQH/BAQDAgGGMA0GCSqGSIb3DQEBCwUAA4GBABYUGar9s7wlM3Qlnja7uc7U8FqU+xH4e8/Jk64ku7DdwXelEbKo/FTFAzh464aiFP4eMDOH7YThXyTruPudEAvYyWY7eaEgRqA2MmL0uWHSrN+HR9aBeqrMCJK/E2e1egvk2whJHMimhDUFJ3cIPsFhazMvLTnVgWGMjOqQtuP+");
 
+    private void checkCRLDistributionPointFetch()
+        throws Exception
+    {
+        KeyPair rootKp = TestCertificateGen.generateRSAKeyPair();
+        KeyPair eeKp = TestCertificateGen.generateRSAKeyPair();
+
+        final X509Certificate rootCert = TestCertificateGen.generateRootCert(rootKp);
+        final X509Certificate eeCert = createCertWithDistPoint(rootCert, rootKp, eeKp, "http://crl.example.com/valid.crl");
+        final X509Certificate revokedCert = createCertWithDistPoint(rootCert, rootKp, eeKp, "http://crl.example.com/revoked.crl");
+
+        final X509CRL validCrl = TestCertificateGen.createCRL(rootCert, rootKp.getPrivate(), BigInteger.valueOf(1));
+        final X509CRL revokedCrl = TestCertificateGen.createCRL(rootCert, rootKp.getPrivate(), revokedCert.getSerialNumber());
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fetchCount = new AtomicInteger();
+
+        ConfigurableProvider provider = (ConfigurableProvider)Security.getProvider("BC");
+
+        provider.setParameter(ConfigurableProvider.CRL_FETCHER, new PKIXCRLFetcher()
+        {
+            public Collection<? extends CRL> fetchCRLs(CertificateFactory certFact, URI distributionPoint)
+                throws IOException, CRLException
+            {
+                fetchCount.incrementAndGet();
+
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException("interrupted");
+                }
+
+                if (distributionPoint.getPath().equals("/revoked.crl"))
+                {
+                    return Collections.singletonList(revokedCrl);
+                }
+
+                return Collections.singletonList(validCrl);
+            }
+        });
+
+        try
+        {
+            // concurrent validations share one fetch of the distribution point
+            final Exception[] failures = new Exception[4];
+            Thread[] threads = new Thread[failures.length];
+            for (int i = 0; i != threads.length; i++)
+            {
+                final int index = i;
+                threads[i] = new Thread()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            validateWithCRLDP(rootCert, eeCert);
+                        }
+                        catch (Exception e)
+                        {
+                            failures[index] = e;
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+
+            Thread.sleep(200);
+            release.countDown();
+
+            for (int i = 0; i != threads.length; i++)
+            {
+                threads[i].join();
+                if (failures[i] != null)
+                {
+                    fail("validation failed: " + failures[i].getMessage(), failures[i]);
+                }
+            }
+
+            isEquals(1, fetchCount.get());
+
+            // the CRL is cached until its nextUpdate
+            validateWithCRLDP(rootCert, eeCert);
+            isEquals(1, fetchCount.get());
+
+            try
+            {
+                validateWithCRLDP(rootCert, revokedCert);
+                fail("revoked certificate validated");
+            }
+            catch (CertPathValidatorException e)
+            {
+                isTrue(e.getMessage().startsWith("Certificate revocation after"));
+            }
+            isEquals(2, fetchCount.get());
+        }
+        finally
+        {
+            provider.setParameter(ConfigurableProvider.CRL_FETCHER, null);
+        }
+    }
+
+    private static X509Certificate createCertWithDistPoint(X509Certificate rootCert, KeyPair rootKp, KeyPair eeKp,
+        String uri)
+        throws Exception
+    {
+        ExtensionsGenerator extGen = new ExtensionsGenerator();
+
+        extGen.addExtension(Extension.cRLDistributionPoints, false, new CRLDistPoint(new DistributionPoint[]{
+            new DistributionPoint(new DistributionPointName(new GeneralNames(
+                new GeneralName(GeneralName.uniformResourceIdentifier, uri))), null, null) }));
+
+        return TestCertificateGen.createCert(X500Name.getInstance(rootCert.getSubjectX500Principal().getEncoded()),
+            rootKp.getPrivate(), "CN=CRLDP End Entity", "SHA256withRSA", extGen.generate(), eeKp.getPublic());
+    }
+
+    private static void validateWithCRLDP(X509Certificate rootCert, X509Certificate eeCert)
+        throws Exception
+    {
+        Properties.setThreadOverride("org.bouncycastle.x509.enableCRLDP", true);
+        try
+        {
+            List certchain = new ArrayList();
+            certchain.add(eeCert);
+
+            CertPath cp = CertificateFactory.getInstance("X.509", "BC").generateCertPath(certchain);
+
+            PKIXParameters param = new PKIXParameters(Collections.singleton(new TrustAnchor(rootCert, null)));
+            param.setRevocationEnabled(true);
+
+            CertPathValidator.getInstance("PKIX", "BC").validate(cp, param);
+        }
+        finally
+        {
+            Properties.removeThreadOverride("org.bouncycastle.x509.enableCRLDP");
+        }
+    }
+
     private void checkInvalidCertPath()
         throws Exception
     {
@@ -1,9 +1,14 @@
 package org.bouncycastle.jce.provider.test;
 
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.jcajce.PKIXCertStoreSelector;
+import org.bouncycastle.jcajce.PKIXIndexedCertStore;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.util.test.SimpleTest;
 
 import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
 import java.security.Security;
 import java.security.cert.CertStore;
 import java.security.cert.CertificateFactory;
@@ -26,6 +31,7 @@ public void performTest()
     {
         basicTest();
         orderTest();
+        indexedTest();
     }
 
     private void basicTest()
@@ -219,6 +225,113 @@ private void orderTest()
         }
     }
     
+    private void indexedTest()
+        throws Exception
+    {
+        CertificateFactory cf = CertificateFactory.getInstance("X.509", "BC");
+
+        X509Certificate rootCert = (X509Certificate)cf
+                .generateCertificate(new ByteArrayInputStream(
+                        CertPathTest.rootCertBin));
+        X509Certificate interCert = (X509Certificate)cf
+                .generateCertificate(new ByteArrayInputStream(
+                        CertPathTest.interCertBin));
+        X509Certificate finalCert = (X509Certificate)cf
+                .generateCertificate(new ByteArrayInputStream(
+                        CertPathTest.finalCertBin));
+        X509CRL rootCrl = (X509CRL)cf.generateCRL(new ByteArrayInputStream(
+                CertPathTest.rootCrlBin));
+
+        List list = new ArrayList();
+        list.add(rootCert);
+        list.add(interCert);
+        list.add(finalCert);
+        list.add(rootCrl);
+        CollectionCertStoreParameters ccsp = new CollectionCertStoreParameters(list);
+        CertStore store = CertStore.getInstance("IndexedCollection", ccsp, "BC");
+
+        // changes to the collection are not reflected in the store
+        list.remove(rootCert);
+
+        X509CertSelector targetConstraints = new X509CertSelector();
+        targetConstraints.setSubject(rootCert.getSubjectX500Principal().getEncoded());
+        Collection certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 1 || !certs.contains(rootCert))
+        {
+            fail("indexed rootCert not found by subjectDN");
+        }
+
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setIssuer(rootCert.getSubjectX500Principal().getEncoded());
+        certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 2 || !certs.contains(rootCert) || !certs.contains(interCert))
+        {
+            fail("indexed certs not found by issuerDN");
+        }
+
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setIssuer(interCert.getSubjectX500Principal().getEncoded());
+        targetConstraints.setSerialNumber(finalCert.getSerialNumber());
+        certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 1 || !certs.contains(finalCert))
+        {
+            fail("indexed finalCert not found by issuer and serial");
+        }
+
+        // unindexed criteria still match
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setSubjectPublicKey(interCert.getPublicKey().getEncoded());
+        certs = store.getCertificates(targetConstraints);
+        if (certs.size() != 1 || !certs.contains(interCert))
+        {
+            fail("indexed interCert not found by public key");
+        }
+
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setSerialNumber(BigInteger.valueOf(-1));
+        if (!store.getCertificates(targetConstraints).isEmpty())
+        {
+            fail("indexed certificate found for unknown serial");
+        }
+
+        Iterator it = store.getCertificates(null).iterator();
+        if (!it.next().equals(rootCert) || !it.next().equals(interCert) || !it.next().equals(finalCert))
+        {
+            fail("indexed ordering wrong");
+        }
+
+        if (store.getCRLs(null).size() != 1)
+        {
+            fail("indexed crl not found");
+        }
+
+        // subject key identifier lookups, as done when searching for an issuer
+        List certList = new ArrayList();
+        certList.add(rootCert);
+        certList.add(interCert);
+        certList.add(finalCert);
+        PKIXIndexedCertStore pkixStore = new PKIXIndexedCertStore(certList);
+
+        byte[] skiExt = interCert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setSubjectKeyIdentifier(ASN1OctetString.getInstance(skiExt).getOctets());
+        PKIXCertStoreSelector certSelect = new PKIXCertStoreSelector.Builder(targetConstraints).build();
+        certs = pkixStore.getMatches(certSelect);
+        if (certs.size() != 1 || !certs.contains(interCert))
+        {
+            fail("indexed interCert not found by subject key identifier");
+        }
+
+        targetConstraints = new X509CertSelector();
+        targetConstraints.setCertificate(finalCert);
+        certSelect = new PKIXCertStoreSelector.Builder(targetConstraints).build();
+        certs = pkixStore.getMatches(certSelect);
+        if (certs.size() != 1 || !certs.contains(finalCert))
+        {
+            fail("indexed finalCert not found by certificate");
+        }
+    }
+
     public String getName()
     {
         return "CertStore";
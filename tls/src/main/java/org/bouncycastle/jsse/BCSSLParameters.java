@@ -42,6 +42,7 @@ private static <T> List<T> copyList(Collection<T> list)
     private String[] applicationProtocols = TlsUtils.EMPTY_STRINGS;
     private String[] signatureSchemes = null;
     private String[] namedGroups = null;
+    private int maxEarlyDataSize = 0;
 
     public BCSSLParameters()
     {
@@ -290,4 +291,24 @@ public void setNamedGroups(String[] namedGroups)
 
         this.namedGroups = check;
     }
+
+    public int getMaxEarlyDataSize()
+    {
+        return maxEarlyDataSize;
+    }
+
+    /**
+     * Set the maximum amount of TLS 1.3 early data (0-RTT) a server will accept from clients resuming with its
+     * session tickets. Early data has no forward secrecy, and only limited protection against replay, so this
+     * should only be enabled for idempotent requests. The default of 0 disables early data.
+     */
+    public void setMaxEarlyDataSize(int maxEarlyDataSize)
+    {
+        if (maxEarlyDataSize < 0)
+        {
+            throw new IllegalArgumentException("The maximum early data size cannot be negative");
+        }
+
+        this.maxEarlyDataSize = maxEarlyDataSize;
+    }
 }
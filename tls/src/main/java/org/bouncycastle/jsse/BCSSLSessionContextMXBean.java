@@ -0,0 +1,43 @@
+package org.bouncycastle.jsse;
+
+/**
+ * Statistics for the session cache of a BCJSSE {@link javax.net.ssl.SSLSessionContext}. The session contexts
+ * returned by a BCJSSE {@link javax.net.ssl.SSLContext} implement this interface, so they can be registered
+ * directly with an MBean server, e.g.:
+ * <pre>
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(sslContext.getServerSessionContext(),
+ *     new ObjectName("com.example:type=SSLSessionContext,name=server"));
+ * </pre>
+ */
+public interface BCSSLSessionContextMXBean
+{
+    /**
+     * @return the maximum number of sessions cached, or 0 for no limit.
+     */
+    int getSessionCacheSize();
+
+    /**
+     * @return the session timeout in seconds, or 0 for no timeout.
+     */
+    int getSessionTimeout();
+
+    /**
+     * @return the number of sessions currently cached (including any not yet found to have expired).
+     */
+    int getCachedSessionCount();
+
+    /**
+     * @return the number of session lookups that found a valid session.
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of session lookups that didn't find a valid session.
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of sessions removed to keep within the session cache size.
+     */
+    long getEvictionCount();
+}
@@ -55,6 +55,7 @@
 import org.bouncycastle.tls.TlsContext;
 import org.bouncycastle.tls.TlsCredentialedDecryptor;
 import org.bouncycastle.tls.TlsCredentialedSigner;
+import org.bouncycastle.tls.TlsProtocol;
 import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.tls.TrustedAuthority;
 import org.bouncycastle.tls.crypto.TlsCertificate;
@@ -67,6 +68,10 @@
 
 abstract class JsseUtils
 {
+    private static final boolean provTlsCoalesceSocketWrites =
+        PropertyUtils.getBooleanSystemProperty("org.bouncycastle.jsse.socket.coalesceWrites", false);
+    private static final boolean provTlsDynamicRecordSizing =
+        PropertyUtils.getBooleanSystemProperty("org.bouncycastle.jsse.dynamicRecordSizing", false);
     private static final boolean provTlsAllowLegacyMasterSecret =
         PropertyUtils.getBooleanSystemProperty("jdk.tls.allowLegacyMasterSecret", true);
     private static final boolean provTlsAllowLegacyResumption =
@@ -897,6 +902,23 @@ static boolean requireCloseNotify()
         return provTlsRequireCloseNotify;
     }
 
+    /*
+     * Write coalescing holds data until flushed, so it is only offered for sockets (where the application
+     * flushes the output stream); an SSLEngine already produces at most one record per wrap() call.
+     */
+    static void setupRecordWriting(TlsProtocol protocol, boolean isSocket) throws IOException
+    {
+        if (provTlsDynamicRecordSizing)
+        {
+            protocol.setDynamicRecordSizing(TlsProtocol.DRS_DEFAULT_SMALL_RECORD_LIMIT,
+                TlsProtocol.DRS_DEFAULT_BOOST_THRESHOLD);
+        }
+        if (isSocket && provTlsCoalesceSocketWrites)
+        {
+            protocol.setWriteCoalescing(true);
+        }
+    }
+
     static String stripDoubleQuotes(String s)
     {
         return stripOuterChars(s, '"', '"');
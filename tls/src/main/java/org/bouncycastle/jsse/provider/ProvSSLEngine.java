@@ -31,12 +31,14 @@
 import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.TlsProtocol;
 import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.util.Arrays;
 
 /*
  * TODO[jsse] Known limitations (relative to SSLEngine javadoc): 1. The wrap() and unwrap() methods
- * are synchronized, so will not execute concurrently with each other. 2. Never delegates tasks i.e.
- * getDelegatedTasks() will always return null; CPU-intensive parts of the handshake will execute
- * during wrap/unwrap calls.
+ * are synchronized, so will not execute concurrently with each other. 2. Only delegates tasks if the
+ * "org.bouncycastle.jsse.engine.delegateHandshakeTasks" property is set, in which case each handshake
+ * record (including any signing, decryption or key exchange it triggers) is processed by a task from
+ * getDelegatedTask(); otherwise CPU-intensive parts of the handshake will execute during wrap/unwrap calls.
  */
 class ProvSSLEngine
     extends SSLEngine
@@ -61,6 +63,13 @@
 
     protected SSLException deferredException = null;
 
+    protected final boolean delegateHandshakeTasks;
+    protected HandshakeTask delegatedTask = null;
+
+    // scratch kept across wrap/unwrap calls (which are synchronized), to avoid allocating per record
+    private final byte[] recordHeader = new byte[RecordFormat.FRAGMENT_OFFSET];
+    private byte[] wrapBuffer = null;
+
     protected ProvSSLEngine(ContextData contextData)
     {
         this(contextData, null, -1);
@@ -72,6 +81,8 @@ protected ProvSSLEngine(ContextData contextData, String peerHost, int peerPort)
 
         this.contextData = contextData;
         this.sslParameters = contextData.getContext().getDefaultSSLParameters(useClientMode);
+        this.delegateHandshakeTasks = PropertyUtils.getBooleanSystemProperty(
+            "org.bouncycastle.jsse.engine.delegateHandshakeTasks", false);
     }
 
     public ContextData getContextData()
@@ -104,6 +115,7 @@ public synchronized void beginHandshake()
             {
                 TlsClientProtocol clientProtocol = new TlsClientProtocol();
                 this.protocol = clientProtocol;
+                JsseUtils.setupRecordWriting(clientProtocol, false);
 
                 ProvTlsClient client = new ProvTlsClient(this, sslParameters);
                 this.protocolPeer = client;
@@ -114,6 +126,7 @@ public synchronized void beginHandshake()
             {
                 TlsServerProtocol serverProtocol = new TlsServerProtocol();
                 this.protocol = serverProtocol;
+                JsseUtils.setupRecordWriting(serverProtocol, false);
 
                 ProvTlsServer server = new ProvTlsServer(this, sslParameters);
                 this.protocolPeer = server;
@@ -169,6 +182,8 @@ public BCX509Key chooseServerKey(String[] keyTypes, Principal[] issuers)
     public synchronized void closeInbound()
         throws SSLException
     {
+        cancelOrAwaitDelegatedTask();
+
         if (closedEarly)
         {
             // SSLEngine already closed before any handshake attempted
@@ -193,6 +208,8 @@ else if (null == protocol)
     @Override
     public synchronized void closeOutbound()
     {
+        cancelOrAwaitDelegatedTask();
+
         if (closedEarly)
         {
             // SSLEngine already closed before any handshake attempted
@@ -243,7 +260,14 @@ public synchronized BCSSLConnection getConnection()
     @Override
     public synchronized Runnable getDelegatedTask()
     {
-        return null;
+        HandshakeTask task = delegatedTask;
+        if (null == task || task.handedOut)
+        {
+            return null;
+        }
+
+        task.handedOut = true;
+        return task;
     }
 
     @Override
@@ -279,6 +303,10 @@ public synchronized SSLSession getHandshakeSession()
     @Override
     public synchronized SSLEngineResult.HandshakeStatus getHandshakeStatus()
     {
+        if (delegatedTask != null)
+        {
+            return HandshakeStatus.NEED_TASK;
+        }
         if (protocol != null)
         {
             if (protocol.getAvailableOutputBytes() > 0 || deferredException != null)
@@ -466,7 +494,7 @@ public synchronized SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, in
             return new SSLEngineResult(Status.OK, initialHandshakeStatus, 0, 0);
         }
 
-        int bytesConsumed = 0;
+        int bytesConsumed = 0, bytesProduced = 0;
         try
         {
             RecordPreview preview = getRecordPreview(src);
@@ -480,10 +508,31 @@ public synchronized SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, in
             }
 
             bytesConsumed = preview.getRecordSize();
-            byte[] record = new byte[bytesConsumed];
-            src.get(record);
 
-            protocol.offerInput(record, 0, record.length);
+            if (delegateHandshakeTasks && protocol.isHandshaking())
+            {
+                byte[] record = new byte[bytesConsumed];
+                src.get(record);
+
+                this.delegatedTask = new HandshakeTask(record);
+
+                return new SSLEngineResult(Status.OK, HandshakeStatus.NEED_TASK, bytesConsumed, 0);
+            }
+
+            /*
+             * Offer exactly one record straight from src; for a heap buffer the record is decrypted in place. Any
+             * application data is then copied from there straight into dsts.
+             */
+            int srcLimit = src.limit();
+            ((java.nio.Buffer)src).limit(src.position() + bytesConsumed);
+            try
+            {
+                bytesProduced = protocol.offerInput(src, dsts, offset, length);
+            }
+            finally
+            {
+                ((java.nio.Buffer)src).limit(srcLimit);
+            }
         }
         catch (IOException e)
         {
@@ -507,7 +556,8 @@ public synchronized SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, in
             return new SSLEngineResult(Status.OK, HandshakeStatus.NEED_WRAP, bytesConsumed, 0);
         }
 
-        int appDataAvailable = protocol.getAvailableInputBytes(), bytesProduced = 0;
+        // application data still queued in the protocol (received earlier, or not written above) is read here
+        int appDataAvailable = protocol.getAvailableInputBytes();
         for (int dstIndex = 0; appDataAvailable > 0; ++dstIndex)
         {
             ByteBuffer dst = dsts[offset + dstIndex];
@@ -553,6 +603,11 @@ public synchronized SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int leng
             return new SSLEngineResult(Status.CLOSED, HandshakeStatus.NOT_HANDSHAKING, 0, 0);
         }
 
+        if (delegatedTask != null)
+        {
+            return new SSLEngineResult(Status.OK, HandshakeStatus.NEED_TASK, 0, 0);
+        }
+
         if (!initialHandshakeBegun)
         {
             beginHandshake();
@@ -599,9 +654,10 @@ else if (protocol.isConnected())
                 int bytesConsumed = 0;
 
                 /*
-                 * Generate at most one maximum-sized application data record per call.
+                 * Generate at most one application data record per call, gathering from all the source buffers
+                 * up to the current record size (which may be reduced by dynamic record sizing).
                  */
-                int srcRemaining = getTotalRemaining(srcs, offset, length, protocol.getApplicationDataLimit());
+                int srcRemaining = getTotalRemaining(srcs, offset, length, protocol.getApplicationDataWriteLimit());
                 if (srcRemaining > 0)
                 {
                     RecordPreview preview = protocol.previewOutputRecord(srcRemaining);
@@ -614,22 +670,7 @@ else if (protocol.isConnected())
                         return new SSLEngineResult(Status.BUFFER_OVERFLOW, HandshakeStatus.NOT_HANDSHAKING, 0, 0);
                     }
 
-                    // TODO Support writing application data using ByteBuffer array directly
-
-                    byte[] buffer = new byte[srcLimit];
-
-                    for (int srcIndex = 0; srcIndex < length && bytesConsumed < srcLimit; ++srcIndex)
-                    {
-                        ByteBuffer src = srcs[offset + srcIndex];
-                        int count = Math.min(src.remaining(), srcLimit - bytesConsumed);
-                        if (count > 0)
-                        {
-                            src.get(buffer, bytesConsumed, count);
-                            bytesConsumed += count;
-                        }
-                    }
-
-                    protocol.writeApplicationData(buffer, 0, bytesConsumed);
+                    bytesConsumed = writeApplicationData(srcs, offset, length, srcLimit);
 
                     bytesProduced = protocol.getAvailableOutputBytes();
                     assert bytesProduced <= dstLimit;
@@ -730,8 +771,6 @@ private RecordPreview getRecordPreview(ByteBuffer src)
             return null;
         }
 
-        byte[] recordHeader = new byte[RecordFormat.FRAGMENT_OFFSET];
-
         int position = src.position();
         src.get(recordHeader);
         ((java.nio.Buffer)src).position(position);
@@ -739,6 +778,85 @@ private RecordPreview getRecordPreview(ByteBuffer src)
         return protocol.previewInputRecord(recordHeader);
     }
 
+    /*
+     * Write up to srcLimit bytes from the sources as application data. Data held contiguously in a heap buffer
+     * is passed to the protocol directly; anything else is first gathered into a reused buffer.
+     */
+    private int writeApplicationData(ByteBuffer[] srcs, int offset, int length, int srcLimit)
+        throws IOException
+    {
+        for (int srcIndex = 0; srcIndex < length; ++srcIndex)
+        {
+            ByteBuffer src = srcs[offset + srcIndex];
+            int remaining = src.remaining();
+            if (remaining < 1)
+            {
+                continue;
+            }
+
+            if (remaining >= srcLimit && src.hasArray())
+            {
+                int srcOff = src.arrayOffset() + src.position();
+                ((java.nio.Buffer)src).position(src.position() + srcLimit);
+
+                protocol.writeApplicationData(src.array(), srcOff, srcLimit);
+                return srcLimit;
+            }
+            break;
+        }
+
+        if (wrapBuffer == null || wrapBuffer.length < srcLimit)
+        {
+            wrapBuffer = new byte[Math.max(srcLimit, protocol.getApplicationDataLimit())];
+        }
+
+        int bytesConsumed = 0;
+        for (int srcIndex = 0; srcIndex < length && bytesConsumed < srcLimit; ++srcIndex)
+        {
+            ByteBuffer src = srcs[offset + srcIndex];
+            int count = Math.min(src.remaining(), srcLimit - bytesConsumed);
+            if (count > 0)
+            {
+                src.get(wrapBuffer, bytesConsumed, count);
+                bytesConsumed += count;
+            }
+        }
+
+        protocol.writeApplicationData(wrapBuffer, 0, bytesConsumed);
+        return bytesConsumed;
+    }
+
+    /*
+     * Called with the lock held. A task that hasn't been handed out yet can just be dropped, but one that has must
+     * be allowed to finish, since it may be using the protocol.
+     */
+    private void cancelOrAwaitDelegatedTask()
+    {
+        if (null != delegatedTask && !delegatedTask.handedOut)
+        {
+            this.delegatedTask = null;
+            return;
+        }
+
+        boolean interrupted = false;
+        while (null != delegatedTask)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private Status getStatus()
     {
         return protocol.isClosed() ? Status.CLOSED : Status.OK;
@@ -764,4 +882,66 @@ private boolean hasInsufficientSpace(ByteBuffer[] dsts, int off, int len, int am
     {
         return getTotalRemaining(dsts, off, len, amount) < amount;
     }
+
+    /*
+     * Processes one handshake record outside the engine lock, so that the (possibly slow) private key operation it
+     * may trigger doesn't block the thread calling wrap/unwrap. While the task is outstanding, wrap and unwrap
+     * don't touch the protocol, and report NEED_TASK.
+     */
+    protected class HandshakeTask
+        implements Runnable
+    {
+        private final byte[] record;
+
+        boolean handedOut = false;
+
+        HandshakeTask(byte[] record)
+        {
+            this.record = record;
+        }
+
+        public void run()
+        {
+            synchronized (ProvSSLEngine.this)
+            {
+                if (delegatedTask != this)
+                {
+                    return;
+                }
+            }
+
+            SSLException failure = null;
+            try
+            {
+                protocol.offerInput(record);
+            }
+            catch (IOException e)
+            {
+                failure = new SSLException(e);
+            }
+            catch (RuntimeException e)
+            {
+                failure = new SSLException(e);
+            }
+            finally
+            {
+                Arrays.fill(record, (byte)0);
+            }
+
+            synchronized (ProvSSLEngine.this)
+            {
+                if (null != failure)
+                {
+                    /*
+                     * NOTE: As for a failure in unwrap during the handshake, report NEED_WRAP so that any outbound
+                     * alert can be flushed, then throw from wrap.
+                     */
+                    deferredException = failure;
+                }
+
+                delegatedTask = null;
+                ProvSSLEngine.this.notifyAll();
+            }
+        }
+    }
 }
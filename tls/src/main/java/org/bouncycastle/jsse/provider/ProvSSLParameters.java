@@ -45,6 +45,7 @@ private static <T> List<T> copyList(Collection<T> list)
     private String[] applicationProtocols = TlsUtils.EMPTY_STRINGS;
     private String[] signatureSchemes = null;
     private String[] namedGroups = null;
+    private int maxEarlyDataSize = 0;
 
     private BCApplicationProtocolSelector<SSLEngine> engineAPSelector;
     private BCApplicationProtocolSelector<SSLSocket> socketAPSelector;
@@ -73,6 +74,7 @@ ProvSSLParameters copy()
         p.applicationProtocols = applicationProtocols;
         p.signatureSchemes = signatureSchemes;
         p.namedGroups = namedGroups;
+        p.maxEarlyDataSize = maxEarlyDataSize;
         p.engineAPSelector = engineAPSelector;
         p.socketAPSelector = socketAPSelector;
         p.sessionToResume = sessionToResume;
@@ -267,6 +269,21 @@ public void setNamedGroups(String[] namedGroups)
         this.namedGroups = TlsUtils.clone(namedGroups);
     }
 
+    public int getMaxEarlyDataSize()
+    {
+        return maxEarlyDataSize;
+    }
+
+    public void setMaxEarlyDataSize(int maxEarlyDataSize)
+    {
+        if (maxEarlyDataSize < 0)
+        {
+            throw new IllegalArgumentException("The maximum early data size cannot be negative");
+        }
+
+        this.maxEarlyDataSize = maxEarlyDataSize;
+    }
+
     public BCApplicationProtocolSelector<SSLEngine> getEngineAPSelector()
     {
         return engineAPSelector;
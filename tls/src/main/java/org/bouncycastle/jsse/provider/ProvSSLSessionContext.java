@@ -2,57 +2,83 @@
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSessionContext;
 
+import org.bouncycastle.jsse.BCSSLSessionContextMXBean;
+import org.bouncycastle.tls.DefaultTlsAntiReplayStore;
+import org.bouncycastle.tls.DefaultTlsTicketKeyStore;
 import org.bouncycastle.tls.SessionID;
+import org.bouncycastle.tls.TlsAntiReplayStore;
 import org.bouncycastle.tls.TlsSession;
+import org.bouncycastle.tls.TlsTicketKeyStore;
 import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.tls.crypto.impl.jcajce.JcaTlsCrypto;
 
+/*
+ * NOTE: The cache is split into segments by session ID, each an LRU map with its own lock, so that concurrent
+ * handshakes rarely contend. The cache size is still enforced across all segments, and evicts the least
+ * recently used session overall. Expired sessions are swept by a shared background thread; a lookup only
+ * checks the session it finds.
+ */
 class ProvSSLSessionContext
-    implements SSLSessionContext
+    implements SSLSessionContext, BCSSLSessionContextMXBean
 {
     private static final Logger LOG = Logger.getLogger(ProvSSLSessionContext.class.getName());
 
     private static final int provSessionCacheSize = PropertyUtils
         .getIntegerSystemProperty("javax.net.ssl.sessionCacheSize", 20480, 0, Integer.MAX_VALUE);
 
-    // NOTE: This is configured as a simple LRU cache using the "access order" constructor
-    @SuppressWarnings("serial")
-    protected final Map<SessionID, SessionEntry> sessionsByID = new LinkedHashMap<SessionID, SessionEntry>(16, 0.75f, true)
-    {
-        protected boolean removeEldestEntry(Map.Entry<SessionID, SessionEntry> eldest)
-        {
-            boolean shouldRemove = sessionCacheSize > 0 && size() > sessionCacheSize;
-            if (shouldRemove)
-            {
-                removeSessionByPeer(eldest.getValue());
-            }
-            return shouldRemove;
-        }
-    };
-    protected final Map<String, SessionEntry> sessionsByPeer = new HashMap<String, SessionEntry>();
+    // NOTE: Must be a power of 2
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final long EXPIRY_PERIOD_MILLIS = 60L * 1000L;
+
+    private static ScheduledExecutorService expiryExecutor = null;
+
+    protected final Segment[] segments = new Segment[SEGMENT_COUNT];
+    protected final ConcurrentMap<String, SessionEntry> sessionsByPeer = new ConcurrentHashMap<String, SessionEntry>();
     protected final ReferenceQueue<ProvSSLSession> sessionsQueue = new ReferenceQueue<ProvSSLSession>();
+    protected final AtomicInteger sessionCount = new AtomicInteger(0);
+    protected final AtomicBoolean expiryScheduled = new AtomicBoolean(false);
 
     protected final ContextData contextData;
 
-    protected int sessionCacheSize = provSessionCacheSize;
-    protected int sessionTimeoutSeconds = 86400; // 24hrs (in seconds)
+    protected volatile int sessionCacheSize = provSessionCacheSize;
+    protected volatile int sessionTimeoutSeconds = 86400; // 24hrs (in seconds)
+
+    // NOTE: Created on first use, since only a server context issues session tickets
+    protected volatile TlsTicketKeyStore ticketKeyStore = null;
+    protected volatile TlsAntiReplayStore antiReplayStore = null;
 
     ProvSSLSessionContext(ContextData contextData)
     {
         this.contextData = contextData;
+
+        for (int i = 0; i < SEGMENT_COUNT; ++i)
+        {
+            segments[i] = new Segment();
+        }
     }
 
     ProvSSLContextSpi getSSLContext()
@@ -65,77 +91,196 @@ JcaTlsCrypto getCrypto()
         return contextData.getCrypto();
     }
 
-    synchronized ProvSSLSession getSessionImpl(byte[] sessionID)
+    TlsTicketKeyStore getTicketKeyStore()
     {
-        processQueue();
+        TlsTicketKeyStore result = ticketKeyStore;
+        if (null == result)
+        {
+            synchronized (this)
+            {
+                result = ticketKeyStore;
+                if (null == result)
+                {
+                    result = new DefaultTlsTicketKeyStore(getCrypto().getSecureRandom());
+                    ticketKeyStore = result;
+                }
+            }
+        }
+        return result;
+    }
 
-        return accessSession(mapGet(sessionsByID, makeSessionID(sessionID)));
+    TlsAntiReplayStore getAntiReplayStore()
+    {
+        TlsAntiReplayStore result = antiReplayStore;
+        if (null == result)
+        {
+            synchronized (this)
+            {
+                result = antiReplayStore;
+                if (null == result)
+                {
+                    result = new DefaultTlsAntiReplayStore();
+                    antiReplayStore = result;
+                }
+            }
+        }
+        return result;
     }
 
-    synchronized ProvSSLSession getSessionImpl(String hostName, int port)
+    ProvSSLSession getSessionImpl(byte[] sessionID)
     {
-        processQueue();
+        SessionID id = makeSessionID(sessionID);
+        if (null == id)
+        {
+            return null;
+        }
+
+        Segment segment = getSegment(id);
+
+        SessionEntry sessionEntry;
+        synchronized (segment)
+        {
+            sessionEntry = segment.get(id);
+        }
+
+        return countAccess(segment, accessSession(sessionEntry));
+    }
+
+    ProvSSLSession getSessionImpl(String hostName, int port)
+    {
+        String peerKey = makePeerKey(hostName, port);
+        if (null == peerKey)
+        {
+            return null;
+        }
+
+        SessionEntry sessionEntry = sessionsByPeer.get(peerKey);
+        if (null == sessionEntry)
+        {
+            return countAccess(getSegment(peerKey.hashCode()), null);
+        }
+
+        Segment segment = getSegment(sessionEntry.getSessionID());
 
-        SessionEntry sessionEntry = mapGet(sessionsByPeer, makePeerKey(hostName, port));
         ProvSSLSession session = accessSession(sessionEntry);
         if (session != null)
         {
-            // NOTE: For the current simple cache implementation, need to 'access' the sessionByIDs entry
-            sessionsByID.get(sessionEntry.getSessionID());
+            // NOTE: Need to 'access' the entry in its segment, to keep the LRU order
+            synchronized (segment)
+            {
+                segment.get(sessionEntry.getSessionID());
+            }
         }
-        return session;
+        return countAccess(segment, session);
     }
 
-    synchronized void removeSession(byte[] sessionID)
+    void removeSession(byte[] sessionID)
     {
-        SessionEntry sessionEntry = mapRemove(sessionsByID, makeSessionID(sessionID));
+        SessionID id = makeSessionID(sessionID);
+        if (null == id)
+        {
+            return;
+        }
+
+        Segment segment = getSegment(id);
+
+        SessionEntry sessionEntry;
+        synchronized (segment)
+        {
+            sessionEntry = segment.remove(id);
+            if (null != sessionEntry)
+            {
+                sessionCount.decrementAndGet();
+            }
+        }
+
         if (null != sessionEntry)
         {
             removeSessionByPeer(sessionEntry);
         }
     }
 
-    synchronized ProvSSLSession reportSession(String peerHost, int peerPort, TlsSession tlsSession,
+    ProvSSLSession reportSession(String peerHost, int peerPort, TlsSession tlsSession,
         JsseSessionParameters jsseSessionParameters, boolean addToCache)
     {
-        processQueue();
-
         if (!addToCache)
         {
             return new ProvSSLSession(this, peerHost, peerPort, tlsSession, jsseSessionParameters);
         }
 
         SessionID sessionID = makeSessionID(tlsSession.getSessionID());
-        SessionEntry sessionEntry = mapGet(sessionsByID, sessionID);
+        if (null == sessionID)
+        {
+            return new ProvSSLSession(this, peerHost, peerPort, tlsSession, jsseSessionParameters);
+        }
+
+        Segment segment = getSegment(sessionID);
 
-        ProvSSLSession session = sessionEntry == null ? null : sessionEntry.get();
-        if (null == session || session.getTlsSession() != tlsSession)
+        ProvSSLSession session;
+        SessionEntry sessionEntry, replacedEntry = null;
+        synchronized (segment)
         {
-            session = new ProvSSLSession(this, peerHost, peerPort, tlsSession, jsseSessionParameters);
+            sessionEntry = segment.get(sessionID);
 
-            if (null != sessionID)
+            session = sessionEntry == null ? null : sessionEntry.get();
+            if (null == session || session.getTlsSession() != tlsSession)
             {
+                session = new ProvSSLSession(this, peerHost, peerPort, tlsSession, jsseSessionParameters);
+
+                replacedEntry = sessionEntry;
                 sessionEntry = new SessionEntry(sessionID, session, sessionsQueue);
-                sessionsByID.put(sessionID, sessionEntry);
+                segment.put(sessionID, sessionEntry);
+
+                if (null == replacedEntry)
+                {
+                    sessionCount.incrementAndGet();
+                }
             }
         }
 
-        if (null != sessionEntry)
+        if (null != replacedEntry)
         {
-            mapAdd(sessionsByPeer, sessionEntry.getPeerKey(), sessionEntry);
+            removeSessionByPeer(replacedEntry);
         }
 
+        String peerKey = sessionEntry.getPeerKey();
+        if (null != peerKey)
+        {
+            sessionsByPeer.put(peerKey, sessionEntry);
+
+            // NOTE: The entry may have been evicted meanwhile, in which case don't leave it reachable by peer
+            boolean cached;
+            synchronized (segment)
+            {
+                cached = (segment.sessionsByID.get(sessionID) == sessionEntry);
+            }
+            if (!cached)
+            {
+                removeSessionByPeer(sessionEntry);
+            }
+        }
+
+        removeExcessSessions();
+        scheduleExpiry();
+
         return session;
     }
 
-    public synchronized Enumeration<byte[]> getIds()
+    public Enumeration<byte[]> getIds()
     {
         removeAllExpiredSessions();
 
-        ArrayList<byte[]> ids = new ArrayList<byte[]>(sessionsByID.size());
-        for (SessionID sessionID : sessionsByID.keySet())
+        ArrayList<byte[]> ids = new ArrayList<byte[]>(sessionCount.get());
+        for (int i = 0; i < SEGMENT_COUNT; ++i)
         {
-            ids.add(sessionID.getBytes());
+            Segment segment = segments[i];
+            synchronized (segment)
+            {
+                for (SessionID sessionID : segment.sessionsByID.keySet())
+                {
+                    ids.add(sessionID.getBytes());
+                }
+            }
         }
         return Collections.enumeration(ids);
     }
@@ -150,12 +295,12 @@ public SSLSession getSession(byte[] sessionID)
         return getSessionImpl(sessionID);
     }
 
-    public synchronized int getSessionCacheSize()
+    public int getSessionCacheSize()
     {
         return sessionCacheSize;
     }
 
-    public synchronized int getSessionTimeout()
+    public int getSessionTimeout()
     {
         return sessionTimeoutSeconds;
     }
@@ -177,21 +322,7 @@ public synchronized void setSessionCacheSize(int size) throws IllegalArgumentExc
         removeAllExpiredSessions();
 
         // Immediately remove LRU sessions in excess of the new limit
-        if (sessionCacheSize > 0)
-        {
-            int currentSize = sessionsByID.size();
-            if (currentSize > sessionCacheSize)
-            {
-                Iterator<SessionEntry> iter = sessionsByID.values().iterator();
-                while (iter.hasNext() && currentSize > sessionCacheSize)
-                {
-                    SessionEntry sessionEntry = iter.next();
-                    iter.remove();
-                    removeSessionByPeer(sessionEntry);
-                    --currentSize;
-                }
-            }
-        }
+        removeExcessSessions();
     }
 
     public synchronized void setSessionTimeout(int seconds) throws IllegalArgumentException
@@ -211,6 +342,41 @@ public synchronized void setSessionTimeout(int seconds) throws IllegalArgumentEx
         removeAllExpiredSessions();
     }
 
+    public int getCachedSessionCount()
+    {
+        return sessionCount.get();
+    }
+
+    public long getHitCount()
+    {
+        long total = 0L;
+        for (int i = 0; i < SEGMENT_COUNT; ++i)
+        {
+            total += segments[i].hits.get();
+        }
+        return total;
+    }
+
+    public long getMissCount()
+    {
+        long total = 0L;
+        for (int i = 0; i < SEGMENT_COUNT; ++i)
+        {
+            total += segments[i].misses.get();
+        }
+        return total;
+    }
+
+    public long getEvictionCount()
+    {
+        long total = 0L;
+        for (int i = 0; i < SEGMENT_COUNT; ++i)
+        {
+            total += segments[i].evictions.get();
+        }
+        return total;
+    }
+
     private ProvSSLSession accessSession(SessionEntry sessionEntry)
     {
         if (sessionEntry != null)
@@ -231,9 +397,26 @@ private ProvSSLSession accessSession(SessionEntry sessionEntry)
         return null;
     }
 
+    private static ProvSSLSession countAccess(Segment segment, ProvSSLSession session)
+    {
+        (null == session ? segment.misses : segment.hits).incrementAndGet();
+        return session;
+    }
+
     private long getCreationTimeLimit(long expiryTimeMillis)
     {
-        return sessionTimeoutSeconds < 1 ? Long.MIN_VALUE : (expiryTimeMillis - 1000L * sessionTimeoutSeconds);
+        int timeoutSeconds = sessionTimeoutSeconds;
+        return timeoutSeconds < 1 ? Long.MIN_VALUE : (expiryTimeMillis - 1000L * timeoutSeconds);
+    }
+
+    private Segment getSegment(SessionID sessionID)
+    {
+        return getSegment(sessionID.hashCode());
+    }
+
+    private Segment getSegment(int hash)
+    {
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
     }
 
     private boolean invalidateIfCreatedBefore(SessionEntry sessionEntry, long creationTimeLimit)
@@ -273,28 +456,131 @@ private void removeAllExpiredSessions()
 
         long creationTimeLimit = getCreationTimeLimit(System.currentTimeMillis());
 
-        Iterator<SessionEntry> iter = sessionsByID.values().iterator();
-        while (iter.hasNext())
+        for (int i = 0; i < SEGMENT_COUNT; ++i)
         {
-            SessionEntry sessionEntry = iter.next();
-            if (invalidateIfCreatedBefore(sessionEntry, creationTimeLimit))
+            Segment segment = segments[i];
+
+            ArrayList<SessionEntry> removed = new ArrayList<SessionEntry>();
+            synchronized (segment)
+            {
+                Iterator<SessionEntry> iter = segment.sessionsByID.values().iterator();
+                while (iter.hasNext())
+                {
+                    SessionEntry sessionEntry = iter.next();
+                    if (invalidateIfCreatedBefore(sessionEntry, creationTimeLimit))
+                    {
+                        iter.remove();
+                        sessionCount.decrementAndGet();
+                        removed.add(sessionEntry);
+                    }
+                }
+                segment.updateEldest();
+            }
+
+            for (SessionEntry sessionEntry : removed)
             {
-                iter.remove();
                 removeSessionByPeer(sessionEntry);
             }
         }
     }
 
+    /*
+     * Remove least recently used sessions until the cache is within its size limit. Each segment is kept in
+     * access order, so the overall LRU session is the oldest of the segments' eldest entries. The victim segment
+     * is chosen from their published eldest entries without locking, so only that segment's lock is taken.
+     */
+    private void removeExcessSessions()
+    {
+        int limit;
+        while ((limit = sessionCacheSize) > 0 && sessionCount.get() > limit)
+        {
+            Segment victimSegment = null;
+            long victimAccessedAt = 0L;
+
+            for (int i = 0; i < SEGMENT_COUNT; ++i)
+            {
+                Segment segment = segments[i];
+
+                SessionEntry eldest = segment.eldest;
+                if (null != eldest)
+                {
+                    long eldestAccessedAt = eldest.accessedAt;
+                    if (null == victimSegment || eldestAccessedAt - victimAccessedAt < 0L)
+                    {
+                        victimSegment = segment;
+                        victimAccessedAt = eldestAccessedAt;
+                    }
+                }
+            }
+
+            if (null == victimSegment)
+            {
+                break;
+            }
+
+            // NOTE: If the segment changed meanwhile, its (new) eldest entry is evicted instead
+            SessionEntry victim = victimSegment.removeEldest();
+            if (null != victim)
+            {
+                sessionCount.decrementAndGet();
+                victimSegment.evictions.incrementAndGet();
+                removeSessionByPeer(victim);
+            }
+        }
+    }
+
     private void removeSession(SessionEntry sessionEntry)
     {
-        mapRemove(sessionsByID, sessionEntry.getSessionID(), sessionEntry);
+        if (getSegment(sessionEntry.getSessionID()).remove(sessionEntry.getSessionID(), sessionEntry))
+        {
+            sessionCount.decrementAndGet();
+        }
 
         removeSessionByPeer(sessionEntry);
     }
 
     private boolean removeSessionByPeer(SessionEntry sessionEntry)
     {
-        return mapRemove(sessionsByPeer, sessionEntry.getPeerKey(), sessionEntry);
+        String peerKey = sessionEntry.getPeerKey();
+        return null != peerKey && sessionsByPeer.remove(peerKey, sessionEntry);
+    }
+
+    private void scheduleExpiry()
+    {
+        if (expiryScheduled.get() || !expiryScheduled.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        try
+        {
+            ExpiryTask task = new ExpiryTask(this);
+            task.future = getExpiryExecutor().scheduleWithFixedDelay(task, EXPIRY_PERIOD_MILLIS,
+                EXPIRY_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (RuntimeException e)
+        {
+            LOG.log(Level.WARNING, "Unable to schedule removal of expired sessions", e);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getExpiryExecutor()
+    {
+        if (null == expiryExecutor)
+        {
+            expiryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "BCJSSE-SessionContext-Expiry");
+                    t.setDaemon(true);
+                    // NOTE: Don't keep the class loader of whichever thread first caches a session
+                    t.setContextClassLoader(null);
+                    return t;
+                }
+            });
+        }
+        return expiryExecutor;
     }
 
     private static String makePeerKey(ProvSSLSession session)
@@ -312,56 +598,115 @@ private static SessionID makeSessionID(byte[] sessionID)
         return TlsUtils.isNullOrEmpty(sessionID) ? null : new SessionID(sessionID);
     }
 
-    private static <K, V> void mapAdd(Map<K, V> map, K key, V value)
+    private static final class ExpiryTask
+        implements Runnable
     {
-        if (map == null || value == null)
+        // NOTE: Weakly held, so that the task doesn't keep an unused context alive
+        private final WeakReference<ProvSSLSessionContext> contextRef;
+
+        volatile ScheduledFuture<?> future = null;
+
+        ExpiryTask(ProvSSLSessionContext context)
         {
-            throw new NullPointerException();
+            this.contextRef = new WeakReference<ProvSSLSessionContext>(context);
         }
-        if (key != null)
+
+        public void run()
         {
-            map.put(key, value);
+            ProvSSLSessionContext context = contextRef.get();
+            if (null == context)
+            {
+                ScheduledFuture<?> f = future;
+                if (null != f)
+                {
+                    f.cancel(false);
+                }
+                return;
+            }
+
+            try
+            {
+                context.removeAllExpiredSessions();
+            }
+            catch (RuntimeException e)
+            {
+                // NOTE: An exception would stop any further runs of this task
+                LOG.log(Level.FINE, "Failed to remove expired sessions", e);
+            }
         }
     }
 
-    private static <K, V> V mapGet(Map<K, V> map, K key)
+    private static final class Segment
     {
-        if (map == null)
+        // NOTE: This is configured as a simple LRU cache using the "access order" constructor
+        final LinkedHashMap<SessionID, SessionEntry> sessionsByID = new LinkedHashMap<SessionID, SessionEntry>(16,
+            0.75f, true);
+
+        final AtomicLong hits = new AtomicLong(0L);
+        final AtomicLong misses = new AtomicLong(0L);
+        final AtomicLong evictions = new AtomicLong(0L);
+
+        // NOTE: The LRU entry, published so that eviction can compare segments without taking their locks
+        volatile SessionEntry eldest = null;
+
+        // NOTE: Callers must hold the segment lock for the following methods, except the synchronized ones
+
+        SessionEntry get(SessionID sessionID)
         {
-            throw new NullPointerException();
+            SessionEntry sessionEntry = sessionsByID.get(sessionID);
+            if (null != sessionEntry)
+            {
+                sessionEntry.accessedAt = System.nanoTime();
+                updateEldest();
+            }
+            return sessionEntry;
         }
-        return key == null ? null : map.get(key);
-    }
 
-    private static <K, V> V mapRemove(Map<K, V> map, K key)
-    {
-        if (map == null)
+        void put(SessionID sessionID, SessionEntry sessionEntry)
         {
-            throw new NullPointerException();
+            sessionEntry.accessedAt = System.nanoTime();
+            sessionsByID.put(sessionID, sessionEntry);
+            updateEldest();
         }
-        return key == null ? null : map.remove(key);
-    }
 
-    private static <K, V> boolean mapRemove(Map<K, V> map, K key, V value)
-    {
-        if (map == null || value == null)
+        SessionEntry remove(SessionID sessionID)
+        {
+            SessionEntry removed = sessionsByID.remove(sessionID);
+            updateEldest();
+            return removed;
+        }
+
+        void updateEldest()
         {
-            throw new NullPointerException();
+            Iterator<SessionEntry> iter = sessionsByID.values().iterator();
+            eldest = iter.hasNext() ? iter.next() : null;
         }
-        if (key != null)
+
+        synchronized SessionEntry removeEldest()
         {
-            // TODO[jsse] From 1.8 there is a 2-argument remove method to accomplish this 
-            V removed = map.remove(key);
-            if (removed == value)
+            Iterator<SessionEntry> iter = sessionsByID.values().iterator();
+            if (!iter.hasNext())
             {
-                return true;
+                return null;
             }
-            if (removed != null)
+
+            SessionEntry removed = iter.next();
+            iter.remove();
+            updateEldest();
+            return removed;
+        }
+
+        synchronized boolean remove(SessionID sessionID, SessionEntry sessionEntry)
+        {
+            // TODO[jsse] From 1.8 there is a 2-argument remove method to accomplish this
+            SessionEntry removed = sessionsByID.remove(sessionID);
+            if (removed != null && removed != sessionEntry)
             {
-                map.put(key, removed);
+                sessionsByID.put(sessionID, removed);
             }
+            updateEldest();
+            return removed == sessionEntry;
         }
-        return false;
     }
 
     private static final class SessionEntry
@@ -370,6 +715,9 @@ private static <K, V> boolean mapRemove(Map<K, V> map, K key, V value)
         private final SessionID sessionID;
         private final String peerKey;
 
+        // NOTE: Written under the lock of the entry's segment, but read without it during eviction
+        volatile long accessedAt;
+
         SessionEntry(SessionID sessionID, ProvSSLSession session, ReferenceQueue<ProvSSLSession> queue)
         {
             super(session, queue);
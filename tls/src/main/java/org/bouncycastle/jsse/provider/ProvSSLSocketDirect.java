@@ -419,6 +419,7 @@ protected void startHandshake(boolean resumable) throws IOException
                 TlsClientProtocol clientProtocol = new ProvTlsClientProtocol(input, output, socketCloser);
                 clientProtocol.setResumableHandshake(resumable);
                 this.protocol = clientProtocol;
+                JsseUtils.setupRecordWriting(clientProtocol, true);
 
                 ProvTlsClient client = new ProvTlsClient(this, sslParameters);
                 this.protocolPeer = client;
@@ -430,6 +431,7 @@ protected void startHandshake(boolean resumable) throws IOException
                 TlsServerProtocol serverProtocol = new ProvTlsServerProtocol(input, output, socketCloser);
                 serverProtocol.setResumableHandshake(resumable);
                 this.protocol = serverProtocol;
+                JsseUtils.setupRecordWriting(serverProtocol, true);
 
                 ProvTlsServer server = new ProvTlsServer(this, sslParameters);
                 this.protocolPeer = server;
@@ -627,6 +629,16 @@ public void write(byte[] b, int off, int len) throws IOException
             }
         }
 
+        @Override
+        public void flush() throws IOException
+        {
+            TlsProtocol protocol = ProvSSLSocketDirect.this.protocol;
+            if (null != protocol)
+            {
+                protocol.flush();
+            }
+        }
+
         @Override
         public void close() throws IOException
         {
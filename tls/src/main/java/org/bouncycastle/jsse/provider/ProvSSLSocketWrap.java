@@ -601,6 +601,7 @@ protected void startHandshake(boolean resumable) throws IOException
                 TlsClientProtocol clientProtocol = new ProvTlsClientProtocol(input, output, socketCloser);
                 clientProtocol.setResumableHandshake(resumable);
                 this.protocol = clientProtocol;
+                JsseUtils.setupRecordWriting(clientProtocol, true);
 
                 ProvTlsClient client = new ProvTlsClient(this, sslParameters);
                 this.protocolPeer = client;
@@ -612,6 +613,7 @@ protected void startHandshake(boolean resumable) throws IOException
                 TlsServerProtocol serverProtocol = new ProvTlsServerProtocol(input, output, socketCloser);
                 serverProtocol.setResumableHandshake(resumable);
                 this.protocol = serverProtocol;
+                JsseUtils.setupRecordWriting(serverProtocol, true);
 
                 ProvTlsServer server = new ProvTlsServer(this, sslParameters);
                 this.protocolPeer = server;
@@ -821,5 +823,15 @@ public void write(byte[] b, int off, int len) throws IOException
                 protocol.writeApplicationData(b, off, len);
             }
         }
+
+        @Override
+        public void flush() throws IOException
+        {
+            TlsProtocol protocol = ProvSSLSocketWrap.this.protocol;
+            if (null != protocol)
+            {
+                protocol.flush();
+            }
+        }
     }
 }
@@ -40,9 +40,11 @@
 import org.bouncycastle.tls.TlsContext;
 import org.bouncycastle.tls.TlsCredentials;
 import org.bouncycastle.tls.TlsDHUtils;
+import org.bouncycastle.tls.TlsAntiReplayStore;
 import org.bouncycastle.tls.TlsExtensionsUtils;
 import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.TlsSession;
+import org.bouncycastle.tls.TlsTicketKeyStore;
 import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.tls.TrustedAuthority;
 import org.bouncycastle.tls.crypto.DHGroup;
@@ -74,6 +76,9 @@
     private static final boolean provServerEnableSessionResumption = PropertyUtils
         .getBooleanSystemProperty("org.bouncycastle.jsse.server.enableSessionResumption", true);
 
+    private static final boolean provServerEnableSessionTickets = PropertyUtils
+        .getBooleanSystemProperty("jdk.tls.server.enableSessionTicketExtension", true);
+
     // TODO[jsse] Support status_request and status_request_v2 extensions
 //    private static final boolean provServerEnableStatusRequest = PropertyUtils.getBooleanSystemProperty(
 //        "jdk.tls.server.enableStatusRequestExtension", false);
@@ -679,7 +684,7 @@ public TlsSession getSessionToResume(byte[] sessionID)
     @Override
     public byte[] getNewSessionID()
     {
-        // TODO[tls13] Resumption/PSK
+        // NOTE: TLS 1.3 resumption uses stateless session tickets instead (see getTicketKeyStore)
         if (!provServerEnableSessionResumption || TlsUtils.isTLSv13(context))
         {
             return null;
@@ -688,6 +693,42 @@ public byte[] getNewSessionID()
         return context.getNonceGenerator().generateNonce(32);
     }
 
+    @Override
+    public TlsTicketKeyStore getTicketKeyStore()
+    {
+        if (!provServerEnableSessionResumption || !provServerEnableSessionTickets)
+        {
+            return null;
+        }
+
+        return manager.getContextData().getServerSessionContext().getTicketKeyStore();
+    }
+
+    @Override
+    public long getTicketLifetime()
+    {
+        // NOTE: A session timeout of 0 means no limit, but tickets are limited to 7 days anyway
+        int sessionTimeout = manager.getContextData().getServerSessionContext().getSessionTimeout();
+        return sessionTimeout > 0 ? sessionTimeout : 604800L;
+    }
+
+    @Override
+    public long getMaxEarlyDataSize()
+    {
+        if (null == getTicketKeyStore())
+        {
+            return 0L;
+        }
+
+        return sslParameters.getMaxEarlyDataSize();
+    }
+
+    @Override
+    public TlsAntiReplayStore getAntiReplayStore()
+    {
+        return manager.getContextData().getServerSessionContext().getAntiReplayStore();
+    }
+
     @Override
     public void notifySession(TlsSession session)
     {
@@ -854,7 +895,7 @@ public synchronized void notifyHandshakeComplete() throws IOException
             int peerPort = manager.getPeerPort();
             JsseSessionParameters jsseSessionParameters = new JsseSessionParameters(
                 sslParameters.getEndpointIdentificationAlgorithm(), matchedSNIServerName);
-            // TODO[tls13] Resumption/PSK
+            // NOTE: TLS 1.3 sessions are resumed from stateless tickets, so aren't cached here
             boolean addToCache = provServerEnableSessionResumption && !TlsUtils.isTLSv13(context);
 
             this.sslSession = sslSessionContext.reportSession(peerHost, peerPort, connectionTlsSession,
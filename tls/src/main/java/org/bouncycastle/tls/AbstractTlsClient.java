@@ -239,6 +239,16 @@ public Vector getExternalPSKs()
         return null;
     }
 
+    public Vector getResumptionPSKs()
+    {
+        return null;
+    }
+
+    public byte[] getEarlyData()
+    {
+        return null;
+    }
+
     public boolean isFallback()
     {
         /*
@@ -300,6 +310,13 @@ public Hashtable getClientExtensions()
             {
                 TlsExtensionsUtils.addCertificateAuthoritiesExtension(clientExtensions, certificateAuthorities);
             }
+
+            int[] certificateCompressionAlgorithms = TlsUtils.getCertificateCompressionAlgorithms(
+                getCertificateCompressors());
+            if (certificateCompressionAlgorithms != null)
+            {
+                TlsExtensionsUtils.addCompressCertificateExtension(clientExtensions, certificateCompressionAlgorithms);
+            }
         }
 
         if (offeringPreTLSv13)
@@ -419,15 +436,33 @@ public Vector getEarlyKeyShareGroups()
         {
             return null;
         }
+
+        /*
+         * A hybrid group is only sent a key share when it is the most preferred group, and then a classical
+         * key share is sent as well, for servers that don't support it.
+         */
+        Vector keyShareGroups = new Vector(2);
+
+        Integer mostPreferred = (Integer)supportedGroups.elementAt(0);
+        if (NamedGroup.refersToASpecificHybrid(mostPreferred.intValue()))
+        {
+            keyShareGroups.addElement(mostPreferred);
+        }
+
         if (supportedGroups.contains(Integers.valueOf(NamedGroup.x25519)))
         {
-            return TlsUtils.vectorOfOne(Integers.valueOf(NamedGroup.x25519));
+            keyShareGroups.addElement(Integers.valueOf(NamedGroup.x25519));
+        }
+        else if (supportedGroups.contains(Integers.valueOf(NamedGroup.secp256r1)))
+        {
+            keyShareGroups.addElement(Integers.valueOf(NamedGroup.secp256r1));
         }
-        if (supportedGroups.contains(Integers.valueOf(NamedGroup.secp256r1)))
+        else if (keyShareGroups.isEmpty())
         {
-            return TlsUtils.vectorOfOne(Integers.valueOf(NamedGroup.secp256r1));
+            keyShareGroups.addElement(mostPreferred);
         }
-        return TlsUtils.vectorOfOne(supportedGroups.elementAt(0));
+
+        return keyShareGroups;
     }
 
     public boolean shouldUseCompatibilityMode()
@@ -521,4 +556,9 @@ public void notifyNewSessionTicket(NewSessionTicket newSessionTicket)
         throws IOException
     {
     }
+
+    public void notifyResumptionPSK(TlsPSKResumption resumptionPSK)
+        throws IOException
+    {
+    }
 }
@@ -67,6 +67,11 @@ public int getHandshakeResendTimeMillis()
         return 1000;
     }
 
+    public int getReplayWindowSize()
+    {
+        return 64;
+    }
+
     public boolean allowLegacyResumption()
     {
         return false;
@@ -82,6 +87,11 @@ public int getMaxHandshakeMessageSize()
         return 32768;
     }
 
+    public TlsCertificateCompressor[] getCertificateCompressors()
+    {
+        return null;
+    }
+
     public short[] getPskKeyExchangeModes()
     {
         return new short[]{ PskKeyExchangeMode.psk_dhe_ke };
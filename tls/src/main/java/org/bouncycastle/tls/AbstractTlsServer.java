@@ -319,6 +319,26 @@ public TlsPSKExternal getExternalPSK(Vector identities)
         return null;
     }
 
+    public TlsTicketKeyStore getTicketKeyStore()
+    {
+        return null;
+    }
+
+    public long getTicketLifetime()
+    {
+        return 2L * 60L * 60L;
+    }
+
+    public long getMaxEarlyDataSize()
+    {
+        return 0L;
+    }
+
+    public TlsAntiReplayStore getAntiReplayStore()
+    {
+        return null;
+    }
+
     public void notifySession(TlsSession session)
     {
     }
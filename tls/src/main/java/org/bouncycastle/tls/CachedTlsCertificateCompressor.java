@@ -0,0 +1,124 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A {@link TlsCertificateCompressor} that remembers the compressed encoding of the most recently used
+ * certificate chains, so that a server sharing one instance between connections compresses each chain once
+ * rather than in every handshake. Decompression is passed straight through.
+ */
+public class CachedTlsCertificateCompressor
+    implements TlsCertificateCompressor
+{
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+
+    private static class Key
+    {
+        private final byte[] value;
+        private final int hashCode;
+
+        Key(byte[] value)
+        {
+            this.value = value;
+            this.hashCode = Arrays.hashCode(value);
+        }
+
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Key && Arrays.areEqual(value, ((Key)obj).value);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+
+    protected final TlsCertificateCompressor compressor;
+    protected final int maxEntries;
+
+    private final Hashtable cache = new Hashtable();
+    private final Vector order = new Vector();
+
+    public CachedTlsCertificateCompressor(TlsCertificateCompressor compressor)
+    {
+        this(compressor, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param compressor the underlying compressor.
+     * @param maxEntries the maximum number of certificate chains to remember; the least recently used is
+     *                   dropped first.
+     */
+    public CachedTlsCertificateCompressor(TlsCertificateCompressor compressor, int maxEntries)
+    {
+        if (null == compressor)
+        {
+            throw new NullPointerException("'compressor' cannot be null");
+        }
+        if (maxEntries < 1)
+        {
+            throw new IllegalArgumentException("'maxEntries' must be > 0");
+        }
+
+        this.compressor = compressor;
+        this.maxEntries = maxEntries;
+    }
+
+    public int getAlgorithm()
+    {
+        return compressor.getAlgorithm();
+    }
+
+    public byte[] compress(byte[] certificateMessage) throws IOException
+    {
+        Key key = new Key(Arrays.clone(certificateMessage));
+
+        synchronized (this)
+        {
+            byte[] compressed = (byte[])cache.get(key);
+            if (null != compressed)
+            {
+                order.removeElement(key);
+                order.addElement(key);
+                return Arrays.clone(compressed);
+            }
+        }
+
+        // NOTE: Compress outside the lock; a concurrent miss for the same chain just does the work twice
+        byte[] compressed = compressor.compress(certificateMessage);
+
+        synchronized (this)
+        {
+            if (null == cache.put(key, Arrays.clone(compressed)))
+            {
+                order.addElement(key);
+
+                if (order.size() > maxEntries)
+                {
+                    cache.remove(order.elementAt(0));
+                    order.removeElementAt(0);
+                }
+            }
+        }
+
+        return compressed;
+    }
+
+    public byte[] decompress(byte[] compressed, int uncompressedLength) throws IOException
+    {
+        return compressor.decompress(compressed, uncompressedLength);
+    }
+
+    /**
+     * Return the number of certificate chains currently remembered.
+     */
+    public synchronized int size()
+    {
+        return cache.size();
+    }
+}
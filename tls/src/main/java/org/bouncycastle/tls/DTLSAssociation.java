@@ -0,0 +1,209 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link DatagramTransport} for one client of a {@link DTLSServerDemultiplexer}. Pass it, together with
+ * {@link #getRequest()}, to {@link DTLSServerProtocol#accept(TlsServer, DatagramTransport, DTLSRequest)}.
+ * <p>
+ * To use an RFC 9146 connection ID, have the {@link TlsServer} return {@link #createConnectionID()} as its new
+ * connection ID, and pass the association as the {@link DTLSRecordCallback} when receiving from the resulting
+ * {@link DTLSTransport}. The association then follows the client to a new address once a record from there has
+ * been authenticated as the newest record using the connection ID (RFC 9146 6).
+ * </p>
+ */
+public class DTLSAssociation
+    implements DatagramTransport, DTLSRecordCallback
+{
+    private static final int MAX_QUEUED_DATAGRAMS = 64;
+
+    private final DTLSServerDemultiplexer demultiplexer;
+    private final DTLSRequest request;
+    private final LinkedBlockingQueue receiveQueue = new LinkedBlockingQueue(MAX_QUEUED_DATAGRAMS);
+    private final Vector connectionIDs = new Vector();
+
+    private volatile SocketAddress peerAddress;
+    private volatile boolean closed = false;
+
+    // Source of the datagram most recently returned by receive
+    private SocketAddress receivedFrom = null;
+
+    DTLSAssociation(DTLSServerDemultiplexer demultiplexer, SocketAddress peerAddress, DTLSRequest request)
+    {
+        this.demultiplexer = demultiplexer;
+        this.peerAddress = peerAddress;
+        this.request = request;
+    }
+
+    /**
+     * @return the verified ClientHello that created this association.
+     */
+    public DTLSRequest getRequest()
+    {
+        return request;
+    }
+
+    /**
+     * @return the address datagrams for the client are currently sent to.
+     */
+    public SocketAddress getPeerAddress()
+    {
+        return peerAddress;
+    }
+
+    /**
+     * Issue a new connection ID that routes to this association.
+     *
+     * @return the connection ID, or null if the demultiplexer doesn't use connection IDs.
+     */
+    public byte[] createConnectionID() throws IOException
+    {
+        if (closed)
+        {
+            throw new ClosedChannelException();
+        }
+
+        byte[] connectionID = demultiplexer.createConnectionID(this);
+        if (null != connectionID)
+        {
+            connectionIDs.addElement(connectionID);
+        }
+        return connectionID;
+    }
+
+    public int getReceiveLimit()
+    {
+        return demultiplexer.getReceiveLimit();
+    }
+
+    public int getSendLimit()
+    {
+        return demultiplexer.getSendLimit();
+    }
+
+    public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+    {
+        if (closed)
+        {
+            throw new ClosedChannelException();
+        }
+
+        Datagram datagram;
+        try
+        {
+            datagram = (Datagram)receiveQueue.poll(waitMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        if (null == datagram)
+        {
+            return -1;
+        }
+
+        this.receivedFrom = datagram.source;
+
+        int copyLength = Math.min(len, datagram.data.length);
+        System.arraycopy(datagram.data, 0, buf, off, copyLength);
+        return copyLength;
+    }
+
+    public void send(byte[] buf, int off, int len) throws IOException
+    {
+        if (closed)
+        {
+            throw new ClosedChannelException();
+        }
+
+        if (len > getSendLimit())
+        {
+            /*
+             * RFC 4347 4.1.1. "If the application attempts to send a record larger than the MTU,
+             * the DTLS implementation SHOULD generate an error, thus avoiding sending a packet
+             * which will be fragmented."
+             */
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        demultiplexer.send(peerAddress, buf, off, len);
+    }
+
+    public void close() throws IOException
+    {
+        byte[][] ids;
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+
+            this.closed = true;
+
+            ids = new byte[connectionIDs.size()][];
+            connectionIDs.copyInto(ids);
+        }
+
+        demultiplexer.remove(this, peerAddress, ids);
+        receiveQueue.clear();
+    }
+
+    public void recordAccepted(int flags)
+    {
+        int required = DTLSRecordFlags.IS_NEWEST | DTLSRecordFlags.USES_CONNECTION_ID;
+        if ((flags & required) != required)
+        {
+            return;
+        }
+
+        /*
+         * RFC 9146 6. [..] the receiver MUST update the peer address [..] only if the record is newer than any
+         * other record received (and authenticated) using the connection ID.
+         */
+        SocketAddress from = this.receivedFrom;
+        SocketAddress to = this.peerAddress;
+        if (null != from && !from.equals(to))
+        {
+            synchronized (this)
+            {
+                if (closed)
+                {
+                    return;
+                }
+
+                this.peerAddress = from;
+                demultiplexer.migrate(this, to, from);
+            }
+        }
+    }
+
+    void enqueue(SocketAddress source, byte[] data)
+    {
+        if (!closed)
+        {
+            // NOTE: Like the network itself, drop datagrams rather than block when the queue is full
+            receiveQueue.offer(new Datagram(source, data));
+        }
+    }
+
+    private static class Datagram
+    {
+        final SocketAddress source;
+        final byte[] data;
+
+        Datagram(SocketAddress source, byte[] data)
+        {
+            this.source = source;
+            this.data = data;
+        }
+    }
+}
@@ -103,9 +103,14 @@ private static void sendDatagram(DatagramSender sender, byte[] buf, int off, int
     private final TlsPeer peer;
     private final DatagramTransport transport;
 
+    private final int replayWindowSize;
+
     private final ByteQueue recordQueue = new ByteQueue();
     private final Object writeLock = new Object();
 
+    // Reused by successive receives, which (like the replay windows) are only used by one thread at a time
+    private byte[] receiveBuffer = null;
+
     private volatile boolean closed = false;
     private volatile boolean failed = false;
     // TODO[dtls13] Review the draft/RFC (legacy_record_version) to see if readVersion can be removed
@@ -134,10 +139,12 @@ private static void sendDatagram(DatagramSender sender, byte[] buf, int off, int
         this.context = context;
         this.peer = peer;
         this.transport = transport;
+        this.replayWindowSize = peer.getReplayWindowSize();
 
         this.inHandshake = true;
 
-        this.currentEpoch = new DTLSEpoch(0, TlsNullNullCipher.INSTANCE, RECORD_HEADER_LENGTH, RECORD_HEADER_LENGTH);        
+        this.currentEpoch = new DTLSEpoch(0, TlsNullNullCipher.INSTANCE, RECORD_HEADER_LENGTH, RECORD_HEADER_LENGTH,
+            replayWindowSize);
         this.pendingEpoch = null;
         this.readEpoch = currentEpoch;
         this.writeEpoch = currentEpoch;
@@ -204,7 +211,7 @@ void initPendingEpoch(TlsCipher pendingCipher)
 
         // TODO Check for overflow
         this.pendingEpoch = new DTLSEpoch(writeEpoch.getEpoch() + 1, pendingCipher, recordHeaderLengthRead,
-            recordHeaderLengthWrite);
+            recordHeaderLengthWrite, replayWindowSize);
     }
 
     void handshakeSuccessful(DTLSHandshakeRetransmit retransmit)
@@ -289,7 +296,6 @@ int receive(byte[] buf, int off, int len, int waitMillis, DTLSRecordCallback rec
         long currentTimeMillis = System.currentTimeMillis();
 
         Timeout timeout = Timeout.forWaitMillis(waitMillis, currentTimeMillis);
-        byte[] record = null;
 
         while (waitMillis >= 0)
         {
@@ -333,11 +339,8 @@ else if (Timeout.hasExpired(heartbeatResendTimeout, currentTimeMillis))
                 waitMillis = 1;
             }
 
-            int receiveLimit = transport.getReceiveLimit();            
-            if (null == record || record.length < receiveLimit)
-            {
-                record = new byte[receiveLimit];
-            }
+            int receiveLimit = transport.getReceiveLimit();
+            byte[] record = getReceiveBuffer(receiveLimit);
 
             int received = receiveRecord(record, 0, receiveLimit, waitMillis);
             int processed = processRecord(received, record, buf, off, len, recordCallback);            
@@ -359,7 +362,7 @@ int receivePending(byte[] buf, int off, int len, DTLSRecordCallback recordCallba
         if (recordQueue.available() > 0)
         {
             int receiveLimit = recordQueue.available();
-            byte[] record = new byte[receiveLimit];
+            byte[] record = getReceiveBuffer(receiveLimit);
 
             do
             {
@@ -376,6 +379,46 @@ int receivePending(byte[] buf, int off, int len, DTLSRecordCallback recordCallba
         return -1;
     }
 
+    int receiveBatch(byte[] buf, int off, int len, int[] lengths, int waitMillis, DTLSRecordCallback recordCallback)
+        throws IOException
+    {
+        Timeout timeout = Timeout.forWaitMillis(waitMillis);
+        int limit = getReceiveLimit();
+        int pos = off, end = off + len, count = 0;
+
+        while (count < lengths.length && (end - pos) >= limit)
+        {
+            // Records remaining from the last datagram need no further wait
+            int received = receivePending(buf, pos, end - pos, recordCallback);
+
+            if (received < 0)
+            {
+                int remainingMillis = waitMillis;
+                if (count > 0)
+                {
+                    remainingMillis = Timeout.getWaitMillis(timeout, System.currentTimeMillis());
+
+                    // NOTE: Without a timeout, only the first datagram of a batch is waited for
+                    if (remainingMillis < 1)
+                    {
+                        break;
+                    }
+                }
+
+                received = receive(buf, pos, end - pos, remainingMillis, recordCallback);
+                if (received < 0)
+                {
+                    break;
+                }
+            }
+
+            lengths[count++] = received;
+            pos += received;
+        }
+
+        return count > 0 ? count : -1;
+    }
+
     public void send(byte[] buf, int off, int len)
         throws IOException
     {
@@ -945,6 +988,15 @@ else if (null != retransmitEpoch && epoch == retransmitEpoch.getEpoch())
         return received;
     }
 
+    private byte[] getReceiveBuffer(int receiveLimit)
+    {
+        if (null == receiveBuffer || receiveBuffer.length < receiveLimit)
+        {
+            receiveBuffer = new byte[receiveLimit];
+        }
+        return receiveBuffer;
+    }
+
     private void resetHeartbeat()
     {
         this.heartbeatInFlight = null;
@@ -1,19 +1,41 @@
 package org.bouncycastle.tls;
 
+import org.bouncycastle.util.Arrays;
+
 /**
  * RFC 4347 4.1.2.5 Anti-replay
  * <p>
  * Support fast rejection of duplicate records by maintaining a sliding receive window
  * </p>
+ * <p>
+ * The window is a ring bitmap indexed by sequence number (modulo the window size), so advancing the window only
+ * clears the bits of the sequence numbers newly entering it, rather than shifting the whole bitmap.
+ * </p>
  */
 class DTLSReplayWindow
 {
     private static final long VALID_SEQ_MASK = 0x0000FFFFFFFFFFFFL;
 
-    private static final long WINDOW_SIZE = 64L;
+    private final long windowSize;
+    private final long[] bitmap;
 
     private long latestConfirmedSeq = -1;
-    private long bitmap = 0;
+
+    /**
+     * @param windowSize the number of records in the window, rounded up to a multiple of 64.
+     */
+    DTLSReplayWindow(int windowSize)
+    {
+        if (windowSize < 1)
+        {
+            throw new IllegalArgumentException("'windowSize' must be > 0");
+        }
+
+        int words = (windowSize + 63) >>> 6;
+
+        this.windowSize = (long)words << 6;
+        this.bitmap = new long[words];
+    }
 
     /**
      * Check whether a received record with the given sequence number should be rejected as a duplicate.
@@ -31,11 +53,11 @@ boolean shouldDiscard(long seq)
         if (seq <= latestConfirmedSeq)
         {
             long diff = latestConfirmedSeq - seq;
-            if (diff >= WINDOW_SIZE)
+            if (diff >= windowSize)
             {
                 return true;
             }
-            if ((bitmap & (1L << diff)) != 0)
+            if ((bitmap[getWord(seq)] & getBit(seq)) != 0)
             {
                 return true;
             }
@@ -59,24 +81,24 @@ boolean reportAuthenticated(long seq)
         if (seq <= latestConfirmedSeq)
         {
             long diff = latestConfirmedSeq - seq;
-            if (diff < WINDOW_SIZE)
+            if (diff < windowSize)
             {
-                bitmap |= (1L << diff);
+                bitmap[getWord(seq)] |= getBit(seq);
             }
             return false;
         }
         else
         {
             long diff = seq - latestConfirmedSeq;
-            if (diff >= WINDOW_SIZE)
+            if (diff >= windowSize)
             {
-                bitmap = 1;
+                Arrays.fill(bitmap, 0L);
             }
             else
             {
-                bitmap <<= (int)diff;        // for earlier JDKs
-                bitmap |= 1;
+                clearBits(latestConfirmedSeq + 1, seq);
             }
+            bitmap[getWord(seq)] |= getBit(seq);
             latestConfirmedSeq = seq;
             return true;
         }
@@ -91,6 +113,42 @@ void reset(long seq)
 
         // Discard future records unless sequence number > 'seq'
         latestConfirmedSeq = seq;
-        bitmap = -1L >>> Math.max(0, 63 - seq);
+
+        /*
+         * NOTE: Where 'seq' is smaller than the window, this also marks positions belonging to sequence numbers
+         * after 'seq', but those are cleared again as the window advances over them.
+         */
+        Arrays.fill(bitmap, -1L);
+    }
+
+    /*
+     * Clear the bits for sequence numbers in [from, to], which must span fewer than windowSize values.
+     */
+    private void clearBits(long from, long to)
+    {
+        long seq = from;
+        while (seq <= to)
+        {
+            if ((seq & 63) == 0 && (to - seq) >= 63)
+            {
+                bitmap[getWord(seq)] = 0L;
+                seq += 64;
+            }
+            else
+            {
+                bitmap[getWord(seq)] &= ~getBit(seq);
+                ++seq;
+            }
+        }
+    }
+
+    private int getWord(long seq)
+    {
+        return (int)((seq >>> 6) % bitmap.length);
+    }
+
+    private static long getBit(long seq)
+    {
+        return 1L << (int)(seq & 63);
     }
 }
@@ -0,0 +1,362 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Strings;
+
+/**
+ * Serves many DTLS clients from a single, unconnected {@link DatagramChannel}. Each incoming datagram is routed to
+ * the {@link DTLSAssociation} for its client: by RFC 9146 connection ID for tls12_cid records, otherwise by
+ * source address. Both lookups are lock-free.
+ * <p>
+ * Datagrams from an unknown source are passed to a {@link DTLSVerifier}, and no per-client state is allocated
+ * until one of them carries a ClientHello with a valid cookie. Each association created that way is then handed
+ * out by {@link #accept(int)}, to be used with
+ * {@link DTLSServerProtocol#accept(TlsServer, DatagramTransport, DTLSRequest)}.
+ * </p>
+ * <p>
+ * Connection IDs issued via {@link DTLSAssociation#createConnectionID()} all have the fixed length given to the
+ * constructor, since tls12_cid records don't include the length of the connection ID.
+ * </p>
+ */
+public class DTLSServerDemultiplexer
+{
+    private static final int MAX_PENDING_ACCEPTS = 256;
+
+    private final TlsCrypto crypto;
+    private final DatagramChannel channel;
+    private final int receiveLimit, sendLimit;
+    private final int connectionIDLength;
+
+    // SocketAddress -> DTLSAssociation
+    private final ConcurrentHashMap associationsByAddress = new ConcurrentHashMap();
+    // ConnectionIDKey -> DTLSAssociation
+    private final ConcurrentHashMap associationsByConnectionID = new ConcurrentHashMap();
+    private final LinkedBlockingQueue pendingAccepts = new LinkedBlockingQueue(MAX_PENDING_ACCEPTS);
+
+    private volatile DTLSVerifier verifier;
+    private volatile boolean closed = false;
+    private Thread receiver = null;
+
+    /**
+     * @param crypto the crypto used for cookie verification and connection IDs.
+     * @param channel a bound, unconnected channel.
+     * @param mtu the MTU of the network path.
+     * @param connectionIDLength the length of the connection IDs to issue, or 0 to route by address only.
+     */
+    public DTLSServerDemultiplexer(TlsCrypto crypto, DatagramChannel channel, int mtu, int connectionIDLength)
+        throws IOException
+    {
+        if (!channel.socket().isBound() || channel.isConnected())
+        {
+            throw new IllegalArgumentException("'channel' must be bound and unconnected");
+        }
+        if (!TlsUtils.isValidUint8(connectionIDLength))
+        {
+            throw new IllegalArgumentException("'connectionIDLength' must be a uint8 value");
+        }
+
+        channel.configureBlocking(true);
+
+        this.crypto = crypto;
+        this.channel = channel;
+        this.receiveLimit = mtu - UDPTransport.MIN_IP_OVERHEAD - UDPTransport.UDP_OVERHEAD;
+        this.sendLimit = mtu - UDPTransport.MAX_IP_OVERHEAD - UDPTransport.UDP_OVERHEAD;
+        this.connectionIDLength = connectionIDLength;
+        this.verifier = new DTLSVerifier(crypto);
+    }
+
+    /**
+     * Replace the {@link DTLSVerifier} used for cookie exchanges, e.g. to change its secret periodically (see
+     * RFC 6347 4.2.1).
+     */
+    public void setVerifier(DTLSVerifier verifier)
+    {
+        if (null == verifier)
+        {
+            throw new NullPointerException("'verifier' cannot be null");
+        }
+
+        this.verifier = verifier;
+    }
+
+    /**
+     * Start the background thread that receives from the channel.
+     */
+    public synchronized void start()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("demultiplexer is closed");
+        }
+
+        if (null == receiver)
+        {
+            receiver = new Thread(new Receiver(), "BCTLS-DTLSServerDemultiplexer");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+    }
+
+    /**
+     * Wait for a client to complete the cookie exchange.
+     *
+     * @param waitMillis the maximum time to wait, in milliseconds.
+     * @return the association for the new client, or null if none arrived in time.
+     */
+    public DTLSAssociation accept(int waitMillis) throws IOException
+    {
+        if (closed)
+        {
+            throw new ClosedChannelException();
+        }
+
+        try
+        {
+            return (DTLSAssociation)pendingAccepts.poll(waitMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * @return the number of associations currently open.
+     */
+    public int getAssociationCount()
+    {
+        return associationsByAddress.size();
+    }
+
+    /**
+     * Close the channel, and with it all associations.
+     */
+    public void close() throws IOException
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+
+            this.closed = true;
+        }
+
+        channel.close();
+
+        Iterator it = associationsByAddress.values().iterator();
+        while (it.hasNext())
+        {
+            ((DTLSAssociation)it.next()).close();
+        }
+
+        pendingAccepts.clear();
+    }
+
+    int getReceiveLimit()
+    {
+        return receiveLimit;
+    }
+
+    int getSendLimit()
+    {
+        return sendLimit;
+    }
+
+    byte[] createConnectionID(DTLSAssociation association)
+    {
+        if (connectionIDLength < 1)
+        {
+            return null;
+        }
+
+        SecureRandom random = crypto.getSecureRandom();
+        for (;;)
+        {
+            byte[] connectionID = new byte[connectionIDLength];
+            random.nextBytes(connectionID);
+
+            if (null == associationsByConnectionID.putIfAbsent(new ConnectionIDKey(connectionID), association))
+            {
+                return Arrays.clone(connectionID);
+            }
+        }
+    }
+
+    void migrate(DTLSAssociation association, SocketAddress from, SocketAddress to)
+    {
+        associationsByAddress.put(to, association);
+        associationsByAddress.remove(from, association);
+    }
+
+    void remove(DTLSAssociation association, SocketAddress peerAddress, byte[][] connectionIDs)
+    {
+        associationsByAddress.remove(peerAddress, association);
+
+        for (int i = 0; i < connectionIDs.length; ++i)
+        {
+            associationsByConnectionID.remove(new ConnectionIDKey(connectionIDs[i]), association);
+        }
+    }
+
+    void send(SocketAddress target, byte[] buf, int off, int len) throws IOException
+    {
+        channel.send(ByteBuffer.wrap(buf, off, len), target);
+    }
+
+    private void dispatch(SocketAddress source, byte[] data)
+    {
+        DTLSAssociation association = null;
+
+        if (connectionIDLength > 0
+            && data.length >= DTLSRecordLayer.RECORD_HEADER_LENGTH + connectionIDLength
+            && ContentType.tls12_cid == TlsUtils.readUint8(data, 0))
+        {
+            byte[] connectionID = Arrays.copyOfRange(data, 11, 11 + connectionIDLength);
+            association = (DTLSAssociation)associationsByConnectionID.get(new ConnectionIDKey(connectionID));
+        }
+
+        if (null == association)
+        {
+            association = (DTLSAssociation)associationsByAddress.get(source);
+        }
+
+        if (null != association)
+        {
+            association.enqueue(source, data);
+            return;
+        }
+
+        // NOTE: Nothing is allocated for an unknown source until it returns a valid cookie
+        DTLSRequest request = verifier.verifyRequest(getClientID(source), data, 0, data.length,
+            new Sender(source));
+        if (null == request)
+        {
+            return;
+        }
+
+        association = new DTLSAssociation(this, source, request);
+        associationsByAddress.put(source, association);
+
+        if (!pendingAccepts.offer(association))
+        {
+            associationsByAddress.remove(source, association);
+        }
+    }
+
+    private static byte[] getClientID(SocketAddress address)
+    {
+        if (address instanceof InetSocketAddress)
+        {
+            InetSocketAddress inetAddress = (InetSocketAddress)address;
+            byte[] ip = inetAddress.getAddress().getAddress();
+            byte[] clientID = new byte[ip.length + 2];
+            System.arraycopy(ip, 0, clientID, 0, ip.length);
+            TlsUtils.writeUint16(inetAddress.getPort(), clientID, ip.length);
+            return clientID;
+        }
+
+        return Strings.toUTF8ByteArray(address.toString());
+    }
+
+    private class Receiver
+        implements Runnable
+    {
+        public void run()
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(receiveLimit);
+
+            while (!closed)
+            {
+                ((Buffer)buffer).clear();
+
+                SocketAddress source;
+                try
+                {
+                    source = channel.receive(buffer);
+                }
+                catch (ClosedChannelException e)
+                {
+                    break;
+                }
+                catch (IOException e)
+                {
+                    continue;
+                }
+
+                if (null == source)
+                {
+                    continue;
+                }
+
+                ((Buffer)buffer).flip();
+
+                byte[] data = new byte[buffer.remaining()];
+                buffer.get(data);
+
+                dispatch(source, data);
+            }
+        }
+    }
+
+    private class Sender
+        implements DatagramSender
+    {
+        private final SocketAddress target;
+
+        Sender(SocketAddress target)
+        {
+            this.target = target;
+        }
+
+        public int getSendLimit()
+        {
+            return sendLimit;
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            DTLSServerDemultiplexer.this.send(target, buf, off, len);
+        }
+    }
+
+    private static final class ConnectionIDKey
+    {
+        private final byte[] connectionID;
+        private final int hashCode;
+
+        ConnectionIDKey(byte[] connectionID)
+        {
+            this.connectionID = connectionID;
+            this.hashCode = Arrays.hashCode(connectionID);
+        }
+
+        public boolean equals(Object obj)
+        {
+            return obj instanceof ConnectionIDKey
+                && Arrays.areEqual(connectionID, ((ConnectionIDKey)obj).connectionID);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+}
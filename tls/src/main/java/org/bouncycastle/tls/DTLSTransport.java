@@ -133,6 +133,70 @@ public int receivePending(byte[] buf, int off, int len, DTLSRecordCallback recor
         }
     }
 
+    /**
+     * Receive a batch of application data records, draining as many as possible per wakeup. Waits up to
+     * waitMillis (zero meaning indefinitely) for the first record; further records are then received until the
+     * batch is full or waitMillis has elapsed since the call (with no further waiting at all if waitMillis is
+     * zero). Records are placed consecutively in buf, and the batch also ends once less than
+     * {@link #getReceiveLimit()} bytes of space remain. Records with bad MACs are silently discarded, without
+     * ending the batch.
+     *
+     * @param lengths receives the length of each record, in order. Its length is the maximum batch size.
+     * @return the number of records received, or -1 if none were received before the wait expired.
+     */
+    public int receiveBatch(byte[] buf, int off, int len, int[] lengths, int waitMillis,
+        DTLSRecordCallback recordCallback) throws IOException
+    {
+        if (null == buf)
+        {
+            throw new NullPointerException("'buf' cannot be null");
+        }
+        if (off < 0 || off >= buf.length)
+        {
+            throw new IllegalArgumentException("'off' is an invalid offset: " + off);
+        }
+        if (len < 0 || len > buf.length - off)
+        {
+            throw new IllegalArgumentException("'len' is an invalid length: " + len);
+        }
+        if (null == lengths || lengths.length < 1)
+        {
+            throw new IllegalArgumentException("'lengths' must have at least one element");
+        }
+        if (waitMillis < 0)
+        {
+            throw new IllegalArgumentException("'waitMillis' cannot be negative");
+        }
+
+        try
+        {
+            return recordLayer.receiveBatch(buf, off, len, lengths, waitMillis, recordCallback);
+        }
+        catch (TlsFatalAlert fatalAlert)
+        {
+            /*
+             * NOTE: Records with bad MACs are discarded individually by the record layer, so a fatal alert here
+             * is never bad_record_mac and the records of a partial batch are not lost to one.
+             */
+            recordLayer.fail(fatalAlert.getAlertDescription());
+            throw fatalAlert;
+        }
+        catch (InterruptedIOException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            recordLayer.fail(AlertDescription.internal_error);
+            throw new TlsFatalAlert(AlertDescription.internal_error, e);
+        }
+    }
+
     public void send(byte[] buf, int off, int len)
         throws IOException
     {
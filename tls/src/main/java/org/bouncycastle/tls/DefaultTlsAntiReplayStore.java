@@ -0,0 +1,141 @@
+package org.bouncycastle.tls;
+
+import java.util.Hashtable;
+
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A {@link TlsAntiReplayStore} that keeps the recorded values in memory, in buckets that each cover a quarter
+ * of the window and are discarded as a whole once they are older than twice the window. The number of values
+ * held is bounded; when the store is full, early data is rejected until buckets expire.
+ */
+public class DefaultTlsAntiReplayStore
+    implements TlsAntiReplayStore
+{
+    public static final long DEFAULT_WINDOW = 10L * 1000L;
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final int INTERVALS_PER_WINDOW = 4;
+    private static final int BUCKET_COUNT = 2 * INTERVALS_PER_WINDOW + 1;
+
+    private static class Key
+    {
+        private final byte[] value;
+        private final int hashCode;
+
+        Key(byte[] value)
+        {
+            this.value = value;
+            this.hashCode = Arrays.hashCode(value);
+        }
+
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Key && Arrays.areEqual(value, ((Key)obj).value);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+
+    protected final long window;
+    protected final int maxEntries;
+
+    private final long bucketInterval;
+    private final Hashtable[] buckets = new Hashtable[BUCKET_COUNT];
+    private final long[] bucketEpochs = new long[BUCKET_COUNT];
+    private int size = 0;
+
+    public DefaultTlsAntiReplayStore()
+    {
+        this(DEFAULT_WINDOW, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param window the freshness window in milliseconds (see {@link TlsAntiReplayStore#getWindow()}).
+     * @param maxEntries the maximum number of values held at once.
+     */
+    public DefaultTlsAntiReplayStore(long window, int maxEntries)
+    {
+        if (window < INTERVALS_PER_WINDOW)
+        {
+            throw new IllegalArgumentException("'window' must be >= " + INTERVALS_PER_WINDOW);
+        }
+        if (maxEntries < 1)
+        {
+            throw new IllegalArgumentException("'maxEntries' must be > 0");
+        }
+
+        this.window = window;
+        this.maxEntries = maxEntries;
+        this.bucketInterval = window / INTERVALS_PER_WINDOW;
+
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            buckets[i] = new Hashtable();
+            bucketEpochs[i] = Long.MIN_VALUE;
+        }
+    }
+
+    public long getWindow()
+    {
+        return window;
+    }
+
+    public synchronized boolean checkAndRecord(byte[] value, long currentTime)
+    {
+        long epoch = currentTime / bucketInterval;
+
+        removeExpired(epoch);
+
+        Key key = new Key(Arrays.clone(value));
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            if (buckets[i].containsKey(key))
+            {
+                return false;
+            }
+        }
+
+        if (size >= maxEntries)
+        {
+            return false;
+        }
+
+        int index = (int)(epoch % BUCKET_COUNT);
+        if (bucketEpochs[index] != epoch)
+        {
+            size -= buckets[index].size();
+            buckets[index].clear();
+            bucketEpochs[index] = epoch;
+        }
+
+        buckets[index].put(key, key);
+        ++size;
+        return true;
+    }
+
+    /**
+     * Return the number of values currently held.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    private void removeExpired(long epoch)
+    {
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+        {
+            // NOTE: Also clears buckets from the 'future', should the clock go backwards
+            if (bucketEpochs[i] <= epoch - BUCKET_COUNT || bucketEpochs[i] > epoch)
+            {
+                size -= buckets[i].size();
+                buckets[i].clear();
+                bucketEpochs[i] = Long.MIN_VALUE;
+            }
+        }
+    }
+}
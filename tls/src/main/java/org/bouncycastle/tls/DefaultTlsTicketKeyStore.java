@@ -0,0 +1,119 @@
+package org.bouncycastle.tls;
+
+import java.security.SecureRandom;
+import java.util.Vector;
+
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A {@link TlsTicketKeyStore} that generates random keys in memory, replacing the encryption key after a fixed
+ * interval and keeping each key for decryption until a fixed time after it was created.
+ */
+public class DefaultTlsTicketKeyStore
+    implements TlsTicketKeyStore
+{
+    public static final long DEFAULT_ROTATION_INTERVAL = 60L * 60L * 1000L;
+
+    /*
+     * RFC 8446 4.6.1. Servers MUST NOT use any value greater than 604800 seconds (7 days) [for ticket_lifetime].
+     */
+    public static final long DEFAULT_KEY_LIFETIME = DEFAULT_ROTATION_INTERVAL + 7L * 24L * 60L * 60L * 1000L;
+
+    private static class Entry
+    {
+        final TlsTicketKey key;
+        final long created;
+
+        Entry(TlsTicketKey key, long created)
+        {
+            this.key = key;
+            this.created = created;
+        }
+    }
+
+    protected final SecureRandom random;
+    protected final long rotationInterval;
+    protected final long keyLifetime;
+
+    // Newest first
+    private final Vector entries = new Vector();
+
+    public DefaultTlsTicketKeyStore(SecureRandom random)
+    {
+        this(random, DEFAULT_ROTATION_INTERVAL, DEFAULT_KEY_LIFETIME);
+    }
+
+    /**
+     * @param random the {@link SecureRandom} to generate keys from.
+     * @param rotationInterval the time in milliseconds that each key is used to protect new tickets for.
+     * @param keyLifetime the time in milliseconds after its creation that a key is still accepted. This should
+     *            be at least rotationInterval plus the longest ticket lifetime the server issues.
+     */
+    public DefaultTlsTicketKeyStore(SecureRandom random, long rotationInterval, long keyLifetime)
+    {
+        if (null == random)
+        {
+            throw new NullPointerException("'random' cannot be null");
+        }
+        if (rotationInterval <= 0)
+        {
+            throw new IllegalArgumentException("'rotationInterval' must be > 0");
+        }
+        if (keyLifetime < rotationInterval)
+        {
+            throw new IllegalArgumentException("'keyLifetime' must be >= 'rotationInterval'");
+        }
+
+        this.random = random;
+        this.rotationInterval = rotationInterval;
+        this.keyLifetime = keyLifetime;
+    }
+
+    public synchronized TlsTicketKey getEncryptionKey()
+    {
+        long now = System.currentTimeMillis();
+
+        removeExpired(now);
+
+        if (entries.isEmpty() || ((Entry)entries.elementAt(0)).created + rotationInterval <= now)
+        {
+            entries.insertElementAt(new Entry(generateKey(), now), 0);
+        }
+
+        return ((Entry)entries.elementAt(0)).key;
+    }
+
+    public synchronized TlsTicketKey getDecryptionKey(byte[] name)
+    {
+        removeExpired(System.currentTimeMillis());
+
+        for (int i = 0; i < entries.size(); ++i)
+        {
+            TlsTicketKey key = ((Entry)entries.elementAt(i)).key;
+            if (Arrays.areEqual(name, key.getName()))
+            {
+                return key;
+            }
+        }
+
+        return null;
+    }
+
+    protected TlsTicketKey generateKey()
+    {
+        byte[] name = new byte[TlsTicketKey.NAME_LENGTH];
+        byte[] key = new byte[TlsTicketKey.KEY_LENGTH];
+        random.nextBytes(name);
+        random.nextBytes(key);
+        return new TlsTicketKey(name, key);
+    }
+
+    private void removeExpired(long now)
+    {
+        int count = entries.size();
+        while (count > 0 && ((Entry)entries.elementAt(count - 1)).created + keyLifetime <= now)
+        {
+            entries.removeElementAt(--count);
+        }
+    }
+}
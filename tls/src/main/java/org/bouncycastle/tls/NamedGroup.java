@@ -96,6 +96,11 @@
      * RFC 4492 reserved ecdhe_private_use (0xFE00..0xFEFF)
      */
 
+    /*
+     * draft-tls-westerbaan-xyber768d00-03
+     */
+    public static final int X25519Kyber768Draft00 = 0x6399;
+
     /*
      * RFC 4492
      */
@@ -130,7 +135,8 @@ public static boolean canBeNegotiated(int namedGroup, ProtocolVersion version)
         else
         {
             if ((namedGroup >= brainpoolP256r1tls13 && namedGroup <= brainpoolP512r1tls13)
-                || (namedGroup == curveSM2))
+                || (namedGroup == curveSM2)
+                || refersToASpecificHybrid(namedGroup))
             {
                 return false;
             }
@@ -344,6 +350,12 @@ public static String getStandardName(int namedGroup)
             return finiteFieldName;
         }
 
+        switch (namedGroup)
+        {
+        case X25519Kyber768Draft00:
+            return "X25519Kyber768Draft00";
+        }
+
         return null;
     }
 
@@ -415,6 +427,12 @@ public static boolean refersToASpecificFiniteField(int namedGroup)
     public static boolean refersToASpecificGroup(int namedGroup)
     {
         return refersToASpecificCurve(namedGroup)
-            || refersToASpecificFiniteField(namedGroup);
+            || refersToASpecificFiniteField(namedGroup)
+            || refersToASpecificHybrid(namedGroup);
+    }
+
+    public static boolean refersToASpecificHybrid(int namedGroup)
+    {
+        return namedGroup == X25519Kyber768Draft00;
     }
 }
@@ -36,13 +36,18 @@
         final TlsPSK psk;
         final short[] pskKeyExchangeModes;
         final TlsSecret earlySecret;
+        final byte[] binder;
+        final long obfuscatedTicketAge;
 
-        SelectedConfig(int index, TlsPSK psk, short[] pskKeyExchangeModes, TlsSecret earlySecret)
+        SelectedConfig(int index, TlsPSK psk, short[] pskKeyExchangeModes, TlsSecret earlySecret, byte[] binder,
+            long obfuscatedTicketAge)
         {
             this.index = index;
             this.psk = psk;
             this.pskKeyExchangeModes = pskKeyExchangeModes;
             this.earlySecret = earlySecret;
+            this.binder = binder;
+            this.obfuscatedTicketAge = obfuscatedTicketAge;
         }
     }
 
@@ -160,8 +165,7 @@ static void encodeBinders(OutputStream output, TlsCrypto crypto, TlsHandshakeHas
             TlsPSK psk = psks[i];
             TlsSecret earlySecret = earlySecrets[i];
 
-            // TODO[tls13-psk] Handle resumption PSKs
-            boolean isExternalPSK = true;
+            boolean isExternalPSK = !(psk instanceof TlsPSKResumption);
             int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
 
             // TODO[tls13-psk] Cache the transcript hashes per algorithm to avoid duplicates for multiple PSKs
@@ -9,6 +9,8 @@
 import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsDecodeResult;
 import org.bouncycastle.tls.crypto.TlsEncodeResult;
+import org.bouncycastle.tls.crypto.TlsInPlaceCipher;
+import org.bouncycastle.tls.crypto.TlsInPlaceResult;
 import org.bouncycastle.tls.crypto.TlsNullNullCipher;
 
 /**
@@ -20,6 +22,7 @@
 
     private final Record inputRecord = new Record();
     private final SequenceNumber readSeqNo = new SequenceNumber(), writeSeqNo = new SequenceNumber();
+    private final TlsInPlaceResult decodeResult = new TlsInPlaceResult(), encodeResult = new TlsInPlaceResult();
 
     private TlsProtocol handler;
     private InputStream input;
@@ -28,12 +31,16 @@
     private TlsCipher readCipher = TlsNullNullCipher.INSTANCE;
     private TlsCipher readCipherDeferred = null;
     private TlsCipher writeCipher = TlsNullNullCipher.INSTANCE;
+    private byte[] writeBuf = null;
 
     private ProtocolVersion writeVersion = null;
 
     private int plaintextLimit = DEFAULT_PLAINTEXT_LIMIT;
     private int ciphertextLimit = DEFAULT_PLAINTEXT_LIMIT;
     private boolean ignoreChangeCipherSpec = false;
+    private boolean earlyDataRead = false;
+    private long earlyDataRemaining = 0L;
+    private long earlyDataSkipRemaining = -1L;
 
     RecordStream(TlsProtocol handler, InputStream input, OutputStream output)
     {
@@ -47,6 +54,11 @@ int getPlaintextLimit()
         return plaintextLimit;
     }
 
+    int getCiphertextLimit()
+    {
+        return ciphertextLimit;
+    }
+
     void setPlaintextLimit(int plaintextLimit)
     {
         this.plaintextLimit = plaintextLimit;
@@ -113,6 +125,66 @@ void enablePendingCipherWrite()
         writeSeqNo.reset();
     }
 
+    /**
+     * Read the peer's early data with the given cipher, until {@link #notifyEndOfEarlyData()}. Must follow a
+     * deferred {@link #enablePendingCipherRead(boolean)} of the handshake cipher.
+     */
+    void enableEarlyDataRead(TlsCipher earlyDataCipher, long maxEarlyDataSize)
+        throws IOException
+    {
+        if (readCipherDeferred == null || earlyDataRead)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+        this.readCipher = earlyDataCipher;
+        this.ciphertextLimit = readCipher.getCiphertextDecodeLimit(plaintextLimit);
+        readSeqNo.reset();
+
+        this.earlyDataRead = true;
+        this.earlyDataRemaining = maxEarlyDataSize;
+    }
+
+    boolean isEarlyDataRead()
+    {
+        return earlyDataRead;
+    }
+
+    void notifyEndOfEarlyData()
+        throws IOException
+    {
+        if (!earlyDataRead)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+        this.earlyDataRead = false;
+        this.readCipher = readCipherDeferred;
+        this.readCipherDeferred = null;
+        this.ciphertextLimit = readCipher.getCiphertextDecodeLimit(plaintextLimit);
+        readSeqNo.reset();
+    }
+
+    /**
+     * Discard the peer's early data, having rejected it (RFC 8446 4.2.10). Records of type application_data that
+     * are in plaintext, or that fail to decrypt, are skipped, up to maxEarlyDataSize bytes in total, until the
+     * first record that is read normally.
+     */
+    void skipEarlyData(long maxEarlyDataSize)
+    {
+        this.earlyDataSkipRemaining = maxEarlyDataSize;
+    }
+
+    void enableEarlyDataWrite(TlsCipher earlyDataCipher)
+    {
+        this.writeCipher = earlyDataCipher;
+        writeSeqNo.reset();
+    }
+
+    void disableEarlyDataWrite()
+    {
+        this.writeCipher = TlsNullNullCipher.INSTANCE;
+        writeSeqNo.reset();
+    }
+
     void finaliseHandshake()
         throws IOException
     {
@@ -203,10 +275,14 @@ boolean readFullRecord(byte[] input, int inputOff, int inputLen)
             return true;
         }
 
-        TlsDecodeResult decoded = decodeAndVerify(recordType, recordVersion, input,
-            inputOff + RecordFormat.FRAGMENT_OFFSET, length);
+        byte[] buf = decodeAndVerify(recordType, recordVersion, input, inputOff + RecordFormat.FRAGMENT_OFFSET,
+            length);
+        if (null == buf)
+        {
+            return true;
+        }
 
-        handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
+        handler.processRecord(decodeResult.type, buf, decodeResult.off, decodeResult.len);
         return true;
     }
 
@@ -228,7 +304,7 @@ boolean readRecord()
 
         inputRecord.readFragment(input, length);
 
-        TlsDecodeResult decoded;
+        byte[] buf;
         try
         {
             if (ignoreChangeCipherSpec && ContentType.change_cipher_spec == recordType)
@@ -237,35 +313,120 @@ boolean readRecord()
                 return true;
             }
 
-            decoded = decodeAndVerify(recordType, recordVersion, inputRecord.buf, RecordFormat.FRAGMENT_OFFSET, length);
+            buf = decodeAndVerify(recordType, recordVersion, inputRecord.buf, RecordFormat.FRAGMENT_OFFSET, length);
         }
         finally
         {
+            // NOTE: The record buffer is kept for the next record, so the decoded data remains valid until then
             inputRecord.reset();
         }
 
-        handler.processRecord(decoded.contentType, decoded.buf, decoded.off, decoded.len);
+        if (null == buf)
+        {
+            return true;
+        }
+
+        handler.processRecord(decodeResult.type, buf, decodeResult.off, decodeResult.len);
         return true;
     }
 
-    TlsDecodeResult decodeAndVerify(short recordType, ProtocolVersion recordVersion, byte[] ciphertext, int off, int len)
+    /**
+     * Decode a record, leaving the offset, length and content type of the plaintext in decodeResult.
+     *
+     * @return the array holding the plaintext, or null if the record was skipped as rejected early data.
+     */
+    byte[] decodeAndVerify(short recordType, ProtocolVersion recordVersion, byte[] ciphertext, int off, int len)
         throws IOException
     {
         long seqNo = readSeqNo.nextValue(AlertDescription.unexpected_message);
-        TlsDecodeResult decoded = readCipher.decodeCiphertext(seqNo, recordType, recordVersion, ciphertext, off, len);
 
-        checkLength(decoded.len, plaintextLimit, AlertDescription.record_overflow);
+        byte[] buf = null;
+        if (earlyDataSkipRemaining >= 0L && ContentType.application_data == recordType)
+        {
+            if (readCipher.usesOpaqueRecordTypeDecode())
+            {
+                try
+                {
+                    buf = decode(seqNo, recordType, recordVersion, ciphertext, off, len);
+                }
+                catch (TlsFatalAlert e)
+                {
+                    if (AlertDescription.bad_record_mac != e.getAlertDescription())
+                    {
+                        throw e;
+                    }
+                }
+            }
+
+            if (null == buf)
+            {
+                /*
+                 * NOTE: The early data cipher isn't known here, so allow for the inner content type and a
+                 * 16-byte AEAD tag in each record.
+                 */
+                earlyDataSkipRemaining -= Math.max(0, len - 17);
+                if (earlyDataSkipRemaining < 0L)
+                {
+                    throw new TlsFatalAlert(AlertDescription.bad_record_mac, "Too much rejected early data");
+                }
+
+                // NOTE: Only skipped records have been read under this cipher
+                readSeqNo.reset();
+                return null;
+            }
+        }
+        else
+        {
+            buf = decode(seqNo, recordType, recordVersion, ciphertext, off, len);
+        }
+
+        this.earlyDataSkipRemaining = -1L;
+
+        checkLength(decodeResult.len, plaintextLimit, AlertDescription.record_overflow);
 
         /*
          * RFC 5246 6.2.1 Implementations MUST NOT send zero-length fragments of Handshake, Alert,
          * or ChangeCipherSpec content types.
          */
-        if (decoded.len < 1 && decoded.contentType != ContentType.application_data)
+        if (decodeResult.len < 1 && decodeResult.type != ContentType.application_data)
         {
             throw new TlsFatalAlert(AlertDescription.illegal_parameter);
         }
 
-        return decoded;
+        /*
+         * RFC 8446 4.2.10. If the server receives more than max_early_data_size bytes of 0-RTT data, it
+         * SHOULD abort with an "unexpected_message" alert.
+         */
+        if (earlyDataRead && decodeResult.type == ContentType.application_data)
+        {
+            earlyDataRemaining -= decodeResult.len;
+            if (earlyDataRemaining < 0L)
+            {
+                throw new TlsFatalAlert(AlertDescription.unexpected_message, "Too much early data");
+            }
+        }
+
+        return buf;
+    }
+
+    private byte[] decode(long seqNo, short recordType, ProtocolVersion recordVersion, byte[] ciphertext, int off,
+        int len) throws IOException
+    {
+        byte[] buf;
+        if (readCipher instanceof TlsInPlaceCipher)
+        {
+            ((TlsInPlaceCipher)readCipher).decodeCiphertext(seqNo, recordType, recordVersion, ciphertext, off, len,
+                decodeResult);
+            buf = ciphertext;
+        }
+        else
+        {
+            TlsDecodeResult decoded = readCipher.decodeCiphertext(seqNo, recordType, recordVersion, ciphertext, off,
+                len);
+            decodeResult.set(decoded.off, decoded.len, decoded.contentType);
+            buf = decoded.buf;
+        }
+        return buf;
     }
 
     void writeRecord(short contentType, byte[] plaintext, int plaintextOffset, int plaintextLength)
@@ -294,19 +455,44 @@ void writeRecord(short contentType, byte[] plaintext, int plaintextOffset, int p
         long seqNo = writeSeqNo.nextValue(AlertDescription.internal_error);
         ProtocolVersion recordVersion = writeVersion;
 
+        if (writeCipher instanceof TlsInPlaceCipher)
+        {
+            /*
+             * The record is built in a buffer kept for the life of the connection. Alerts can be raised outside of
+             * TlsProtocol.recordWriteLock, so access to the buffer is serialised here.
+             */
+            synchronized (encodeResult)
+            {
+                byte[] buf = getWriteBuf(writeCipher.getCiphertextEncodeLimit(plaintextLength));
+
+                ((TlsInPlaceCipher)writeCipher).encodePlaintext(seqNo, contentType, recordVersion, plaintext,
+                    plaintextOffset, plaintextLength, buf, RecordFormat.FRAGMENT_OFFSET, encodeResult);
+
+                writeRecord(encodeResult.type, recordVersion, buf, encodeResult.off - RecordFormat.FRAGMENT_OFFSET,
+                    RecordFormat.FRAGMENT_OFFSET + encodeResult.len);
+            }
+            return;
+        }
+
         TlsEncodeResult encoded = writeCipher.encodePlaintext(seqNo, contentType, recordVersion,
             RecordFormat.FRAGMENT_OFFSET, plaintext, plaintextOffset, plaintextLength);
 
-        int ciphertextLength = encoded.len - RecordFormat.FRAGMENT_OFFSET;
+        writeRecord(encoded.recordType, recordVersion, encoded.buf, encoded.off, encoded.len);
+    }
+
+    private void writeRecord(short recordType, ProtocolVersion recordVersion, byte[] buf, int off, int len)
+        throws IOException
+    {
+        int ciphertextLength = len - RecordFormat.FRAGMENT_OFFSET;
         TlsUtils.checkUint16(ciphertextLength);
 
-        TlsUtils.writeUint8(encoded.recordType, encoded.buf, encoded.off + RecordFormat.TYPE_OFFSET);
-        TlsUtils.writeVersion(recordVersion, encoded.buf, encoded.off + RecordFormat.VERSION_OFFSET);
-        TlsUtils.writeUint16(ciphertextLength, encoded.buf, encoded.off + RecordFormat.LENGTH_OFFSET);
+        TlsUtils.writeUint8(recordType, buf, off + RecordFormat.TYPE_OFFSET);
+        TlsUtils.writeVersion(recordVersion, buf, off + RecordFormat.VERSION_OFFSET);
+        TlsUtils.writeUint16(ciphertextLength, buf, off + RecordFormat.LENGTH_OFFSET);
 
         try
         {
-            output.write(encoded.buf, encoded.off, encoded.len);
+            output.write(buf, off, len);
         }
         catch (InterruptedIOException e)
         {
@@ -316,9 +502,21 @@ void writeRecord(short contentType, byte[] plaintext, int plaintextOffset, int p
         output.flush();
     }
 
+    private byte[] getWriteBuf(int ciphertextLimit)
+    {
+        int recordLimit = RecordFormat.FRAGMENT_OFFSET + ciphertextLimit;
+        if (writeBuf == null || writeBuf.length < recordLimit)
+        {
+            // Size for a full record, so that the buffer is only grown again if the cipher or limits change
+            int fullRecordLimit = RecordFormat.FRAGMENT_OFFSET + writeCipher.getCiphertextEncodeLimit(plaintextLimit);
+            writeBuf = new byte[Math.max(recordLimit, fullRecordLimit)];
+        }
+        return writeBuf;
+    }
+
     void close() throws IOException
     {
-        inputRecord.reset();
+        inputRecord.release();
 
         IOException io = null;
         try
@@ -368,7 +566,7 @@ private short checkRecordType(byte[] buf, int off)
     {
         short recordType = TlsUtils.readUint8(buf, off);
 
-        if (null != readCipherDeferred && recordType == ContentType.application_data)
+        if (null != readCipherDeferred && !earlyDataRead && recordType == ContentType.application_data)
         {
             this.readCipher = readCipherDeferred;
             this.readCipherDeferred = null;
@@ -396,7 +594,7 @@ else if (readCipher.usesOpaqueRecordTypeDecode())
             {
             case ContentType.application_data:
             {
-                if (!handler.isApplicationDataReady())
+                if (!handler.isApplicationDataReady() && earlyDataSkipRemaining < 0L)
                 {
                     throw new TlsFatalAlert(AlertDescription.unexpected_message,
                         "Not ready for " + ContentType.getText(ContentType.application_data));
@@ -490,12 +688,18 @@ boolean readHeader(InputStream input) throws IOException
             return true;
         }
 
-        void reset()
+        void release()
         {
             buf = header;
             pos = 0;
         }
 
+        void reset()
+        {
+            // NOTE: Any larger buffer is kept for reuse by the next record
+            pos = 0;
+        }
+
         private void resize(int length)
         {
             if (buf.length < length)
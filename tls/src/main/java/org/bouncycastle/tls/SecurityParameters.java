@@ -28,6 +28,7 @@
     TlsSecret exporterMasterSecret = null;
     TlsSecret handshakeSecret = null;
     TlsSecret masterSecret = null;
+    TlsSecret resumptionMasterSecret = null;
     TlsSecret trafficSecretClient = null;
     TlsSecret trafficSecretServer = null;
     byte[] clientRandom = null;
@@ -41,6 +42,7 @@
     boolean encryptThenMAC = false;
     boolean extendedMasterSecret = false;
     boolean extendedPadding = false;
+    boolean earlyDataAccepted = false;
     boolean truncatedHMac = false;
     ProtocolName applicationProtocol = null;
     boolean applicationProtocolSet = false;
@@ -270,6 +272,15 @@ public TlsSecret getMasterSecret()
         return masterSecret;
     }
 
+    /**
+     * (D)TLS 1.3 only. Unlike the other secrets, this is kept after the handshake, since the server may send a
+     * NewSessionTicket at any time.
+     */
+    public TlsSecret getResumptionMasterSecret()
+    {
+        return resumptionMasterSecret;
+    }
+
     public TlsSecret getTrafficSecretClient()
     {
         return trafficSecretClient;
@@ -335,6 +346,14 @@ public boolean isExtendedPadding()
         return extendedPadding;
     }
 
+    /**
+     * @return true if the client sent TLS 1.3 early data and the server accepted it.
+     */
+    public boolean isEarlyDataAccepted()
+    {
+        return earlyDataAccepted;
+    }
+
     public boolean isTruncatedHMac()
     {
         return truncatedHMac;
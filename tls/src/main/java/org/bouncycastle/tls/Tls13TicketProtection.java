@@ -0,0 +1,140 @@
+package org.bouncycastle.tls;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.bouncycastle.tls.crypto.TlsAEAD;
+import org.bouncycastle.tls.crypto.TlsCertificate;
+import org.bouncycastle.tls.crypto.TlsCrypto;
+
+/**
+ * Encodes the state of a TLS 1.3 resumption PSK into a self-contained ticket, protected under a key from a
+ * {@link TlsTicketKeyStore}, and recovers it again. A ticket is:
+ * <pre>
+ *     opaque key_name[16];
+ *     opaque nonce[12];
+ *     opaque encrypted_state&lt;...&gt;;  // AES-256-GCM, key_name as additional data
+ * </pre>
+ */
+final class Tls13TicketProtection
+{
+    private static final short STATE_VERSION = 2;
+    private static final int NONCE_LENGTH = 12;
+    private static final int MAC_LENGTH = 16;
+
+    static byte[] protect(TlsCrypto crypto, TlsTicketKeyStore keyStore, int cipherSuite, byte[] psk,
+        Certificate peerCertificate, long issueTime, long ticketLifetime, long ticketAgeAdd, long maxEarlyDataSize,
+        ProtocolName applicationProtocol) throws IOException
+    {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        TlsUtils.writeUint8(STATE_VERSION, buf);
+        TlsUtils.writeUint16(cipherSuite, buf);
+        TlsUtils.writeUint64(issueTime, buf);
+        TlsUtils.writeUint32(ticketLifetime, buf);
+        TlsUtils.writeUint32(ticketAgeAdd, buf);
+        TlsUtils.writeUint32(maxEarlyDataSize, buf);
+        TlsUtils.writeOpaque8(null == applicationProtocol ? TlsUtils.EMPTY_BYTES : applicationProtocol.getBytes(), buf);
+        TlsUtils.writeOpaque8(psk, buf);
+        writePeerCertificate(peerCertificate, buf);
+        byte[] state = buf.toByteArray();
+
+        TlsTicketKey ticketKey = keyStore.getEncryptionKey();
+        byte[] keyName = ticketKey.getName();
+        byte[] nonce = new byte[NONCE_LENGTH];
+        crypto.getSecureRandom().nextBytes(nonce);
+
+        TlsAEAD aead = crypto.createAEAD(EncryptionAlgorithm.AES_256_GCM, ticketKey.getKey(), true);
+        byte[] encryptedState = aead.doFinal(nonce, keyName, state, 0, state.length);
+
+        return TlsUtils.concat(TlsUtils.concat(keyName, nonce), encryptedState);
+    }
+
+    /**
+     * @return the resumption PSK the ticket holds, or null if the ticket can't be used, whether because it was
+     *         not issued by this server, its key was retired, or it was modified.
+     */
+    static TlsPSKResumption unprotect(TlsCrypto crypto, TlsTicketKeyStore keyStore, byte[] ticket)
+    {
+        int headerLength = TlsTicketKey.NAME_LENGTH + NONCE_LENGTH;
+        if (ticket.length < headerLength + MAC_LENGTH)
+        {
+            return null;
+        }
+
+        byte[] keyName = TlsUtils.copyOfRangeExact(ticket, 0, TlsTicketKey.NAME_LENGTH);
+        TlsTicketKey ticketKey = keyStore.getDecryptionKey(keyName);
+        if (null == ticketKey)
+        {
+            return null;
+        }
+
+        byte[] nonce = TlsUtils.copyOfRangeExact(ticket, TlsTicketKey.NAME_LENGTH, headerLength);
+
+        try
+        {
+            TlsAEAD aead = crypto.createAEAD(EncryptionAlgorithm.AES_256_GCM, ticketKey.getKey(), false);
+            byte[] state = aead.doFinal(nonce, keyName, ticket, headerLength, ticket.length - headerLength);
+
+            ByteArrayInputStream buf = new ByteArrayInputStream(state);
+            if (STATE_VERSION != TlsUtils.readUint8(buf))
+            {
+                return null;
+            }
+
+            int cipherSuite = TlsUtils.readUint16(buf);
+            long issueTime = (TlsUtils.readUint32(buf) << 32) | TlsUtils.readUint32(buf);
+            long ticketLifetime = TlsUtils.readUint32(buf);
+            long ticketAgeAdd = TlsUtils.readUint32(buf);
+            long maxEarlyDataSize = TlsUtils.readUint32(buf);
+            byte[] alpn = TlsUtils.readOpaque8(buf);
+            ProtocolName applicationProtocol = alpn.length < 1 ? null : ProtocolName.asRawBytes(alpn);
+            byte[] psk = TlsUtils.readOpaque8(buf, 1);
+            Certificate peerCertificate = readPeerCertificate(crypto, buf);
+            TlsProtocol.assertEmpty(buf);
+
+            return new TlsPSKResumption(ticket, crypto.createSecret(psk), cipherSuite, peerCertificate, issueTime,
+                ticketLifetime, ticketAgeAdd, maxEarlyDataSize, applicationProtocol);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    private static void writePeerCertificate(Certificate peerCertificate, ByteArrayOutputStream buf)
+        throws IOException
+    {
+        if (null == peerCertificate || peerCertificate.isEmpty())
+        {
+            TlsUtils.writeUint16(0, buf);
+            return;
+        }
+
+        TlsCertificate[] chain = peerCertificate.getCertificateList();
+        TlsUtils.writeUint16(chain.length, buf);
+        TlsUtils.writeUint8(peerCertificate.getCertificateType(), buf);
+        for (int i = 0; i < chain.length; ++i)
+        {
+            TlsUtils.writeOpaque24(chain[i].getEncoded(), buf);
+        }
+    }
+
+    private static Certificate readPeerCertificate(TlsCrypto crypto, ByteArrayInputStream buf) throws IOException
+    {
+        int count = TlsUtils.readUint16(buf);
+        if (count == 0)
+        {
+            return null;
+        }
+
+        short certificateType = TlsUtils.readUint8(buf);
+        CertificateEntry[] entries = new CertificateEntry[count];
+        for (int i = 0; i < count; ++i)
+        {
+            TlsCertificate certificate = crypto.createCertificate(certificateType, TlsUtils.readOpaque24(buf, 1));
+            entries[i] = new CertificateEntry(certificate, null);
+        }
+        return new Certificate(certificateType, TlsUtils.EMPTY_BYTES, entries);
+    }
+}
@@ -0,0 +1,29 @@
+package org.bouncycastle.tls;
+
+/**
+ * Records the ClientHello messages a server has accepted TLS 1.3 early data for, so that a replayed
+ * ClientHello can be detected (see RFC 8446 8.2. Client Hello Recording). Only ClientHellos whose expected
+ * arrival time, from the ticket age the client reports, is within the window of the current time are checked;
+ * early data in any others is rejected outright. Implementations are shared between connections and so must be
+ * thread-safe.
+ */
+public interface TlsAntiReplayStore
+{
+    /**
+     * Return the time in milliseconds that a ClientHello may arrive either side of its expected arrival time and
+     * still be accepted for early data. Values must be recorded for at least twice this long.
+     *
+     * @return the freshness window.
+     */
+    long getWindow();
+
+    /**
+     * Record a value unique to a ClientHello (its PSK binder), unless it was already recorded.
+     *
+     * @param value the value to record.
+     * @param currentTime the current time in milliseconds since the epoch.
+     * @return true if the value was recorded, or false if it was already present or could not be recorded, in
+     *         which case the early data is rejected.
+     */
+    boolean checkAndRecord(byte[] value, long currentTime);
+}
@@ -0,0 +1,37 @@
+package org.bouncycastle.tls;
+
+import java.io.IOException;
+
+/**
+ * Base interface for a certificate compression algorithm, as used in the RFC 8879
+ * <i>CompressedCertificate</i> message.
+ */
+public interface TlsCertificateCompressor
+{
+    /**
+     * @return the {@link CertificateCompressionAlgorithm} implemented.
+     */
+    int getAlgorithm();
+
+    /**
+     * Compress the encoding of a <i>Certificate</i> message body.
+     *
+     * @param certificateMessage the uncompressed <i>Certificate</i> message body.
+     * @return the compressed encoding, of non-zero length.
+     * @throws IOException
+     */
+    byte[] compress(byte[] certificateMessage) throws IOException;
+
+    /**
+     * Decompress a received <i>compressed_certificate_message</i>. Implementations MUST NOT produce (or
+     * allocate space for) more than uncompressedLength bytes of output, and MUST fail with a
+     * {@link TlsFatalAlert} of type {@link AlertDescription#bad_certificate} if the data doesn't decompress to
+     * exactly uncompressedLength bytes.
+     *
+     * @param compressed the compressed encoding.
+     * @param uncompressedLength the length claimed by the peer, already checked against our limit.
+     * @return the uncompressed <i>Certificate</i> message body.
+     * @throws IOException
+     */
+    byte[] decompress(byte[] compressed, int uncompressedLength) throws IOException;
+}
@@ -32,6 +32,28 @@
      */
     Vector getExternalPSKs();
 
+    /**
+     * Return the {@link TlsPSKResumption resumption PSKs} to offer in the ClientHello, typically ones
+     * received via {@link #notifyResumptionPSK(TlsPSKResumption)} in earlier connections to the same server.
+     * Expired PSKs, and those incompatible with the offered cipher suites, are skipped. Note that this will
+     * only be called when TLS 1.3 or higher is amongst the offered protocol versions.
+     * 
+     * @return a {@link Vector} of {@link TlsPSKResumption} instances (possibly empty, in which case the client
+     *         still indicates to the server that it accepts tickets), or null if resumption is not supported.
+     */
+    Vector getResumptionPSKs();
+
+    /**
+     * Return application data to send as TLS 1.3 early data (0-RTT), ahead of the server's response. It is only
+     * sent if the first PSK from {@link #getResumptionPSKs()} is usable and its ticket permits at least this much
+     * early data, and is then protected under that PSK alone, without forward secrecy or replay protection.
+     * Whether the server accepted it is available from {@link SecurityParameters#isEarlyDataAccepted()} once the
+     * handshake completes; if it didn't, the application is responsible for sending the data again.
+     *
+     * @return the early data, or null to not send any.
+     */
+    byte[] getEarlyData();
+
     boolean isFallback();
 
     // Hashtable is (Integer -> byte[])
@@ -123,4 +145,16 @@ Vector getClientSupplementalData()
      */
     void notifyNewSessionTicket(NewSessionTicket newSessionTicket)
         throws IOException;
+
+    /**
+     * RFC 8446 4.6.1. New Session Ticket Message
+     * <p>
+     * This method will be called when a TLS 1.3 NewSessionTicket message is received, with the resumption PSK
+     * it establishes. The client may offer it in later handshakes via {@link #getResumptionPSKs()}.
+     *
+     * @param resumptionPSK the resumption PSK.
+     * @throws IOException
+     */
+    void notifyResumptionPSK(TlsPSKResumption resumptionPSK)
+        throws IOException;
 }
@@ -9,6 +9,7 @@
 import java.util.Vector;
 
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.tls.crypto.TlsStreamSigner;
 import org.bouncycastle.util.Arrays;
@@ -22,6 +23,8 @@
 
     protected Hashtable clientAgreements = null;
     OfferedPsks.BindersConfig clientBinders = null;
+    TlsPSKResumption earlyDataPSK = null;
+    boolean earlyDataPSKSelected = false;
     protected ClientHello clientHello = null;
     protected TlsKeyExchange keyExchange = null;
     protected TlsAuthentication authentication = null;
@@ -113,6 +116,8 @@ protected void cleanupHandshake()
 
         this.clientAgreements = null;
         this.clientBinders = null;
+        this.earlyDataPSK = null;
+        this.earlyDataPSKSelected = false;
         this.clientHello = null;
         this.keyExchange = null;
         this.authentication = null;
@@ -147,6 +152,7 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         switch (type)
         {
         case HandshakeType.certificate:
+        case HandshakeType.compressed_certificate:
         {
             switch (this.connection_state)
             {
@@ -157,7 +163,14 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
             }
             case CS_SERVER_CERTIFICATE_REQUEST:
             {
-                receive13ServerCertificate(buf);
+                if (HandshakeType.compressed_certificate == type)
+                {
+                    receive13ServerCompressedCertificate(buf);
+                }
+                else
+                {
+                    receive13ServerCertificate(buf);
+                }
                 this.connection_state = CS_SERVER_CERTIFICATE;
                 break;
             }
@@ -243,10 +256,23 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
                 recordStream.setIgnoreChangeCipherSpec(false);
 
                 /*
-                 * TODO[tls13] After receiving the server's Finished message, if the server has accepted early
-                 * data, an EndOfEarlyData message will be sent to indicate the key change. This message will
-                 * be encrypted with the 0-RTT traffic keys.
+                 * RFC 8446 4.5. If the server sent an "early_data" extension in EncryptedExtensions, the
+                 * client MUST send an EndOfEarlyData message after receiving the server Finished. This message
+                 * will be encrypted with the 0-RTT traffic keys.
                  */
+                if (null != earlyDataPSK)
+                {
+                    if (tlsClientContext.getSecurityParametersHandshake().isEarlyDataAccepted())
+                    {
+                        send13EndOfEarlyDataMessage();
+                        this.connection_state = CS_CLIENT_END_OF_EARLY_DATA;
+                    }
+
+                    this.earlyDataPSK = null;
+
+                    // NOTE: The handshake write cipher was deferred until now (see process13ServerHelloCoda)
+                    recordStream.enablePendingCipherWrite();
+                }
 
                 if (null != certificateRequest)
                 {
@@ -282,6 +308,10 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
 
                 TlsUtils.establish13PhaseApplication(tlsClientContext, serverFinishedTranscriptHash, recordStream);
 
+                byte[] clientFinishedTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+                TlsUtils.establish13PhaseResumption(tlsClientContext, clientFinishedTranscriptHash);
+
                 recordStream.enablePendingCipherWrite();
                 recordStream.enablePendingCipherRead(false);
 
@@ -337,7 +367,6 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         case HandshakeType.certificate_url:
         case HandshakeType.client_hello:
         case HandshakeType.client_key_exchange:
-        case HandshakeType.compressed_certificate:
         case HandshakeType.end_of_early_data:
         case HandshakeType.hello_request:
         case HandshakeType.hello_verify_request:
@@ -358,11 +387,6 @@ protected void handleHandshakeMessage(short type, HandshakeMessageInput buf)
         if (connection_state > CS_CLIENT_HELLO
             && TlsUtils.isTLSv13(securityParameters.getNegotiatedVersion()))
         {
-            if (securityParameters.isResumedSession())
-            {
-                throw new TlsFatalAlert(AlertDescription.internal_error);
-            }
-
             handle13HandshakeMessage(type, buf);
             return;
         }
@@ -484,6 +508,11 @@ protected void handleHandshakeMessage(short type, HandshakeMessageInput buf)
                 {
                     process13HelloRetryRequest(serverHello);
                     handshakeHash.notifyPRFDetermined();
+                    if (null != clientBinders)
+                    {
+                        // The binders in the retried ClientHello are calculated from the buffered transcript
+                        handshakeHash.forceBuffering();
+                    }
                     handshakeHash.sealHashAlgorithms();
                     TlsUtils.adjustTranscriptForRetry(handshakeHash);
                     buf.updateHash(handshakeHash);
@@ -813,6 +842,12 @@ protected void process13HelloRetryRequest(ServerHello helloRetryRequest)
         final ProtocolVersion legacy_record_version = ProtocolVersion.TLSv12;
         recordStream.setWriteVersion(legacy_record_version);
 
+        // RFC 8446 4.2.10. A HelloRetryRequest rejects any early data; the second ClientHello is in plaintext
+        if (null != earlyDataPSK)
+        {
+            recordStream.disableEarlyDataWrite();
+        }
+
         final SecurityParameters securityParameters = tlsClientContext.getSecurityParametersHandshake();
         if (securityParameters.isRenegotiating())
         {
@@ -1021,6 +1056,15 @@ protected void process13ServerHello(ServerHello serverHello, boolean afterHelloR
                 pskEarlySecret = clientBinders.earlySecrets[selected_identity];
 
                 this.selectedPSK13 = true;
+
+                // RFC 8446 4.2.10. Early data can only be accepted with the first offered PSK
+                this.earlyDataPSKSelected = (0 == selected_identity) && (null != earlyDataPSK);
+
+                if (selectedPSK instanceof TlsPSKResumption)
+                {
+                    securityParameters.resumedSession = true;
+                    securityParameters.peerCertificate = ((TlsPSKResumption)selectedPSK).getPeerCertificate();
+                }
             }
 
             tlsClient.notifySelectedPSK(selectedPSK);
@@ -1079,17 +1123,24 @@ protected void process13ServerHelloCoda(ServerHello serverHello, boolean afterHe
             recordStream.setIgnoreChangeCipherSpec(true);
 
             /*
-             * TODO[tls13] If offering early_data, the record is placed immediately after the first
+             * NOTE: If early data was offered, the record was already placed immediately after the first
              * ClientHello.
              */
             /*
              * TODO[tls13] Ideally wait until just after Server Finished received, but then we'd need to defer
              * the enabling of the pending write cipher
              */
-            sendChangeCipherSpecMessage();
+            if (null == earlyDataPSK)
+            {
+                sendChangeCipherSpecMessage();
+            }
         }
 
-        recordStream.enablePendingCipherWrite();
+        // NOTE: When early data was offered, the early data write cipher stays until the server Finished
+        if (null == earlyDataPSK)
+        {
+            recordStream.enablePendingCipherWrite();
+        }
         recordStream.enablePendingCipherRead(false);
     }
 
@@ -1517,41 +1568,47 @@ protected void receive13EncryptedExtensions(ByteArrayInputStream buf)
         securityParameters.applicationProtocol = TlsExtensionsUtils.getALPNExtensionServer(serverExtensions);
         securityParameters.applicationProtocolSet = true;
 
-        Hashtable sessionClientExtensions = clientExtensions, sessionServerExtensions = serverExtensions;
-        if (securityParameters.isResumedSession())
+        /*
+         * RFC 8446 4.2.10. If the server has supplied an "early_data" extension, the client MUST verify that the
+         * server's selected_identity is 0. If any other value is returned, it MUST abort the handshake with an
+         * "illegal_parameter" alert.
+         */
+        if (TlsExtensionsUtils.hasEarlyDataIndication(serverExtensions))
         {
-            sessionClientExtensions = null;
-            sessionServerExtensions = sessionParameters.readServerExtensions();
+            if (!earlyDataPSKSelected)
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            securityParameters.earlyDataAccepted = true;
         }
 
-        securityParameters.maxFragmentLength = TlsUtils.processMaxFragmentLengthExtension(sessionClientExtensions,
-            sessionServerExtensions, AlertDescription.illegal_parameter);
+        /*
+         * NOTE: In TLS 1.3 the EncryptedExtensions are negotiated afresh even when resuming with a PSK, so
+         * nothing is carried over from the original session here.
+         */
+        securityParameters.maxFragmentLength = TlsUtils.processMaxFragmentLengthExtension(clientExtensions,
+            serverExtensions, AlertDescription.illegal_parameter);
 
         securityParameters.encryptThenMAC = false;
         securityParameters.truncatedHMac = false;
 
-        if (!securityParameters.isResumedSession())
-        {
-            /*
-             * TODO[tls13] RFC 8446 4.4.2.1. OCSP Status and SCT Extensions.
-             * 
-             * OCSP information is carried in an extension for a CertificateEntry.
-             */
-            securityParameters.statusRequestVersion = clientExtensions.containsKey(TlsExtensionsUtils.EXT_status_request)
-                ? 1 : 0;
+        /*
+         * TODO[tls13] RFC 8446 4.4.2.1. OCSP Status and SCT Extensions.
+         * 
+         * OCSP information is carried in an extension for a CertificateEntry.
+         */
+        securityParameters.statusRequestVersion = clientExtensions.containsKey(TlsExtensionsUtils.EXT_status_request)
+            ? 1 : 0;
 
-            securityParameters.clientCertificateType = TlsUtils.processClientCertificateTypeExtension13(
-                sessionClientExtensions, sessionServerExtensions, AlertDescription.illegal_parameter);
-            securityParameters.serverCertificateType = TlsUtils.processServerCertificateTypeExtension13(
-                sessionClientExtensions, sessionServerExtensions, AlertDescription.illegal_parameter);
-        }
+        securityParameters.clientCertificateType = TlsUtils.processClientCertificateTypeExtension13(
+            clientExtensions, serverExtensions, AlertDescription.illegal_parameter);
+        securityParameters.serverCertificateType = TlsUtils.processServerCertificateTypeExtension13(
+            clientExtensions, serverExtensions, AlertDescription.illegal_parameter);
 
         this.expectSessionTicket = false;
 
-        if (null != sessionClientExtensions)
-        {
-            tlsClient.processServerExtensions(serverExtensions);
-        }
+        tlsClient.processServerExtensions(serverExtensions);
 
         applyMaxFragmentLengthExtension(securityParameters.getMaxFragmentLength());
     }
@@ -1564,8 +1621,6 @@ protected void receive13NewSessionTicket(ByteArrayInputStream buf)
             throw new TlsFatalAlert(AlertDescription.unexpected_message);
         }
 
-        // TODO[tls13] Do something more than just ignore them
-
 //        struct {
 //            uint32 ticket_lifetime;
 //            uint32 ticket_age_add;
@@ -1574,12 +1629,34 @@ protected void receive13NewSessionTicket(ByteArrayInputStream buf)
 //            Extension extensions<0..2^16-2>;
 //        } NewSessionTicket;
 
-        TlsUtils.readUint32(buf);
-        TlsUtils.readUint32(buf);
-        TlsUtils.readOpaque8(buf);
-        TlsUtils.readOpaque16(buf);
-        TlsUtils.readOpaque16(buf);
+        long ticketLifetime = TlsUtils.readUint32(buf);
+        long ticketAgeAdd = TlsUtils.readUint32(buf);
+        byte[] ticketNonce = TlsUtils.readOpaque8(buf);
+        byte[] ticket = TlsUtils.readOpaque16(buf, 1);
+        byte[] extBytes = TlsUtils.readOpaque16(buf);
         assertEmpty(buf);
+
+        Hashtable ticketExtensions = readExtensionsData13(HandshakeType.new_session_ticket, extBytes);
+
+        /*
+         * RFC 8446 4.6.1. The value of zero indicates that the ticket should be discarded immediately.
+         * [..] Servers MUST NOT use any value greater than 604800 seconds (7 days).
+         */
+        if (ticketLifetime == 0L)
+        {
+            return;
+        }
+        ticketLifetime = Math.min(604800L, ticketLifetime);
+
+        SecurityParameters securityParameters = tlsClientContext.getSecurityParametersConnection();
+
+        TlsSecret psk = TlsUtils.calculate13ResumptionPSK(securityParameters, ticketNonce);
+
+        long maxEarlyDataSize = Math.max(0L, TlsExtensionsUtils.getEarlyDataMaxSize(ticketExtensions));
+
+        tlsClient.notifyResumptionPSK(new TlsPSKResumption(ticket, psk, securityParameters.getCipherSuite(),
+            securityParameters.getPeerCertificate(), System.currentTimeMillis(), ticketLifetime, ticketAgeAdd,
+            maxEarlyDataSize, securityParameters.getApplicationProtocol()));
     }
 
     protected void receive13ServerCertificate(ByteArrayInputStream buf)
@@ -1596,6 +1673,17 @@ protected void receive13ServerCertificate(ByteArrayInputStream buf)
         handleServerCertificate();
     }
 
+    protected void receive13ServerCompressedCertificate(ByteArrayInputStream buf)
+        throws IOException
+    {
+        if (selectedPSK13)
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message);
+        }
+
+        receive13ServerCertificate(TlsUtils.read13CompressedCertificate(tlsClient, clientExtensions, buf));
+    }
+
     protected void receive13ServerCertificateVerify(ByteArrayInputStream buf)
         throws IOException
     {
@@ -1717,10 +1805,14 @@ protected void send13ClientHelloRetry() throws IOException
             recordStream.setIgnoreChangeCipherSpec(true);
 
             /*
-             * TODO[tls13] If offering early_data, the record is placed immediately after the first
+             * NOTE: If early data was offered, the record was already placed immediately after the first
              * ClientHello.
              */
-            sendChangeCipherSpecMessage();
+            if (null == earlyDataPSK)
+            {
+                sendChangeCipherSpecMessage();
+            }
+            this.earlyDataPSK = null;
         }
 
         sendClientHelloMessage();
@@ -1876,6 +1968,20 @@ protected void sendClientHello()
         this.clientBinders = TlsUtils.addPreSharedKeyToClientHello(tlsClientContext, tlsClient, clientExtensions,
             offeredCipherSuites);
 
+        byte[] earlyData = null;
+        this.clientExtensions.remove(TlsExtensionsUtils.EXT_early_data);
+        if (null != clientBinders)
+        {
+            earlyData = tlsClient.getEarlyData();
+
+            this.earlyDataPSK = TlsUtils.getEarlyDataPSKClient(clientBinders, clientExtensions, offeredCipherSuites,
+                earlyData);
+            if (null != earlyDataPSK)
+            {
+                TlsExtensionsUtils.addEarlyDataIndication(clientExtensions);
+            }
+        }
+
         // TODO[tls13-psk] Perhaps don't add key_share if external PSK(s) offered and 'psk_dhe_ke' not offered  
         this.clientAgreements = TlsUtils.addKeyShareToClientHello(tlsClientContext, tlsClient, clientExtensions);
 
@@ -1950,6 +2056,50 @@ protected void sendClientHello()
             null, offeredCipherSuites, clientExtensions, bindersSize);
 
         sendClientHelloMessage();
+
+        if (null != earlyDataPSK)
+        {
+            send13EarlyData(earlyData);
+        }
+    }
+
+    protected void send13EarlyData(byte[] earlyData) throws IOException
+    {
+        recordStream.setWriteVersion(ProtocolVersion.TLSv12);
+
+        // See RFC 8446 D.4. When offering early data, the record is placed immediately after the first ClientHello
+        sendChangeCipherSpecMessage();
+
+        TlsCipher earlyDataCipher = TlsUtils.establish13PhaseEarlyClient(tlsClientContext, earlyDataPSK,
+            clientBinders.earlySecrets[0], handshakeHash);
+
+        recordStream.enableEarlyDataWrite(earlyDataCipher);
+
+        /*
+         * The server may already apply the max_fragment_length we offered when it reads the early data, so stay
+         * within that limit.
+         */
+        int plaintextLimit = recordStream.getPlaintextLimit();
+        short maxFragmentLength = TlsExtensionsUtils.getMaxFragmentLengthExtension(clientExtensions);
+        if (MaxFragmentLength.isValid(maxFragmentLength))
+        {
+            plaintextLimit = Math.min(plaintextLimit, 1 << (8 + maxFragmentLength));
+        }
+
+        int off = 0, len = earlyData.length;
+        while (len > 0)
+        {
+            int toWrite = Math.min(len, plaintextLimit);
+            safeWriteRecord(ContentType.application_data, earlyData, off, toWrite);
+            off += toWrite;
+            len -= toWrite;
+        }
+    }
+
+    protected void send13EndOfEarlyDataMessage() throws IOException
+    {
+        HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.end_of_early_data);
+        message.send(this);
     }
 
     protected void sendClientHelloMessage() throws IOException
@@ -25,6 +25,11 @@ public void write(byte buf[], int off, int len) throws IOException
         handler.writeApplicationData(buf, off, len);
     }
 
+    public void flush() throws IOException
+    {
+        handler.flush();
+    }
+
     public void close() throws IOException
     {
         handler.close();
@@ -0,0 +1,160 @@
+package org.bouncycastle.tls;
+
+import org.bouncycastle.tls.crypto.TlsSecret;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A TLS 1.3 resumption PSK, established by a NewSessionTicket message. The identity is the ticket itself. A
+ * client receives these via {@link TlsClient#notifyResumptionPSK(TlsPSKResumption)} and can offer them in later
+ * handshakes; a server recovers them from the tickets offered to it.
+ */
+public class TlsPSKResumption
+    implements TlsPSK
+{
+    protected final byte[] identity;
+    protected final TlsSecret key;
+    protected final int cipherSuite;
+    protected final Certificate peerCertificate;
+    protected final long issueTime;
+    protected final long ticketLifetime;
+    protected final long ticketAgeAdd;
+    protected final long maxEarlyDataSize;
+    protected final ProtocolName applicationProtocol;
+
+    /**
+     * @param identity the ticket.
+     * @param key the resumption PSK derived for the ticket.
+     * @param cipherSuite the cipher suite of the session the ticket was issued in.
+     * @param peerCertificate the peer's certificate from the session the ticket was issued in (may be null).
+     * @param issueTime the time (in milliseconds since the epoch) the ticket was issued or received.
+     * @param ticketLifetime the ticket_lifetime (in seconds).
+     * @param ticketAgeAdd the ticket_age_add.
+     */
+    public TlsPSKResumption(byte[] identity, TlsSecret key, int cipherSuite, Certificate peerCertificate,
+        long issueTime, long ticketLifetime, long ticketAgeAdd)
+    {
+        this(identity, key, cipherSuite, peerCertificate, issueTime, ticketLifetime, ticketAgeAdd, 0L, null);
+    }
+
+    /**
+     * @param identity the ticket.
+     * @param key the resumption PSK derived for the ticket.
+     * @param cipherSuite the cipher suite of the session the ticket was issued in.
+     * @param peerCertificate the peer's certificate from the session the ticket was issued in (may be null).
+     * @param issueTime the time (in milliseconds since the epoch) the ticket was issued or received.
+     * @param ticketLifetime the ticket_lifetime (in seconds).
+     * @param ticketAgeAdd the ticket_age_add.
+     * @param maxEarlyDataSize the max_early_data_size from the ticket's early_data extension (0 if absent).
+     * @param applicationProtocol the application protocol of the session the ticket was issued in (may be
+     *            null).
+     */
+    public TlsPSKResumption(byte[] identity, TlsSecret key, int cipherSuite, Certificate peerCertificate,
+        long issueTime, long ticketLifetime, long ticketAgeAdd, long maxEarlyDataSize,
+        ProtocolName applicationProtocol)
+    {
+        if (TlsUtils.isNullOrEmpty(identity))
+        {
+            throw new IllegalArgumentException("'identity' cannot be null or empty");
+        }
+        if (null == key)
+        {
+            throw new NullPointerException("'key' cannot be null");
+        }
+        if (!TlsUtils.isValidUint32(ticketLifetime))
+        {
+            throw new IllegalArgumentException("'ticketLifetime' should be a uint32");
+        }
+        if (!TlsUtils.isValidUint32(ticketAgeAdd))
+        {
+            throw new IllegalArgumentException("'ticketAgeAdd' should be a uint32");
+        }
+        if (!TlsUtils.isValidUint32(maxEarlyDataSize))
+        {
+            throw new IllegalArgumentException("'maxEarlyDataSize' should be a uint32");
+        }
+
+        this.identity = Arrays.clone(identity);
+        this.key = key;
+        this.cipherSuite = cipherSuite;
+        this.peerCertificate = peerCertificate;
+        this.issueTime = issueTime;
+        this.ticketLifetime = ticketLifetime;
+        this.ticketAgeAdd = ticketAgeAdd;
+        this.maxEarlyDataSize = maxEarlyDataSize;
+        this.applicationProtocol = applicationProtocol;
+    }
+
+    public byte[] getIdentity()
+    {
+        return identity;
+    }
+
+    public TlsSecret getKey()
+    {
+        return key;
+    }
+
+    public int getPRFAlgorithm()
+    {
+        return TlsUtils.getPRFAlgorithm13(cipherSuite);
+    }
+
+    public int getCipherSuite()
+    {
+        return cipherSuite;
+    }
+
+    public Certificate getPeerCertificate()
+    {
+        return peerCertificate;
+    }
+
+    public long getIssueTime()
+    {
+        return issueTime;
+    }
+
+    public long getTicketLifetime()
+    {
+        return ticketLifetime;
+    }
+
+    public long getTicketAgeAdd()
+    {
+        return ticketAgeAdd;
+    }
+
+    /**
+     * @return the maximum amount of early data that may be sent when offering this PSK (0 if early data is not
+     *         permitted).
+     */
+    public long getMaxEarlyDataSize()
+    {
+        return maxEarlyDataSize;
+    }
+
+    public ProtocolName getApplicationProtocol()
+    {
+        return applicationProtocol;
+    }
+
+    /**
+     * Calculate the obfuscated_ticket_age to send when offering this PSK.
+     *
+     * @param currentTime the current time (in milliseconds since the epoch).
+     * @return the obfuscated_ticket_age.
+     */
+    public long getObfuscatedTicketAge(long currentTime)
+    {
+        return (currentTime - issueTime + ticketAgeAdd) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param currentTime the current time (in milliseconds since the epoch).
+     * @return true if the ticket lifetime has passed, or the issue time is in the future.
+     */
+    public boolean isExpired(long currentTime)
+    {
+        return currentTime < issueTime || currentTime >= issueTime + ticketLifetime * 1000L;
+    }
+}
@@ -51,12 +51,40 @@
      */
     int getHandshakeResendTimeMillis();
 
+    /**
+     * <p>
+     * NOTE: Only respected by DTLS protocols.
+     * </p>
+     * <p>
+     * Specify the size, in records, of the anti-replay window (RFC 6347 4.1.2.6). A larger window accepts records
+     * that arrive further out of order; the size is rounded up to a multiple of 64.
+     * </p>
+     *
+     * @return the anti-replay window size, in records.
+     */
+    int getReplayWindowSize();
+
     boolean allowLegacyResumption();
 
     int getMaxCertificateChainLength();
 
     int getMaxHandshakeMessageSize();
 
+    /**
+     * Return the certificate compression algorithms (RFC 8879) supported by this peer, in order of preference,
+     * or null (or empty) to disable certificate compression. These are used both to compress our own
+     * certificate chain, and to decompress the peer's, in a TLS 1.3 handshake. A received
+     * <i>CompressedCertificate</i> is rejected if it claims an uncompressed length greater than
+     * {@link #getMaxHandshakeMessageSize()}.
+     * <p>
+     * NOTE: Currently only server certificates are compressed; a client offers its algorithms in the
+     * ClientHello, but a server does not offer them in a CertificateRequest.
+     *
+     * @return an array of {@link TlsCertificateCompressor}, or null.
+     * @see CachedTlsCertificateCompressor
+     */
+    TlsCertificateCompressor[] getCertificateCompressors();
+
     short[] getPskKeyExchangeModes();
 
     /**
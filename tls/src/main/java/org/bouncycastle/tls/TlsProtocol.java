@@ -125,6 +125,14 @@ protected boolean isTLSv13ConnectionState()
     protected static final short ADS_MODE_0_N = 1; // 0/n record splitting
     protected static final short ADS_MODE_0_N_FIRSTONLY = 2; // 0/n record splitting on first data fragment only
 
+    /*
+     * Dynamic record sizing defaults: application data records start out small enough to fit in a single TCP
+     * segment (so the peer can process each one as soon as it arrives during TCP slow start), and grow to the
+     * maximum once this much application data has been sent.
+     */
+    public static final int DRS_DEFAULT_SMALL_RECORD_LIMIT = 1200;
+    public static final int DRS_DEFAULT_BOOST_THRESHOLD = 128 * 1024;
+
     /*
      * Queues for data from some protocols.
      */
@@ -153,6 +161,13 @@ protected boolean isTLSv13ConnectionState()
     private volatile boolean resumableHandshake = false;
     private volatile int appDataSplitMode = ADS_MODE_1_Nsub1;
 
+    // Guarded by recordWriteLock
+    private int drsSmallRecordLimit = 0, drsBoostThreshold = 0;
+    private long drsBytesWritten = 0L;
+    private boolean writeCoalescing = false;
+    private byte[] coalesceBuf = null;
+    private int coalesceLen = 0;
+
     protected TlsSession tlsSession = null;
     protected SessionParameters sessionParameters = null;
     protected TlsSecret sessionMasterSecret = null;
@@ -171,6 +186,14 @@ protected boolean isTLSv13ConnectionState()
     protected ByteQueueInputStream inputBuffers;
     protected ByteQueueOutputStream outputBuffer;
 
+    // non-blocking mode scratch, kept to avoid allocating for every offered record
+    private final byte[] inputRecordHeader = new byte[RecordFormat.FRAGMENT_OFFSET];
+    private byte[] inputCopyBuf = null;
+
+    // destination for application data during offerInput(ByteBuffer, ByteBuffer[], int, int)
+    private ByteBuffer[] applicationDataDsts = null;
+    private int applicationDataDstsPos = 0, applicationDataDstsEnd = 0, applicationDataDirect = 0;
+
     protected TlsProtocol()
     {
         this.blocking = false;
@@ -565,11 +588,21 @@ protected void processRecord(short protocol, byte[] buf, int off, int len)
         }
         case ContentType.application_data:
         {
-            if (!appDataReady)
+            // NOTE: Accepted TLS 1.3 early data is queued for the application during the handshake
+            if (!appDataReady && !recordStream.isEarlyDataRead())
             {
                 throw new TlsFatalAlert(AlertDescription.unexpected_message);
             }
-            applicationDataQueue.addData(buf, off, len);
+            if (null != applicationDataDsts && applicationDataQueue.available() < 1)
+            {
+                int count = writeApplicationDataDirect(buf, off, len);
+                off += count;
+                len -= count;
+            }
+            if (len > 0)
+            {
+                applicationDataQueue.addData(buf, off, len);
+            }
             processApplicationDataQueue();
             break;
         }
@@ -716,6 +749,27 @@ private void processHandshakeQueue(ByteQueue queue)
         }
     }
 
+    private int writeApplicationDataDirect(byte[] buf, int off, int len)
+    {
+        int count = 0;
+        while (count < len && applicationDataDstsPos < applicationDataDstsEnd)
+        {
+            ByteBuffer dst = applicationDataDsts[applicationDataDstsPos];
+            int n = Math.min(dst.remaining(), len - count);
+            if (n < 1)
+            {
+                ++applicationDataDstsPos;
+                continue;
+            }
+
+            dst.put(buf, off + count, n);
+            count += n;
+        }
+
+        applicationDataDirect += count;
+        return count;
+    }
+
     private void processApplicationDataQueue()
     {
         /*
@@ -1007,69 +1061,231 @@ public void writeApplicationData(byte[] buf, int off, int len)
 
         synchronized (recordWriteLock)
         {
-            while (len > 0)
+            if (writeCoalescing)
             {
-                if (closed)
-                {
-                    throw new IOException("Cannot write application data on closed/failed TLS connection");
-                }
+                coalesceApplicationData(buf, off, len);
+            }
+            else
+            {
+                writeApplicationRecords(buf, off, len);
+            }
+        }
+    }
+
+    /*
+     * Gather small writes into full records. Only whole records (at the current write limit) are sent; anything
+     * left over waits for more data, or for flush().
+     */
+    private void coalesceApplicationData(byte[] buf, int off, int len)
+        throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Cannot write application data on closed/failed TLS connection");
+        }
+
+        int limit = getApplicationDataWriteLimit();
 
+        if (coalesceLen > 0)
+        {
+            int count = Math.min(len, limit - coalesceLen);
+            if (count > 0)
+            {
+                appendCoalesced(buf, off, count);
+                off += count;
+                len -= count;
+            }
+
+            if (coalesceLen < limit)
+            {
+                return;
+            }
+
+            flushCoalesced();
+            limit = getApplicationDataWriteLimit();
+        }
+
+        while (len >= limit)
+        {
+            writeApplicationRecords(buf, off, limit);
+            off += limit;
+            len -= limit;
+            limit = getApplicationDataWriteLimit();
+        }
+
+        if (len > 0)
+        {
+            appendCoalesced(buf, off, len);
+        }
+    }
+
+    private void appendCoalesced(byte[] buf, int off, int len)
+    {
+        if (null == coalesceBuf || coalesceBuf.length < coalesceLen + len)
+        {
+            byte[] tmp = new byte[Math.max(coalesceLen + len, recordStream.getPlaintextLimit())];
+            if (coalesceLen > 0)
+            {
+                System.arraycopy(coalesceBuf, 0, tmp, 0, coalesceLen);
+            }
+            this.coalesceBuf = tmp;
+        }
+
+        System.arraycopy(buf, off, coalesceBuf, coalesceLen, len);
+        coalesceLen += len;
+    }
+
+    private void flushCoalesced()
+        throws IOException
+    {
+        if (coalesceLen > 0)
+        {
+            int len = coalesceLen;
+            this.coalesceLen = 0;
+            writeApplicationRecords(coalesceBuf, 0, len);
+        }
+    }
+
+    private void writeApplicationRecords(byte[] buf, int off, int len)
+        throws IOException
+    {
+        while (len > 0)
+        {
+            if (closed)
+            {
+                throw new IOException("Cannot write application data on closed/failed TLS connection");
+            }
+
+            /*
+             * RFC 5246 6.2.1. Zero-length fragments of Application data MAY be sent as they are
+             * potentially useful as a traffic analysis countermeasure.
+             * 
+             * NOTE: Actually, implementations appear to have settled on 1/n-1 record splitting.
+             */
+            if (appDataSplitEnabled)
+            {
                 /*
-                 * RFC 5246 6.2.1. Zero-length fragments of Application data MAY be sent as they are
-                 * potentially useful as a traffic analysis countermeasure.
+                 * Protect against known IV attack!
                  * 
-                 * NOTE: Actually, implementations appear to have settled on 1/n-1 record splitting.
+                 * DO NOT REMOVE THIS CODE, EXCEPT YOU KNOW EXACTLY WHAT YOU ARE DOING HERE.
                  */
-                if (appDataSplitEnabled)
+                switch (appDataSplitMode)
                 {
-                    /*
-                     * Protect against known IV attack!
-                     * 
-                     * DO NOT REMOVE THIS CODE, EXCEPT YOU KNOW EXACTLY WHAT YOU ARE DOING HERE.
-                     */
-                    switch (appDataSplitMode)
-                    {
-                    case ADS_MODE_0_N_FIRSTONLY:
-                    {
-                        this.appDataSplitEnabled = false;
-                        // NB: Fall through to next case label
-                    }
-                    case ADS_MODE_0_N:
-                    {
-                        safeWriteRecord(ContentType.application_data, TlsUtils.EMPTY_BYTES, 0, 0);
-                        break;
-                    }
-                    case ADS_MODE_1_Nsub1:
-                    default:
-                    {
-                        if (len > 1)
-                        {
-                            safeWriteRecord(ContentType.application_data, buf, off, 1);
-                            ++off;
-                            --len;
-                        }
-                        break;
-                    }
-                    }
+                case ADS_MODE_0_N_FIRSTONLY:
+                {
+                    this.appDataSplitEnabled = false;
+                    // NB: Fall through to next case label
                 }
-                else if (keyUpdateEnabled)
+                case ADS_MODE_0_N:
                 {
-                    if (keyUpdatePendingSend)
-                    {
-                        send13KeyUpdate(false);
-                    }
-                    else if (recordStream.needsKeyUpdate())
+                    safeWriteRecord(ContentType.application_data, TlsUtils.EMPTY_BYTES, 0, 0);
+                    break;
+                }
+                case ADS_MODE_1_Nsub1:
+                default:
+                {
+                    if (len > 1)
                     {
-                        send13KeyUpdate(true);
+                        safeWriteRecord(ContentType.application_data, buf, off, 1);
+                        ++off;
+                        --len;
                     }
+                    break;
+                }
+                }
+            }
+            else if (keyUpdateEnabled)
+            {
+                if (keyUpdatePendingSend)
+                {
+                    send13KeyUpdate(false);
                 }
+                else if (recordStream.needsKeyUpdate())
+                {
+                    send13KeyUpdate(true);
+                }
+            }
 
-                // Fragment data according to the current fragment limit.
-                int toWrite = Math.min(len, recordStream.getPlaintextLimit());
-                safeWriteRecord(ContentType.application_data, buf, off, toWrite);
-                off += toWrite;
-                len -= toWrite;
+            // Fragment data according to the current fragment limit.
+            int toWrite = Math.min(len, getApplicationDataWriteLimit());
+            safeWriteRecord(ContentType.application_data, buf, off, toWrite);
+            off += toWrite;
+            len -= toWrite;
+            drsBytesWritten += toWrite;
+        }
+    }
+
+    /**
+     * Enable dynamic record sizing: the first <code>boostThreshold</code> bytes of application data are sent in
+     * records of at most <code>smallRecordLimit</code> bytes, which improves the time to first byte during TCP
+     * slow start; after that, full-sized records are used for throughput. The record size only ever grows, so
+     * {@link #getApplicationDataWriteLimit()} is safe to use for sizing the next record.
+     *
+     * @param smallRecordLimit the limit for early records, or 0 to disable dynamic record sizing.
+     * @param boostThreshold the number of bytes after which full-sized records are used.
+     * @see #DRS_DEFAULT_SMALL_RECORD_LIMIT
+     * @see #DRS_DEFAULT_BOOST_THRESHOLD
+     */
+    public void setDynamicRecordSizing(int smallRecordLimit, int boostThreshold)
+    {
+        if (smallRecordLimit < 0)
+        {
+            throw new IllegalArgumentException("'smallRecordLimit' cannot be negative");
+        }
+        if (boostThreshold < 0)
+        {
+            throw new IllegalArgumentException("'boostThreshold' cannot be negative");
+        }
+
+        synchronized (recordWriteLock)
+        {
+            this.drsSmallRecordLimit = smallRecordLimit;
+            this.drsBoostThreshold = boostThreshold;
+        }
+    }
+
+    public boolean isWriteCoalescing()
+    {
+        synchronized (recordWriteLock)
+        {
+            return writeCoalescing;
+        }
+    }
+
+    /**
+     * Enable write coalescing: small application data writes are gathered into full-sized records, rather than
+     * each being sent in its own record. Data smaller than a record is held until more data arrives, or until
+     * {@link #flush()} (or {@link #close()}) is called, so callers MUST flush at message boundaries.
+     * Disabling write coalescing flushes any held data.
+     */
+    public void setWriteCoalescing(boolean writeCoalescing)
+        throws IOException
+    {
+        synchronized (recordWriteLock)
+        {
+            if (!writeCoalescing)
+            {
+                flushCoalesced();
             }
+
+            this.writeCoalescing = writeCoalescing;
+        }
+    }
+
+    /**
+     * @return the maximum amount of application data that will currently be sent in a single record; this
+     *         can be smaller than {@link #getApplicationDataLimit()} while dynamic record sizing is in effect.
+     */
+    public int getApplicationDataWriteLimit()
+    {
+        synchronized (recordWriteLock)
+        {
+            int limit = recordStream.getPlaintextLimit();
+            if (drsSmallRecordLimit > 0 && drsBytesWritten < drsBoostThreshold)
+            {
+                limit = Math.min(limit, drsSmallRecordLimit);
+            }
+            return limit;
         }
     }
 
@@ -1383,7 +1599,7 @@ public void offerInput(byte[] input, int inputOff, int inputLen) throws IOExcept
         // loop while there are enough bytes to read the length of the next record
         while (inputBuffers.available() >= RecordFormat.FRAGMENT_OFFSET)
         {
-            byte[] recordHeader = new byte[RecordFormat.FRAGMENT_OFFSET];
+            byte[] recordHeader = inputRecordHeader;
             if (RecordFormat.FRAGMENT_OFFSET != inputBuffers.peek(recordHeader))
             {
                 throw new TlsFatalAlert(AlertDescription.internal_error);
@@ -1411,6 +1627,72 @@ public void offerInput(byte[] input, int inputOff, int inputLen) throws IOExcept
         }
     }
 
+    /**
+     * Offer the remaining bytes of a {@link ByteBuffer} as input, as for {@link #offerInput(byte[], int, int)}.
+     * Only allowed in non-blocking mode.<br>
+     * <br>
+     * The buffer's position is advanced to its limit. A buffer backed by an accessible array is processed without
+     * copying, so whole records are decrypted in place in that array (in the region just consumed); the bytes of
+     * any other buffer are first copied to a scratch array kept for the connection.
+     * @param input The buffer holding the input to offer
+     * @throws IOException If an error occurs while decrypting or processing a record
+     */
+    public void offerInput(ByteBuffer input) throws IOException
+    {
+        int inputLen = input.remaining();
+
+        if (input.hasArray())
+        {
+            int inputOff = input.arrayOffset() + input.position();
+            ((java.nio.Buffer)input).position(input.limit());
+
+            offerInput(input.array(), inputOff, inputLen);
+            return;
+        }
+
+        if (inputCopyBuf == null || inputCopyBuf.length < inputLen)
+        {
+            inputCopyBuf = new byte[Math.max(inputLen, RecordFormat.FRAGMENT_OFFSET
+                + recordStream.getCiphertextLimit())];
+        }
+
+        input.get(inputCopyBuf, 0, inputLen);
+
+        offerInput(inputCopyBuf, 0, inputLen);
+    }
+
+    /**
+     * Offer the remaining bytes of a {@link ByteBuffer} as input, as for {@link #offerInput(ByteBuffer)}, writing
+     * any application data received straight into the given destination buffers instead of queueing it for
+     * {@link #readInput(ByteBuffer, int)}. Application data is only queued if it doesn't fit in the destination
+     * buffers, or if previously received application data is still waiting to be read (so that it is always read in
+     * order). Only allowed in non-blocking mode.
+     * @param input The buffer holding the input to offer
+     * @param dsts The buffers to receive application data
+     * @param offset The index of the first buffer in dsts to use
+     * @param length The number of buffers in dsts to use
+     * @return The number of bytes of application data written to the destination buffers
+     * @throws IOException If an error occurs while decrypting or processing a record
+     */
+    public int offerInput(ByteBuffer input, ByteBuffer[] dsts, int offset, int length) throws IOException
+    {
+        this.applicationDataDsts = dsts;
+        this.applicationDataDstsPos = offset;
+        this.applicationDataDstsEnd = offset + length;
+        this.applicationDataDirect = 0;
+
+        try
+        {
+            offerInput(input);
+
+            return applicationDataDirect;
+        }
+        finally
+        {
+            this.applicationDataDsts = null;
+        }
+    }
+
     public int getApplicationDataLimit()
     {
         return recordStream.getPlaintextLimit();
@@ -1800,9 +2082,32 @@ protected void send13CertificateMessage(Certificate certificate) throws IOExcept
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
-        HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.certificate);
-        certificate.encode(context, message, null);
-        message.send(this);
+        /*
+         * RFC 8879 4. A server may send a CompressedCertificate instead, using one of the algorithms the
+         * client listed in its "compress_certificate" extension.
+         */
+        TlsCertificateCompressor compressor = null;
+        if (context.isServer())
+        {
+            compressor = TlsUtils.selectCertificateCompressor(getPeer().getCertificateCompressors(),
+                TlsExtensionsUtils.getCompressCertificateExtension(clientExtensions));
+        }
+
+        if (null == compressor)
+        {
+            HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.certificate);
+            certificate.encode(context, message, null);
+            message.send(this);
+        }
+        else
+        {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            certificate.encode(context, buf, null);
+
+            HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.compressed_certificate);
+            TlsUtils.write13CompressedCertificate(compressor, buf.toByteArray(), message);
+            message.send(this);
+        }
 
         securityParameters.localCertificate = certificate;
     }
@@ -1904,12 +2209,39 @@ protected void sendSupplementalDataMessage(Vector supplementalData)
     public void close()
         throws IOException
     {
-        handleClose(true);
+        try
+        {
+            if (appDataReady && !closed)
+            {
+                flush();
+            }
+        }
+        finally
+        {
+            handleClose(true);
+        }
     }
 
+    /**
+     * Send any application data being held for write coalescing (see {@link #setWriteCoalescing(boolean)}).
+     *
+     * @throws IOException If the connection is closed, or for encryption or transport errors.
+     */
     public void flush()
         throws IOException
     {
+        synchronized (recordWriteLock)
+        {
+            if (coalesceLen > 0)
+            {
+                if (closed)
+                {
+                    throw new IOException("Cannot write application data on closed/failed TLS connection");
+                }
+
+                flushCoalesced();
+            }
+        }
     }
 
     boolean isApplicationDataReady()
@@ -39,6 +39,38 @@
      */
     TlsPSKExternal getExternalPSK(Vector identities);
 
+    /**
+     * Return the key store used to protect TLS 1.3 session tickets. If non-null, the server sends a
+     * NewSessionTicket after each full or resumed TLS 1.3 handshake, and accepts tickets it issued earlier
+     * (under keys still available from the store) for resumption via the "psk_dhe_ke" mode.
+     *
+     * @return a {@link TlsTicketKeyStore}, or null to neither issue nor accept TLS 1.3 session tickets.
+     */
+    TlsTicketKeyStore getTicketKeyStore();
+
+    /**
+     * Return the ticket_lifetime (in seconds) for TLS 1.3 session tickets. Only called when
+     * {@link #getTicketKeyStore()} returns non-null. Values above 604800 (7 days) are reduced to that limit.
+     */
+    long getTicketLifetime();
+
+    /**
+     * Return the max_early_data_size to advertise in TLS 1.3 session tickets. Clients resuming with such a
+     * ticket may send up to this much 0-RTT application data, which is only accepted if
+     * {@link #getAntiReplayStore()} also returns non-null. Note that early data is not forward secret, and is
+     * only protected from replay to the extent the {@link TlsAntiReplayStore} allows.
+     *
+     * @return the maximum amount of early data to accept, or 0 to not permit early data.
+     */
+    long getMaxEarlyDataSize();
+
+    /**
+     * Return the store used to reject replayed ClientHellos that carry early data.
+     *
+     * @return a {@link TlsAntiReplayStore}, or null to reject all early data.
+     */
+    TlsAntiReplayStore getAntiReplayStore();
+
     void notifySession(TlsSession session);
 
     void notifyClientVersion(ProtocolVersion clientVersion) throws IOException;
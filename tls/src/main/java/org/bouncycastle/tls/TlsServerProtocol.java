@@ -9,9 +9,11 @@
 import java.util.Vector;
 
 import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsCrypto;
 import org.bouncycastle.tls.crypto.TlsDHConfig;
 import org.bouncycastle.tls.crypto.TlsECConfig;
+import org.bouncycastle.tls.crypto.TlsKemConfig;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
@@ -24,6 +26,8 @@
     protected int[] offeredCipherSuites = null;
     protected TlsKeyExchange keyExchange = null;
     protected CertificateRequest certificateRequest = null;
+    TlsCipher earlyDataCipher = null;
+    long earlyDataLimit = 0L;
 
     /**
      * Constructor for non-blocking mode.<br>
@@ -102,6 +106,8 @@ protected void cleanupHandshake()
         this.offeredCipherSuites = null;
         this.keyExchange = null;
         this.certificateRequest = null;
+        this.earlyDataCipher = null;
+        this.earlyDataLimit = 0L;
     }
 
     protected boolean expectCertificateVerifyMessage()
@@ -260,15 +266,11 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
             tlsServer.processClientExtensions(clientHelloExtensions);
 
             /*
-             * NOTE: Currently no server support for session resumption
-             * 
-             * If adding support, ensure securityParameters.tlsUnique is set to the localVerifyData, but
-             * ONLY when extended_master_secret has been negotiated (otherwise NULL).
+             * NOTE: TLS 1.3 resumption is via PSKs from (stateless) session tickets, and there is no session ID.
+             * A new TlsSession is created for each connection, with the peer's certificate carried over from the
+             * ticket when resuming (see below).
              */
             {
-                // TODO[tls13] Resumption/PSK
-                securityParameters.resumedSession = false;
-
                 this.tlsSession = TlsUtils.importSession(TlsUtils.EMPTY_BYTES, null);
                 this.sessionParameters = null;
                 this.sessionMasterSecret = null;
@@ -293,6 +295,21 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
                 TlsUtils.negotiatedCipherSuite(securityParameters, cipherSuite);
             }
 
+            /*
+             * RFC 8446 4.2.11. [..] The server MUST ensure that it selects a compatible PSK (if any) and cipher
+             * suite. The server's cipher suite preference wins over resuming from a ticket.
+             */
+            if (null != selectedPSK && selectedPSK.psk instanceof TlsPSKResumption
+                && selectedPSK.psk.getPRFAlgorithm() != securityParameters.getPRFAlgorithm())
+            {
+                selectedPSK = null;
+
+                if (null == securityParameters.getClientSigAlgs())
+                {
+                    throw new TlsFatalAlert(AlertDescription.missing_extension);
+                }
+            }
+
             int[] clientSupportedGroups = securityParameters.getClientSupportedGroups();
             int[] serverSupportedGroups = securityParameters.getServerSupportedGroups();
 
@@ -310,6 +327,15 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
 
                 this.retryCookie = tlsServerContext.getNonceGenerator().generateNonce(16);
 
+                /*
+                 * RFC 8446 4.2.10. A server which responds with a HelloRetryRequest [..] skips past early data
+                 * by skipping all records with an external content type of "application_data".
+                 */
+                if (TlsExtensionsUtils.hasEarlyDataIndication(clientHelloExtensions))
+                {
+                    recordStream.skipEarlyData(getEarlyDataSkipLimit(selectedPSK));
+                }
+
                 return generate13HelloRetryRequest(clientHello);
             }
 
@@ -382,9 +408,18 @@ protected ServerHello generate13ServerHello(ClientHello clientHello, HandshakeMe
 
         this.expectSessionTicket = false;
 
+        securityParameters.resumedSession = false;
+        securityParameters.peerCertificate = null;
+
         TlsSecret pskEarlySecret = null;
         if (null != selectedPSK)
         {
+            if (selectedPSK.psk instanceof TlsPSKResumption)
+            {
+                securityParameters.resumedSession = true;
+                securityParameters.peerCertificate = ((TlsPSKResumption)selectedPSK.psk).getPeerCertificate();
+            }
+
             pskEarlySecret = selectedPSK.earlySecret;
 
             this.selectedPSK13 = true;
@@ -405,21 +440,50 @@ else if (NamedGroup.refersToASpecificFiniteField(namedGroup))
             {
                 agreement = crypto.createDHDomain(new TlsDHConfig(namedGroup, true)).createDH();
             }
+            else if (NamedGroup.refersToASpecificHybrid(namedGroup))
+            {
+                agreement = crypto.createKemDomain(new TlsKemConfig(namedGroup, true)).createKem();
+            }
             else
             {
                 throw new TlsFatalAlert(AlertDescription.internal_error);
             }
 
+            // NOTE: A KEM encapsulates to the client's share, so it must be received first
+            agreement.receivePeerValue(clientShare.getKeyExchange());
+
             byte[] key_exchange = agreement.generateEphemeral();
             KeyShareEntry serverShare = new KeyShareEntry(namedGroup, key_exchange);
             TlsExtensionsUtils.addKeyShareServerHello(serverHelloExtensions, serverShare);
 
-            agreement.receivePeerValue(clientShare.getKeyExchange());
             sharedSecret = agreement.calculateSecret();
         }
 
         TlsUtils.establish13PhaseSecrets(tlsServerContext, pskEarlySecret, sharedSecret);
 
+        // NOTE: After a HelloRetryRequest, the client doesn't send early data
+        if (!afterHelloRetryRequest && TlsExtensionsUtils.hasEarlyDataIndication(clientHelloExtensions))
+        {
+            if (TlsUtils.accept13EarlyData(tlsServerContext, tlsServer, selectedPSK))
+            {
+                TlsExtensionsUtils.addEarlyDataIndication(serverEncryptedExtensions);
+
+                securityParameters.earlyDataAccepted = true;
+
+                this.earlyDataCipher = TlsUtils.establish13PhaseEarly(tlsServerContext, handshakeHash);
+                this.earlyDataLimit = Math.min(((TlsPSKResumption)selectedPSK.psk).getMaxEarlyDataSize(),
+                    tlsServer.getMaxEarlyDataSize());
+            }
+            else
+            {
+                /*
+                 * RFC 8446 4.2.10. [..] skip past early data by attempting to deprotect received records using
+                 * the handshake traffic key, discarding records which fail deprotection.
+                 */
+                recordStream.skipEarlyData(getEarlyDataSkipLimit(selectedPSK));
+            }
+        }
+
         this.serverExtensions = serverEncryptedExtensions;
 
         applyMaxFragmentLengthExtension(securityParameters.getMaxFragmentLength());
@@ -870,14 +934,27 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         }
 
         /*
-         * TODO[tls13] Abbreviated handshakes (PSK resumption)
-         * 
-         * NOTE: No CertificateRequest, Certificate, CertificateVerify messages, but client
-         * might now send EndOfEarlyData after receiving server Finished message.
+         * NOTE: For PSK handshakes there are no CertificateRequest, Certificate, CertificateVerify messages, but
+         * the client sends EndOfEarlyData after receiving the server Finished message if early data was accepted.
          */
 
         switch (type)
         {
+        case HandshakeType.end_of_early_data:
+        {
+            switch (this.connection_state)
+            {
+            case CS_SERVER_FINISHED:
+            {
+                receive13EndOfEarlyData(buf);
+                this.connection_state = CS_CLIENT_END_OF_EARLY_DATA;
+                break;
+            }
+            default:
+                throw new TlsFatalAlert(AlertDescription.unexpected_message);
+            }
+            break;
+        }
         case HandshakeType.certificate:
         {
             switch (this.connection_state)
@@ -940,6 +1017,11 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
             switch (this.connection_state)
             {
             case CS_SERVER_FINISHED:
+            {
+                skip13EndOfEarlyData();
+                // NB: Fall through to next case label
+            }
+            case CS_CLIENT_END_OF_EARLY_DATA:
             {
                 skip13ClientCertificate();
                 // NB: Fall through to next case label
@@ -960,7 +1042,33 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
                 // NOTE: Completes the switch to application-data phase (server entered after CS_SERVER_FINISHED).
                 recordStream.enablePendingCipherRead(false);
 
+                /*
+                 * RFC 8446 4.2.9. Servers MUST NOT send a NewSessionTicket with tickets that are not compatible
+                 * with the advertised modes.
+                 */
+                TlsTicketKeyStore ticketKeyStore = null;
+                short[] pskKeyExchangeModes = TlsExtensionsUtils.getPSKKeyExchangeModesExtension(clientExtensions);
+                if (null != pskKeyExchangeModes
+                    && Arrays.contains(pskKeyExchangeModes, PskKeyExchangeMode.psk_dhe_ke))
+                {
+                    ticketKeyStore = tlsServer.getTicketKeyStore();
+                }
+
+                if (null != ticketKeyStore)
+                {
+                    buf.updateHash(handshakeHash);
+
+                    byte[] clientFinishedTranscriptHash = TlsUtils.getCurrentPRFHash(handshakeHash);
+
+                    TlsUtils.establish13PhaseResumption(tlsServerContext, clientFinishedTranscriptHash);
+                }
+
                 completeHandshake();
+
+                if (null != ticketKeyStore)
+                {
+                    send13NewSessionTicketMessage(ticketKeyStore);
+                }
                 break;
             }
             default:
@@ -980,7 +1088,6 @@ protected void handle13HandshakeMessage(short type, HandshakeMessageInput buf)
         case HandshakeType.client_key_exchange:
         case HandshakeType.compressed_certificate:
         case HandshakeType.encrypted_extensions:
-        case HandshakeType.end_of_early_data:
         case HandshakeType.hello_request:
         case HandshakeType.hello_verify_request:
         case HandshakeType.message_hash:
@@ -1002,11 +1109,6 @@ protected void handleHandshakeMessage(short type, HandshakeMessageInput buf)
         if (connection_state > CS_CLIENT_HELLO
             && TlsUtils.isTLSv13(securityParameters.getNegotiatedVersion()))
         {
-            if (securityParameters.isResumedSession())
-            {
-                throw new TlsFatalAlert(AlertDescription.internal_error);
-            }
-
             handle13HandshakeMessage(type, buf);
             return;
         }
@@ -1570,6 +1672,12 @@ protected void send13ServerHelloCoda(ServerHello serverHello, boolean afterHello
         recordStream.enablePendingCipherWrite();
         recordStream.enablePendingCipherRead(true);
 
+        if (null != earlyDataCipher)
+        {
+            recordStream.enableEarlyDataRead(earlyDataCipher, earlyDataLimit);
+            this.earlyDataCipher = null;
+        }
+
         send13EncryptedExtensionsMessage(serverExtensions);
         this.connection_state = CS_SERVER_ENCRYPTED_EXTENSIONS;
 
@@ -1643,6 +1751,44 @@ protected void send13ServerHelloCoda(ServerHello serverHello, boolean afterHello
         recordStream.enablePendingCipherWrite();
     }
 
+    protected void send13NewSessionTicketMessage(TlsTicketKeyStore ticketKeyStore)
+        throws IOException
+    {
+        SecurityParameters securityParameters = tlsServerContext.getSecurityParametersConnection();
+        TlsCrypto crypto = tlsServerContext.getCrypto();
+
+        /*
+         * RFC 8446 4.6.1. Servers MUST NOT use any value greater than 604800 seconds (7 days).
+         */
+        long ticketLifetime = Math.max(0L, Math.min(604800L, tlsServer.getTicketLifetime()));
+        long ticketAgeAdd = TlsUtils.readUint32(tlsServerContext.getNonceGenerator().generateNonce(4), 0);
+
+        // NOTE: We send a single ticket per handshake, so the nonce need not vary
+        byte[] ticketNonce = TlsUtils.EMPTY_BYTES;
+
+        long maxEarlyDataSize = Math.max(0L, Math.min(0xFFFFFFFFL, tlsServer.getMaxEarlyDataSize()));
+
+        Hashtable ticketExtensions = new Hashtable();
+        if (maxEarlyDataSize > 0L)
+        {
+            TlsExtensionsUtils.addEarlyDataMaxSize(ticketExtensions, maxEarlyDataSize);
+        }
+
+        byte[] psk = TlsUtils.calculate13ResumptionPSK(securityParameters, ticketNonce).extract();
+        byte[] ticket = Tls13TicketProtection.protect(crypto, ticketKeyStore, securityParameters.getCipherSuite(),
+            psk, securityParameters.getPeerCertificate(), System.currentTimeMillis(), ticketLifetime, ticketAgeAdd,
+            maxEarlyDataSize, securityParameters.getApplicationProtocol());
+        Arrays.fill(psk, (byte)0);
+
+        HandshakeMessageOutput message = new HandshakeMessageOutput(HandshakeType.new_session_ticket);
+        TlsUtils.writeUint32(ticketLifetime, message);
+        TlsUtils.writeUint32(ticketAgeAdd, message);
+        TlsUtils.writeOpaque8(ticketNonce, message);
+        TlsUtils.writeOpaque16(ticket, message);
+        TlsUtils.writeOpaque16(writeExtensionsData(ticketExtensions), message);
+        message.send(this);
+    }
+
     protected void sendCertificateRequestMessage(CertificateRequest certificateRequest)
         throws IOException
     {
@@ -1699,6 +1845,36 @@ protected void sendServerKeyExchangeMessage(byte[] serverKeyExchange)
         HandshakeMessageOutput.send(this, HandshakeType.server_key_exchange, serverKeyExchange);
     }
 
+    protected void receive13EndOfEarlyData(ByteArrayInputStream buf) throws IOException
+    {
+        if (!recordStream.isEarlyDataRead())
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message);
+        }
+
+        assertEmpty(buf);
+
+        recordStream.notifyEndOfEarlyData();
+    }
+
+    protected void skip13EndOfEarlyData() throws IOException
+    {
+        if (recordStream.isEarlyDataRead())
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message);
+        }
+    }
+
+    private long getEarlyDataSkipLimit(OfferedPsks.SelectedConfig selectedPSK)
+    {
+        long limit = tlsServer.getMaxEarlyDataSize();
+        if (null != selectedPSK && selectedPSK.psk instanceof TlsPSKResumption)
+        {
+            limit = Math.max(limit, ((TlsPSKResumption)selectedPSK.psk).getMaxEarlyDataSize());
+        }
+        return Math.max(0L, limit);
+    }
+
     protected void skip13ClientCertificate() throws IOException
     {
         if (null != certificateRequest)
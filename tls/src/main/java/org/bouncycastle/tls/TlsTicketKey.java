@@ -0,0 +1,41 @@
+package org.bouncycastle.tls;
+
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A named key used by a server to protect TLS 1.3 session tickets. The name is sent in the clear at the start
+ * of each ticket, so that the key can be found again when the ticket is offered for resumption.
+ */
+public final class TlsTicketKey
+{
+    public static final int NAME_LENGTH = 16;
+    public static final int KEY_LENGTH = 32;
+
+    private final byte[] name;
+    private final byte[] key;
+
+    public TlsTicketKey(byte[] name, byte[] key)
+    {
+        if (null == name || name.length != NAME_LENGTH)
+        {
+            throw new IllegalArgumentException("'name' must have length " + NAME_LENGTH);
+        }
+        if (null == key || key.length != KEY_LENGTH)
+        {
+            throw new IllegalArgumentException("'key' must have length " + KEY_LENGTH);
+        }
+
+        this.name = Arrays.clone(name);
+        this.key = Arrays.clone(key);
+    }
+
+    public byte[] getName()
+    {
+        return name;
+    }
+
+    public byte[] getKey()
+    {
+        return key;
+    }
+}
@@ -0,0 +1,25 @@
+package org.bouncycastle.tls;
+
+/**
+ * Source of the keys a server uses to protect its TLS 1.3 session tickets. The tickets hold all the state
+ * needed for resumption, so nothing else is kept on the server. Implementations are shared between
+ * connections and so must be thread-safe.
+ */
+public interface TlsTicketKeyStore
+{
+    /**
+     * Return the key to protect a new ticket with.
+     *
+     * @return the current {@link TlsTicketKey}.
+     */
+    TlsTicketKey getEncryptionKey();
+
+    /**
+     * Return the key with the given name, for a ticket offered by a client.
+     *
+     * @param name the key name found at the start of the ticket.
+     * @return the matching {@link TlsTicketKey}, or null if the key is unknown or has been retired, in which case
+     *         the ticket is ignored and a full handshake takes place.
+     */
+    TlsTicketKey getDecryptionKey(byte[] name);
+}
@@ -40,6 +40,7 @@
 import org.bouncycastle.tls.crypto.TlsEncryptor;
 import org.bouncycastle.tls.crypto.TlsHash;
 import org.bouncycastle.tls.crypto.TlsHashOutputStream;
+import org.bouncycastle.tls.crypto.TlsKemConfig;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.tls.crypto.TlsStreamSigner;
 import org.bouncycastle.tls.crypto.TlsStreamVerifier;
@@ -1889,23 +1890,114 @@ static void establish13PhaseApplication(TlsContext context, byte[] serverFinishe
             serverFinishedTranscriptHash);
     }
 
-    static void establish13PhaseEarly(TlsContext context, byte[] clientHelloTranscriptHash, RecordStream recordStream)
+    static void establish13PhaseResumption(TlsContext context, byte[] clientFinishedTranscriptHash)
         throws IOException
     {
         SecurityParameters securityParameters = context.getSecurityParametersHandshake();
-        TlsSecret phaseSecret = securityParameters.getEarlySecret();
+        TlsSecret phaseSecret = securityParameters.getMasterSecret();
 
-        // TODO[tls13] binder_key
+        securityParameters.resumptionMasterSecret = deriveSecret(securityParameters, phaseSecret, "res master",
+            clientFinishedTranscriptHash);
+    }
 
-        // TODO[tls13] Early data (client->server only)
-        if (null != recordStream)
+    static TlsSecret calculate13ResumptionPSK(SecurityParameters securityParameters, byte[] ticketNonce)
+        throws IOException
+    {
+        TlsSecret resumptionMasterSecret = securityParameters.getResumptionMasterSecret();
+        if (null == resumptionMasterSecret)
         {
-            establish13TrafficSecrets(context, clientHelloTranscriptHash, phaseSecret, "c e traffic", null,
-                recordStream);
+            throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
+        return TlsCryptoUtils.hkdfExpandLabel(resumptionMasterSecret, securityParameters.getPRFCryptoHashAlgorithm(),
+            "resumption", ticketNonce, securityParameters.getPRFHashLength());
+    }
+
+    /**
+     * Server-side derivation of the early data secrets, once early data has been accepted.
+     *
+     * @return the cipher for reading the client's early data.
+     */
+    static TlsCipher establish13PhaseEarly(TlsContext context, TlsHandshakeHash handshakeHash) throws IOException
+    {
+        SecurityParameters securityParameters = context.getSecurityParametersHandshake();
+        TlsSecret phaseSecret = securityParameters.getEarlySecret();
+
+        byte[] clientHelloTranscriptHash = getBufferedHash(context.getCrypto(), handshakeHash,
+            securityParameters.getPRFCryptoHashAlgorithm());
+
         securityParameters.earlyExporterMasterSecret = deriveSecret(securityParameters, phaseSecret, "e exp master",
             clientHelloTranscriptHash);
+
+        // NOTE: Early data is client->server only, so the cipher is created with no server secret
+        TlsSecret trafficSecret = deriveSecret(securityParameters, phaseSecret, "c e traffic",
+            clientHelloTranscriptHash);
+
+        securityParameters.trafficSecretClient = trafficSecret;
+        try
+        {
+            return initCipher(context);
+        }
+        finally
+        {
+            securityParameters.trafficSecretClient = null;
+            trafficSecret.destroy();
+        }
+    }
+
+    /**
+     * Client-side derivation of the early data cipher, just after sending the ClientHello. The version and cipher
+     * suite aren't negotiated yet, so they are provisionally taken from the resumption PSK.
+     *
+     * @return the cipher for writing early data.
+     */
+    static TlsCipher establish13PhaseEarlyClient(TlsClientContext clientContext, TlsPSKResumption psk,
+        TlsSecret earlySecret, TlsHandshakeHash handshakeHash) throws IOException
+    {
+        SecurityParameters securityParameters = clientContext.getSecurityParametersHandshake();
+        TlsCrypto crypto = clientContext.getCrypto();
+
+        int cipherSuite = psk.getCipherSuite();
+        int encryptionAlgorithm = getEncryptionAlgorithm(cipherSuite);
+        int macAlgorithm = getMACAlgorithm(cipherSuite);
+        if (encryptionAlgorithm < 0 || macAlgorithm < 0)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        int prfCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
+        int prfHashLength = TlsCryptoUtils.getHashOutputSize(prfCryptoHashAlgorithm);
+
+        byte[] clientHelloTranscriptHash = getBufferedHash(crypto, handshakeHash, prfCryptoHashAlgorithm);
+
+        TlsSecret trafficSecret = deriveSecret(prfCryptoHashAlgorithm, prfHashLength, earlySecret, "c e traffic",
+            clientHelloTranscriptHash);
+
+        ProtocolVersion negotiatedVersion = securityParameters.negotiatedVersion;
+        int negotiatedPRFCryptoHashAlgorithm = securityParameters.prfCryptoHashAlgorithm;
+
+        securityParameters.negotiatedVersion = ProtocolVersion.TLSv13;
+        securityParameters.prfCryptoHashAlgorithm = prfCryptoHashAlgorithm;
+        securityParameters.trafficSecretClient = trafficSecret;
+        try
+        {
+            return crypto.createCipher(new TlsCryptoParameters(clientContext), encryptionAlgorithm, macAlgorithm);
+        }
+        finally
+        {
+            securityParameters.negotiatedVersion = negotiatedVersion;
+            securityParameters.prfCryptoHashAlgorithm = negotiatedPRFCryptoHashAlgorithm;
+            securityParameters.trafficSecretClient = null;
+            trafficSecret.destroy();
+        }
+    }
+
+    private static byte[] getBufferedHash(TlsCrypto crypto, TlsHandshakeHash handshakeHash, int cryptoHashAlgorithm)
+        throws IOException
+    {
+        TlsHash hash = crypto.createHash(cryptoHashAlgorithm);
+        handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
+        return hash.calculateHash();
     }
 
     static void establish13PhaseHandshake(TlsContext context, byte[] serverHelloTranscriptHash,
@@ -5244,15 +5336,134 @@ static TlsAuthentication receive13ServerCertificate(TlsClientContext clientConte
         return authentication;
     }
 
+    static int[] getCertificateCompressionAlgorithms(TlsCertificateCompressor[] compressors)
+    {
+        if (isNullOrEmpty(compressors))
+        {
+            return null;
+        }
+
+        int count = Math.min(compressors.length, 127);
+        int[] algorithms = new int[count];
+        for (int i = 0; i < count; ++i)
+        {
+            algorithms[i] = compressors[i].getAlgorithm();
+        }
+        return algorithms;
+    }
+
+    static TlsCertificateCompressor getCertificateCompressor(TlsCertificateCompressor[] compressors, int algorithm)
+    {
+        if (null != compressors)
+        {
+            for (int i = 0; i < compressors.length; ++i)
+            {
+                TlsCertificateCompressor compressor = compressors[i];
+                if (null != compressor && algorithm == compressor.getAlgorithm())
+                {
+                    return compressor;
+                }
+            }
+        }
+        return null;
+    }
+
+    static TlsCertificateCompressor selectCertificateCompressor(TlsCertificateCompressor[] compressors,
+        int[] peerAlgorithms)
+    {
+        if (null != peerAlgorithms)
+        {
+            // NOTE: The peer's list is in its order of preference
+            for (int i = 0; i < peerAlgorithms.length; ++i)
+            {
+                TlsCertificateCompressor compressor = getCertificateCompressor(compressors, peerAlgorithms[i]);
+                if (null != compressor)
+                {
+                    return compressor;
+                }
+            }
+        }
+        return null;
+    }
+
+    static void write13CompressedCertificate(TlsCertificateCompressor compressor, byte[] certificateMessage,
+        OutputStream output) throws IOException
+    {
+        byte[] compressed = compressor.compress(certificateMessage);
+        if (isNullOrEmpty(compressed))
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        /*
+         * RFC 8879 4.
+         * struct {
+         *     CertificateCompressionAlgorithm algorithm;
+         *     uint24 uncompressed_length;
+         *     opaque compressed_certificate_message<1..2^24-1>;
+         * } CompressedCertificate;
+         */
+        checkUint24(certificateMessage.length);
+        writeUint16(compressor.getAlgorithm(), output);
+        writeUint24(certificateMessage.length, output);
+        writeOpaque24(compressed, output);
+    }
+
+    static ByteArrayInputStream read13CompressedCertificate(TlsPeer peer, Hashtable localExtensions,
+        ByteArrayInputStream buf) throws IOException
+    {
+        int[] offeredAlgorithms = TlsExtensionsUtils.getCompressCertificateExtension(localExtensions);
+        if (null == offeredAlgorithms)
+        {
+            throw new TlsFatalAlert(AlertDescription.unexpected_message);
+        }
+
+        int algorithm = readUint16(buf);
+        int uncompressedLength = readUint24(buf);
+        byte[] compressed = readOpaque24(buf, 1);
+
+        TlsProtocol.assertEmpty(buf);
+
+        TlsCertificateCompressor compressor = Arrays.contains(offeredAlgorithms, algorithm)
+            ? getCertificateCompressor(peer.getCertificateCompressors(), algorithm)
+            : null;
+        if (null == compressor)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter,
+                "Unexpected certificate compression algorithm: " + CertificateCompressionAlgorithm.getText(algorithm));
+        }
+
+        // NOTE: Check the claimed length before the compressor allocates any output
+        if (uncompressedLength < 1 || uncompressedLength > peer.getMaxHandshakeMessageSize())
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate,
+                "Compressed certificate has invalid uncompressed_length: " + uncompressedLength);
+        }
+
+        byte[] certificateMessage = compressor.decompress(compressed, uncompressedLength);
+        if (null == certificateMessage || certificateMessage.length != uncompressedLength)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate);
+        }
+
+        return new ByteArrayInputStream(certificateMessage);
+    }
+
     static TlsAuthentication skip13ServerCertificate(TlsClientContext clientContext) throws IOException
     {
         SecurityParameters securityParameters = clientContext.getSecurityParametersHandshake();
-        if (null != securityParameters.getPeerCertificate())
+
+        // NOTE: When resuming, the peer certificate was already restored from the resumption PSK
+        if (!securityParameters.isResumedSession())
         {
-            throw new TlsFatalAlert(AlertDescription.internal_error);
+            if (null != securityParameters.getPeerCertificate())
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
+
+            securityParameters.peerCertificate = null;
         }
 
-        securityParameters.peerCertificate = null;
         securityParameters.tlsServerEndPoint = null;
 
         return null;
@@ -5371,6 +5582,13 @@ else if (NamedGroup.refersToASpecificFiniteField(supportedGroup))
                     agreement = crypto.createDHDomain(new TlsDHConfig(supportedGroup, true)).createDH();
                 }
             }
+            else if (NamedGroup.refersToASpecificHybrid(supportedGroup))
+            {
+                if (crypto.hasKemAgreement())
+                {
+                    agreement = crypto.createKemDomain(new TlsKemConfig(supportedGroup, false)).createKem();
+                }
+            }
 
             if (null != agreement)
             {
@@ -5424,7 +5642,8 @@ static KeyShareEntry selectKeyShare(TlsCrypto crypto, ProtocolVersion negotiated
                 }
 
                 if ((NamedGroup.refersToASpecificCurve(group) && !crypto.hasECDHAgreement()) ||
-                    (NamedGroup.refersToASpecificFiniteField(group) && !crypto.hasDHAgreement())) 
+                    (NamedGroup.refersToASpecificFiniteField(group) && !crypto.hasDHAgreement()) ||
+                    (NamedGroup.refersToASpecificHybrid(group) && !crypto.hasKemAgreement()))
                 {
                     continue;
                 }
@@ -5460,7 +5679,8 @@ static int selectKeyShareGroup(TlsCrypto crypto, ProtocolVersion negotiatedVersi
                 }
 
                 if ((NamedGroup.refersToASpecificCurve(group) && !crypto.hasECDHAgreement()) ||
-                    (NamedGroup.refersToASpecificFiniteField(group) && !crypto.hasDHAgreement())) 
+                    (NamedGroup.refersToASpecificFiniteField(group) && !crypto.hasDHAgreement()) ||
+                    (NamedGroup.refersToASpecificHybrid(group) && !crypto.hasKemAgreement()))
                 {
                     continue;
                 }
@@ -5905,13 +6125,20 @@ public static TlsSecret generateEncryptedPreMasterSecret(TlsContext context, Tls
 
     static void addPreSharedKeyToClientExtensions(TlsPSK[] psks, Hashtable clientExtensions) throws IOException
     {
+        long currentTime = System.currentTimeMillis();
+
         Vector identities = new Vector(psks.length);
         for (int i = 0; i < psks.length; ++i)
         {
             TlsPSK psk = psks[i];
 
-            // TODO[tls13-psk] Handle obfuscated_ticket_age for resumption PSKs
-            identities.add(new PskIdentity(psk.getIdentity(), 0L));
+            long obfuscatedTicketAge = 0L;
+            if (psk instanceof TlsPSKResumption)
+            {
+                obfuscatedTicketAge = ((TlsPSKResumption)psk).getObfuscatedTicketAge(currentTime);
+            }
+
+            identities.add(new PskIdentity(psk.getIdentity(), obfuscatedTicketAge));
         }
 
         TlsExtensionsUtils.addPreSharedKeyClientHello(clientExtensions, new OfferedPsks(identities));
@@ -5926,26 +6153,58 @@ static OfferedPsks.BindersConfig addPreSharedKeyToClientHello(TlsClientContext c
         }
 
         TlsPSKExternal[] pskExternals = getPSKExternalsClient(client, offeredCipherSuites);
-        if (null == pskExternals)
+        TlsPSKResumption[] pskResumptions = getPSKResumptionsClient(client, offeredCipherSuites);
+
+        short[] pskKeyExchangeModes = client.getPskKeyExchangeModes();
+        if (isNullOrEmpty(pskKeyExchangeModes))
         {
+            if (null != pskExternals)
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error,
+                    "External PSKs configured but no PskKeyExchangeMode available");
+            }
+
             return null;
         }
 
-        short[] pskKeyExchangeModes = client.getPskKeyExchangeModes();
-        if (isNullOrEmpty(pskKeyExchangeModes))
+        // Resumption PSKs first, as only the first PSK offered is usable for early data
+        TlsPSK[] psks;
+        if (null == pskResumptions || pskResumptions.length < 1)
         {
-            throw new TlsFatalAlert(AlertDescription.internal_error,
-                "External PSKs configured but no PskKeyExchangeMode available");
+            if (null == pskExternals)
+            {
+                /*
+                 * RFC 8446 4.2.9. A client supporting resumption sends psk_key_exchange_modes even when it has no
+                 * PSK to offer yet, since servers only issue tickets usable under one of the listed modes.
+                 */
+                if (null != pskResumptions)
+                {
+                    TlsExtensionsUtils.addPSKKeyExchangeModesExtension(clientExtensions, pskKeyExchangeModes);
+                }
+                return null;
+            }
+
+            psks = pskExternals;
+        }
+        else if (null == pskExternals)
+        {
+            psks = pskResumptions;
+        }
+        else
+        {
+            psks = new TlsPSK[pskResumptions.length + pskExternals.length];
+            System.arraycopy(pskResumptions, 0, psks, 0, pskResumptions.length);
+            System.arraycopy(pskExternals, 0, psks, pskResumptions.length, pskExternals.length);
         }
 
-        TlsSecret[] pskEarlySecrets = getPSKEarlySecrets(clientContext.getCrypto(), pskExternals);
+        TlsSecret[] pskEarlySecrets = getPSKEarlySecrets(clientContext.getCrypto(), psks);
 
-        int bindersSize = OfferedPsks.getBindersSize(pskExternals);
+        int bindersSize = OfferedPsks.getBindersSize(psks);
 
-        addPreSharedKeyToClientExtensions(pskExternals, clientExtensions);
+        addPreSharedKeyToClientExtensions(psks, clientExtensions);
         TlsExtensionsUtils.addPSKKeyExchangeModesExtension(clientExtensions, pskKeyExchangeModes);
 
-        return new OfferedPsks.BindersConfig(pskExternals, pskKeyExchangeModes, pskEarlySecrets, bindersSize);
+        return new OfferedPsks.BindersConfig(psks, pskKeyExchangeModes, pskEarlySecrets, bindersSize);
     }
 
     static OfferedPsks.BindersConfig addPreSharedKeyToClientHelloRetry(TlsClientContext clientContext,
@@ -6006,49 +6265,94 @@ static OfferedPsks.SelectedConfig selectPreSharedKey(TlsServerContext serverCont
             // TODO[tls13] Add support for psk_ke?
             if (Arrays.contains(pskKeyExchangeModes, PskKeyExchangeMode.psk_dhe_ke))
             {
+                TlsCrypto crypto = serverContext.getCrypto();
+
+                TlsPSK psk = null;
+                int index = -1;
+
                 // TODO[tls13] Prefer to get the exact index from the server?
-                TlsPSKExternal psk = server.getExternalPSK(offeredPsks.getIdentities());
-                if (null != psk)
+                TlsPSKExternal pskExternal = server.getExternalPSK(offeredPsks.getIdentities());
+                if (null != pskExternal)
+                {
+                    psk = pskExternal;
+                    index = offeredPsks.getIndexOfIdentity(new PskIdentity(pskExternal.getIdentity(), 0L));
+                }
+                else
                 {
-                    int index = offeredPsks.getIndexOfIdentity(new PskIdentity(psk.getIdentity(), 0L));
-                    if (index >= 0)
+                    TlsTicketKeyStore ticketKeyStore = server.getTicketKeyStore();
+                    if (null != ticketKeyStore)
                     {
-                        byte[] binder = (byte[])offeredPsks.getBinders().elementAt(index);
+                        long currentTime = System.currentTimeMillis();
+                        int retryPRFAlgorithm = afterHelloRetryRequest
+                            ? serverContext.getSecurityParametersHandshake().getPRFAlgorithm()
+                            : -1;
 
-                        TlsCrypto crypto = serverContext.getCrypto();
-                        TlsSecret earlySecret = getPSKEarlySecret(crypto, psk);
-
-                        // TODO[tls13-psk] Handle resumption PSKs
-                        boolean isExternalPSK = true;
-                        int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
-
-                        byte[] transcriptHash;
+                        Vector identities = offeredPsks.getIdentities();
+                        for (int i = 0; i < identities.size(); ++i)
                         {
-                            handshakeHashUpdated = true;
-                            int bindersSize = offeredPsks.getBindersSize();
-                            clientHelloMessage.updateHashPrefix(handshakeHash, bindersSize);
+                            byte[] ticket = ((PskIdentity)identities.elementAt(i)).getIdentity();
 
-                            if (afterHelloRetryRequest)
-                            {
-                                transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
-                            }
-                            else
+                            TlsPSKResumption pskResumption = Tls13TicketProtection.unprotect(crypto, ticketKeyStore,
+                                ticket);
+                            if (null != pskResumption && !pskResumption.isExpired(currentTime)
+                                && (retryPRFAlgorithm < 0 || retryPRFAlgorithm == pskResumption.getPRFAlgorithm()))
                             {
-                                TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
-                                handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
-                                transcriptHash = hash.calculateHash();
+                                psk = pskResumption;
+                                index = i;
+                                break;
                             }
-
-                            clientHelloMessage.updateHashSuffix(handshakeHash, bindersSize);
                         }
+                    }
+                }
+
+                if (index >= 0)
+                {
+                    byte[] binder = (byte[])offeredPsks.getBinders().elementAt(index);
+
+                    TlsSecret earlySecret = getPSKEarlySecret(crypto, psk);
 
-                        byte[] calculatedBinder = calculatePSKBinder(crypto, isExternalPSK, pskCryptoHashAlgorithm,
-                            earlySecret, transcriptHash);
+                    boolean isExternalPSK = !(psk instanceof TlsPSKResumption);
+                    int pskCryptoHashAlgorithm = TlsCryptoUtils.getHashForPRF(psk.getPRFAlgorithm());
+
+                    byte[] transcriptHash;
+                    {
+                        handshakeHashUpdated = true;
+                        int bindersSize = offeredPsks.getBindersSize();
+                        clientHelloMessage.updateHashPrefix(handshakeHash, bindersSize);
 
-                        if (Arrays.constantTimeAreEqual(calculatedBinder, binder))
+                        if (afterHelloRetryRequest)
                         {
-                            return new OfferedPsks.SelectedConfig(index, psk, pskKeyExchangeModes, earlySecret);
+                            transcriptHash = handshakeHash.getFinalHash(pskCryptoHashAlgorithm);
                         }
+                        else
+                        {
+                            TlsHash hash = crypto.createHash(pskCryptoHashAlgorithm);
+                            handshakeHash.copyBufferTo(new TlsHashOutputStream(hash));
+                            transcriptHash = hash.calculateHash();
+                        }
+
+                        clientHelloMessage.updateHashSuffix(handshakeHash, bindersSize);
+                    }
+
+                    byte[] calculatedBinder = calculatePSKBinder(crypto, isExternalPSK, pskCryptoHashAlgorithm,
+                        earlySecret, transcriptHash);
+
+                    if (Arrays.constantTimeAreEqual(calculatedBinder, binder))
+                    {
+                        long obfuscatedTicketAge = ((PskIdentity)offeredPsks.getIdentities().elementAt(index))
+                            .getObfuscatedTicketAge();
+
+                        return new OfferedPsks.SelectedConfig(index, psk, pskKeyExchangeModes, earlySecret, binder,
+                            obfuscatedTicketAge);
+                    }
+
+                    /*
+                     * RFC 8446 4.2.11. [..] If this value does not validate, the server MUST abort the
+                     * handshake. A valid ticket with an invalid binder was not sent by its holder.
+                     */
+                    if (!isExternalPSK)
+                    {
+                        throw new TlsFatalAlert(AlertDescription.decrypt_error, "Invalid PSK binder");
                     }
                 }
             }
@@ -6117,6 +6421,131 @@ static TlsPSKExternal[] getPSKExternalsClient(TlsClient client, int[] offeredCip
         return result;
     }
 
+    /**
+     * Decide whether to send the client's early data with the given ClientHello offer. Only the first offered PSK
+     * can be used for early data (RFC 8446 4.2.10).
+     *
+     * @return the resumption PSK to protect the early data with, or null if it can't be sent.
+     */
+    static TlsPSKResumption getEarlyDataPSKClient(OfferedPsks.BindersConfig clientBinders,
+        Hashtable clientExtensions, int[] offeredCipherSuites, byte[] earlyData) throws IOException
+    {
+        if (isNullOrEmpty(earlyData) || null == clientBinders
+            || !(clientBinders.psks[0] instanceof TlsPSKResumption))
+        {
+            return null;
+        }
+
+        TlsPSKResumption psk = (TlsPSKResumption)clientBinders.psks[0];
+        if (psk.getMaxEarlyDataSize() < earlyData.length
+            || !Arrays.contains(offeredCipherSuites, psk.getCipherSuite()))
+        {
+            return null;
+        }
+
+        ProtocolName applicationProtocol = psk.getApplicationProtocol();
+        if (null != applicationProtocol)
+        {
+            Vector protocolNames = TlsExtensionsUtils.getALPNExtensionClient(clientExtensions);
+            if (null == protocolNames || !protocolNames.contains(applicationProtocol))
+            {
+                return null;
+            }
+        }
+
+        return psk;
+    }
+
+    /**
+     * Decide whether the server accepts early data from the client (RFC 8446 4.2.10). Besides the configured
+     * limits, the early data must use the first offered PSK, with the same cipher suite and ALPN protocol as the
+     * connection it was issued in, and the ClientHello must be fresh and not a replay (RFC 8446 8).
+     */
+    static boolean accept13EarlyData(TlsServerContext serverContext, TlsServer server,
+        OfferedPsks.SelectedConfig selectedPSK) throws IOException
+    {
+        if (null == selectedPSK || 0 != selectedPSK.index || !(selectedPSK.psk instanceof TlsPSKResumption))
+        {
+            return false;
+        }
+
+        TlsPSKResumption psk = (TlsPSKResumption)selectedPSK.psk;
+        if (psk.getMaxEarlyDataSize() < 1L || server.getMaxEarlyDataSize() < 1L)
+        {
+            return false;
+        }
+
+        TlsAntiReplayStore antiReplayStore = server.getAntiReplayStore();
+        if (null == antiReplayStore)
+        {
+            return false;
+        }
+
+        SecurityParameters securityParameters = serverContext.getSecurityParametersHandshake();
+        if (securityParameters.getCipherSuite() != psk.getCipherSuite())
+        {
+            return false;
+        }
+
+        ProtocolName applicationProtocol = psk.getApplicationProtocol();
+        if (null == applicationProtocol
+            ? null != securityParameters.getApplicationProtocol()
+            : !applicationProtocol.equals(securityParameters.getApplicationProtocol()))
+        {
+            return false;
+        }
+
+        /*
+         * RFC 8446 8.3. The server computes the expected arrival time of the ClientHello from the ticket age the
+         * client reports, and rejects early data in ClientHellos outside a window around it.
+         */
+        long currentTime = System.currentTimeMillis();
+        long ticketAge = (selectedPSK.obfuscatedTicketAge - psk.getTicketAgeAdd()) & 0xFFFFFFFFL;
+        long expectedArrivalTime = psk.getIssueTime() + ticketAge;
+        if (Math.abs(currentTime - expectedArrivalTime) > antiReplayStore.getWindow())
+        {
+            return false;
+        }
+
+        // NOTE: The binder is unique to the ClientHello (and authenticates it), so serves to detect replays
+        return antiReplayStore.checkAndRecord(selectedPSK.binder, currentTime);
+    }
+
+    static TlsPSKResumption[] getPSKResumptionsClient(TlsClient client, int[] offeredCipherSuites) throws IOException
+    {
+        Vector resumptionPSKs = client.getResumptionPSKs();
+        if (null == resumptionPSKs)
+        {
+            return null;
+        }
+
+        int[] prfAlgorithms = getPRFAlgorithms13(offeredCipherSuites);
+        long currentTime = System.currentTimeMillis();
+
+        Vector usable = new Vector(resumptionPSKs.size());
+        for (int i = 0; i < resumptionPSKs.size(); ++i)
+        {
+            Object element = resumptionPSKs.elementAt(i);
+            if (!(element instanceof TlsPSKResumption))
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error,
+                    "Resumption PSKs element is not a TlsPSKResumption");
+            }
+
+            // Tickets may outlive the configuration they were issued under, so just skip unusable ones
+            TlsPSKResumption pskResumption = (TlsPSKResumption)element;
+            if (!pskResumption.isExpired(currentTime)
+                && Arrays.contains(prfAlgorithms, pskResumption.getPRFAlgorithm()))
+            {
+                usable.addElement(pskResumption);
+            }
+        }
+
+        TlsPSKResumption[] result = new TlsPSKResumption[usable.size()];
+        usable.copyInto(result);
+        return result;
+    }
+
     static Vector getPSKIndices(TlsPSK[] psks, int prfAlgorithm)
     {
         Vector v = new Vector(psks.length);
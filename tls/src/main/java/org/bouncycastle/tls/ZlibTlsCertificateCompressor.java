@@ -0,0 +1,100 @@
+package org.bouncycastle.tls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link TlsCertificateCompressor} for {@link CertificateCompressionAlgorithm#zlib} (RFC 1950), using
+ * java.util.zip.
+ */
+public class ZlibTlsCertificateCompressor
+    implements TlsCertificateCompressor
+{
+    protected final int level;
+
+    public ZlibTlsCertificateCompressor()
+    {
+        this(Deflater.BEST_COMPRESSION);
+    }
+
+    /**
+     * @param level the compression level, as for {@link Deflater#setLevel(int)}.
+     */
+    public ZlibTlsCertificateCompressor(int level)
+    {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9))
+        {
+            throw new IllegalArgumentException("'level' is not a valid compression level");
+        }
+
+        this.level = level;
+    }
+
+    public int getAlgorithm()
+    {
+        return CertificateCompressionAlgorithm.zlib;
+    }
+
+    public byte[] compress(byte[] certificateMessage) throws IOException
+    {
+        Deflater deflater = new Deflater(level);
+        try
+        {
+            deflater.setInput(certificateMessage);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(certificateMessage.length);
+            byte[] buf = new byte[1024];
+            while (!deflater.finished())
+            {
+                int count = deflater.deflate(buf);
+                output.write(buf, 0, count);
+            }
+            return output.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    public byte[] decompress(byte[] compressed, int uncompressedLength) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(compressed);
+
+            byte[] output = new byte[uncompressedLength];
+            int pos = 0;
+            while (pos < uncompressedLength)
+            {
+                int count = inflater.inflate(output, pos, uncompressedLength - pos);
+                if (count < 1 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new TlsFatalAlert(AlertDescription.bad_certificate, "Compressed certificate too short");
+                }
+                pos += count;
+            }
+
+            // Anything beyond the claimed length (or trailing garbage) is an error
+            if (inflater.inflate(new byte[1]) > 0 || !inflater.finished() || inflater.getRemaining() > 0)
+            {
+                throw new TlsFatalAlert(AlertDescription.bad_certificate, "Compressed certificate too long");
+            }
+
+            return output;
+        }
+        catch (DataFormatException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate, e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.bouncycastle.tls.crypto;
+
+import java.io.IOException;
+
+/**
+ * Interface for an AEAD cipher operating under a fixed key held by this endpoint, rather than under keys derived
+ * from a handshake. Used, for example, by a server to protect its TLS 1.3 session tickets.
+ */
+public interface TlsAEAD
+{
+    /**
+     * Return the size of the output for input of inputLength bytes.
+     *
+     * @param inputLength the length (in bytes) of the proposed input.
+     * @return the size of the output.
+     */
+    int getOutputSize(int inputLength);
+
+    /**
+     * Encrypt or decrypt (according to how this instance was created) the passed in data.
+     *
+     * @param nonce the nonce, which must never be repeated for the same key when encrypting.
+     * @param additionalData any additional data to be included in the MAC calculation.
+     * @param input array holding input data to the cipher.
+     * @param inputOffset offset into input array data starts at.
+     * @param inputLength length of the input data in the array.
+     * @return the cipher output.
+     * @throws IOException in case of failure, including when decrypted data fails authentication.
+     */
+    byte[] doFinal(byte[] nonce, byte[] additionalData, byte[] input, int inputOffset, int inputLength)
+        throws IOException;
+}
@@ -69,6 +69,13 @@
      */
     boolean hasECDHAgreement();
 
+    /**
+     * Return true if this TlsCrypto can support KEM based key exchange (including hybrid groups).
+     *
+     * @return true if this instance can support KEM based key exchange, false otherwise.
+     */
+    boolean hasKemAgreement();
+
     /**
      * Return true if this TlsCrypto can support the passed in block/stream encryption algorithm.
      *
@@ -197,6 +204,19 @@
     TlsCipher createCipher(TlsCryptoParameters cryptoParams, int encryptionAlgorithm, int macAlgorithm)
         throws IOException;
 
+    /**
+     * Create an AEAD cipher for the specified encryption algorithm, keyed independently of any handshake.
+     * <p>
+     * Only AEAD algorithms from {@link EncryptionAlgorithm} are appropriate argument values.
+     * </p>
+     * @param encryptionAlgorithm the encryption algorithm to be employed by the cipher.
+     * @param key the cipher key.
+     * @param isEncrypting true if the cipher will encrypt, false if it will decrypt.
+     * @return a {@link TlsAEAD} implementing the encryption algorithm.
+     * @throws IOException
+     */
+    TlsAEAD createAEAD(int encryptionAlgorithm, byte[] key, boolean isEncrypting) throws IOException;
+
     /**
      * Create a domain object supporting the domain parameters described in dhConfig.
      *
@@ -213,6 +233,14 @@ TlsCipher createCipher(TlsCryptoParameters cryptoParams, int encryptionAlgorithm
      */
     TlsECDomain createECDomain(TlsECConfig ecConfig);
 
+    /**
+     * Create a domain object supporting the KEM (or hybrid) group described in kemConfig.
+     *
+     * @param kemConfig the config describing the KEM group to use.
+     * @return a TlsKemDomain supporting the group in kemConfig.
+     */
+    TlsKemDomain createKemDomain(TlsKemConfig kemConfig);
+
     /**
      * Adopt the passed in secret, creating a new copy of it.
      *
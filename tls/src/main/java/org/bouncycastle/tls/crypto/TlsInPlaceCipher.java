@@ -0,0 +1,49 @@
+package org.bouncycastle.tls.crypto;
+
+import java.io.IOException;
+
+import org.bouncycastle.tls.ProtocolVersion;
+
+/**
+ * A {@link TlsCipher} that can also protect records in caller-provided buffers. Neither method allocates
+ * an output array or a result object, so a record layer holding its own buffers can process records
+ * without per-record allocation.
+ */
+public interface TlsInPlaceCipher
+    extends TlsCipher
+{
+    /**
+     * Encode the passed in plaintext into output, which must have room for
+     * {@link #getCiphertextEncodeLimit(int)} bytes from outputOffset. The plaintext may already be in the
+     * output array, including at the position the encoded record data starts.
+     *
+     * @param seqNo sequence number of the message represented by plaintext.
+     * @param contentType content type of the message represented by plaintext.
+     * @param recordVersion {@link ProtocolVersion} used for the record.
+     * @param plaintext array holding input plaintext to the cipher.
+     * @param offset offset into input array the plaintext starts at.
+     * @param len length of the plaintext in the array.
+     * @param output array to hold the encoded record data.
+     * @param outputOffset offset into output array the encoded record data starts at.
+     * @param result receives the offset and length of the encoded record data, and the record type to send.
+     * @throws IOException
+     */
+    void encodePlaintext(long seqNo, short contentType, ProtocolVersion recordVersion, byte[] plaintext, int offset,
+        int len, byte[] output, int outputOffset, TlsInPlaceResult result) throws IOException;
+
+    /**
+     * Decode the passed in ciphertext, leaving the plaintext in the ciphertext array.
+     *
+     * @param seqNo sequence number of the message represented by ciphertext.
+     * @param recordType content type used in the record for this message.
+     * @param recordVersion {@link ProtocolVersion} used for the record.
+     * @param ciphertext array holding input ciphertext to the cipher.
+     * @param offset offset into input array the ciphertext starts at.
+     * @param len length of the ciphertext in the array.
+     * @param result receives the offset and length of the plaintext in the ciphertext array, and its content
+     *            type.
+     * @throws IOException
+     */
+    void decodeCiphertext(long seqNo, short recordType, ProtocolVersion recordVersion, byte[] ciphertext, int offset,
+        int len, TlsInPlaceResult result) throws IOException;
+}
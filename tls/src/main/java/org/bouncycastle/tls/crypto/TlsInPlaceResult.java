@@ -0,0 +1,19 @@
+package org.bouncycastle.tls.crypto;
+
+/**
+ * A reusable holder for the location and type of a record fragment encoded or decoded in place by a
+ * {@link TlsInPlaceCipher}. A record layer keeps one of these per direction, so that processing a record
+ * does not need a new result object.
+ */
+public final class TlsInPlaceResult
+{
+    public int off, len;
+    public short type;
+
+    public void set(int off, int len, short type)
+    {
+        this.off = off;
+        this.len = len;
+        this.type = type;
+    }
+}
@@ -0,0 +1,39 @@
+package org.bouncycastle.tls.crypto;
+
+import org.bouncycastle.tls.NamedGroup;
+
+/**
+ * Carrier class for Key Encapsulation Mechanism (KEM) configuration.
+ */
+public class TlsKemConfig
+{
+    protected final int namedGroup;
+    protected final boolean isServer;
+
+    public TlsKemConfig(int namedGroup, boolean isServer)
+    {
+        this.namedGroup = namedGroup;
+        this.isServer = isServer;
+    }
+
+    /**
+     * Return the group used.
+     *
+     * @return the {@link NamedGroup named group} used.
+     */
+    public int getNamedGroup()
+    {
+        return namedGroup;
+    }
+
+    /**
+     * Return whether the KEM is used by the server, which encapsulates to the client's public key, rather than the
+     * client, which generates the key pair and decapsulates.
+     *
+     * @return true if used by the server, false if used by the client.
+     */
+    public boolean isServer()
+    {
+        return isServer;
+    }
+}
@@ -0,0 +1,20 @@
+package org.bouncycastle.tls.crypto;
+
+/**
+ * Domain interface to service factory for creating Key Encapsulation Mechanism (KEM) based operators.
+ * <p>
+ * A KEM is used through the {@link TlsAgreement} interface. For the client, {@link TlsAgreement#generateEphemeral()}
+ * returns its public key and {@link TlsAgreement#receivePeerValue(byte[])} accepts the server's ciphertext. For the
+ * server, the client's public key must be passed to {@link TlsAgreement#receivePeerValue(byte[])} first, and then
+ * {@link TlsAgreement#generateEphemeral()} encapsulates a secret to it and returns the ciphertext.
+ * </p>
+ */
+public interface TlsKemDomain
+{
+    /**
+     * Return an agreement operator suitable for a KEM based key exchange.
+     *
+     * @return a key agreement operator.
+     */
+    TlsAgreement createKem();
+}
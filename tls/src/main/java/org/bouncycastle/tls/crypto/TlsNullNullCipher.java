@@ -10,7 +10,7 @@
  * The cipher for TLS_NULL_WITH_NULL_NULL.
  */
 public class TlsNullNullCipher
-    implements TlsCipher
+    implements TlsInPlaceCipher
 {
     public static final TlsNullNullCipher INSTANCE = new TlsNullNullCipher();
 
@@ -42,12 +42,25 @@ public TlsEncodeResult encodePlaintext(long seqNo, short contentType, ProtocolVe
         return new TlsEncodeResult(result, 0, result.length, contentType);
     }
 
+    public void encodePlaintext(long seqNo, short contentType, ProtocolVersion recordVersion, byte[] plaintext,
+        int offset, int len, byte[] output, int outputOffset, TlsInPlaceResult result) throws IOException
+    {
+        System.arraycopy(plaintext, offset, output, outputOffset, len);
+        result.set(outputOffset, len, contentType);
+    }
+
     public TlsDecodeResult decodeCiphertext(long seqNo, short recordType, ProtocolVersion recordVersion,
         byte[] ciphertext, int offset, int len) throws IOException
     {
         return new TlsDecodeResult(ciphertext, offset, len, recordType);
     }
 
+    public void decodeCiphertext(long seqNo, short recordType, ProtocolVersion recordVersion, byte[] ciphertext,
+        int offset, int len, TlsInPlaceResult result) throws IOException
+    {
+        result.set(offset, len, recordType);
+    }
+
     public void rekeyDecoder() throws IOException
     {
         throw new TlsFatalAlert(AlertDescription.internal_error);
@@ -1,5 +1,6 @@
 package org.bouncycastle.tls.crypto.impl;
 
+import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsCrypto;
 import org.bouncycastle.tls.crypto.TlsSecret;
 
@@ -9,6 +10,8 @@
 public abstract class AbstractTlsCrypto
     implements TlsCrypto
 {
+    private volatile TlsKeySharePool keySharePool = null;
+
     public TlsSecret adoptSecret(TlsSecret secret)
     {
         // TODO[tls] Need an alternative that doesn't require AbstractTlsSecret (which holds literal data)
@@ -21,4 +24,39 @@ public TlsSecret adoptSecret(TlsSecret secret)
 
         throw new IllegalArgumentException("unrecognized TlsSecret - cannot copy data: " + secret.getClass().getName());
     }
+
+    /**
+     * Return the pool of precomputed ephemeral key shares used by this crypto's (EC)DHE agreements. The pool
+     * starts out empty and disabled; configure a depth per named group to enable it.
+     *
+     * @return the {@link TlsKeySharePool} for this crypto.
+     */
+    public TlsKeySharePool getKeySharePool()
+    {
+        TlsKeySharePool pool = keySharePool;
+        if (null == pool)
+        {
+            synchronized (this)
+            {
+                pool = keySharePool;
+                if (null == pool)
+                {
+                    keySharePool = pool = new TlsKeySharePool(this);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Create a new, not yet generated, agreement for the given named group that the key share pool can
+     * precompute an ephemeral key share for.
+     *
+     * @param namedGroup a {@link org.bouncycastle.tls.NamedGroup} value.
+     * @return a new agreement, or null if key shares for this named group can't be precomputed.
+     */
+    protected TlsAgreement createKeyShareAgreement(int namedGroup)
+    {
+        return null;
+    }
 }
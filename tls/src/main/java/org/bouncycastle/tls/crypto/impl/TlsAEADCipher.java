@@ -8,11 +8,12 @@
 import org.bouncycastle.tls.SecurityParameters;
 import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.TlsUtils;
-import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsCryptoParameters;
 import org.bouncycastle.tls.crypto.TlsCryptoUtils;
 import org.bouncycastle.tls.crypto.TlsDecodeResult;
 import org.bouncycastle.tls.crypto.TlsEncodeResult;
+import org.bouncycastle.tls.crypto.TlsInPlaceCipher;
+import org.bouncycastle.tls.crypto.TlsInPlaceResult;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.util.Arrays;
 
@@ -20,7 +21,7 @@
  * A generic TLS 1.2 AEAD cipher.
  */
 public final class TlsAEADCipher
-    implements TlsCipher
+    implements TlsInPlaceCipher
 {
     public static final int AEAD_CCM = 1;
     public static final int AEAD_CHACHA20_POLY1305 = 2;
@@ -41,6 +42,10 @@
     private final byte[] decryptConnectionID, encryptConnectionID;
     private final boolean decryptUseInnerPlaintext, encryptUseInnerPlaintext;
 
+    // per-record nonce and additional data, reused as their lengths are fixed for each direction
+    private final byte[] decryptRecordNonce, encryptRecordNonce;
+    private final byte[] decryptAdditionalData, encryptAdditionalData;
+
     private final boolean isTLSv13;
     private final int nonceMode;
 
@@ -88,6 +93,12 @@ public TlsAEADCipher(TlsCryptoParameters cryptoParams, TlsAEADCipherImpl encrypt
         this.decryptNonce = new byte[fixed_iv_length];
         this.encryptNonce = new byte[fixed_iv_length];
 
+        this.decryptRecordNonce = new byte[fixed_iv_length + record_iv_length];
+        this.encryptRecordNonce = new byte[fixed_iv_length + record_iv_length];
+
+        this.decryptAdditionalData = new byte[getAdditionalDataLength(decryptConnectionID)];
+        this.encryptAdditionalData = new byte[getAdditionalDataLength(encryptConnectionID)];
+
         final boolean isServer = cryptoParams.isServer();
         if (isTLSv13)
         {
@@ -154,7 +165,20 @@ public int getPlaintextEncodeLimit(int ciphertextLimit)
     public TlsEncodeResult encodePlaintext(long seqNo, short contentType, ProtocolVersion recordVersion,
         int headerAllocation, byte[] plaintext, int plaintextOffset, int plaintextLength) throws IOException
     {
-        byte[] nonce = new byte[encryptNonce.length + record_iv_length];
+        byte[] output = new byte[headerAllocation + getCiphertextEncodeLimit(plaintextLength)];
+
+        TlsInPlaceResult result = new TlsInPlaceResult();
+        encodePlaintext(seqNo, contentType, recordVersion, plaintext, plaintextOffset, plaintextLength, output,
+            headerAllocation, result);
+
+        return new TlsEncodeResult(output, 0, output.length, result.type);
+    }
+
+    public void encodePlaintext(long seqNo, short contentType, ProtocolVersion recordVersion, byte[] plaintext,
+        int plaintextOffset, int plaintextLength, byte[] output, int outputOffset, TlsInPlaceResult result)
+        throws IOException
+    {
+        byte[] nonce = encryptRecordNonce;
 
         switch (nonceMode)
         {
@@ -165,6 +189,10 @@ public TlsEncodeResult encodePlaintext(long seqNo, short contentType, ProtocolVe
             break;
         case NONCE_RFC7905:
             TlsUtils.writeUint64(seqNo, nonce, nonce.length - 8);
+            for (int i = 0; i < nonce.length - 8; ++i)
+            {
+                nonce[i] = 0;
+            }
             for (int i = 0; i < encryptNonce.length; ++i)
             {
                 nonce[i] ^= encryptNonce[i];
@@ -182,14 +210,7 @@ public TlsEncodeResult encodePlaintext(long seqNo, short contentType, ProtocolVe
         int encryptionLength = encryptCipher.getOutputSize(innerPlaintextLength);
         int ciphertextLength = record_iv_length + encryptionLength;
 
-        byte[] output = new byte[headerAllocation + ciphertextLength];
-        int outputPos = headerAllocation;
-
-        if (record_iv_length != 0)
-        {
-            System.arraycopy(nonce, nonce.length - record_iv_length, output, outputPos, record_iv_length);
-            outputPos += record_iv_length;
-        }
+        int outputPos = outputOffset + record_iv_length;
 
         short recordType = contentType;
         if (encryptUseInnerPlaintext)
@@ -197,17 +218,24 @@ public TlsEncodeResult encodePlaintext(long seqNo, short contentType, ProtocolVe
             recordType = isTLSv13 ? ContentType.application_data : ContentType.tls12_cid;
         }
 
-        byte[] additionalData = getAdditionalData(seqNo, recordType, recordVersion, ciphertextLength,
-            innerPlaintextLength, encryptConnectionID);
+        byte[] additionalData = encryptAdditionalData;
+        setAdditionalData(additionalData, seqNo, recordType, recordVersion, ciphertextLength, innerPlaintextLength,
+            encryptConnectionID);
 
         try
         {
+            // NOTE: The plaintext may already be in the output array, so move it before writing the explicit nonce
             System.arraycopy(plaintext, plaintextOffset, output, outputPos, plaintextLength);
             if (encryptUseInnerPlaintext)
             {
                 output[outputPos + plaintextLength] = (byte)contentType;
             }
 
+            if (record_iv_length != 0)
+            {
+                System.arraycopy(nonce, nonce.length - record_iv_length, output, outputOffset, record_iv_length);
+            }
+
             outputPos += encryptCipher.doFinal(additionalData, output, outputPos, innerPlaintextLength, output,
                 outputPos);
         }
@@ -216,24 +244,33 @@ public TlsEncodeResult encodePlaintext(long seqNo, short contentType, ProtocolVe
             throw new TlsFatalAlert(AlertDescription.internal_error, e);
         }
 
-        if (outputPos != output.length)
+        if (outputPos != outputOffset + ciphertextLength)
         {
             // NOTE: The additional data mechanism for AEAD ciphers requires exact output size prediction.
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
-        return new TlsEncodeResult(output, 0, output.length, recordType);
+        result.set(outputOffset, ciphertextLength, recordType);
     }
 
     public TlsDecodeResult decodeCiphertext(long seqNo, short recordType, ProtocolVersion recordVersion,
         byte[] ciphertext, int ciphertextOffset, int ciphertextLength) throws IOException
+    {
+        TlsInPlaceResult result = new TlsInPlaceResult();
+        decodeCiphertext(seqNo, recordType, recordVersion, ciphertext, ciphertextOffset, ciphertextLength, result);
+
+        return new TlsDecodeResult(ciphertext, result.off, result.len, result.type);
+    }
+
+    public void decodeCiphertext(long seqNo, short recordType, ProtocolVersion recordVersion, byte[] ciphertext,
+        int ciphertextOffset, int ciphertextLength, TlsInPlaceResult result) throws IOException
     {
         if (getPlaintextDecodeLimit(ciphertextLength) < 0)
         {
             throw new TlsFatalAlert(AlertDescription.decode_error);
         }
 
-        byte[] nonce = new byte[decryptNonce.length + record_iv_length];
+        byte[] nonce = decryptRecordNonce;
 
         switch (nonceMode)
         {
@@ -243,6 +280,10 @@ public TlsDecodeResult decodeCiphertext(long seqNo, short recordType, ProtocolVe
             break;
         case NONCE_RFC7905:
             TlsUtils.writeUint64(seqNo, nonce, nonce.length - 8);
+            for (int i = 0; i < nonce.length - 8; ++i)
+            {
+                nonce[i] = 0;
+            }
             for (int i = 0; i < decryptNonce.length; ++i)
             {
                 nonce[i] ^= decryptNonce[i];
@@ -258,8 +299,9 @@ public TlsDecodeResult decodeCiphertext(long seqNo, short recordType, ProtocolVe
         int encryptionLength = ciphertextLength - record_iv_length;
         int innerPlaintextLength = decryptCipher.getOutputSize(encryptionLength);
 
-        byte[] additionalData = getAdditionalData(seqNo, recordType, recordVersion, ciphertextLength,
-            innerPlaintextLength, decryptConnectionID);
+        byte[] additionalData = decryptAdditionalData;
+        setAdditionalData(additionalData, seqNo, recordType, recordVersion, ciphertextLength, innerPlaintextLength,
+            decryptConnectionID);
 
         int outputPos;
         try
@@ -300,7 +342,7 @@ public TlsDecodeResult decodeCiphertext(long seqNo, short recordType, ProtocolVe
             }
         }
 
-        return new TlsDecodeResult(ciphertext, encryptionOffset, plaintextLength, contentType);
+        result.set(encryptionOffset, plaintextLength, contentType);
     }
 
     public void rekeyDecoder() throws IOException
@@ -323,7 +365,17 @@ public boolean usesOpaqueRecordTypeEncode()
         return encryptUseInnerPlaintext;
     }
 
-    private byte[] getAdditionalData(long seqNo, short recordType, ProtocolVersion recordVersion,
+    private int getAdditionalDataLength(byte[] connectionID)
+    {
+        if (!Arrays.isNullOrEmpty(connectionID))
+        {
+            return 23 + connectionID.length;
+        }
+
+        return isTLSv13 ? 5 : 13;
+    }
+
+    private void setAdditionalData(byte[] additional_data, long seqNo, short recordType, ProtocolVersion recordVersion,
         int ciphertextLength, int plaintextLength, byte[] connectionID) throws IOException
     {
         if (!Arrays.isNullOrEmpty(connectionID))
@@ -333,7 +385,6 @@ private byte[] getAdditionalData(long seqNo, short recordType, ProtocolVersion r
              *     + sequence_number + cid + length_of_DTLSInnerPlaintext
              */
             int cidLength = connectionID.length;
-            byte[] additional_data = new byte[23 + cidLength];
             TlsUtils.writeUint64(SEQUENCE_NUMBER_PLACEHOLDER, additional_data, 0);
             TlsUtils.writeUint8(ContentType.tls12_cid, additional_data, 8);
             TlsUtils.writeUint8(cidLength, additional_data, 9);
@@ -342,30 +393,25 @@ private byte[] getAdditionalData(long seqNo, short recordType, ProtocolVersion r
             TlsUtils.writeUint64(seqNo, additional_data, 13);
             System.arraycopy(connectionID, 0, additional_data, 21, cidLength);
             TlsUtils.writeUint16(plaintextLength, additional_data, 21 + cidLength);
-            return additional_data;
         }
         else if (isTLSv13)
         {
             /*
              * TLSCiphertext.opaque_type || TLSCiphertext.legacy_record_version || TLSCiphertext.length
              */
-            byte[] additional_data = new byte[5];
             TlsUtils.writeUint8(recordType, additional_data, 0);
             TlsUtils.writeVersion(recordVersion, additional_data, 1);
             TlsUtils.writeUint16(ciphertextLength, additional_data, 3);
-            return additional_data;
         }
         else
         {
             /*
              * seq_num + TLSCompressed.type + TLSCompressed.version + TLSCompressed.length
              */
-            byte[] additional_data = new byte[13];
             TlsUtils.writeUint64(seqNo, additional_data, 0);
             TlsUtils.writeUint8(recordType, additional_data, 8);
             TlsUtils.writeVersion(recordVersion, additional_data, 9);
             TlsUtils.writeUint16(plaintextLength, additional_data, 11);
-            return additional_data;
         }
     }
 
@@ -381,9 +427,17 @@ private void rekeyCipher(SecurityParameters securityParameters, TlsAEADCipherImp
             ?   securityParameters.getTrafficSecretServer()
             :   securityParameters.getTrafficSecretClient();
 
-        // TODO[tls13] For early data, have to disable server->client
         if (null == secret)
         {
+            /*
+             * RFC 8446 2.3. Early data is only sent client->server, so the cipher for it has no server secret,
+             * and that direction is left unkeyed (and unused).
+             */
+            if (serverSecret && null != securityParameters.getTrafficSecretClient())
+            {
+                return;
+            }
+
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
 
@@ -18,7 +18,10 @@
 
     /**
      * Initialise the parameters for the AEAD operator.
-     *
+     * <p>
+     * Note: the nonce array is reused by the caller for later records, so implementations must copy
+     * anything they need to keep from it.
+     * </p>
      * @param nonce the nonce.
      * @param macSize MAC size in bytes.
      * @throws IOException if the parameters are inappropriate.
@@ -38,6 +41,10 @@
      * <p>
      * Note: we have to use doFinal() here as it is the only way to guarantee output from the underlying cipher.
      * </p>
+     * <p>
+     * The output may be the same region of the same array as the input, as records are protected in place. As
+     * with the nonce, the additionalData array is reused by the caller.
+     * </p>
      * @param additionalData any additional data to be included in the MAC calculation.
      * @param input array holding input data to the cipher.
      * @param inputOffset offset into input array data starts at.
@@ -0,0 +1,72 @@
+package org.bouncycastle.tls.crypto.impl;
+
+import java.io.IOException;
+
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.TlsFatalAlert;
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.TlsSecret;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * A hybrid {@link TlsAgreement} combining two component agreements, per draft-ietf-tls-hybrid-design. The key
+ * shares are the concatenation of the components' key shares, and the shared secret is the concatenation of the
+ * components' shared secrets.
+ */
+public class TlsHybridAgreement
+    implements TlsAgreement
+{
+    protected final TlsCrypto crypto;
+    protected final TlsAgreement first;
+    protected final TlsAgreement second;
+    protected final int firstPeerValueLength;
+
+    /**
+     * @param crypto the crypto used to create the combined secret.
+     * @param first the first component agreement.
+     * @param second the second component agreement.
+     * @param firstPeerValueLength the (fixed) length of the first component of the peer's key share.
+     */
+    public TlsHybridAgreement(TlsCrypto crypto, TlsAgreement first, TlsAgreement second, int firstPeerValueLength)
+    {
+        this.crypto = crypto;
+        this.first = first;
+        this.second = second;
+        this.firstPeerValueLength = firstPeerValueLength;
+    }
+
+    public byte[] generateEphemeral() throws IOException
+    {
+        return Arrays.concatenate(first.generateEphemeral(), second.generateEphemeral());
+    }
+
+    public void receivePeerValue(byte[] peerValue) throws IOException
+    {
+        if (null == peerValue || peerValue.length <= firstPeerValueLength)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        first.receivePeerValue(Arrays.copyOfRange(peerValue, 0, firstPeerValueLength));
+        second.receivePeerValue(Arrays.copyOfRange(peerValue, firstPeerValueLength, peerValue.length));
+    }
+
+    public TlsSecret calculateSecret() throws IOException
+    {
+        byte[] firstSecret = first.calculateSecret().extract();
+        byte[] secondSecret = second.calculateSecret().extract();
+        byte[] sharedSecret = Arrays.concatenate(firstSecret, secondSecret);
+
+        try
+        {
+            return crypto.createSecret(sharedSecret);
+        }
+        finally
+        {
+            Arrays.fill(firstSecret, (byte)0);
+            Arrays.fill(secondSecret, (byte)0);
+            Arrays.fill(sharedSecret, (byte)0);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.bouncycastle.tls.crypto.impl;
+
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.TlsECConfig;
+import org.bouncycastle.tls.crypto.TlsKemConfig;
+import org.bouncycastle.tls.crypto.TlsKemDomain;
+
+/**
+ * KEM domain for the hybrid named groups, combining a classical (EC)DH agreement from the crypto with a
+ * post-quantum KEM.
+ */
+public class TlsHybridKemDomain
+    implements TlsKemDomain
+{
+    private static final int X25519_POINT_SIZE = 32;
+
+    protected final TlsCrypto crypto;
+    protected final TlsKemConfig config;
+
+    public TlsHybridKemDomain(TlsCrypto crypto, TlsKemConfig kemConfig)
+    {
+        if (NamedGroup.X25519Kyber768Draft00 != kemConfig.getNamedGroup())
+        {
+            throw new IllegalArgumentException("NamedGroup not supported: " + NamedGroup.getText(kemConfig.getNamedGroup()));
+        }
+
+        this.crypto = crypto;
+        this.config = kemConfig;
+    }
+
+    public TlsAgreement createKem()
+    {
+        // draft-tls-westerbaan-xyber768d00: X25519 first, then Kyber768
+        TlsAgreement ecdh = crypto.createECDomain(new TlsECConfig(NamedGroup.x25519)).createECDH();
+        TlsAgreement kem = new TlsKyberAgreement(crypto, KyberParameters.kyber768, config.isServer());
+
+        return new TlsHybridAgreement(crypto, ecdh, kem, X25519_POINT_SIZE);
+    }
+}
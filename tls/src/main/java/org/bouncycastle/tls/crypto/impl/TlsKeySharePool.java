@@ -0,0 +1,284 @@
+package org.bouncycastle.tls.crypto.impl;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsSecret;
+import org.bouncycastle.util.Integers;
+
+/**
+ * A bounded pool of ephemeral key shares, generated ahead of time on a background thread so that the
+ * scalar multiplication for a new (EC)DHE key share is off the handshake's critical path.
+ * <p>
+ * Pooling is disabled until a depth is configured for a named group via {@link #setDepth(int, int)}. Each
+ * precomputed key share is handed out to exactly one agreement and is never reused; when the pool for a group is
+ * empty, agreements just generate their key share on demand as usual. The background thread only runs while at
+ * least one group has a non-zero depth.
+ * </p>
+ */
+public class TlsKeySharePool
+{
+    private final AbstractTlsCrypto crypto;
+
+    // Integer (named group) -> Integer (depth)
+    private final Hashtable depths = new Hashtable();
+    // Integer (named group) -> Vector of PrecomputedAgreement
+    private final Hashtable pools = new Hashtable();
+
+    private volatile boolean enabled = false;
+    private Thread worker = null;
+
+    TlsKeySharePool(AbstractTlsCrypto crypto)
+    {
+        this.crypto = crypto;
+    }
+
+    /**
+     * Set the number of key shares to keep precomputed for a named group.
+     *
+     * @param namedGroup a {@link org.bouncycastle.tls.NamedGroup} value.
+     * @param depth the number of key shares to keep ready, or 0 to disable pooling for this group.
+     * @throws IllegalArgumentException if the depth is negative, or the crypto can't precompute key shares for
+     *                                  the named group.
+     */
+    public synchronized void setDepth(int namedGroup, int depth)
+    {
+        if (depth < 0)
+        {
+            throw new IllegalArgumentException("'depth' cannot be negative");
+        }
+
+        Integer key = Integers.valueOf(namedGroup);
+
+        if (depth == 0)
+        {
+            depths.remove(key);
+            pools.remove(key);
+        }
+        else
+        {
+            if (!depths.containsKey(key) && null == crypto.createKeyShareAgreement(namedGroup))
+            {
+                throw new IllegalArgumentException("key shares cannot be precomputed for named group: " + namedGroup);
+            }
+
+            depths.put(key, Integers.valueOf(depth));
+
+            Vector pool = (Vector)pools.get(key);
+            if (null == pool)
+            {
+                pools.put(key, new Vector(depth));
+            }
+            else if (pool.size() > depth)
+            {
+                pool.setSize(depth);
+            }
+        }
+
+        this.enabled = !depths.isEmpty();
+
+        if (enabled && null == worker)
+        {
+            worker = new Thread(new Worker(), "BCTLS-KeySharePool");
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * @param namedGroup a {@link org.bouncycastle.tls.NamedGroup} value.
+     * @return the configured depth for the named group, or 0 if it isn't pooled.
+     */
+    public synchronized int getDepth(int namedGroup)
+    {
+        Integer depth = (Integer)depths.get(Integers.valueOf(namedGroup));
+        return null == depth ? 0 : depth.intValue();
+    }
+
+    /**
+     * @param namedGroup a {@link org.bouncycastle.tls.NamedGroup} value.
+     * @return the number of precomputed key shares currently ready for the named group.
+     */
+    public synchronized int getAvailable(int namedGroup)
+    {
+        Vector pool = (Vector)pools.get(Integers.valueOf(namedGroup));
+        return null == pool ? 0 : pool.size();
+    }
+
+    /**
+     * Disable pooling for all named groups, discarding any precomputed key shares.
+     */
+    public synchronized void clear()
+    {
+        depths.clear();
+        pools.clear();
+        this.enabled = false;
+
+        notifyAll();
+    }
+
+    /**
+     * Remove a precomputed key share for the named group, if one is ready.
+     *
+     * @param namedGroup a {@link org.bouncycastle.tls.NamedGroup} value.
+     * @return an agreement whose first call to {@link TlsAgreement#generateEphemeral()} returns the precomputed
+     *         key share, or null if none is ready.
+     */
+    public TlsAgreement take(int namedGroup)
+    {
+        if (!enabled)
+        {
+            return null;
+        }
+
+        synchronized (this)
+        {
+            Vector pool = (Vector)pools.get(Integers.valueOf(namedGroup));
+            if (null == pool || pool.isEmpty())
+            {
+                return null;
+            }
+
+            TlsAgreement agreement = (TlsAgreement)pool.remove(0);
+
+            // Wake the worker to replace it
+            notifyAll();
+
+            return agreement;
+        }
+    }
+
+    private synchronized Integer nextGroupToFill() throws InterruptedException
+    {
+        for (;;)
+        {
+            if (depths.isEmpty())
+            {
+                worker = null;
+                return null;
+            }
+
+            // Refill the emptiest pool first, so no group is starved under load
+            Integer next = null;
+            int nextSize = Integer.MAX_VALUE;
+
+            Enumeration keys = depths.keys();
+            while (keys.hasMoreElements())
+            {
+                Integer key = (Integer)keys.nextElement();
+                int depth = ((Integer)depths.get(key)).intValue();
+                int size = ((Vector)pools.get(key)).size();
+
+                if (size < depth && size < nextSize)
+                {
+                    next = key;
+                    nextSize = size;
+                }
+            }
+
+            if (null != next)
+            {
+                return next;
+            }
+
+            wait();
+        }
+    }
+
+    private synchronized void addKeyShare(Integer key, TlsAgreement agreement)
+    {
+        Vector pool = (Vector)pools.get(key);
+        Integer depth = (Integer)depths.get(key);
+
+        // The depth may have changed (or pooling been disabled) while generating
+        if (null != pool && null != depth && pool.size() < depth.intValue())
+        {
+            pool.addElement(agreement);
+        }
+    }
+
+    private synchronized void disable(Integer key)
+    {
+        depths.remove(key);
+        pools.remove(key);
+        this.enabled = !depths.isEmpty();
+    }
+
+    private class Worker
+        implements Runnable
+    {
+        public void run()
+        {
+            try
+            {
+                Integer key;
+                while (null != (key = nextGroupToFill()))
+                {
+                    try
+                    {
+                        TlsAgreement agreement = crypto.createKeyShareAgreement(key.intValue());
+                        byte[] keyShare = agreement.generateEphemeral();
+
+                        addKeyShare(key, new PrecomputedAgreement(agreement, keyShare));
+                    }
+                    catch (IOException e)
+                    {
+                        disable(key);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        disable(key);
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                synchronized (TlsKeySharePool.this)
+                {
+                    worker = null;
+                }
+            }
+        }
+    }
+
+    private static class PrecomputedAgreement
+        implements TlsAgreement
+    {
+        private final TlsAgreement agreement;
+
+        private byte[] keyShare;
+
+        PrecomputedAgreement(TlsAgreement agreement, byte[] keyShare)
+        {
+            this.agreement = agreement;
+            this.keyShare = keyShare;
+        }
+
+        public synchronized byte[] generateEphemeral() throws IOException
+        {
+            byte[] result = keyShare;
+            if (null == result)
+            {
+                return agreement.generateEphemeral();
+            }
+
+            this.keyShare = null;
+            return result;
+        }
+
+        public void receivePeerValue(byte[] peerValue) throws IOException
+        {
+            agreement.receivePeerValue(peerValue);
+        }
+
+        public TlsSecret calculateSecret() throws IOException
+        {
+            return agreement.calculateSecret();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.bouncycastle.tls.crypto.impl;
+
+import java.io.IOException;
+
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.SecretWithEncapsulation;
+import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+import org.bouncycastle.crypto.prng.FixedSecureRandom;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMExtractor;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMGenerator;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyGenerationParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyPairGenerator;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.TlsFatalAlert;
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.TlsSecret;
+import org.bouncycastle.util.Arrays;
+
+/**
+ * Support class for the Kyber KEM, used as a {@link TlsAgreement}, using the BC light-weight library.
+ * <p>
+ * draft-tls-westerbaan-xyber768d00 uses Kyber as of NIST round 3, which differs from the light-weight engine in
+ * hashing the encapsulation coins before use (m = H(m)), and in deriving the shared secret as
+ * KDF(K' || H(c)) rather than using K' directly. Both steps are applied here around the engine.
+ * </p>
+ */
+public class TlsKyberAgreement
+    implements TlsAgreement
+{
+    protected final TlsCrypto crypto;
+    protected final KyberParameters parameters;
+    protected final boolean isServer;
+
+    private KyberPrivateKeyParameters localPrivateKey;
+    private KyberPublicKeyParameters peerPublicKey;
+    private byte[] ciphertext;
+    private byte[] secret;
+
+    public TlsKyberAgreement(TlsCrypto crypto, KyberParameters parameters, boolean isServer)
+    {
+        this.crypto = crypto;
+        this.parameters = parameters;
+        this.isServer = isServer;
+    }
+
+    public byte[] generateEphemeral() throws IOException
+    {
+        if (isServer)
+        {
+            if (null == peerPublicKey)
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
+
+            byte[] coins = new byte[32];
+            crypto.getSecureRandom().nextBytes(coins);
+            hash(coins, coins);
+
+            SecretWithEncapsulation encapsulated = new KyberKEMGenerator(new FixedSecureRandom(coins))
+                .generateEncapsulated(peerPublicKey);
+
+            this.secret = encapsulated.getSecret();
+            this.ciphertext = encapsulated.getEncapsulation();
+            return Arrays.clone(ciphertext);
+        }
+
+        KyberKeyPairGenerator keyPairGenerator = new KyberKeyPairGenerator();
+        keyPairGenerator.init(new KyberKeyGenerationParameters(crypto.getSecureRandom(), parameters));
+        AsymmetricCipherKeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        this.localPrivateKey = (KyberPrivateKeyParameters)keyPair.getPrivate();
+        return ((KyberPublicKeyParameters)keyPair.getPublic()).getEncoded();
+    }
+
+    public void receivePeerValue(byte[] peerValue) throws IOException
+    {
+        if (null == peerValue)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        if (isServer)
+        {
+            if (peerValue.length != getPublicKeyLength(parameters))
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            this.peerPublicKey = new KyberPublicKeyParameters(parameters, peerValue);
+        }
+        else
+        {
+            if (peerValue.length != getCiphertextLength(parameters))
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            this.ciphertext = Arrays.clone(peerValue);
+        }
+    }
+
+    public TlsSecret calculateSecret() throws IOException
+    {
+        byte[] preKey;
+        if (isServer)
+        {
+            preKey = secret;
+            this.secret = null;
+        }
+        else
+        {
+            if (null == localPrivateKey || null == ciphertext)
+            {
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
+
+            preKey = new KyberKEMExtractor(localPrivateKey).extractSecret(ciphertext);
+            this.localPrivateKey = null;
+        }
+
+        if (null == preKey || null == ciphertext)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        byte[] sharedSecret = new byte[32];
+        try
+        {
+            // K = KDF(K' || H(c))
+            byte[] ciphertextHash = new byte[32];
+            hash(ciphertext, ciphertextHash);
+            this.ciphertext = null;
+
+            SHAKEDigest kdf = new SHAKEDigest(256);
+            kdf.update(preKey, 0, preKey.length);
+            kdf.update(ciphertextHash, 0, ciphertextHash.length);
+            kdf.doFinal(sharedSecret, 0, sharedSecret.length);
+
+            return crypto.createSecret(sharedSecret);
+        }
+        finally
+        {
+            Arrays.fill(preKey, (byte)0);
+            Arrays.fill(sharedSecret, (byte)0);
+        }
+    }
+
+    private static void hash(byte[] input, byte[] output)
+    {
+        SHA3Digest digest = new SHA3Digest(256);
+        digest.update(input, 0, input.length);
+        digest.doFinal(output, 0);
+    }
+
+    static int getCiphertextLength(KyberParameters parameters)
+    {
+        if (KyberParameters.kyber512 == parameters)
+        {
+            return 768;
+        }
+        if (KyberParameters.kyber768 == parameters)
+        {
+            return 1088;
+        }
+        if (KyberParameters.kyber1024 == parameters)
+        {
+            return 1568;
+        }
+        throw new IllegalArgumentException("unknown Kyber parameters: " + parameters.getName());
+    }
+
+    static int getPublicKeyLength(KyberParameters parameters)
+    {
+        if (KyberParameters.kyber512 == parameters)
+        {
+            return 800;
+        }
+        if (KyberParameters.kyber768 == parameters)
+        {
+            return 1184;
+        }
+        if (KyberParameters.kyber1024 == parameters)
+        {
+            return 1568;
+        }
+        throw new IllegalArgumentException("unknown Kyber parameters: " + parameters.getName());
+    }
+}
@@ -0,0 +1,52 @@
+package org.bouncycastle.tls.crypto.impl;
+
+import java.io.IOException;
+
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.TlsFatalAlert;
+import org.bouncycastle.tls.crypto.TlsAEAD;
+
+/**
+ * A {@link TlsAEAD} over a {@link TlsAEADCipherImpl} whose key is set once, at construction.
+ */
+public class TlsStaticKeyAEAD
+    implements TlsAEAD
+{
+    protected final TlsAEADCipherImpl cipher;
+    protected final int macSize;
+    protected final boolean isEncrypting;
+
+    public TlsStaticKeyAEAD(TlsAEADCipherImpl cipher, byte[] key, int macSize, boolean isEncrypting)
+        throws IOException
+    {
+        cipher.setKey(key, 0, key.length);
+
+        this.cipher = cipher;
+        this.macSize = macSize;
+        this.isEncrypting = isEncrypting;
+    }
+
+    public int getOutputSize(int inputLength)
+    {
+        return isEncrypting ? inputLength + macSize : Math.max(0, inputLength - macSize);
+    }
+
+    public byte[] doFinal(byte[] nonce, byte[] additionalData, byte[] input, int inputOffset, int inputLength)
+        throws IOException
+    {
+        if (!isEncrypting && inputLength < macSize)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_record_mac);
+        }
+
+        cipher.init(nonce, macSize);
+
+        byte[] output = new byte[cipher.getOutputSize(inputLength)];
+        int outputLength = cipher.doFinal(additionalData, input, inputOffset, inputLength, output, 0);
+        if (outputLength != output.length)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+        return output;
+    }
+}
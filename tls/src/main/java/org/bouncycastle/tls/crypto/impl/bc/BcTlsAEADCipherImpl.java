@@ -18,6 +18,7 @@
     private final AEADBlockCipher cipher;
 
     private KeyParameter key;
+    private boolean keyChanged;
 
     BcTlsAEADCipherImpl(AEADBlockCipher cipher, boolean isEncrypting)
     {
@@ -28,11 +29,17 @@
     public void setKey(byte[] key, int keyOff, int keyLen)
     {
         this.key = new KeyParameter(key, keyOff, keyLen);
+        this.keyChanged = true;
     }
 
     public void init(byte[] nonce, int macSize)
     {
-        cipher.init(isEncrypting, new AEADParameters(key, macSize * 8, nonce, null));
+        /*
+         * Only pass the key on when it has changed, so the mode doesn't redo its key setup (e.g. the GCM hash
+         * key) for every record.
+         */
+        cipher.init(isEncrypting, new AEADParameters(keyChanged ? key : null, macSize * 8, nonce, null));
+        this.keyChanged = false;
     }
 
     public int getOutputSize(int inputLength)
@@ -44,6 +44,8 @@
 import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.tls.crypto.CryptoHashAlgorithm;
 import org.bouncycastle.tls.crypto.CryptoSignatureAlgorithm;
+import org.bouncycastle.tls.crypto.TlsAEAD;
+import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsCertificate;
 import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsCryptoParameters;
@@ -54,6 +56,8 @@
 import org.bouncycastle.tls.crypto.TlsECDomain;
 import org.bouncycastle.tls.crypto.TlsHMAC;
 import org.bouncycastle.tls.crypto.TlsHash;
+import org.bouncycastle.tls.crypto.TlsKemConfig;
+import org.bouncycastle.tls.crypto.TlsKemDomain;
 import org.bouncycastle.tls.crypto.TlsNonceGenerator;
 import org.bouncycastle.tls.crypto.TlsSRP6Client;
 import org.bouncycastle.tls.crypto.TlsSRP6Server;
@@ -63,8 +67,10 @@
 import org.bouncycastle.tls.crypto.impl.AbstractTlsCrypto;
 import org.bouncycastle.tls.crypto.impl.TlsAEADCipher;
 import org.bouncycastle.tls.crypto.impl.TlsBlockCipher;
+import org.bouncycastle.tls.crypto.impl.TlsHybridKemDomain;
 import org.bouncycastle.tls.crypto.impl.TlsImplUtils;
 import org.bouncycastle.tls.crypto.impl.TlsNullCipher;
+import org.bouncycastle.tls.crypto.impl.TlsStaticKeyAEAD;
 import org.bouncycastle.util.Arrays;
 
 /**
@@ -193,6 +199,21 @@ public TlsCipher createCipher(TlsCryptoParameters cryptoParams, int encryptionAl
         }
     }
 
+    public TlsAEAD createAEAD(int encryptionAlgorithm, byte[] key, boolean isEncrypting) throws IOException
+    {
+        switch (encryptionAlgorithm)
+        {
+        case EncryptionAlgorithm.AES_128_GCM:
+        case EncryptionAlgorithm.AES_256_GCM:
+            return new TlsStaticKeyAEAD(new BcTlsAEADCipherImpl(createAEADBlockCipher_AES_GCM(), isEncrypting), key,
+                16, isEncrypting);
+        case EncryptionAlgorithm.CHACHA20_POLY1305:
+            return new TlsStaticKeyAEAD(new BcChaCha20Poly1305(isEncrypting), key, 16, isEncrypting);
+        default:
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+    }
+
     public TlsDHDomain createDHDomain(TlsDHConfig dhConfig)
     {
         return new BcTlsDHDomain(this, dhConfig);
@@ -211,6 +232,29 @@ public TlsECDomain createECDomain(TlsECConfig ecConfig)
         }
     }
 
+    public TlsKemDomain createKemDomain(TlsKemConfig kemConfig)
+    {
+        return new TlsHybridKemDomain(this, kemConfig);
+    }
+
+    protected TlsAgreement createKeyShareAgreement(int namedGroup)
+    {
+        if (!NamedGroup.refersToAnECDHCurve(namedGroup) || !hasNamedGroup(namedGroup))
+        {
+            return null;
+        }
+
+        switch (namedGroup)
+        {
+        case NamedGroup.x25519:
+            return new BcX25519(this);
+        case NamedGroup.x448:
+            return new BcX448(this);
+        default:
+            return new BcTlsECDH(new BcTlsECDomain(this, new TlsECConfig(namedGroup)));
+        }
+    }
+
     public TlsNonceGenerator createNonceGenerator(byte[] additionalSeedMaterial)
     {
         int cryptoHashAlgorithm = CryptoHashAlgorithm.sha256;
@@ -304,6 +348,11 @@ public boolean hasECDHAgreement()
         return true;
     }
 
+    public boolean hasKemAgreement()
+    {
+        return true;
+    }
+
     public boolean hasEncryptionAlgorithm(int encryptionAlgorithm)
     {
         switch (encryptionAlgorithm)
@@ -90,7 +90,8 @@ public BcTlsSecret calculateECDHAgreement(ECPrivateKeyParameters privateKey, ECP
 
     public TlsAgreement createECDH()
     {
-        return new BcTlsECDH(this);
+        TlsAgreement precomputed = crypto.getKeySharePool().take(config.getNamedGroup());
+        return null != precomputed ? precomputed : new BcTlsECDH(this);
     }
 
     public ECPoint decodePoint(byte[] encoding)
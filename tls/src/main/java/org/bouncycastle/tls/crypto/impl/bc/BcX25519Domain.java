@@ -1,5 +1,6 @@
 package org.bouncycastle.tls.crypto.impl.bc;
 
+import org.bouncycastle.tls.NamedGroup;
 import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsECDomain;
 
@@ -14,6 +15,7 @@ public BcX25519Domain(BcTlsCrypto crypto)
 
     public TlsAgreement createECDH()
     {
-        return new BcX25519(crypto);
+        TlsAgreement precomputed = crypto.getKeySharePool().take(NamedGroup.x25519);
+        return null != precomputed ? precomputed : new BcX25519(crypto);
     }
 }
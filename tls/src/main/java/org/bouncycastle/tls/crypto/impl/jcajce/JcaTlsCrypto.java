@@ -37,6 +37,8 @@
 import org.bouncycastle.tls.crypto.CryptoSignatureAlgorithm;
 import org.bouncycastle.tls.crypto.SRP6Group;
 import org.bouncycastle.tls.crypto.Tls13Verifier;
+import org.bouncycastle.tls.crypto.TlsAEAD;
+import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsCertificate;
 import org.bouncycastle.tls.crypto.TlsCipher;
 import org.bouncycastle.tls.crypto.TlsCryptoException;
@@ -48,6 +50,8 @@
 import org.bouncycastle.tls.crypto.TlsECDomain;
 import org.bouncycastle.tls.crypto.TlsHMAC;
 import org.bouncycastle.tls.crypto.TlsHash;
+import org.bouncycastle.tls.crypto.TlsKemConfig;
+import org.bouncycastle.tls.crypto.TlsKemDomain;
 import org.bouncycastle.tls.crypto.TlsNonceGenerator;
 import org.bouncycastle.tls.crypto.TlsSRP6Client;
 import org.bouncycastle.tls.crypto.TlsSRP6Server;
@@ -61,8 +65,10 @@
 import org.bouncycastle.tls.crypto.impl.TlsAEADCipherImpl;
 import org.bouncycastle.tls.crypto.impl.TlsBlockCipher;
 import org.bouncycastle.tls.crypto.impl.TlsBlockCipherImpl;
+import org.bouncycastle.tls.crypto.impl.TlsHybridKemDomain;
 import org.bouncycastle.tls.crypto.impl.TlsImplUtils;
 import org.bouncycastle.tls.crypto.impl.TlsNullCipher;
+import org.bouncycastle.tls.crypto.impl.TlsStaticKeyAEAD;
 import org.bouncycastle.tls.crypto.impl.jcajce.srp.SRP6Client;
 import org.bouncycastle.tls.crypto.impl.jcajce.srp.SRP6Server;
 import org.bouncycastle.tls.crypto.impl.jcajce.srp.SRP6VerifierGenerator;
@@ -251,6 +257,29 @@ public TlsCipher createCipher(TlsCryptoParameters cryptoParams, int encryptionAl
         }
     }
 
+    public TlsAEAD createAEAD(int encryptionAlgorithm, byte[] key, boolean isEncrypting) throws IOException
+    {
+        try
+        {
+            switch (encryptionAlgorithm)
+            {
+            case EncryptionAlgorithm.AES_128_GCM:
+            case EncryptionAlgorithm.AES_256_GCM:
+                return new TlsStaticKeyAEAD(createAEADCipher("AES/GCM/NoPadding", "AES", key.length, isEncrypting), key,
+                    16, isEncrypting);
+            case EncryptionAlgorithm.CHACHA20_POLY1305:
+                return new TlsStaticKeyAEAD(new JceChaCha20Poly1305(this, helper, isEncrypting), key, 16,
+                    isEncrypting);
+            default:
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+            }
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new TlsCryptoException("cannot create AEAD cipher: " + e.getMessage(), e);
+        }
+    }
+
     public TlsHMAC createHMAC(int macAlgorithm)
     {
         switch (macAlgorithm)
@@ -436,6 +465,15 @@ else if (NamedGroup.refersToASpecificFiniteField(namedGroup))
         {
             return DHUtil.getAlgorithmParameters(this, TlsDHUtils.getNamedDHGroup(namedGroup));
         }
+        else if (NamedGroup.refersToASpecificHybrid(namedGroup))
+        {
+            switch (namedGroup)
+            {
+            // NOTE: As for XDH, there are no AlgorithmParameters for the hybrid groups
+            case NamedGroup.X25519Kyber768Draft00:
+                return null;
+            }
+        }
 
         throw new IllegalArgumentException("NamedGroup not supported: " + NamedGroup.getText(namedGroup));
     }
@@ -560,6 +598,11 @@ public boolean hasECDHAgreement()
         return true;
     }
 
+    public boolean hasKemAgreement()
+    {
+        return true;
+    }
+
     public boolean hasEncryptionAlgorithm(int encryptionAlgorithm)
     {
         final Integer key = Integers.valueOf(encryptionAlgorithm);
@@ -824,6 +867,29 @@ public TlsECDomain createECDomain(TlsECConfig ecConfig)
         }
     }
 
+    public TlsKemDomain createKemDomain(TlsKemConfig kemConfig)
+    {
+        return new TlsHybridKemDomain(this, kemConfig);
+    }
+
+    protected TlsAgreement createKeyShareAgreement(int namedGroup)
+    {
+        if (!NamedGroup.refersToAnECDHCurve(namedGroup) || !hasNamedGroup(namedGroup))
+        {
+            return null;
+        }
+
+        switch (namedGroup)
+        {
+        case NamedGroup.x25519:
+            return new JceX25519(new JceX25519Domain(this));
+        case NamedGroup.x448:
+            return new JceX448(new JceX448Domain(this));
+        default:
+            return new JceTlsECDH(new JceTlsECDomain(this, new TlsECConfig(namedGroup)));
+        }
+    }
+
     public TlsSecret hkdfInit(int cryptoHashAlgorithm)
     {
         return adoptLocalSecret(new byte[TlsCryptoUtils.getHashOutputSize(cryptoHashAlgorithm)]);
@@ -1156,6 +1222,15 @@ else if (NamedGroup.refersToASpecificFiniteField(namedGroup))
             {
                 return Boolean.valueOf(DHUtil.isGroupSupported(this, TlsDHUtils.getNamedDHGroup(namedGroup)));
             }
+            else if (NamedGroup.refersToASpecificHybrid(namedGroup))
+            {
+                // NOTE: The KEM component uses the BC light-weight library, so only the classical part is checked
+                switch (namedGroup)
+                {
+                case NamedGroup.X25519Kyber768Draft00:
+                    return Boolean.valueOf(hasNamedGroup(NamedGroup.x25519));
+                }
+            }
         }
         catch (GeneralSecurityException e)
         {
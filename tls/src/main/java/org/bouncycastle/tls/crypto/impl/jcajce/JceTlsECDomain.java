@@ -76,7 +76,8 @@ public JceTlsSecret calculateECDHAgreement(PrivateKey privateKey, PublicKey publ
 
     public TlsAgreement createECDH()
     {
-        return new JceTlsECDH(this);
+        TlsAgreement precomputed = crypto.getKeySharePool().take(ecConfig.getNamedGroup());
+        return null != precomputed ? precomputed : new JceTlsECDH(this);
     }
 
     public ECPoint decodePoint(byte[] encoding)
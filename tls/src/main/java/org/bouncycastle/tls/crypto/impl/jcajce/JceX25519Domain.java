@@ -9,6 +9,7 @@
 
 import org.bouncycastle.asn1.edec.EdECObjectIdentifiers;
 import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.NamedGroup;
 import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.crypto.TlsAgreement;
 import org.bouncycastle.tls.crypto.TlsCryptoException;
@@ -50,7 +51,8 @@ public JceTlsSecret calculateECDHAgreement(PrivateKey privateKey, PublicKey publ
 
     public TlsAgreement createECDH()
     {
-        return new JceX25519(this);
+        TlsAgreement precomputed = crypto.getKeySharePool().take(NamedGroup.x25519);
+        return null != precomputed ? precomputed : new JceX25519(this);
     }
 
     public PublicKey decodePublicKey(byte[] encoding) throws IOException
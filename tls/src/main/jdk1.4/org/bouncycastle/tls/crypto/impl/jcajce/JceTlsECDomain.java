@@ -71,7 +71,8 @@ public JceTlsSecret calculateECDHAgreement(ECPrivateKey privateKey, ECPublicKey
 
     public TlsAgreement createECDH()
     {
-        return new JceTlsECDH(this);
+        TlsAgreement precomputed = crypto.getKeySharePool().take(ecConfig.getNamedGroup());
+        return null != precomputed ? precomputed : new JceTlsECDH(this);
     }
 
     public ECPoint decodePoint(byte[] encoding)
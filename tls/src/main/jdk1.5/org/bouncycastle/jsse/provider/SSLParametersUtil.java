@@ -84,6 +84,7 @@ static BCSSLParameters getParameters(ProvSSLParameters prov)
         ssl.setMaximumPacketSize(prov.getMaximumPacketSize());
         ssl.setSignatureSchemes(prov.getSignatureSchemes());
         ssl.setNamedGroups(prov.getNamedGroups());
+        ssl.setMaxEarlyDataSize(prov.getMaxEarlyDataSize());
 
         return ssl;
     }
@@ -342,6 +343,8 @@ static void setParameters(ProvSSLParameters prov, BCSSLParameters ssl)
         prov.setSignatureSchemes(ssl.getSignatureSchemes());
 
         prov.setNamedGroups(ssl.getNamedGroups());
+
+        prov.setMaxEarlyDataSize(ssl.getMaxEarlyDataSize());
     }
 
     static void setSSLParameters(ProvSSLParameters prov, SSLParameters ssl)
@@ -55,6 +55,7 @@ static BCSSLParameters getParameters(ProvSSLParameters prov)
         ssl.setMaximumPacketSize(prov.getMaximumPacketSize());
         ssl.setSignatureSchemes(prov.getSignatureSchemes());
         ssl.setNamedGroups(prov.getNamedGroups());
+        ssl.setMaxEarlyDataSize(prov.getMaxEarlyDataSize());
 
         return ssl;
     }
@@ -280,6 +281,8 @@ static void setParameters(ProvSSLParameters prov, BCSSLParameters ssl)
         prov.setSignatureSchemes(ssl.getSignatureSchemes());
 
         prov.setNamedGroups(ssl.getNamedGroups());
+
+        prov.setMaxEarlyDataSize(ssl.getMaxEarlyDataSize());
     }
 
     static void setSSLParameters(ProvSSLParameters prov, SSLParameters ssl)
@@ -28,8 +28,10 @@ public static Test suite()
         suite.addTestSuite(InstanceTest.class);
         suite.addTestSuite(KeyManagerFactoryTest.class);
         suite.addTestSuite(PSSCredentialsTest.class);
+        suite.addTestSuite(SSLEngineDelegatedTaskTest.class);
         suite.addTestSuite(SSLServerSocketTest.class);
         suite.addTestSuite(SSLSocketTest.class);
+        suite.addTestSuite(SSLSessionContextTest.class);
 
         if (hasClass("javax.net.ssl.CertPathTrustManagerParameters"))
         {
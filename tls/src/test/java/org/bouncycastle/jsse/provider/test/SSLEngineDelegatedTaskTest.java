@@ -0,0 +1,215 @@
+package org.bouncycastle.jsse.provider.test;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Strings;
+
+import junit.framework.TestCase;
+
+public class SSLEngineDelegatedTaskTest
+    extends TestCase
+{
+    private static final String PROPERTY_NAME = "org.bouncycastle.jsse.engine.delegateHandshakeTasks";
+
+    private String savedProperty;
+
+    private SSLContext clientContext;
+    private SSLContext serverContext;
+
+    private int tasksRun;
+
+    protected void setUp() throws Exception
+    {
+        ProviderUtils.setupHighPriority(false);
+
+        this.savedProperty = System.getProperty(PROPERTY_NAME);
+        System.setProperty(PROPERTY_NAME, "true");
+
+        createContexts();
+    }
+
+    protected void tearDown()
+    {
+        if (null == savedProperty)
+        {
+            System.clearProperty(PROPERTY_NAME);
+        }
+        else
+        {
+            System.setProperty(PROPERTY_NAME, savedProperty);
+        }
+    }
+
+    public void testDelegatedTasksTLSv12() throws Exception
+    {
+        implTestDelegatedTasks("TLSv1.2");
+    }
+
+    public void testDelegatedTasksTLSv13() throws Exception
+    {
+        implTestDelegatedTasks("TLSv1.3");
+    }
+
+    public void testCloseWithPendingTask() throws Exception
+    {
+        SSLEngine clientEngine = createClientEngine("TLSv1.3");
+        SSLEngine serverEngine = createServerEngine("TLSv1.3");
+
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        ByteBuffer clientToServer = ByteBuffer.allocate(clientEngine.getSession().getPacketBufferSize());
+        ByteBuffer serverIn = ByteBuffer.allocate(serverEngine.getSession().getApplicationBufferSize());
+
+        clientEngine.wrap(empty, clientToServer);
+        ((java.nio.Buffer)clientToServer).flip();
+
+        SSLEngineResult result = serverEngine.unwrap(clientToServer, serverIn);
+        assertEquals(HandshakeStatus.NEED_TASK, result.getHandshakeStatus());
+        assertEquals(HandshakeStatus.NEED_TASK, serverEngine.getHandshakeStatus());
+
+        // The task was never handed out, so closing just drops it
+        serverEngine.closeOutbound();
+        assertNull(serverEngine.getDelegatedTask());
+        assertTrue(serverEngine.isOutboundDone());
+    }
+
+    private void implTestDelegatedTasks(String protocol) throws Exception
+    {
+        SSLEngine clientEngine = createClientEngine(protocol);
+        SSLEngine serverEngine = createServerEngine(protocol);
+
+        int netBufSize = clientEngine.getSession().getPacketBufferSize();
+        int appBufSize = clientEngine.getSession().getApplicationBufferSize();
+
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        ByteBuffer clientToServer = ByteBuffer.allocate(netBufSize);
+        ByteBuffer serverToClient = ByteBuffer.allocate(netBufSize);
+        ByteBuffer clientIn = ByteBuffer.allocate(appBufSize);
+        ByteBuffer serverIn = ByteBuffer.allocate(appBufSize);
+
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+
+        this.tasksRun = 0;
+
+        for (int i = 0; i < 100 && (isHandshaking(clientEngine) || isHandshaking(serverEngine)); ++i)
+        {
+            runDelegatedTasks(clientEngine, clientEngine.wrap(empty, clientToServer));
+            runDelegatedTasks(serverEngine, serverEngine.wrap(empty, serverToClient));
+
+            ((java.nio.Buffer)clientToServer).flip();
+            ((java.nio.Buffer)serverToClient).flip();
+
+            runDelegatedTasks(clientEngine, clientEngine.unwrap(serverToClient, clientIn));
+            runDelegatedTasks(serverEngine, serverEngine.unwrap(clientToServer, serverIn));
+
+            clientToServer.compact();
+            serverToClient.compact();
+        }
+
+        assertFalse(isHandshaking(clientEngine));
+        assertFalse(isHandshaking(serverEngine));
+        assertTrue(tasksRun > 0);
+        assertEquals(protocol, clientEngine.getSession().getProtocol());
+
+        // Application data still flows normally once connected
+        byte[] message = Strings.toByteArray("Hello");
+        clientEngine.wrap(ByteBuffer.wrap(message), clientToServer);
+        ((java.nio.Buffer)clientToServer).flip();
+
+        do
+        {
+            serverEngine.unwrap(clientToServer, serverIn);
+        }
+        while (serverIn.position() == 0 && clientToServer.hasRemaining());
+
+        ((java.nio.Buffer)serverIn).flip();
+        byte[] received = new byte[serverIn.remaining()];
+        serverIn.get(received);
+        assertTrue(Arrays.areEqual(message, received));
+    }
+
+    private void createContexts() throws Exception
+    {
+        KeyPair keyPair = TestUtils.generateECKeyPair();
+        X509Certificate cert = TestUtils.generateRootCert(keyPair);
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", keyPair.getPrivate(), "password".toCharArray(), new X509Certificate[]{ cert });
+
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("server", cert);
+
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance("PKIX", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        kmf.init(keyStore, "password".toCharArray());
+
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance("PKIX", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        tmf.init(trustStore);
+
+        this.serverContext = SSLContext.getInstance("TLS", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        serverContext.init(kmf.getKeyManagers(), null, null);
+
+        this.clientContext = SSLContext.getInstance("TLS", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        clientContext.init(null, tmf.getTrustManagers(), null);
+    }
+
+    private SSLEngine createClientEngine(String protocol)
+    {
+        SSLEngine engine = clientContext.createSSLEngine("localhost", 443);
+        engine.setEnabledProtocols(new String[]{ protocol });
+        engine.setUseClientMode(true);
+        return engine;
+    }
+
+    private SSLEngine createServerEngine(String protocol)
+    {
+        SSLEngine engine = serverContext.createSSLEngine();
+        engine.setEnabledProtocols(new String[]{ protocol });
+        engine.setUseClientMode(false);
+        return engine;
+    }
+
+    private static boolean isHandshaking(SSLEngine engine)
+    {
+        HandshakeStatus status = engine.getHandshakeStatus();
+        return HandshakeStatus.NOT_HANDSHAKING != status && HandshakeStatus.FINISHED != status;
+    }
+
+    /*
+     * Runs each task on a separate thread, as an application offloading them to a worker pool would.
+     */
+    private void runDelegatedTasks(SSLEngine engine, SSLEngineResult result) throws Exception
+    {
+        if (HandshakeStatus.NEED_TASK != result.getHandshakeStatus())
+        {
+            return;
+        }
+
+        Runnable runnable;
+        while ((runnable = engine.getDelegatedTask()) != null)
+        {
+            Thread worker = new Thread(runnable);
+            worker.start();
+
+            // The engine reports NEED_TASK until the task completes
+            assertNull(engine.getDelegatedTask());
+
+            worker.join();
+            ++tasksRun;
+        }
+
+        assertTrue(HandshakeStatus.NEED_TASK != engine.getHandshakeStatus());
+    }
+}
@@ -0,0 +1,212 @@
+package org.bouncycastle.jsse.provider.test;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.bouncycastle.jsse.BCSSLSessionContextMXBean;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class SSLSessionContextTest
+    extends TestCase
+{
+    protected void setUp()
+    {
+        ProviderUtils.setupHighPriority(false);
+    }
+
+    private static final String HOST = "localhost";
+
+    private SSLContext clientContext;
+    private SSLContext serverContext;
+
+    public void testResumptionCounters() throws Exception
+    {
+        createContexts();
+
+        BCSSLSessionContextMXBean clientStats = getStats(clientContext.getClientSessionContext());
+        BCSSLSessionContextMXBean serverStats = getStats(serverContext.getServerSessionContext());
+
+        SSLSession first = handshake(443);
+        assertEquals(0L, clientStats.getHitCount());
+        assertEquals(1L, clientStats.getMissCount());
+        assertEquals(1, clientStats.getCachedSessionCount());
+        assertEquals(1, serverStats.getCachedSessionCount());
+
+        SSLSession second = handshake(443);
+        assertTrue(Arrays.areEqual(first.getId(), second.getId()));
+        assertEquals(1L, clientStats.getHitCount());
+        assertEquals(1L, serverStats.getHitCount());
+        assertEquals(1, clientStats.getCachedSessionCount());
+        assertEquals(1, serverStats.getCachedSessionCount());
+
+        SSLSession cached = clientContext.getClientSessionContext().getSession(first.getId());
+        assertNotNull(cached);
+        assertTrue(Arrays.areEqual(first.getId(), cached.getId()));
+    }
+
+    public void testSessionCacheSize() throws Exception
+    {
+        createContexts();
+
+        SSLSessionContext sessionContext = clientContext.getClientSessionContext();
+        BCSSLSessionContextMXBean clientStats = getStats(sessionContext);
+
+        for (int port = 1; port <= 5; ++port)
+        {
+            handshake(port);
+        }
+        assertEquals(5, clientStats.getCachedSessionCount());
+        assertEquals(5, Collections.list(sessionContext.getIds()).size());
+
+        // Port 1 becomes the most recently used
+        SSLSession resumed = handshake(1);
+        assertEquals(1L, clientStats.getHitCount());
+
+        sessionContext.setSessionCacheSize(2);
+        assertEquals(2, sessionContext.getSessionCacheSize());
+        assertEquals(2, clientStats.getCachedSessionCount());
+        assertEquals(3L, clientStats.getEvictionCount());
+        assertNotNull(sessionContext.getSession(resumed.getId()));
+
+        // New sessions still respect the limit, evicting the least recently used
+        handshake(6);
+        assertEquals(2, clientStats.getCachedSessionCount());
+        assertEquals(4L, clientStats.getEvictionCount());
+        assertNotNull(sessionContext.getSession(resumed.getId()));
+
+        sessionContext.setSessionCacheSize(0);
+        for (int port = 7; port <= 9; ++port)
+        {
+            handshake(port);
+        }
+        assertEquals(5, clientStats.getCachedSessionCount());
+    }
+
+    public void testSessionTimeout() throws Exception
+    {
+        createContexts();
+
+        SSLSessionContext sessionContext = clientContext.getClientSessionContext();
+        BCSSLSessionContextMXBean clientStats = getStats(sessionContext);
+
+        SSLSession session = handshake(443);
+        assertEquals(1, clientStats.getCachedSessionCount());
+
+        Thread.sleep(1100L);
+        sessionContext.setSessionTimeout(1);
+
+        assertEquals(0, clientStats.getCachedSessionCount());
+        assertNull(sessionContext.getSession(session.getId()));
+        assertFalse(session.isValid());
+    }
+
+    private void createContexts() throws Exception
+    {
+        KeyPair keyPair = TestUtils.generateECKeyPair();
+        X509Certificate cert = TestUtils.generateRootCert(keyPair);
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", keyPair.getPrivate(), "password".toCharArray(), new X509Certificate[]{ cert });
+
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("server", cert);
+
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance("PKIX", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        kmf.init(keyStore, "password".toCharArray());
+
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance("PKIX", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        tmf.init(trustStore);
+
+        this.serverContext = SSLContext.getInstance("TLS", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        serverContext.init(kmf.getKeyManagers(), null, null);
+
+        this.clientContext = SSLContext.getInstance("TLS", ProviderUtils.PROVIDER_NAME_BCJSSE);
+        clientContext.init(null, tmf.getTrustManagers(), null);
+    }
+
+    private static BCSSLSessionContextMXBean getStats(SSLSessionContext sessionContext)
+    {
+        assertTrue(sessionContext instanceof BCSSLSessionContextMXBean);
+        return (BCSSLSessionContextMXBean)sessionContext;
+    }
+
+    private SSLSession handshake(int port) throws Exception
+    {
+        // NOTE: Session IDs are used for resumption in TLS 1.2
+        SSLEngine clientEngine = clientContext.createSSLEngine(HOST, port);
+        clientEngine.setEnabledProtocols(new String[]{ "TLSv1.2" });
+        clientEngine.setUseClientMode(true);
+
+        SSLEngine serverEngine = serverContext.createSSLEngine();
+        serverEngine.setEnabledProtocols(new String[]{ "TLSv1.2" });
+        serverEngine.setUseClientMode(false);
+
+        int netBufSize = clientEngine.getSession().getPacketBufferSize();
+        int appBufSize = clientEngine.getSession().getApplicationBufferSize();
+
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        ByteBuffer clientToServer = ByteBuffer.allocate(netBufSize);
+        ByteBuffer serverToClient = ByteBuffer.allocate(netBufSize);
+        ByteBuffer clientIn = ByteBuffer.allocate(appBufSize);
+        ByteBuffer serverIn = ByteBuffer.allocate(appBufSize);
+
+        clientEngine.beginHandshake();
+        serverEngine.beginHandshake();
+
+        for (int i = 0; i < 100 && (isHandshaking(clientEngine) || isHandshaking(serverEngine)); ++i)
+        {
+            runDelegatedTasks(clientEngine, clientEngine.wrap(empty, clientToServer));
+            runDelegatedTasks(serverEngine, serverEngine.wrap(empty, serverToClient));
+
+            ((java.nio.Buffer)clientToServer).flip();
+            ((java.nio.Buffer)serverToClient).flip();
+
+            runDelegatedTasks(clientEngine, clientEngine.unwrap(serverToClient, clientIn));
+            runDelegatedTasks(serverEngine, serverEngine.unwrap(clientToServer, serverIn));
+
+            clientToServer.compact();
+            serverToClient.compact();
+        }
+
+        assertFalse(isHandshaking(clientEngine));
+        assertFalse(isHandshaking(serverEngine));
+
+        return clientEngine.getSession();
+    }
+
+    private static boolean isHandshaking(SSLEngine engine)
+    {
+        HandshakeStatus status = engine.getHandshakeStatus();
+        return HandshakeStatus.NOT_HANDSHAKING != status && HandshakeStatus.FINISHED != status;
+    }
+
+    private static void runDelegatedTasks(SSLEngine engine, SSLEngineResult result)
+    {
+        if (HandshakeStatus.NEED_TASK != result.getHandshakeStatus())
+        {
+            return;
+        }
+
+        Runnable runnable;
+        while ((runnable = engine.getDelegatedTask()) != null)
+        {
+            runnable.run();
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package org.bouncycastle.tls.crypto.test;
 
-import java.security.SecureRandom;
-
+import org.bouncycastle.crypto.prng.FixedSecureRandom;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.tls.crypto.TlsSecret;
+import org.bouncycastle.tls.crypto.impl.TlsKyberAgreement;
 import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.encoders.Hex;
 
 public class BcTlsCryptoTest
     extends TlsCryptoTest
@@ -11,4 +15,33 @@ public BcTlsCryptoTest()
     {
         super(new BcTlsCrypto());
     }
+
+    public void testKyberKnownAnswer() throws Exception
+    {
+        /*
+         * Kyber768 round 3 KAT (PQCkemKAT_2400.rsp), count = 0. The random data is the first three 32-byte outputs
+         * of the KAT's DRBG, i.e. d and z for the key pair, then m (before hashing) for encapsulation.
+         */
+        byte[] random = Hex.decode(
+            "7c9935a0b07694aa0c6d10e4db6b1add2fd81a25ccb148032dcd739936737f2d"
+            + "8626ed79d451140800e03b59b956f8210e556067407d13dc90fa9e8b872bfb8f"
+            + "147c03f7a5bebba406c8fae1874d7f13c80efe79a3a9a874cc09fe76f6997615");
+        byte[] expectedSecret = Hex.decode("914cb67fe5c38e73bf74181c0ac50428dedf7750a98058f7d536708774535b29");
+
+        BcTlsCrypto katCrypto = new BcTlsCrypto(new FixedSecureRandom(random));
+
+        TlsKyberAgreement client = new TlsKyberAgreement(katCrypto, KyberParameters.kyber768, false);
+        TlsKyberAgreement server = new TlsKyberAgreement(katCrypto, KyberParameters.kyber768, true);
+
+        server.receivePeerValue(client.generateEphemeral());
+        client.receivePeerValue(server.generateEphemeral());
+
+        assertTrue(Arrays.areEqual(expectedSecret, extract(katCrypto, server.calculateSecret())));
+        assertTrue(Arrays.areEqual(expectedSecret, extract(katCrypto, client.calculateSecret())));
+    }
+
+    private static byte[] extract(BcTlsCrypto crypto, TlsSecret secret)
+    {
+        return crypto.adoptSecret(secret).extract();
+    }
 }
@@ -4,6 +4,7 @@
 import java.io.OutputStream;
 import java.math.BigInteger;
 
+import org.bouncycastle.tls.AlertDescription;
 import org.bouncycastle.tls.CombinedHash;
 import org.bouncycastle.tls.DefaultTlsDHGroupVerifier;
 import org.bouncycastle.tls.DigitallySigned;
@@ -15,6 +16,7 @@
 import org.bouncycastle.tls.SignatureScheme;
 import org.bouncycastle.tls.TlsCredentialedSigner;
 import org.bouncycastle.tls.TlsDHUtils;
+import org.bouncycastle.tls.TlsFatalAlert;
 import org.bouncycastle.tls.TlsUtils;
 import org.bouncycastle.tls.crypto.CryptoHashAlgorithm;
 import org.bouncycastle.tls.crypto.DHGroup;
@@ -29,10 +31,14 @@
 import org.bouncycastle.tls.crypto.TlsECConfig;
 import org.bouncycastle.tls.crypto.TlsECDomain;
 import org.bouncycastle.tls.crypto.TlsHash;
+import org.bouncycastle.tls.crypto.TlsKemConfig;
+import org.bouncycastle.tls.crypto.TlsKemDomain;
 import org.bouncycastle.tls.crypto.TlsSecret;
 import org.bouncycastle.tls.crypto.TlsStreamSigner;
 import org.bouncycastle.tls.crypto.TlsStreamVerifier;
 import org.bouncycastle.tls.crypto.TlsVerifier;
+import org.bouncycastle.tls.crypto.impl.AbstractTlsCrypto;
+import org.bouncycastle.tls.crypto.impl.TlsKeySharePool;
 import org.bouncycastle.tls.test.TlsTestUtils;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
@@ -260,6 +266,117 @@ public void testECDomain() throws Exception
         }
     }
 
+    public void testKemDomain() throws Exception
+    {
+        if (!crypto.hasKemAgreement() || !crypto.hasNamedGroup(NamedGroup.X25519Kyber768Draft00))
+        {
+            return;
+        }
+
+        TlsKemDomain clientDomain = crypto.createKemDomain(
+            new TlsKemConfig(NamedGroup.X25519Kyber768Draft00, false));
+        TlsKemDomain serverDomain = crypto.createKemDomain(
+            new TlsKemConfig(NamedGroup.X25519Kyber768Draft00, true));
+
+        for (int i = 0; i < 4; ++i)
+        {
+            TlsAgreement client = clientDomain.createKem();
+            TlsAgreement server = serverDomain.createKem();
+
+            byte[] clientShare = client.generateEphemeral();
+            assertEquals(32 + 1184, clientShare.length);
+
+            server.receivePeerValue(clientShare);
+            byte[] serverShare = server.generateEphemeral();
+            assertEquals(32 + 1088, serverShare.length);
+
+            client.receivePeerValue(serverShare);
+
+            byte[] clientSecret = extract(client.calculateSecret());
+            byte[] serverSecret = extract(server.calculateSecret());
+            assertEquals(64, clientSecret.length);
+            assertArrayEquals(clientSecret, serverSecret);
+        }
+
+        TlsAgreement server = serverDomain.createKem();
+        try
+        {
+            server.receivePeerValue(new byte[32 + 1183]);
+            fail();
+        }
+        catch (TlsFatalAlert e)
+        {
+            assertEquals(AlertDescription.illegal_parameter, e.getAlertDescription());
+        }
+
+        TlsAgreement client = clientDomain.createKem();
+        client.generateEphemeral();
+        try
+        {
+            client.receivePeerValue(new byte[32 + 1089]);
+            fail();
+        }
+        catch (TlsFatalAlert e)
+        {
+            assertEquals(AlertDescription.illegal_parameter, e.getAlertDescription());
+        }
+    }
+
+    public void testKeySharePool() throws Exception
+    {
+        if (!crypto.hasECDHAgreement() || !(crypto instanceof AbstractTlsCrypto))
+        {
+            return;
+        }
+
+        TlsKeySharePool pool = ((AbstractTlsCrypto)crypto).getKeySharePool();
+
+        try
+        {
+            pool.setDepth(NamedGroup.ffdhe2048, 2);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+
+        try
+        {
+            for (int namedGroup = 0; namedGroup < 256; ++namedGroup)
+            {
+                if (!NamedGroup.refersToAnECDHCurve(namedGroup) || !crypto.hasNamedGroup(namedGroup))
+                {
+                    continue;
+                }
+
+                TlsECDomain d = crypto.createECDomain(new TlsECConfig(namedGroup));
+
+                pool.setDepth(namedGroup, 2);
+                assertEquals(2, pool.getDepth(namedGroup));
+                awaitAvailable(pool, namedGroup, 2);
+
+                // Each precomputed key share is handed out once only
+                TlsAgreement aA = d.createECDH();
+                TlsAgreement aB = d.createECDH();
+                assertFalse(Arrays.areEqual(aA.generateEphemeral(), aB.generateEphemeral()));
+
+                implTestAgreement(d.createECDH(), d.createECDH());
+
+                // The pool refills after being drained
+                awaitAvailable(pool, namedGroup, 2);
+
+                pool.setDepth(namedGroup, 0);
+                assertEquals(0, pool.getAvailable(namedGroup));
+                assertNull(pool.take(namedGroup));
+            }
+        }
+        finally
+        {
+            pool.clear();
+        }
+    }
+
     public void testHKDF() throws IOException
     {
         /*
@@ -660,6 +777,16 @@ private void implTestAgreement(TlsAgreement aA, TlsAgreement aB) throws IOExcept
         assertArrayEquals(extract(sA), extract(sB));
     }
 
+    private static void awaitAvailable(TlsKeySharePool pool, int namedGroup, int count) throws InterruptedException
+    {
+        for (int i = 0; i < 1000 && pool.getAvailable(namedGroup) < count; ++i)
+        {
+            Thread.sleep(10);
+        }
+
+        assertEquals(count, pool.getAvailable(namedGroup));
+    }
+
     private void implTestDHDomain(TlsDHConfig dhConfig) throws IOException
     {
         int namedGroup = dhConfig.getNamedGroup();
@@ -28,13 +28,19 @@ public static Test suite()
         suite.addTestSuite(DTLSProtocolTest.class);
         suite.addTestSuite(DTLSPSKProtocolTest.class);
         suite.addTestSuite(DTLSRawKeysProtocolTest.class);
+        suite.addTestSuite(DTLSReplayWindowTest.class);
+        suite.addTestSuite(DTLSServerDemultiplexerTest.class);
         suite.addTestSuite(OCSPTest.class);
         suite.addTestSuite(PRFTest.class);
         suite.addTestSuite(Tls13PSKProtocolTest.class);
+        suite.addTestSuite(Tls13ResumptionProtocolTest.class);
+        suite.addTestSuite(TlsCertificateCompressionTest.class);
+        suite.addTestSuite(TlsHybridKeyExchangeTest.class);
         suite.addTestSuite(TlsProtocolNonBlockingTest.class);
         suite.addTestSuite(TlsProtocolTest.class);
         suite.addTestSuite(TlsPSKProtocolTest.class);
         suite.addTestSuite(TlsRawKeysProtocolTest.class);
+        suite.addTestSuite(TlsRecordWritingTest.class);
         suite.addTestSuite(TlsSRPProtocolTest.class);
         suite.addTestSuite(TlsUtilsTest.class);
 
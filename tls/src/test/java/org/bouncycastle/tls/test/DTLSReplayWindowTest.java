@@ -0,0 +1,249 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import org.bouncycastle.tls.DTLSClientProtocol;
+import org.bouncycastle.tls.DTLSServerProtocol;
+import org.bouncycastle.tls.DTLSTransport;
+import org.bouncycastle.tls.DatagramTransport;
+import org.bouncycastle.tls.TlsUtils;
+
+import junit.framework.TestCase;
+
+public class DTLSReplayWindowTest
+    extends TestCase
+{
+    private static final int REORDER_DISTANCE = 200;
+
+    public void testDefaultWindowDiscardsOldRecord() throws Exception
+    {
+        boolean[] seen = sendReordered(0);
+
+        assertFalse(seen[0]);
+        assertAllSeenFrom(seen, 1);
+    }
+
+    public void testWideWindowAcceptsOldRecord() throws Exception
+    {
+        boolean[] seen = sendReordered(1024);
+
+        assertAllSeenFrom(seen, 0);
+    }
+
+    public void testReceiveBatch() throws Exception
+    {
+        Connection connection = connect(0);
+        try
+        {
+            int count = 50;
+            for (int i = 0; i < count; ++i)
+            {
+                sendIndex(connection.client, i);
+            }
+
+            DTLSTransport server = connection.server;
+            byte[] buf = new byte[server.getReceiveLimit() * 16];
+            int[] lengths = new int[16];
+
+            int total = 0, batches = 0;
+            while (total < count)
+            {
+                int received = server.receiveBatch(buf, 0, buf.length, lengths, 1000, null);
+                assertTrue(received > 0);
+
+                int pos = 0;
+                for (int i = 0; i < received; ++i)
+                {
+                    assertEquals(2, lengths[i]);
+                    assertEquals(total + i, TlsUtils.readUint16(buf, pos));
+                    pos += lengths[i];
+                }
+
+                total += received;
+                ++batches;
+            }
+
+            assertEquals(count, total);
+            assertTrue(batches < count);
+
+            // Nothing more to receive
+            assertEquals(-1, server.receiveBatch(buf, 0, buf.length, lengths, 100, null));
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    private boolean[] sendReordered(int serverWindowSize) throws Exception
+    {
+        Connection connection = connect(serverWindowSize);
+        try
+        {
+            // Record 0 is delivered only after REORDER_DISTANCE later records
+            connection.clientTransport.holdNext();
+            for (int i = 0; i <= REORDER_DISTANCE; ++i)
+            {
+                sendIndex(connection.client, i);
+            }
+            connection.clientTransport.releaseHeld();
+
+            boolean[] seen = new boolean[REORDER_DISTANCE + 1];
+
+            byte[] buf = new byte[connection.server.getReceiveLimit()];
+            int length;
+            while ((length = connection.server.receive(buf, 0, buf.length, 200)) >= 0)
+            {
+                assertEquals(2, length);
+                seen[TlsUtils.readUint16(buf, 0)] = true;
+            }
+
+            return seen;
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    private static void assertAllSeenFrom(boolean[] seen, int from)
+    {
+        for (int i = from; i < seen.length; ++i)
+        {
+            assertTrue("record " + i + " not received", seen[i]);
+        }
+    }
+
+    private static void sendIndex(DTLSTransport transport, int index) throws IOException
+    {
+        byte[] data = new byte[2];
+        TlsUtils.writeUint16(index, data, 0);
+        transport.send(data, 0, data.length);
+    }
+
+    private static Connection connect(final int serverWindowSize) throws Exception
+    {
+        MockDatagramAssociation network = new MockDatagramAssociation(1500);
+
+        final DatagramTransport serverTransport = network.getServer();
+        final DTLSTransport[] server = new DTLSTransport[1];
+        final Exception[] serverException = new Exception[1];
+
+        Thread serverThread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    server[0] = new DTLSServerProtocol().accept(new MockDTLSServer()
+                    {
+                        public int getReplayWindowSize()
+                        {
+                            return serverWindowSize > 0 ? serverWindowSize : super.getReplayWindowSize();
+                        }
+                    }, serverTransport);
+                }
+                catch (Exception e)
+                {
+                    serverException[0] = e;
+                }
+            }
+        };
+        serverThread.start();
+
+        HoldingDatagramTransport clientTransport = new HoldingDatagramTransport(network.getClient());
+        DTLSTransport client = new DTLSClientProtocol().connect(new MockDTLSClient(null), clientTransport);
+
+        serverThread.join();
+        if (null != serverException[0])
+        {
+            throw serverException[0];
+        }
+
+        return new Connection(client, clientTransport, server[0]);
+    }
+
+    private static class Connection
+    {
+        final DTLSTransport client;
+        final HoldingDatagramTransport clientTransport;
+        final DTLSTransport server;
+
+        Connection(DTLSTransport client, HoldingDatagramTransport clientTransport, DTLSTransport server)
+        {
+            this.client = client;
+            this.clientTransport = clientTransport;
+            this.server = server;
+        }
+
+        void close() throws IOException
+        {
+            client.close();
+            server.close();
+        }
+    }
+
+    /*
+     * Holds back a sent datagram until released, so it arrives after any sent in the meantime.
+     */
+    private static class HoldingDatagramTransport
+        implements DatagramTransport
+    {
+        private final DatagramTransport transport;
+        private final Vector held = new Vector();
+        private boolean holdNext = false;
+
+        HoldingDatagramTransport(DatagramTransport transport)
+        {
+            this.transport = transport;
+        }
+
+        synchronized void holdNext()
+        {
+            holdNext = true;
+        }
+
+        synchronized void releaseHeld() throws IOException
+        {
+            for (int i = 0; i < held.size(); ++i)
+            {
+                byte[] datagram = (byte[])held.elementAt(i);
+                transport.send(datagram, 0, datagram.length);
+            }
+            held.removeAllElements();
+        }
+
+        public int getReceiveLimit() throws IOException
+        {
+            return transport.getReceiveLimit();
+        }
+
+        public int getSendLimit() throws IOException
+        {
+            return transport.getSendLimit();
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            return transport.receive(buf, off, len, waitMillis);
+        }
+
+        public synchronized void send(byte[] buf, int off, int len) throws IOException
+        {
+            if (holdNext)
+            {
+                holdNext = false;
+                held.addElement(TlsUtils.copyOfRangeExact(buf, off, off + len));
+                return;
+            }
+
+            transport.send(buf, off, len);
+        }
+
+        public void close() throws IOException
+        {
+            transport.close();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.Vector;
+
+import org.bouncycastle.tls.DTLSAssociation;
+import org.bouncycastle.tls.DTLSClientProtocol;
+import org.bouncycastle.tls.DTLSServerDemultiplexer;
+import org.bouncycastle.tls.DTLSServerProtocol;
+import org.bouncycastle.tls.DTLSTransport;
+import org.bouncycastle.tls.DatagramTransport;
+import org.bouncycastle.tls.UDPTransport;
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class DTLSServerDemultiplexerTest
+    extends TestCase
+{
+    private static final int MTU = 1500;
+
+    private DatagramChannel channel;
+    private DTLSServerDemultiplexer demultiplexer;
+    private AcceptThread acceptThread;
+
+    protected void setUp() throws Exception
+    {
+        TlsCrypto crypto = new BcTlsCrypto();
+
+        this.channel = DatagramChannel.open();
+        channel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        this.demultiplexer = new DTLSServerDemultiplexer(crypto, channel, MTU, 8);
+        demultiplexer.start();
+
+        this.acceptThread = new AcceptThread(crypto, demultiplexer);
+        acceptThread.start();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        acceptThread.shutdown();
+        demultiplexer.close();
+    }
+
+    public void testMultipleClients() throws Exception
+    {
+        DTLSTransport[] clients = new DTLSTransport[3];
+        for (int i = 0; i < clients.length; ++i)
+        {
+            clients[i] = connect(new MockDTLSClient(null), new UDPTransport(openSocket(), MTU));
+        }
+
+        assertEquals(clients.length, demultiplexer.getAssociationCount());
+
+        for (int i = 0; i < clients.length; ++i)
+        {
+            checkEcho(clients[i], i + 1);
+        }
+
+        clients[0].close();
+        waitForAssociationCount(clients.length - 1);
+
+        checkEcho(clients[1], 42);
+    }
+
+    public void testConnectionIDMigration() throws Exception
+    {
+        RebindingDatagramTransport clientTransport = new RebindingDatagramTransport(openSocket());
+
+        DTLSTransport client = connect(new ConnectionIDClient(), clientTransport);
+        checkEcho(client, 1);
+
+        DTLSAssociation association = acceptThread.getAssociation(0);
+        assertEquals(clientTransport.getLocalAddress(), association.getPeerAddress());
+
+        // Simulate a NAT rebinding: the client continues from a new address
+        clientTransport.rebind(openSocket());
+        checkEcho(client, 2);
+
+        assertEquals(clientTransport.getLocalAddress(), association.getPeerAddress());
+        assertEquals(1, demultiplexer.getAssociationCount());
+
+        client.close();
+    }
+
+    private DTLSTransport connect(MockDTLSClient client, DatagramTransport transport) throws IOException
+    {
+        return new DTLSClientProtocol().connect(client, transport);
+    }
+
+    private DatagramSocket openSocket() throws IOException
+    {
+        DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        socket.connect(channel.socket().getLocalSocketAddress());
+        return socket;
+    }
+
+    private void waitForAssociationCount(int count) throws InterruptedException
+    {
+        for (int i = 0; i < 100 && demultiplexer.getAssociationCount() != count; ++i)
+        {
+            Thread.sleep(20);
+        }
+
+        assertEquals(count, demultiplexer.getAssociationCount());
+    }
+
+    private static void checkEcho(DTLSTransport client, int length) throws IOException
+    {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte)length);
+        client.send(data, 0, data.length);
+
+        byte[] buf = new byte[client.getReceiveLimit()];
+        int received = client.receive(buf, 0, buf.length, 5000);
+
+        assertEquals(length, received);
+        assertTrue(Arrays.areEqual(data, Arrays.copyOf(buf, received)));
+    }
+
+    static class ConnectionIDClient
+        extends MockDTLSClient
+    {
+        ConnectionIDClient()
+        {
+            super(null);
+        }
+
+        protected byte[] getNewConnectionID()
+        {
+            // We don't need a connection ID for the records we receive, but the server should use one
+            return new byte[0];
+        }
+    }
+
+    static class ConnectionIDServer
+        extends MockDTLSServer
+    {
+        private final DTLSAssociation association;
+
+        ConnectionIDServer(TlsCrypto crypto, DTLSAssociation association)
+        {
+            super(crypto);
+
+            this.association = association;
+        }
+
+        protected byte[] getNewConnectionID()
+        {
+            try
+            {
+                return association.createConnectionID();
+            }
+            catch (IOException e)
+            {
+                return null;
+            }
+        }
+    }
+
+    static class RebindingDatagramTransport
+        implements DatagramTransport
+    {
+        private volatile DatagramSocket socket;
+        private volatile UDPTransport transport;
+
+        RebindingDatagramTransport(DatagramSocket socket) throws IOException
+        {
+            rebind(socket);
+        }
+
+        InetSocketAddress getLocalAddress()
+        {
+            return (InetSocketAddress)socket.getLocalSocketAddress();
+        }
+
+        void rebind(DatagramSocket socket) throws IOException
+        {
+            UDPTransport previous = this.transport;
+
+            this.socket = socket;
+            this.transport = new UDPTransport(socket, MTU);
+
+            if (null != previous)
+            {
+                previous.close();
+            }
+        }
+
+        public int getReceiveLimit() throws IOException
+        {
+            return transport.getReceiveLimit();
+        }
+
+        public int getSendLimit() throws IOException
+        {
+            return transport.getSendLimit();
+        }
+
+        public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException
+        {
+            return transport.receive(buf, off, len, waitMillis);
+        }
+
+        public void send(byte[] buf, int off, int len) throws IOException
+        {
+            transport.send(buf, off, len);
+        }
+
+        public void close() throws IOException
+        {
+            transport.close();
+        }
+    }
+
+    static class AcceptThread
+        extends Thread
+    {
+        private final TlsCrypto crypto;
+        private final DTLSServerDemultiplexer demultiplexer;
+        private final Vector associations = new Vector();
+        private final Vector echoThreads = new Vector();
+        private volatile boolean isShutdown = false;
+
+        AcceptThread(TlsCrypto crypto, DTLSServerDemultiplexer demultiplexer)
+        {
+            this.crypto = crypto;
+            this.demultiplexer = demultiplexer;
+        }
+
+        DTLSAssociation getAssociation(int index)
+        {
+            return (DTLSAssociation)associations.elementAt(index);
+        }
+
+        public void run()
+        {
+            try
+            {
+                while (!isShutdown)
+                {
+                    DTLSAssociation association = demultiplexer.accept(100);
+                    if (null != association)
+                    {
+                        associations.addElement(association);
+
+                        // NOTE: A real server would typically use a thread pool here
+                        EchoThread echoThread = new EchoThread(new ConnectionIDServer(crypto, association),
+                            association);
+                        echoThreads.addElement(echoThread);
+                        echoThread.start();
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                // Demultiplexer closed
+            }
+        }
+
+        void shutdown() throws InterruptedException
+        {
+            isShutdown = true;
+            join();
+
+            for (int i = 0; i < echoThreads.size(); ++i)
+            {
+                ((EchoThread)echoThreads.elementAt(i)).shutdown();
+            }
+        }
+
+        class EchoThread
+            extends Thread
+        {
+            private final MockDTLSServer server;
+            private final DTLSAssociation association;
+            private volatile boolean isShutdown = false;
+
+            EchoThread(MockDTLSServer server, DTLSAssociation association)
+            {
+                this.server = server;
+                this.association = association;
+            }
+
+            public void run()
+            {
+                try
+                {
+                    DTLSTransport dtlsTransport = new DTLSServerProtocol().accept(server, association,
+                        association.getRequest());
+
+                    byte[] buf = new byte[dtlsTransport.getReceiveLimit()];
+                    while (!isShutdown)
+                    {
+                        // Passing the association lets it follow the client to a new address
+                        int length = dtlsTransport.receive(buf, 0, buf.length, 100, association);
+                        if (length >= 0)
+                        {
+                            dtlsTransport.send(buf, 0, length);
+                        }
+                    }
+                    dtlsTransport.close();
+                }
+                catch (IOException e)
+                {
+                    // Closed by the peer (or the demultiplexer)
+                }
+            }
+
+            void shutdown() throws InterruptedException
+            {
+                isShutdown = true;
+                join();
+            }
+        }
+    }
+}
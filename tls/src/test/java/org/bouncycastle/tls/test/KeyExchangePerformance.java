@@ -0,0 +1,227 @@
+package org.bouncycastle.tls.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.security.SecureRandom;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.crypto.TlsAgreement;
+import org.bouncycastle.tls.crypto.TlsCrypto;
+import org.bouncycastle.tls.crypto.TlsECConfig;
+import org.bouncycastle.tls.crypto.TlsKemConfig;
+import org.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
+import org.bouncycastle.tls.crypto.impl.jcajce.JcaTlsCryptoProvider;
+import org.bouncycastle.util.Times;
+
+/**
+ * Compares the cost of the hybrid X25519Kyber768Draft00 key exchange against plain X25519, both for the key
+ * exchange alone (with each crypto) and for a complete TLS 1.3 handshake.
+ * <p>
+ * This is a benchmark, run from main() rather than as part of the test suites.
+ */
+public class KeyExchangePerformance
+{
+    static final int MILLIS_PER_ROUND = 200;
+    static final int MILLIS_WARMUP = 1000;
+
+    static final int NUM_ROUNDS = 10;
+
+    private static final int[] GROUPS = new int[]{ NamedGroup.x25519, NamedGroup.X25519Kyber768Draft00 };
+
+    private interface Operation
+    {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        keyExchange();
+        handshake();
+    }
+
+    private static void keyExchange() throws Exception
+    {
+        keyExchange("BC", new BcTlsCrypto(new SecureRandom()));
+        keyExchange("JCA", new JcaTlsCryptoProvider().setProvider(new BouncyCastleProvider())
+            .create(new SecureRandom()));
+    }
+
+    private static void handshake() throws Exception
+    {
+        for (int i = 0; i < GROUPS.length; ++i)
+        {
+            final int namedGroup = GROUPS[i];
+
+            // The mock peers are chatty; keep their output out of the measurement
+            PrintStream out = System.out;
+            double avgRate;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()
+            {
+                public void write(byte[] b, int off, int len)
+                {
+                }
+
+                public void write(int b)
+                {
+                }
+            }));
+            try
+            {
+                avgRate = measure(new Operation()
+                {
+                    public void run() throws Exception
+                    {
+                        runHandshake(namedGroup);
+                    }
+                });
+            }
+            finally
+            {
+                System.setOut(out);
+            }
+
+            report("handshake " + NamedGroup.getName(namedGroup), avgRate);
+        }
+    }
+
+    private static void keyExchange(String label, final TlsCrypto crypto) throws Exception
+    {
+        for (int i = 0; i < GROUPS.length; ++i)
+        {
+            final int namedGroup = GROUPS[i];
+            if (!crypto.hasNamedGroup(namedGroup))
+            {
+                continue;
+            }
+
+            report(label + " key exchange " + NamedGroup.getName(namedGroup), measure(new Operation()
+            {
+                public void run() throws Exception
+                {
+                    runKeyExchange(crypto, namedGroup);
+                }
+            }));
+        }
+    }
+
+    private static void runKeyExchange(TlsCrypto crypto, int namedGroup) throws IOException
+    {
+        TlsAgreement client, server;
+        if (NamedGroup.refersToASpecificHybrid(namedGroup))
+        {
+            client = crypto.createKemDomain(new TlsKemConfig(namedGroup, false)).createKem();
+            server = crypto.createKemDomain(new TlsKemConfig(namedGroup, true)).createKem();
+        }
+        else
+        {
+            client = crypto.createECDomain(new TlsECConfig(namedGroup)).createECDH();
+            server = crypto.createECDomain(new TlsECConfig(namedGroup)).createECDH();
+        }
+
+        server.receivePeerValue(client.generateEphemeral());
+        client.receivePeerValue(server.generateEphemeral());
+
+        client.calculateSecret();
+        server.calculateSecret();
+    }
+
+    private static void runHandshake(int namedGroup) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        final TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        final TlsHybridKeyExchangeTest.HybridServer server = new TlsHybridKeyExchangeTest.HybridServer(
+            new int[]{ namedGroup });
+
+        Thread serverThread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    serverProtocol.accept(server);
+                }
+                catch (Exception e)
+                {
+                }
+            }
+        };
+        serverThread.start();
+
+        try
+        {
+            // Only the handshake is measured; the connections are simply abandoned afterwards
+            clientProtocol.connect(new TlsHybridKeyExchangeTest.HybridClient(new int[]{ namedGroup }));
+        }
+        finally
+        {
+            serverThread.join();
+        }
+    }
+
+    private static double measure(Operation operation) throws Exception
+    {
+        {
+            long goalTime = Times.nanoTime() + 1000000L * MILLIS_WARMUP;
+            do
+            {
+                operation.run();
+            }
+            while (Times.nanoTime() < goalTime);
+        }
+
+        double minRate = Double.MAX_VALUE, maxRate = Double.MIN_VALUE, totalRate = 0.0;
+
+        for (int i = 1; i <= NUM_ROUNDS; i++)
+        {
+            long startTime = Times.nanoTime();
+            long goalTime = startTime + 1000000L * MILLIS_PER_ROUND;
+            long count = 0, endTime;
+
+            do
+            {
+                operation.run();
+                ++count;
+
+                endTime = Times.nanoTime();
+            }
+            while (endTime < goalTime);
+
+            double roundElapsed = (double)(endTime - startTime);
+            double roundRate = count * 1000000000L / roundElapsed;
+
+            minRate = Math.min(minRate, roundRate);
+            maxRate = Math.max(maxRate, roundRate);
+            totalRate += roundRate;
+        }
+
+        return (totalRate - minRate - maxRate) / (NUM_ROUNDS - 2);
+    }
+
+    private static void report(String label, double avgRate)
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(label);
+        for (int j = sb.length(); j < 48; ++j)
+        {
+            sb.append(' ');
+        }
+        sb.append(": ");
+        sb.append(avgRate);
+        sb.append(" ops/sec (");
+        sb.append(1000.0 / avgRate);
+        sb.append(" millis/op)");
+        System.out.println(sb.toString());
+    }
+}
@@ -0,0 +1,413 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.security.SecureRandom;
+import java.util.Vector;
+
+import org.bouncycastle.tls.Certificate;
+import org.bouncycastle.tls.DefaultTlsAntiReplayStore;
+import org.bouncycastle.tls.DefaultTlsTicketKeyStore;
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.SecurityParameters;
+import org.bouncycastle.tls.TlsAntiReplayStore;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsPSKResumption;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.TlsTicketKeyStore;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class Tls13ResumptionProtocolTest
+    extends TestCase
+{
+    public void testResumption() throws Exception
+    {
+        TlsTicketKeyStore keyStore = new DefaultTlsTicketKeyStore(new SecureRandom());
+
+        ResumptionClient client = new ResumptionClient(null);
+        ResumptionServer server = runHandshake(client, keyStore);
+        assertFalse(client.resumed);
+        assertFalse(server.resumed);
+        assertNotNull(client.received);
+
+        Certificate serverCertificate = client.received.getPeerCertificate();
+        assertNotNull(serverCertificate);
+        assertFalse(serverCertificate.isEmpty());
+
+        ResumptionClient resumingClient = new ResumptionClient(client.received);
+        server = runHandshake(resumingClient, keyStore);
+        assertTrue(resumingClient.resumed);
+        assertTrue(server.resumed);
+
+        // The peer certificates of the original session carry over to the resumed one
+        assertTrue(Arrays.areEqual(serverCertificate.getCertificateAt(0).getEncoded(),
+            resumingClient.peerCertificate.getCertificateAt(0).getEncoded()));
+
+        // A new ticket is issued on resumption, which can be used in turn
+        assertNotNull(resumingClient.received);
+        assertFalse(Arrays.areEqual(client.received.getIdentity(), resumingClient.received.getIdentity()));
+
+        ResumptionClient resumingAgainClient = new ResumptionClient(resumingClient.received);
+        runHandshake(resumingAgainClient, keyStore);
+        assertTrue(resumingAgainClient.resumed);
+    }
+
+    public void testUnknownTicketKey() throws Exception
+    {
+        ResumptionClient client = new ResumptionClient(null);
+        runHandshake(client, new DefaultTlsTicketKeyStore(new SecureRandom()));
+        assertNotNull(client.received);
+
+        // A server that no longer has the key falls back to a full handshake
+        ResumptionClient resumingClient = new ResumptionClient(client.received);
+        ResumptionServer server = runHandshake(resumingClient, new DefaultTlsTicketKeyStore(new SecureRandom()));
+        assertFalse(resumingClient.resumed);
+        assertFalse(server.resumed);
+    }
+
+    public void testModifiedTicket() throws Exception
+    {
+        TlsTicketKeyStore keyStore = new DefaultTlsTicketKeyStore(new SecureRandom());
+
+        ResumptionClient client = new ResumptionClient(null);
+        runHandshake(client, keyStore);
+        TlsPSKResumption received = client.received;
+        assertNotNull(received);
+
+        byte[] ticket = Arrays.clone(received.getIdentity());
+        ticket[ticket.length - 1] ^= 1;
+
+        TlsPSKResumption modified = new TlsPSKResumption(ticket, received.getKey(), received.getCipherSuite(),
+            received.getPeerCertificate(), received.getIssueTime(), received.getTicketLifetime(),
+            received.getTicketAgeAdd());
+
+        ResumptionClient resumingClient = new ResumptionClient(modified);
+        ResumptionServer server = runHandshake(resumingClient, keyStore);
+        assertFalse(resumingClient.resumed);
+        assertFalse(server.resumed);
+    }
+
+    public void testNoTicketsWithoutKeyStore() throws Exception
+    {
+        ResumptionClient client = new ResumptionClient(null);
+        runHandshake(client, (TlsTicketKeyStore)null);
+        assertNull(client.received);
+    }
+
+    public void testEarlyData() throws Exception
+    {
+        TlsTicketKeyStore keyStore = new DefaultTlsTicketKeyStore(new SecureRandom());
+        TlsAntiReplayStore antiReplayStore = new DefaultTlsAntiReplayStore();
+
+        ResumptionClient client = new ResumptionClient(null);
+        runHandshake(client, new ResumptionServer(keyStore, 1024, antiReplayStore));
+        assertNotNull(client.received);
+        assertEquals(1024, client.received.getMaxEarlyDataSize());
+
+        ResumptionClient resumingClient = new ResumptionClient(client.received, createEarlyData(client, 1000));
+        ResumptionServer server = runHandshake(resumingClient, new ResumptionServer(keyStore, 1024, antiReplayStore));
+        assertTrue(resumingClient.resumed);
+        assertTrue(resumingClient.earlyDataAccepted);
+        assertTrue(server.resumed);
+        assertTrue(server.earlyDataAccepted);
+    }
+
+    public void testEarlyDataRejected() throws Exception
+    {
+        TlsTicketKeyStore keyStore = new DefaultTlsTicketKeyStore(new SecureRandom());
+
+        ResumptionClient client = new ResumptionClient(null);
+        runHandshake(client, new ResumptionServer(keyStore, 1024, new DefaultTlsAntiReplayStore()));
+        assertNotNull(client.received);
+
+        // Without an anti-replay store, the server skips the early data and the client sends it again
+        ResumptionClient resumingClient = new ResumptionClient(client.received, createEarlyData(client, 1000));
+        ResumptionServer server = runHandshake(resumingClient, new ResumptionServer(keyStore, 1024, null));
+        assertTrue(resumingClient.resumed);
+        assertFalse(resumingClient.earlyDataAccepted);
+        assertTrue(server.resumed);
+        assertFalse(server.earlyDataAccepted);
+    }
+
+    public void testEarlyDataRejectedByHelloRetryRequest() throws Exception
+    {
+        TlsTicketKeyStore keyStore = new DefaultTlsTicketKeyStore(new SecureRandom());
+        TlsAntiReplayStore antiReplayStore = new DefaultTlsAntiReplayStore();
+
+        ResumptionClient client = new ResumptionClient(null);
+        runHandshake(client, new ResumptionServer(keyStore, 1024, antiReplayStore));
+        assertNotNull(client.received);
+
+        // The client's early key share is for x25519, so this server asks for another ClientHello
+        ResumptionServer retryServer = new ResumptionServer(keyStore, 1024, antiReplayStore);
+        retryServer.supportedGroups = new int[]{ NamedGroup.secp256r1 };
+
+        ResumptionClient resumingClient = new ResumptionClient(client.received, createEarlyData(client, 1000));
+        ResumptionServer server = runHandshake(resumingClient, retryServer);
+        assertTrue(resumingClient.resumed);
+        assertFalse(resumingClient.earlyDataAccepted);
+        assertTrue(server.resumed);
+        assertFalse(server.earlyDataAccepted);
+    }
+
+    public void testEarlyDataNotPermitted() throws Exception
+    {
+        TlsTicketKeyStore keyStore = new DefaultTlsTicketKeyStore(new SecureRandom());
+        TlsAntiReplayStore antiReplayStore = new DefaultTlsAntiReplayStore();
+
+        ResumptionClient client = new ResumptionClient(null);
+        runHandshake(client, new ResumptionServer(keyStore, 0, antiReplayStore));
+        assertNotNull(client.received);
+        assertEquals(0, client.received.getMaxEarlyDataSize());
+
+        ResumptionClient resumingClient = new ResumptionClient(client.received, createEarlyData(client, 100));
+        ResumptionServer server = runHandshake(resumingClient, new ResumptionServer(keyStore, 1024, antiReplayStore));
+        assertTrue(resumingClient.resumed);
+        assertFalse(resumingClient.earlyDataAccepted);
+        assertFalse(server.earlyDataAccepted);
+
+        // Nor is more early data sent than the ticket permits
+        client = new ResumptionClient(null);
+        runHandshake(client, new ResumptionServer(keyStore, 1024, antiReplayStore));
+
+        resumingClient = new ResumptionClient(client.received, createEarlyData(client, 1025));
+        server = runHandshake(resumingClient, new ResumptionServer(keyStore, 1024, antiReplayStore));
+        assertTrue(resumingClient.resumed);
+        assertFalse(resumingClient.earlyDataAccepted);
+        assertFalse(server.earlyDataAccepted);
+    }
+
+    public void testAntiReplayStore() throws Exception
+    {
+        DefaultTlsAntiReplayStore store = new DefaultTlsAntiReplayStore(10000L, 2);
+        byte[] a = new byte[]{ 1 }, b = new byte[]{ 2 }, c = new byte[]{ 3 };
+
+        // NOTE: A fixed time, aligned to the store's internal intervals, keeps expiry deterministic
+        long now = 1000L * 1000L;
+        assertTrue(store.checkAndRecord(a, now));
+        assertFalse(store.checkAndRecord(a, now + 1000L));
+        assertTrue(store.checkAndRecord(b, now + 1000L));
+
+        // When full, nothing more is accepted until the oldest values expire
+        assertFalse(store.checkAndRecord(c, now + 2000L));
+
+        // Values are held for at least twice the window
+        assertFalse(store.checkAndRecord(a, now + 19000L));
+        assertTrue(store.checkAndRecord(a, now + 23000L));
+        assertTrue(store.checkAndRecord(c, now + 23000L));
+        assertEquals(2, store.size());
+    }
+
+    private static byte[] createEarlyData(MockTlsClient client, int length)
+    {
+        byte[] earlyData = new byte[length];
+        client.getCrypto().getSecureRandom().nextBytes(earlyData);
+        return earlyData;
+    }
+
+    private ResumptionServer runHandshake(ResumptionClient client, TlsTicketKeyStore keyStore) throws Exception
+    {
+        return runHandshake(client, new ResumptionServer(keyStore));
+    }
+
+    private ResumptionServer runHandshake(ResumptionClient client, ResumptionServer server) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        clientProtocol.connect(client);
+
+        byte[] data = new byte[100];
+        client.getCrypto().getSecureRandom().nextBytes(data);
+
+        OutputStream output = clientProtocol.getOutputStream();
+
+        // The server echoes any early data it accepted; otherwise it's up to the client to send it again
+        byte[] earlyData = client.earlyData;
+        if (null != earlyData)
+        {
+            if (!client.earlyDataAccepted)
+            {
+                output.write(earlyData);
+            }
+            data = Arrays.concatenate(earlyData, data);
+        }
+
+        output.write(data, data.length - 100, 100);
+
+        // NOTE: Any NewSessionTicket is processed on the way to the echoed data
+        byte[] echo = new byte[data.length];
+        int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+        assertEquals(count, data.length);
+        assertTrue(Arrays.areEqual(data, echo));
+
+        output.close();
+
+        serverThread.join();
+
+        return server;
+    }
+
+    static class ResumptionClient
+        extends MockTlsClient
+    {
+        private final TlsPSKResumption offered;
+        private final byte[] earlyData;
+
+        TlsPSKResumption received = null;
+        boolean resumed = false;
+        boolean earlyDataAccepted = false;
+        Certificate peerCertificate = null;
+
+        ResumptionClient(TlsPSKResumption offered)
+        {
+            this(offered, null);
+        }
+
+        ResumptionClient(TlsPSKResumption offered, byte[] earlyData)
+        {
+            super(null);
+
+            this.offered = offered;
+            this.earlyData = earlyData;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public Vector getResumptionPSKs()
+        {
+            // NOTE: An empty Vector still tells the server we accept tickets
+            Vector psks = new Vector(1);
+            if (null != offered)
+            {
+                psks.addElement(offered);
+            }
+            return psks;
+        }
+
+        public byte[] getEarlyData()
+        {
+            return earlyData;
+        }
+
+        public void notifyResumptionPSK(TlsPSKResumption resumptionPSK) throws IOException
+        {
+            this.received = resumptionPSK;
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            SecurityParameters securityParameters = context.getSecurityParametersConnection();
+            this.resumed = securityParameters.isResumedSession();
+            this.earlyDataAccepted = securityParameters.isEarlyDataAccepted();
+            this.peerCertificate = securityParameters.getPeerCertificate();
+        }
+    }
+
+    static class ResumptionServer
+        extends MockTlsServer
+    {
+        private final TlsTicketKeyStore keyStore;
+        private final long maxEarlyDataSize;
+        private final TlsAntiReplayStore antiReplayStore;
+
+        int[] supportedGroups = null;
+
+        volatile boolean resumed = false;
+        volatile boolean earlyDataAccepted = false;
+        volatile Certificate peerCertificate = null;
+
+        ResumptionServer(TlsTicketKeyStore keyStore)
+        {
+            this(keyStore, 0L, null);
+        }
+
+        ResumptionServer(TlsTicketKeyStore keyStore, long maxEarlyDataSize, TlsAntiReplayStore antiReplayStore)
+        {
+            this.keyStore = keyStore;
+            this.maxEarlyDataSize = maxEarlyDataSize;
+            this.antiReplayStore = antiReplayStore;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public TlsTicketKeyStore getTicketKeyStore()
+        {
+            return keyStore;
+        }
+
+        public long getMaxEarlyDataSize()
+        {
+            return maxEarlyDataSize;
+        }
+
+        public TlsAntiReplayStore getAntiReplayStore()
+        {
+            return antiReplayStore;
+        }
+
+        public int[] getSupportedGroups() throws IOException
+        {
+            return null != supportedGroups ? supportedGroups : super.getSupportedGroups();
+        }
+
+        public void notifyHandshakeComplete() throws IOException
+        {
+            super.notifyHandshakeComplete();
+
+            SecurityParameters securityParameters = context.getSecurityParametersConnection();
+            this.resumed = securityParameters.isResumedSession();
+            this.earlyDataAccepted = securityParameters.isEarlyDataAccepted();
+            this.peerCertificate = securityParameters.getPeerCertificate();
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final ResumptionServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, ResumptionServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import org.bouncycastle.tls.AlertDescription;
+import org.bouncycastle.tls.CachedTlsCertificateCompressor;
+import org.bouncycastle.tls.CertificateCompressionAlgorithm;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.TlsCertificateCompressor;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsFatalAlert;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.ZlibTlsCertificateCompressor;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class TlsCertificateCompressionTest
+    extends TestCase
+{
+    public void testCompressedServerCertificate() throws Exception
+    {
+        CountingCompressor clientCompressor = new CountingCompressor(CertificateCompressionAlgorithm.zlib);
+        CountingCompressor serverCompressor = new CountingCompressor(CertificateCompressionAlgorithm.zlib);
+
+        runHandshake(new CompressionClient(clientCompressor), new CompressionServer(serverCompressor));
+
+        assertEquals(1, serverCompressor.compressCount);
+        assertEquals(1, clientCompressor.decompressCount);
+    }
+
+    public void testCompressedOncePerChain() throws Exception
+    {
+        CountingCompressor serverCompressor = new CountingCompressor(CertificateCompressionAlgorithm.zlib);
+        CachedTlsCertificateCompressor cache = new CachedTlsCertificateCompressor(serverCompressor);
+
+        for (int i = 0; i < 3; ++i)
+        {
+            CountingCompressor clientCompressor = new CountingCompressor(CertificateCompressionAlgorithm.zlib);
+
+            runHandshake(new CompressionClient(clientCompressor), new CompressionServer(cache));
+
+            assertEquals(1, clientCompressor.decompressCount);
+        }
+
+        assertEquals(1, serverCompressor.compressCount);
+        assertEquals(1, cache.size());
+    }
+
+    public void testNotOfferedByClient() throws Exception
+    {
+        CountingCompressor serverCompressor = new CountingCompressor(CertificateCompressionAlgorithm.zlib);
+
+        runHandshake(new CompressionClient(null), new CompressionServer(serverCompressor));
+
+        assertEquals(0, serverCompressor.compressCount);
+    }
+
+    public void testNoCommonAlgorithm() throws Exception
+    {
+        CountingCompressor clientCompressor = new CountingCompressor(CertificateCompressionAlgorithm.brotli);
+        CountingCompressor serverCompressor = new CountingCompressor(CertificateCompressionAlgorithm.zlib);
+
+        runHandshake(new CompressionClient(clientCompressor), new CompressionServer(serverCompressor));
+
+        assertEquals(0, serverCompressor.compressCount);
+        assertEquals(0, clientCompressor.decompressCount);
+    }
+
+    public void testUncompressedLengthLimit() throws Exception
+    {
+        CountingCompressor clientCompressor = new CountingCompressor(CertificateCompressionAlgorithm.zlib);
+        CompressionClient client = new CompressionClient(clientCompressor);
+        client.maxHandshakeMessageSize = 100;
+
+        try
+        {
+            runHandshake(client, new CompressionServer(new ZlibTlsCertificateCompressor()));
+            fail();
+        }
+        catch (TlsFatalAlert e)
+        {
+            assertEquals(AlertDescription.bad_certificate, e.getAlertDescription());
+        }
+
+        assertEquals(0, clientCompressor.decompressCount);
+    }
+
+    public void testZlib() throws Exception
+    {
+        ZlibTlsCertificateCompressor zlib = new ZlibTlsCertificateCompressor();
+
+        byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; ++i)
+        {
+            data[i] = (byte)(i % 7);
+        }
+
+        byte[] compressed = zlib.compress(data);
+        assertTrue(compressed.length < data.length);
+        assertTrue(Arrays.areEqual(data, zlib.decompress(compressed, data.length)));
+
+        checkBadCertificate(zlib, compressed, data.length - 1);
+        checkBadCertificate(zlib, compressed, data.length + 1);
+        checkBadCertificate(zlib, Arrays.concatenate(compressed, new byte[1]), data.length);
+        checkBadCertificate(zlib, Arrays.copyOf(compressed, compressed.length - 1), data.length);
+        checkBadCertificate(zlib, new byte[]{ 1, 2, 3, 4 }, data.length);
+
+        // A decompression bomb only ever produces the claimed length
+        byte[] bomb = zlib.compress(new byte[1 << 24]);
+        checkBadCertificate(zlib, bomb, 1000);
+    }
+
+    private static void checkBadCertificate(TlsCertificateCompressor compressor, byte[] compressed,
+        int uncompressedLength) throws IOException
+    {
+        try
+        {
+            compressor.decompress(compressed, uncompressedLength);
+            fail();
+        }
+        catch (TlsFatalAlert e)
+        {
+            assertEquals(AlertDescription.bad_certificate, e.getAlertDescription());
+        }
+    }
+
+    private void runHandshake(CompressionClient client, CompressionServer server) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        try
+        {
+            clientProtocol.connect(client);
+
+            byte[] data = new byte[100];
+            client.getCrypto().getSecureRandom().nextBytes(data);
+
+            OutputStream output = clientProtocol.getOutputStream();
+            output.write(data);
+
+            byte[] echo = new byte[data.length];
+            int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+            assertEquals(count, data.length);
+            assertTrue(Arrays.areEqual(data, echo));
+
+            output.close();
+        }
+        finally
+        {
+            serverThread.join();
+        }
+    }
+
+    static class CountingCompressor
+        implements TlsCertificateCompressor
+    {
+        private final int algorithm;
+        private final TlsCertificateCompressor zlib = new ZlibTlsCertificateCompressor();
+
+        int compressCount = 0, decompressCount = 0;
+
+        CountingCompressor(int algorithm)
+        {
+            this.algorithm = algorithm;
+        }
+
+        public int getAlgorithm()
+        {
+            return algorithm;
+        }
+
+        public synchronized byte[] compress(byte[] certificateMessage) throws IOException
+        {
+            ++compressCount;
+            return zlib.compress(certificateMessage);
+        }
+
+        public synchronized byte[] decompress(byte[] compressed, int uncompressedLength) throws IOException
+        {
+            ++decompressCount;
+            return zlib.decompress(compressed, uncompressedLength);
+        }
+    }
+
+    static class CompressionClient
+        extends MockTlsClient
+    {
+        private final TlsCertificateCompressor compressor;
+
+        int maxHandshakeMessageSize = 32768;
+
+        CompressionClient(TlsCertificateCompressor compressor)
+        {
+            super(null);
+
+            this.compressor = compressor;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public TlsCertificateCompressor[] getCertificateCompressors()
+        {
+            return null == compressor ? null : new TlsCertificateCompressor[]{ compressor };
+        }
+
+        public int getMaxHandshakeMessageSize()
+        {
+            return maxHandshakeMessageSize;
+        }
+    }
+
+    static class CompressionServer
+        extends MockTlsServer
+    {
+        private final TlsCertificateCompressor compressor;
+
+        CompressionServer(TlsCertificateCompressor compressor)
+        {
+            this.compressor = compressor;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public TlsCertificateCompressor[] getCertificateCompressors()
+        {
+            return new TlsCertificateCompressor[]{ compressor };
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final CompressionServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, CompressionServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+            }
+        }
+    }
+}
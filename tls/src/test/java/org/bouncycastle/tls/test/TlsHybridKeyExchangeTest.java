@@ -0,0 +1,176 @@
+package org.bouncycastle.tls.test;
+
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Vector;
+
+import org.bouncycastle.tls.NamedGroup;
+import org.bouncycastle.tls.ProtocolVersion;
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Integers;
+import org.bouncycastle.util.io.Streams;
+
+import junit.framework.TestCase;
+
+public class TlsHybridKeyExchangeTest
+    extends TestCase
+{
+    public void testHybrid() throws Exception
+    {
+        HybridClient client = new HybridClient(new int[]{ NamedGroup.X25519Kyber768Draft00, NamedGroup.x25519 });
+        HybridServer server = new HybridServer(new int[]{ NamedGroup.X25519Kyber768Draft00 });
+
+        runHandshake(client, server);
+
+        Vector keyShareGroups = client.getEarlyKeyShareGroups();
+        assertEquals(2, keyShareGroups.size());
+        assertEquals(Integers.valueOf(NamedGroup.X25519Kyber768Draft00), keyShareGroups.elementAt(0));
+        assertEquals(Integers.valueOf(NamedGroup.x25519), keyShareGroups.elementAt(1));
+    }
+
+    public void testHybridAfterHelloRetryRequest() throws Exception
+    {
+        HybridClient client = new HybridClient(new int[]{ NamedGroup.x25519, NamedGroup.X25519Kyber768Draft00 });
+        HybridServer server = new HybridServer(new int[]{ NamedGroup.X25519Kyber768Draft00 });
+
+        runHandshake(client, server);
+
+        // The hybrid group isn't most preferred, so it is only sent a key share after a HelloRetryRequest
+        Vector keyShareGroups = client.getEarlyKeyShareGroups();
+        assertEquals(1, keyShareGroups.size());
+        assertEquals(Integers.valueOf(NamedGroup.x25519), keyShareGroups.elementAt(0));
+    }
+
+    public void testClassicalFallback() throws Exception
+    {
+        HybridClient client = new HybridClient(new int[]{ NamedGroup.X25519Kyber768Draft00, NamedGroup.x25519 });
+        HybridServer server = new HybridServer(new int[]{ NamedGroup.x25519 });
+
+        runHandshake(client, server);
+    }
+
+    public void testNamedGroup()
+    {
+        assertTrue(NamedGroup.refersToASpecificHybrid(NamedGroup.X25519Kyber768Draft00));
+        assertFalse(NamedGroup.refersToAnECDHCurve(NamedGroup.X25519Kyber768Draft00));
+        assertTrue(NamedGroup.canBeNegotiated(NamedGroup.X25519Kyber768Draft00, ProtocolVersion.TLSv13));
+        assertFalse(NamedGroup.canBeNegotiated(NamedGroup.X25519Kyber768Draft00, ProtocolVersion.TLSv12));
+        assertEquals("X25519Kyber768Draft00(25497)", NamedGroup.getText(NamedGroup.X25519Kyber768Draft00));
+    }
+
+    private void runHandshake(HybridClient client, HybridServer server) throws Exception
+    {
+        PipedInputStream clientRead = TlsTestUtils.createPipedInputStream();
+        PipedInputStream serverRead = TlsTestUtils.createPipedInputStream();
+        PipedOutputStream clientWrite = new PipedOutputStream(serverRead);
+        PipedOutputStream serverWrite = new PipedOutputStream(clientRead);
+
+        TlsClientProtocol clientProtocol = new TlsClientProtocol(clientRead, clientWrite);
+        TlsServerProtocol serverProtocol = new TlsServerProtocol(serverRead, serverWrite);
+
+        ServerThread serverThread = new ServerThread(serverProtocol, server);
+        serverThread.start();
+
+        try
+        {
+            clientProtocol.connect(client);
+
+            byte[] data = new byte[100];
+            client.getCrypto().getSecureRandom().nextBytes(data);
+
+            OutputStream output = clientProtocol.getOutputStream();
+            output.write(data);
+
+            byte[] echo = new byte[data.length];
+            int count = Streams.readFully(clientProtocol.getInputStream(), echo);
+
+            assertEquals(count, data.length);
+            assertTrue(Arrays.areEqual(data, echo));
+
+            output.close();
+        }
+        finally
+        {
+            serverThread.join();
+        }
+    }
+
+    static class HybridClient
+        extends MockTlsClient
+    {
+        private final int[] groups;
+
+        HybridClient(int[] groups)
+        {
+            super(null);
+
+            this.groups = groups;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        protected Vector getSupportedGroups(Vector namedGroupRoles)
+        {
+            Vector result = new Vector();
+            for (int i = 0; i < groups.length; ++i)
+            {
+                result.addElement(Integers.valueOf(groups[i]));
+            }
+            return result;
+        }
+
+    }
+
+    static class HybridServer
+        extends MockTlsServer
+    {
+        private final int[] supportedGroups;
+
+        HybridServer(int[] supportedGroups)
+        {
+            this.supportedGroups = supportedGroups;
+        }
+
+        protected ProtocolVersion[] getSupportedVersions()
+        {
+            return ProtocolVersion.TLSv13.only();
+        }
+
+        public int[] getSupportedGroups()
+        {
+            return supportedGroups;
+        }
+    }
+
+    static class ServerThread
+        extends Thread
+    {
+        private final TlsServerProtocol serverProtocol;
+        private final HybridServer server;
+
+        ServerThread(TlsServerProtocol serverProtocol, HybridServer server)
+        {
+            this.serverProtocol = serverProtocol;
+            this.server = server;
+        }
+
+        public void run()
+        {
+            try
+            {
+                serverProtocol.accept(server);
+                Streams.pipeAll(serverProtocol.getInputStream(), serverProtocol.getOutputStream());
+                serverProtocol.close();
+            }
+            catch (Exception e)
+            {
+            }
+        }
+    }
+}
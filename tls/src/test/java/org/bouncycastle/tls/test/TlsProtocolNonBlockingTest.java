@@ -1,6 +1,7 @@
 package org.bouncycastle.tls.test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.bouncycastle.tls.TlsClientProtocol;
 import org.bouncycastle.tls.TlsProtocol;
@@ -12,6 +13,11 @@
 public class TlsProtocolNonBlockingTest
     extends TestCase
 {
+    // how records are passed between the peers: byte arrays, or direct or heap ByteBuffers
+    private static final int BUFFERS_NONE = 0;
+    private static final int BUFFERS_DIRECT = 1;
+    private static final int BUFFERS_HEAP = 2;
+
     public void testClientServerFragmented() throws IOException
     {
         // tests if it's really non-blocking when partial records arrive
@@ -23,7 +29,91 @@ public void testClientServerNonFragmented() throws IOException
         testClientServer(false);
     }
 
+    public void testClientServerDirectBuffers() throws IOException
+    {
+        testClientServer(false, BUFFERS_DIRECT);
+    }
+
+    public void testClientServerHeapBuffers() throws IOException
+    {
+        testClientServer(false, BUFFERS_HEAP);
+    }
+
+    public void testApplicationDataDirect() throws IOException
+    {
+        TlsClientProtocol clientProtocol = new TlsClientProtocol();
+        TlsServerProtocol serverProtocol = new TlsServerProtocol();
+
+        MockTlsClient client = new MockTlsClient(null);
+        MockTlsServer server = new MockTlsServer();
+
+        clientProtocol.connect(client);
+        serverProtocol.accept(server);
+
+        boolean hadDataFromServer = true;
+        boolean hadDataFromClient = true;
+        while (hadDataFromServer || hadDataFromClient)
+        {
+            hadDataFromServer = pumpData(serverProtocol, clientProtocol, false, BUFFERS_HEAP);
+            hadDataFromClient = pumpData(clientProtocol, serverProtocol, false, BUFFERS_HEAP);
+        }
+
+        byte[] data = new byte[1024];
+        client.getCrypto().getSecureRandom().nextBytes(data);
+
+        // all of it fits, so nothing is queued
+        ByteBuffer[] dsts = new ByteBuffer[]{ ByteBuffer.allocate(0), ByteBuffer.allocate(600),
+            ByteBuffer.allocateDirect(600) };
+        clientProtocol.writeApplicationData(data, 0, data.length);
+        assertEquals(data.length, serverProtocol.offerInput(readOutput(clientProtocol), dsts, 0, dsts.length));
+        assertEquals(0, serverProtocol.getAvailableInputBytes());
+        assertArrayEquals(data, concat(dsts));
+
+        // what doesn't fit is queued, and later data is queued behind it
+        dsts = new ByteBuffer[]{ ByteBuffer.allocate(300) };
+        clientProtocol.writeApplicationData(data, 0, data.length);
+        assertEquals(300, serverProtocol.offerInput(readOutput(clientProtocol), dsts, 0, dsts.length));
+        assertEquals(data.length - 300, serverProtocol.getAvailableInputBytes());
+
+        ByteBuffer[] later = new ByteBuffer[]{ ByteBuffer.allocate(data.length) };
+        clientProtocol.writeApplicationData(data, 0, data.length);
+        assertEquals(0, serverProtocol.offerInput(readOutput(clientProtocol), later, 0, later.length));
+        assertEquals(2 * data.length - 300, serverProtocol.getAvailableInputBytes());
+
+        byte[] readData = new byte[2 * data.length];
+        ((java.nio.Buffer)dsts[0]).flip();
+        dsts[0].get(readData, 0, 300);
+        serverProtocol.readInput(readData, 300, readData.length - 300);
+        assertArrayEquals(Arrays.concatenate(data, data), readData);
+    }
+
+    private static ByteBuffer readOutput(TlsProtocol from)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(from.getAvailableOutputBytes());
+        from.readOutput(buffer, buffer.remaining());
+        ((java.nio.Buffer)buffer).flip();
+        return buffer;
+    }
+
+    private static byte[] concat(ByteBuffer[] buffers)
+    {
+        byte[] result = new byte[0];
+        for (int i = 0; i < buffers.length; ++i)
+        {
+            ((java.nio.Buffer)buffers[i]).flip();
+            byte[] bytes = new byte[buffers[i].remaining()];
+            buffers[i].get(bytes);
+            result = Arrays.concatenate(result, bytes);
+        }
+        return result;
+    }
+
     private static void testClientServer(boolean fragment) throws IOException
+    {
+        testClientServer(fragment, BUFFERS_NONE);
+    }
+
+    private static void testClientServer(boolean fragment, int buffers) throws IOException
     {
         TlsClientProtocol clientProtocol = new TlsClientProtocol();
         TlsServerProtocol serverProtocol = new TlsServerProtocol();
@@ -39,31 +129,31 @@ private static void testClientServer(boolean fragment) throws IOException
         boolean hadDataFromClient = true;
         while (hadDataFromServer || hadDataFromClient)
         {
-            hadDataFromServer = pumpData(serverProtocol, clientProtocol, fragment);
-            hadDataFromClient = pumpData(clientProtocol, serverProtocol, fragment);
+            hadDataFromServer = pumpData(serverProtocol, clientProtocol, fragment, buffers);
+            hadDataFromClient = pumpData(clientProtocol, serverProtocol, fragment, buffers);
         }
 
         // send data in both directions
         byte[] data = new byte[1024];
         client.getCrypto().getSecureRandom().nextBytes(data);
 
-        writeAndRead(clientProtocol, serverProtocol, data, fragment);
-        writeAndRead(serverProtocol, clientProtocol, data, fragment);
+        writeAndRead(clientProtocol, serverProtocol, data, fragment, buffers);
+        writeAndRead(serverProtocol, clientProtocol, data, fragment, buffers);
 
         // close the connection
         clientProtocol.close();
-        pumpData(clientProtocol, serverProtocol, fragment);
+        pumpData(clientProtocol, serverProtocol, fragment, buffers);
         serverProtocol.closeInput();
         checkClosed(serverProtocol);
         checkClosed(clientProtocol);
     }
 
-    private static void writeAndRead(TlsProtocol writer, TlsProtocol reader, byte[] data, boolean fragment)
-        throws IOException
+    private static void writeAndRead(TlsProtocol writer, TlsProtocol reader, byte[] data, boolean fragment,
+        int buffers) throws IOException
     {
         int dataSize = data.length;
         writer.writeApplicationData(data, 0, dataSize);
-        pumpData(writer, reader, fragment);
+        pumpData(writer, reader, fragment, buffers);
 
         assertEquals(dataSize, reader.getAvailableInputBytes());
         byte[] readData = new byte[dataSize];
@@ -71,7 +161,8 @@ private static void writeAndRead(TlsProtocol writer, TlsProtocol reader, byte[]
         assertArrayEquals(data, readData);
     }
 
-    private static boolean pumpData(TlsProtocol from, TlsProtocol to, boolean fragment) throws IOException
+    private static boolean pumpData(TlsProtocol from, TlsProtocol to, boolean fragment, int buffers)
+        throws IOException
     {
         int byteCount = from.getAvailableOutputBytes();
         if (byteCount == 0)
@@ -79,7 +170,27 @@ private static boolean pumpData(TlsProtocol from, TlsProtocol to, boolean fragme
             return false;
         }
 
-        if (fragment)
+        if (buffers != BUFFERS_NONE)
+        {
+            ByteBuffer buffer;
+            if (buffers == BUFFERS_DIRECT)
+            {
+                buffer = ByteBuffer.allocateDirect(byteCount);
+            }
+            else
+            {
+                // a slice, so that the backing array has a non-zero offset
+                ByteBuffer whole = ByteBuffer.allocate(byteCount + 7);
+                whole.position(7);
+                buffer = whole.slice();
+            }
+
+            from.readOutput(buffer, byteCount);
+            buffer.flip();
+            to.offerInput(buffer);
+            assertFalse(buffer.hasRemaining());
+        }
+        else if (fragment)
         {
             byte[] buffer = new byte[1];
             while (from.getAvailableOutputBytes() > 0)
@@ -0,0 +1,176 @@
+package org.bouncycastle.tls.test;
+
+import java.io.IOException;
+
+import org.bouncycastle.tls.TlsClientProtocol;
+import org.bouncycastle.tls.TlsProtocol;
+import org.bouncycastle.tls.TlsServerProtocol;
+import org.bouncycastle.tls.TlsUtils;
+import org.bouncycastle.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class TlsRecordWritingTest
+    extends TestCase
+{
+    public void testWriteCoalescing() throws IOException
+    {
+        TlsProtocol[] peers = connect();
+        TlsProtocol client = peers[0], server = peers[1];
+
+        client.setWriteCoalescing(true);
+
+        // Less than a full record, in small writes
+        byte[] data = createData((client.getApplicationDataWriteLimit() / 10 - 1) * 10);
+        for (int i = 0; i < data.length; i += 10)
+        {
+            client.writeApplicationData(data, i, 10);
+        }
+
+        // Nothing is sent until a full record is available, or the data is flushed
+        assertEquals(0, client.getAvailableOutputBytes());
+
+        client.flush();
+
+        assertEquals(1, transferRecords(client, server));
+        checkReceived(server, data);
+    }
+
+    public void testWriteCoalescingFullRecords() throws IOException
+    {
+        TlsProtocol[] peers = connect();
+        TlsProtocol client = peers[0], server = peers[1];
+
+        client.setWriteCoalescing(true);
+
+        int limit = client.getApplicationDataWriteLimit();
+        byte[] data = createData(limit * 2 + 100);
+        for (int i = 0; i < data.length; i += 100)
+        {
+            client.writeApplicationData(data, i, Math.min(100, data.length - i));
+        }
+
+        // Only the full records are sent before flushing
+        assertEquals(2, transferRecords(client, server));
+
+        client.flush();
+
+        assertEquals(1, transferRecords(client, server));
+        checkReceived(server, data);
+    }
+
+    public void testWriteCoalescingFlushedOnClose() throws IOException
+    {
+        TlsProtocol[] peers = connect();
+        TlsProtocol client = peers[0], server = peers[1];
+
+        client.setWriteCoalescing(true);
+
+        byte[] data = createData(10);
+        client.writeApplicationData(data, 0, data.length);
+        client.close();
+
+        // The application data record, then close_notify
+        assertEquals(2, transferRecords(client, server));
+        checkReceived(server, data);
+    }
+
+    public void testDynamicRecordSizing() throws IOException
+    {
+        TlsProtocol[] peers = connect();
+        TlsProtocol client = peers[0], server = peers[1];
+
+        int fullLimit = client.getApplicationDataWriteLimit();
+        assertEquals(client.getApplicationDataLimit(), fullLimit);
+
+        client.setDynamicRecordSizing(100, 400);
+        assertEquals(100, client.getApplicationDataWriteLimit());
+
+        // 4 small records, then the remainder in full-sized records
+        byte[] data = createData(400 + fullLimit * 2);
+        client.writeApplicationData(data, 0, data.length);
+
+        assertEquals(6, transferRecords(client, server));
+        assertEquals(fullLimit, client.getApplicationDataWriteLimit());
+        checkReceived(server, data);
+    }
+
+    public void testDynamicRecordSizingDisabled() throws IOException
+    {
+        TlsProtocol[] peers = connect();
+        TlsProtocol client = peers[0], server = peers[1];
+
+        client.setDynamicRecordSizing(0, 400);
+
+        byte[] data = createData(client.getApplicationDataWriteLimit() * 2);
+        client.writeApplicationData(data, 0, data.length);
+
+        assertEquals(2, transferRecords(client, server));
+        checkReceived(server, data);
+    }
+
+    private static TlsProtocol[] connect() throws IOException
+    {
+        TlsClientProtocol clientProtocol = new TlsClientProtocol();
+        TlsServerProtocol serverProtocol = new TlsServerProtocol();
+
+        clientProtocol.connect(new MockTlsClient(null));
+        serverProtocol.accept(new MockTlsServer());
+
+        boolean hadData = true;
+        while (hadData)
+        {
+            hadData = transferRecords(serverProtocol, clientProtocol) > 0;
+            hadData |= transferRecords(clientProtocol, serverProtocol) > 0;
+        }
+
+        assertTrue(clientProtocol.isConnected());
+        assertTrue(serverProtocol.isConnected());
+
+        return new TlsProtocol[]{ clientProtocol, serverProtocol };
+    }
+
+    private static byte[] createData(int length)
+    {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; ++i)
+        {
+            data[i] = (byte)i;
+        }
+        return data;
+    }
+
+    private static void checkReceived(TlsProtocol reader, byte[] data) throws IOException
+    {
+        assertEquals(data.length, reader.getAvailableInputBytes());
+        byte[] readData = new byte[data.length];
+        reader.readInput(readData, 0, readData.length);
+        assertTrue(Arrays.areEqual(data, readData));
+    }
+
+    /*
+     * Pass all pending output from one peer to the other, returning the number of records passed.
+     */
+    private static int transferRecords(TlsProtocol from, TlsProtocol to) throws IOException
+    {
+        int byteCount = from.getAvailableOutputBytes();
+        if (byteCount == 0)
+        {
+            return 0;
+        }
+
+        byte[] buffer = new byte[byteCount];
+        from.readOutput(buffer, 0, buffer.length);
+
+        int records = 0, pos = 0;
+        while (pos < buffer.length)
+        {
+            pos += 5 + TlsUtils.readUint16(buffer, pos + 3);
+            ++records;
+        }
+        assertEquals(buffer.length, pos);
+
+        to.offerInput(buffer);
+        return records;
+    }
+}